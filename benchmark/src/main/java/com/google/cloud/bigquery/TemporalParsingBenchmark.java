@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.ZoneOffset;
+
+/**
+ * Compares the parsers of temporal field values with the {@link BigDecimal} and {@code
+ * DateTimeFormatter} based parsing they replace. Run with {@code java -jar target/benchmark.jar
+ * TemporalParsingBenchmark -prof gc} to also compare allocation rates.
+ */
+@Fork(value = 1)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TemporalParsingBenchmark {
+
+  private static final int VALUES = 1024;
+
+  private final FieldValue[] timestamps = new FieldValue[VALUES];
+  private final FieldValue[] dates = new FieldValue[VALUES];
+  private final FieldValue[] times = new FieldValue[VALUES];
+  private final FieldValue[] dateTimes = new FieldValue[VALUES];
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    for (int i = 0; i < VALUES; i++) {
+      // timestamps between 1970 and 2038, encoded like tabledata.list does
+      long micros = (random.nextLong() & Long.MAX_VALUE) % 2147483647000000L;
+      double seconds = BigDecimal.valueOf(micros).scaleByPowerOfTen(-6).doubleValue();
+      timestamps[i] = FieldValue.of(FieldValue.Attribute.PRIMITIVE, Double.toString(seconds));
+      LocalDateTime dateTime =
+          LocalDateTime.ofEpochSecond(
+              micros / 1000000, (int) (micros % 1000000) * 1000, ZoneOffset.UTC);
+      String date = dateTime.toLocalDate().toString();
+      String time =
+          String.format(
+              "%02d:%02d:%02d.%06d",
+              dateTime.getHour(),
+              dateTime.getMinute(),
+              dateTime.getSecond(),
+              dateTime.getNano() / 1000);
+      dates[i] = FieldValue.of(FieldValue.Attribute.PRIMITIVE, date);
+      times[i] = FieldValue.of(FieldValue.Attribute.PRIMITIVE, time);
+      dateTimes[i] = FieldValue.of(FieldValue.Attribute.PRIMITIVE, date + "T" + time);
+    }
+  }
+
+  @Benchmark
+  public void timestampBigDecimal(Blackhole blackhole) {
+    for (FieldValue value : timestamps) {
+      blackhole.consume(new BigDecimal(value.getStringValue()).scaleByPowerOfTen(6).longValue());
+    }
+  }
+
+  @Benchmark
+  public void timestampParser(Blackhole blackhole) {
+    for (FieldValue value : timestamps) {
+      blackhole.consume(value.getTimestampValue());
+    }
+  }
+
+  @Benchmark
+  public void dateThreeTen(Blackhole blackhole) {
+    for (FieldValue value : dates) {
+      blackhole.consume(LocalDate.parse(value.getStringValue()).toEpochDay());
+    }
+  }
+
+  @Benchmark
+  public void dateParser(Blackhole blackhole) {
+    for (FieldValue value : dates) {
+      blackhole.consume(value.getDateEpochDays());
+    }
+  }
+
+  @Benchmark
+  public void timeThreeTen(Blackhole blackhole) {
+    for (FieldValue value : times) {
+      blackhole.consume(LocalTime.parse(value.getStringValue()).toNanoOfDay());
+    }
+  }
+
+  @Benchmark
+  public void timeParser(Blackhole blackhole) {
+    for (FieldValue value : times) {
+      blackhole.consume(value.getTimeNanos());
+    }
+  }
+
+  @Benchmark
+  public void dateTimeThreeTen(Blackhole blackhole) {
+    for (FieldValue value : dateTimes) {
+      LocalDateTime dateTime = LocalDateTime.parse(value.getStringValue());
+      blackhole.consume(
+          dateTime.toEpochSecond(ZoneOffset.UTC) * 1000000L + dateTime.getNano() / 1000);
+    }
+  }
+
+  @Benchmark
+  public void dateTimeParser(Blackhole blackhole) {
+    for (FieldValue value : dateTimes) {
+      blackhole.consume(value.getDateTimeMicros());
+    }
+  }
+}
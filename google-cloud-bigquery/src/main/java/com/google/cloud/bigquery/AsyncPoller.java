@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.cloud.BaseServiceException;
+import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs calls and polling loops on a scheduler, completing {@link ApiFuture}s with their results.
+ * Polling loops reschedule themselves between attempts, rather than sleeping, so no thread is held
+ * while waiting for the next attempt.
+ */
+final class AsyncPoller {
+
+  private AsyncPoller() {}
+
+  private static class DefaultExecutorHolder {
+    private static final ScheduledExecutorService INSTANCE =
+        Executors.newScheduledThreadPool(
+            Math.max(4, Runtime.getRuntime().availableProcessors()),
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bigquery-async-%d").build());
+  }
+
+  /** Returns the scheduler shared by all the clients that do not set their own. */
+  static ScheduledExecutorService defaultExecutor() {
+    return DefaultExecutorHolder.INSTANCE;
+  }
+
+  /** Runs {@code callable} on {@code executor}. */
+  static <T> ApiFuture<T> submit(ScheduledExecutorService executor, final Callable<T> callable) {
+    final SettableApiFuture<T> future = SettableApiFuture.create();
+    execute(
+        executor,
+        future,
+        new Runnable() {
+          @Override
+          public void run() {
+            if (future.isDone()) {
+              return;
+            }
+            try {
+              future.set(callable.call());
+            } catch (Throwable t) {
+              future.setException(t);
+            }
+          }
+        },
+        0);
+    return future;
+  }
+
+  /**
+   * Calls {@code attempt} on {@code executor} until {@code isDone} returns {@code true} for its
+   * result, waiting between attempts as configured by {@code settings}. The returned future fails
+   * if an attempt fails, or with a {@link BigQueryException} if the total timeout of {@code
+   * settings} elapses. Cancelling the returned future stops polling.
+   */
+  static <T> ApiFuture<T> poll(
+      ScheduledExecutorService executor,
+      Callable<T> attempt,
+      Predicate<? super T> isDone,
+      RetrySettings settings,
+      ApiClock clock) {
+    SettableApiFuture<T> future = SettableApiFuture.create();
+    new PollingTask<>(executor, attempt, isDone, settings, clock, future).schedule(0);
+    return future;
+  }
+
+  private static void execute(
+      ScheduledExecutorService executor,
+      SettableApiFuture<?> future,
+      Runnable task,
+      long delayMillis) {
+    try {
+      executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      future.setException(e);
+    }
+  }
+
+  private static final class PollingTask<T> implements Runnable {
+
+    private final ScheduledExecutorService executor;
+    private final Callable<T> attempt;
+    private final Predicate<? super T> isDone;
+    private final RetrySettings settings;
+    private final ApiClock clock;
+    private final SettableApiFuture<T> future;
+    private final long startMillis;
+    private long delayMillis;
+
+    PollingTask(
+        ScheduledExecutorService executor,
+        Callable<T> attempt,
+        Predicate<? super T> isDone,
+        RetrySettings settings,
+        ApiClock clock,
+        SettableApiFuture<T> future) {
+      this.executor = executor;
+      this.attempt = attempt;
+      this.isDone = isDone;
+      this.settings = settings;
+      this.clock = clock;
+      this.future = future;
+      this.startMillis = clock.millisTime();
+      this.delayMillis = settings.getInitialRetryDelay().toMillis();
+    }
+
+    void schedule(long delayMillis) {
+      execute(executor, future, this, delayMillis);
+    }
+
+    @Override
+    public void run() {
+      if (future.isDone()) {
+        // cancelled
+        return;
+      }
+      try {
+        T result = attempt.call();
+        if (isDone.apply(result)) {
+          future.set(result);
+          return;
+        }
+      } catch (Throwable t) {
+        future.setException(t);
+        return;
+      }
+      // delays are always jittered, as gax does regardless of the deprecated jittered setting
+      long delay = delayMillis > 0 ? ThreadLocalRandom.current().nextLong(delayMillis) : 0;
+      long totalTimeout = settings.getTotalTimeout().toMillis();
+      if (totalTimeout > 0 && clock.millisTime() - startMillis + delay > totalTimeout) {
+        future.setException(
+            new BigQueryException(
+                BaseServiceException.UNKNOWN_CODE,
+                "Polling did not complete within " + totalTimeout + " ms"));
+        return;
+      }
+      delayMillis =
+          Math.min(
+              (long) (delayMillis * settings.getRetryDelayMultiplier()),
+              settings.getMaxRetryDelay().toMillis());
+      schedule(delay);
+    }
+  }
+}
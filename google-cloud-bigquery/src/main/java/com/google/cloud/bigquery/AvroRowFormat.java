@@ -0,0 +1,275 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.common.collect.ImmutableList;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Encodes rows as an Avro object container file, without compression. Each block of rows written to
+ * the channel is an Avro block, and the file header is written before the first one.
+ *
+ * <p>Column types are mapped to Avro types with the logical types that BigQuery reads when {@link
+ * WriteChannelConfiguration#getUseAvroLogicalTypes()} is set: {@code timestamp-micros}, {@code
+ * date}, {@code time-micros}, {@code decimal} and {@code datetime}. Nullable columns are unions
+ * with {@code null}, repeated columns are arrays and records are nested records.
+ */
+final class AvroRowFormat extends RowWriter.Format {
+
+  private static final byte[] MAGIC = {'O', 'b', 'j', 1};
+  private static final int SYNC_SIZE = 16;
+
+  private final Schema schema;
+  private final byte[] sync = new byte[SYNC_SIZE];
+  private boolean headerWritten;
+
+  AvroRowFormat(Schema schema) {
+    this.schema = schema;
+    new Random().nextBytes(sync);
+  }
+
+  /** Returns the Avro schema of the rows, as JSON. */
+  static String avroSchema(Schema schema) throws IOException {
+    return JsonHelper.getJsonFactory().toString(recordSchema("Row", schema.getFields()));
+  }
+
+  private static Map<String, Object> recordSchema(String name, FieldList fields) {
+    List<Object> fieldSchemas = new ArrayList<>(fields.size());
+    for (Field field : fields) {
+      Map<String, Object> fieldSchema = new LinkedHashMap<>();
+      fieldSchema.put("name", field.getName());
+      Object type = typeSchema(name + "_" + field.getName(), field);
+      if (field.getMode() == Field.Mode.REPEATED) {
+        Map<String, Object> arraySchema = new LinkedHashMap<>();
+        arraySchema.put("type", "array");
+        arraySchema.put("items", type);
+        fieldSchema.put("type", arraySchema);
+      } else if (field.getMode() == Field.Mode.REQUIRED) {
+        fieldSchema.put("type", type);
+      } else {
+        fieldSchema.put("type", ImmutableList.of("null", type));
+        fieldSchema.put("default", null);
+      }
+      fieldSchemas.add(fieldSchema);
+    }
+    Map<String, Object> recordSchema = new LinkedHashMap<>();
+    recordSchema.put("type", "record");
+    recordSchema.put("name", name);
+    recordSchema.put("fields", fieldSchemas);
+    return recordSchema;
+  }
+
+  private static Object typeSchema(String name, Field field) {
+    switch (field.getType().getStandardType()) {
+      case INT64:
+        return "long";
+      case FLOAT64:
+        return "double";
+      case BOOL:
+        return "boolean";
+      case BYTES:
+        return "bytes";
+      case NUMERIC:
+      case BIGNUMERIC:
+        Map<String, Object> decimal = logicalType("bytes", "decimal");
+        decimal.put("precision", precision(field));
+        decimal.put("scale", scale(field));
+        return decimal;
+      case TIMESTAMP:
+        return logicalType("long", "timestamp-micros");
+      case DATE:
+        return logicalType("int", "date");
+      case TIME:
+        return logicalType("long", "time-micros");
+      case DATETIME:
+        return logicalType("string", "datetime");
+      case GEOGRAPHY:
+        Map<String, Object> geography = new LinkedHashMap<>();
+        geography.put("type", "string");
+        geography.put("sqlType", "GEOGRAPHY");
+        return geography;
+      case STRUCT:
+        return recordSchema(name, field.getSubFields());
+      default:
+        return "string";
+    }
+  }
+
+  private static Map<String, Object> logicalType(String type, String logicalType) {
+    Map<String, Object> schema = new LinkedHashMap<>();
+    schema.put("type", type);
+    schema.put("logicalType", logicalType);
+    return schema;
+  }
+
+  private static int precision(Field field) {
+    if (field.getPrecision() != null) {
+      return field.getPrecision().intValue();
+    }
+    return field.getType().getStandardType() == StandardSQLTypeName.NUMERIC ? 38 : 77;
+  }
+
+  private static int scale(Field field) {
+    if (field.getScale() != null) {
+      return field.getScale().intValue();
+    }
+    if (field.getPrecision() != null) {
+      return 0;
+    }
+    return field.getType().getStandardType() == StandardSQLTypeName.NUMERIC ? 9 : 38;
+  }
+
+  @Override
+  void encode(Object row, OutputStream out) throws IOException {
+    writeRecord(schema.getFields(), row, out);
+  }
+
+  @Override
+  void writeBlock(WritableByteChannel channel, byte[] rows, int length, long rowCount)
+      throws IOException {
+    ByteArrayOutputStream framing = new ByteArrayOutputStream();
+    if (!headerWritten) {
+      framing.write(MAGIC);
+      writeLong(2, framing);
+      writeString("avro.schema", framing);
+      writeString(avroSchema(schema), framing);
+      writeString("avro.codec", framing);
+      writeString("null", framing);
+      writeLong(0, framing);
+      framing.write(sync);
+      headerWritten = true;
+    }
+    if (rowCount > 0) {
+      writeLong(rowCount, framing);
+      writeLong(length, framing);
+      RowWriter.write(channel, framing.toByteArray(), framing.size());
+      RowWriter.write(channel, rows, length);
+      RowWriter.write(channel, sync, SYNC_SIZE);
+    } else {
+      RowWriter.write(channel, framing.toByteArray(), framing.size());
+    }
+  }
+
+  private void writeRecord(FieldList fields, Object row, OutputStream out) throws IOException {
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      Object value = RowValues.get(row, field, i);
+      if (field.getMode() == Field.Mode.REPEATED) {
+        List<Object> elements = new ArrayList<>();
+        if (value != null) {
+          for (Object element : RowValues.getElements(value)) {
+            elements.add(RowValues.getElement(element));
+          }
+        }
+        if (!elements.isEmpty()) {
+          writeLong(elements.size(), out);
+          for (Object element : elements) {
+            if (element == null) {
+              throw new IllegalArgumentException(
+                  "Null element in repeated column " + field.getName());
+            }
+            writeValue(field, element, out);
+          }
+        }
+        writeLong(0, out);
+      } else if (field.getMode() == Field.Mode.REQUIRED) {
+        if (value == null) {
+          throw new IllegalArgumentException("No value for required column " + field.getName());
+        }
+        writeValue(field, value, out);
+      } else if (value == null) {
+        writeLong(0, out);
+      } else {
+        writeLong(1, out);
+        writeValue(field, value, out);
+      }
+    }
+  }
+
+  private void writeValue(Field field, Object value, OutputStream out) throws IOException {
+    switch (field.getType().getStandardType()) {
+      case INT64:
+        writeLong(RowValues.toLong(value), out);
+        break;
+      case FLOAT64:
+        long bits = Double.doubleToLongBits(RowValues.toDouble(value));
+        for (int i = 0; i < 8; i++) {
+          out.write((int) (bits >>> (8 * i)));
+        }
+        break;
+      case BOOL:
+        out.write(RowValues.toBoolean(value) ? 1 : 0);
+        break;
+      case BYTES:
+        writeBytes(RowValues.toBytes(value), out);
+        break;
+      case NUMERIC:
+      case BIGNUMERIC:
+        BigDecimal decimal =
+            RowValues.toDecimal(value).setScale(scale(field), RoundingMode.HALF_UP);
+        writeBytes(decimal.unscaledValue().toByteArray(), out);
+        break;
+      case TIMESTAMP:
+        writeLong(RowValues.toTimestampMicros(value), out);
+        break;
+      case DATE:
+        writeLong(RowValues.toEpochDays(value), out);
+        break;
+      case TIME:
+        writeLong(RowValues.toTimeMicros(value), out);
+        break;
+      case DATETIME:
+        writeString(RowValues.toDateTimeString(value), out);
+        break;
+      case STRUCT:
+        writeRecord(field.getSubFields(), value, out);
+        break;
+      default:
+        writeString(RowValues.toString(value), out);
+    }
+  }
+
+  /** Writes a zig-zag encoded variable-length long, also the encoding of Avro ints. */
+  private static void writeLong(long value, OutputStream out) throws IOException {
+    long n = (value << 1) ^ (value >> 63);
+    while ((n & ~0x7FL) != 0) {
+      out.write((int) ((n & 0x7F) | 0x80));
+      n >>>= 7;
+    }
+    out.write((int) n);
+  }
+
+  private static void writeBytes(byte[] bytes, OutputStream out) throws IOException {
+    writeLong(bytes.length, out);
+    out.write(bytes);
+  }
+
+  private static void writeString(String value, OutputStream out) throws IOException {
+    writeBytes(value.getBytes(StandardCharsets.UTF_8), out);
+  }
+}
@@ -18,6 +18,8 @@ package com.google.cloud.bigquery;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
 import com.google.api.core.InternalApi;
 import com.google.api.gax.paging.Page;
 import com.google.cloud.FieldSelector;
@@ -27,9 +29,12 @@ import com.google.cloud.RetryOption;
 import com.google.cloud.Service;
 import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
 import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -456,6 +461,18 @@ public interface BigQuery extends Service<BigQueryOptions> {
       checkArgument(index >= 0);
       return new TableDataListOption(BigQueryRpc.Option.START_INDEX, index);
     }
+
+    /**
+     * Returns an option to list only the provided fields (columns) of the table. Fields of records
+     * can be selected with their dotted path, e.g. {@code record.field}. The rows are returned with
+     * the fields in table schema order; if a schema is provided when listing, it is pruned to the
+     * selected fields so that the returned {@link FieldValueList}s can still be accessed by name.
+     */
+    public static TableDataListOption selectedFields(String... fields) {
+      checkArgument(fields.length > 0, "At least one field must be selected");
+      return new TableDataListOption(
+          BigQueryRpc.Option.SELECTED_FIELDS, Joiner.on(',').join(fields));
+    }
   }
 
   /** Class for specifying job list options. */
@@ -1252,6 +1269,14 @@ public interface BigQuery extends Service<BigQueryOptions> {
   /**
    * Sends an insert all request.
    *
+   * <p>Requests whose {@link InsertAllRequest#getEstimatedSizeBytes() estimated size} or number of
+   * rows exceed the limits of the backend are split into requests of consecutive rows, sent
+   * concurrently. The indexes of the insert errors in the response are those of the rows in {@code
+   * request}. If some of these requests fail, the others are still applied, and each row of a
+   * failed request is reported as an insert error carrying the error of its request: check {@link
+   * InsertAllResponse#hasErrors()} rather than relying on an exception. A {@link
+   * BigQueryException} is only thrown if all the requests fail.
+   *
    * <p>Example of inserting rows into a table without running a load job.
    *
    * <pre>
@@ -1282,10 +1307,35 @@ public interface BigQuery extends Service<BigQueryOptions> {
    * }
    * </pre>
    *
-   * @throws BigQueryException upon failure
+   * @throws BigQueryException upon failure, or if all the requests a split request is sent as fail
    */
   InsertAllResponse insertAll(InsertAllRequest request);
 
+  /**
+   * Sends an insert all request with the rows of {@code request}, followed by {@code rows} encoded
+   * by {@code encoder}. Rows are written directly to the body of the request as they are encoded,
+   * without building the whole request in memory. The table and the settings of {@code request}
+   * apply to all rows, and the indexes of the insert errors in the response count the rows of
+   * {@code request} first. The request is not split, and fails if it exceeds the limits of the
+   * backend.
+   *
+   * <p>{@code rows} must return the same rows each time it is iterated: it is iterated once to read
+   * the insert ids of the rows, then once for each attempt to send the request. The request fails
+   * with an {@link IllegalStateException} if the number of rows changes between iterations.
+   *
+   * <p>Example of inserting objects in a table.
+   *
+   * <pre>{@code
+   * InsertAllResponse response =
+   *     bigquery.insertAll(InsertAllRequest.newBuilder(tableId).build(), events, eventEncoder);
+   * }</pre>
+   *
+   * @throws BigQueryException upon failure
+   */
+  @BetaApi
+  <T> InsertAllResponse insertAll(
+      InsertAllRequest request, Iterable<T> rows, RowEncoder<? super T> encoder);
+
   /**
    * Lists the table's rows.
    *
@@ -1380,6 +1430,44 @@ public interface BigQuery extends Service<BigQueryOptions> {
    */
   TableResult listTableData(TableId tableId, Schema schema, TableDataListOption... options);
 
+  /**
+   * Lists the table's rows asynchronously, on the executor returned by {@link
+   * BigQueryOptions#getAsyncExecutor()}. The returned future completes with the first page of rows,
+   * as {@link #listTableData(TableId, Schema, TableDataListOption...)} would return it. If the
+   * {@code schema} is not {@code null}, it is available to the {@link FieldValueList} iterated
+   * over.
+   */
+  @BetaApi
+  ApiFuture<TableResult> listTableDataAsync(
+      TableId tableId, Schema schema, TableDataListOption... options);
+
+  /**
+   * Opens a reader that lists the table's rows with {@code parallelism} concurrent cursors. The
+   * rows of the table are split into contiguous ranges that are listed independently, and can be
+   * consumed as one iterator per range or as a single merged iterator. If the {@code schema} is not
+   * {@code null}, it is available to the {@link FieldValueList} iterated over. The reader must be
+   * closed when done.
+   *
+   * <p>Example of reading a table with 8 concurrent cursors.
+   *
+   * <pre>{@code
+   * TableId tableId = TableId.of("bigquery-public-data", "samples", "shakespeare");
+   * try (ParallelTableReader reader = bigquery.parallelRead(tableId, schema, 8)) {
+   *   for (PrefetchingRowIterator rows : reader.iterateRanges(2)) {
+   *     // consume each range on its own thread
+   *   }
+   * }
+   * }</pre>
+   *
+   * @param parallelism the number of ranges the table is split into
+   * @param options list options, {@link TableDataListOption#pageSize(long)} sets the maximum number
+   *     of rows per page of each range. Start index and page token options are not supported.
+   * @throws BigQueryException upon failure
+   */
+  @BetaApi
+  ParallelTableReader parallelRead(
+      TableId tableId, Schema schema, int parallelism, TableDataListOption... options);
+
   /**
    * Returns the requested job or {@code null} if not found. If the location of the job is not "US"
    * or "EU", {@link #getJob(JobId, JobOption...)} must be used instead.
@@ -1556,6 +1644,68 @@ public interface BigQuery extends Service<BigQueryOptions> {
   TableResult query(QueryJobConfiguration configuration, JobId jobId, JobOption... options)
       throws InterruptedException, JobException;
 
+  /**
+   * Prepares a query to be run many times with different parameter values. The request sent to run
+   * the query is built once, and parameter values are encoded again only when they change.
+   *
+   * <p>Example of preparing a query and running it with a parameter value.
+   *
+   * <pre>{@code
+   * String query = "SELECT name FROM my_dataset.my_table WHERE id = @id";
+   * PreparedQuery preparedQuery =
+   *     bigquery.prepareQuery(
+   *         QueryJobConfiguration.newBuilder(query)
+   *             .addNamedParameter("id", QueryParameterValue.int64(0L))
+   *             .build());
+   * TableResult result =
+   *     preparedQuery.query(ImmutableMap.of("id", QueryParameterValue.int64(42L)));
+   * }</pre>
+   *
+   * @throws UnsupportedOperationException if the query is a dry run
+   */
+  @BetaApi
+  PreparedQuery prepareQuery(QueryJobConfiguration configuration);
+
+  /**
+   * Runs the query associated with the request asynchronously, using an internally-generated random
+   * JobId. The returned future completes with the first page of results, or fails as {@link
+   * #query(QueryJobConfiguration, JobOption...)} would throw.
+   *
+   * <p>Requests are sent on the executor returned by {@link BigQueryOptions#getAsyncExecutor()}.
+   * While the query runs, its completion is polled without holding a thread between polls, as
+   * {@link Job#waitForAsync(RetryOption...)} does, so a few threads can drive many concurrent
+   * queries. Cancelling the returned future stops polling, but does not cancel the query job.
+   *
+   * <p>Example of running a query asynchronously.
+   *
+   * <pre>{@code
+   * QueryJobConfiguration queryConfig = QueryJobConfiguration.newBuilder(query).build();
+   * ApiFuture<TableResult> future = bigquery.queryAsync(queryConfig);
+   * ApiFutures.addCallback(
+   *     future,
+   *     new ApiFutureCallback<TableResult>() {
+   *       public void onSuccess(TableResult result) {
+   *         // process the results
+   *       }
+   *
+   *       public void onFailure(Throwable t) {
+   *         // handle error
+   *       }
+   *     },
+   *     MoreExecutors.directExecutor());
+   * }</pre>
+   */
+  @BetaApi
+  ApiFuture<TableResult> queryAsync(QueryJobConfiguration configuration, JobOption... options);
+
+  /**
+   * Runs the query associated with the request asynchronously, using the given JobId. See {@link
+   * #queryAsync(QueryJobConfiguration, JobOption...)}.
+   */
+  @BetaApi
+  ApiFuture<TableResult> queryAsync(
+      QueryJobConfiguration configuration, JobId jobId, JobOption... options);
+
   /**
    * Returns results of the query associated with the provided job.
    *
@@ -1564,6 +1714,15 @@ public interface BigQuery extends Service<BigQueryOptions> {
   @InternalApi
   QueryResponse getQueryResults(JobId jobId, QueryResultsOption... options);
 
+  /**
+   * Returns results of the query associated with the provided job asynchronously, on the executor
+   * returned by {@link BigQueryOptions#getAsyncExecutor()}.
+   *
+   * <p>Users are encouraged to use {@link Job#waitForAsync(RetryOption...)} instead.
+   */
+  @BetaApi
+  ApiFuture<QueryResponse> getQueryResultsAsync(JobId jobId, QueryResultsOption... options);
+
   /**
    * Returns a channel to write data to be inserted into a BigQuery table. Data format and other
    * options can be configured using the {@link WriteChannelConfiguration} parameter. If the job is
@@ -1662,6 +1821,124 @@ public interface BigQuery extends Service<BigQueryOptions> {
    */
   TableDataWriteChannel writer(JobId jobId, WriteChannelConfiguration writeChannelConfiguration);
 
+  /**
+   * Loads a local file into a BigQuery table, and returns the load job. The file is uploaded in
+   * chunks read from the file as they are sent, without being copied in memory, and the upload
+   * resumes from the last byte received by BigQuery when a chunk fails. If the job is not in "US"
+   * or "EU", {@link #load(JobId, Path, WriteChannelConfiguration)} must be used instead.
+   *
+   * <p>Example of loading a CSV file into a table.
+   *
+   * <pre>{@code
+   * WriteChannelConfiguration configuration =
+   *     WriteChannelConfiguration.newBuilder(TableId.of("my_dataset_name", "my_table_name"))
+   *         .setFormatOptions(FormatOptions.csv())
+   *         .build();
+   * Job job = bigquery.load(Paths.get("my-data.csv"), configuration);
+   * job = job.waitFor();
+   * }</pre>
+   *
+   * @throws BigQueryException upon failure
+   * @throws IOException if the file cannot be read
+   */
+  @BetaApi
+  Job load(Path path, WriteChannelConfiguration writeChannelConfiguration) throws IOException;
+
+  /**
+   * Loads a local file into a BigQuery table, and returns the load job. If the job is not in "US"
+   * or "EU", the {@code jobId} must contain the location of the job. See {@link #load(Path,
+   * WriteChannelConfiguration)}.
+   *
+   * @throws BigQueryException upon failure
+   * @throws IOException if the file cannot be read
+   */
+  @BetaApi
+  Job load(JobId jobId, Path path, WriteChannelConfiguration writeChannelConfiguration)
+      throws IOException;
+
+  /**
+   * Loads local files into a BigQuery table with up to {@code parallelism} concurrent upload
+   * sessions, and returns the completed jobs. The files are split into regions loaded by separate
+   * jobs: by file, and, for newline-delimited JSON and for CSV without quoted newlines, also at
+   * record boundaries within large files. The jobs append to a staging table next to the
+   * destination table, which a final copy job copies to the destination table with the write and
+   * create dispositions of the configuration. The destination table is therefore modified only if
+   * all the regions are loaded. The staging table is deleted in all cases. If the calling thread
+   * is interrupted, the load jobs are cancelled first, once the uploads in progress stopped.
+   *
+   * <p>Each load job applies the configuration separately, for instance schema auto-detection. The
+   * maximum number of bad records applies to each load job, and to the bad records of all the load
+   * jobs before the copy job is created. The jobs are created in the default location.
+   *
+   * <p>Example of loading CSV files with 8 concurrent sessions.
+   *
+   * <pre>{@code
+   * WriteChannelConfiguration configuration =
+   *     WriteChannelConfiguration.newBuilder(TableId.of("my_dataset_name", "my_table_name"))
+   *         .setFormatOptions(FormatOptions.csv())
+   *         .build();
+   * ParallelLoadResult result =
+   *     bigquery.parallelLoad(
+   *         ImmutableList.of(Paths.get("part-1.csv"), Paths.get("part-2.csv")), configuration, 8);
+   * long rows = result.getStatistics().getOutputRows();
+   * }</pre>
+   *
+   * @param paths the files to load
+   * @param parallelism the maximum number of concurrent upload sessions
+   * @throws BigQueryException upon failure, in particular if a job failed
+   * @throws IOException if a file cannot be read
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the jobs
+   */
+  @BetaApi
+  ParallelLoadResult parallelLoad(
+      List<Path> paths, WriteChannelConfiguration writeChannelConfiguration, int parallelism)
+      throws IOException, InterruptedException;
+
+  /**
+   * Returns a writer of rows into a new load job. Rows are encoded in the format of the
+   * configuration as they are written, Avro, newline-delimited JSON or CSV, and uploaded in chunks,
+   * so that the rows are never all held in memory. If the job is not in "US" or "EU", {@link
+   * #rowWriter(JobId, WriteChannelConfiguration, Schema)} must be used instead.
+   *
+   * <p>Example of loading rows as Avro.
+   *
+   * <pre>{@code
+   * Schema schema =
+   *     Schema.of(
+   *         Field.of("name", LegacySQLTypeName.STRING),
+   *         Field.of("created", LegacySQLTypeName.TIMESTAMP));
+   * WriteChannelConfiguration configuration =
+   *     WriteChannelConfiguration.newBuilder(TableId.of("my_dataset_name", "my_table_name"))
+   *         .setFormatOptions(FormatOptions.avro())
+   *         .build();
+   * RowWriter writer = bigquery.rowWriter(configuration, schema);
+   * try {
+   *   writer.write(ImmutableMap.of("name", "value", "created", Timestamp.now()));
+   * } finally {
+   *   writer.close();
+   * }
+   * Job job = writer.getJob().waitFor();
+   * }</pre>
+   *
+   * @param schema the schema of the rows, or {@code null} to use the schema of the configuration
+   * @throws IllegalArgumentException if there is no schema, or the format cannot encode it
+   * @see RowWriter
+   */
+  @BetaApi
+  RowWriter rowWriter(WriteChannelConfiguration writeChannelConfiguration, Schema schema);
+
+  /**
+   * Returns a writer of rows into a new load job. If the job is not in "US" or "EU", the {@code
+   * jobId} must contain the location of the job.
+   *
+   * @param schema the schema of the rows, or {@code null} to use the schema of the configuration
+   * @throws IllegalArgumentException if there is no schema, or the format cannot encode it
+   * @see #rowWriter(WriteChannelConfiguration, Schema)
+   */
+  @BetaApi
+  RowWriter rowWriter(
+      JobId jobId, WriteChannelConfiguration writeChannelConfiguration, Schema schema);
+
   /** Gets the IAM policy for a specified table. */
   Policy getIamPolicy(TableId tableId, IAMOption... options);
 
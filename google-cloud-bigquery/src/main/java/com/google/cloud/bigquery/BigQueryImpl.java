@@ -19,9 +19,17 @@ import static com.google.cloud.RetryHelper.runWithRetries;
 import static com.google.cloud.bigquery.PolicyHelper.convertFromApiPolicy;
 import static com.google.cloud.bigquery.PolicyHelper.convertToApiPolicy;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.core.ApiAsyncFunction;
+import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.api.core.InternalApi;
+import com.google.api.core.SettableApiFuture;
 import com.google.api.gax.paging.Page;
 import com.google.api.services.bigquery.model.ErrorProto;
 import com.google.api.services.bigquery.model.GetQueryResultsResponse;
@@ -33,6 +41,7 @@ import com.google.api.services.bigquery.model.TableDataList;
 import com.google.api.services.bigquery.model.TableRow;
 import com.google.api.services.bigquery.model.TableSchema;
 import com.google.cloud.BaseService;
+import com.google.cloud.BaseServiceException;
 import com.google.cloud.PageImpl;
 import com.google.cloud.PageImpl.NextPageFetcher;
 import com.google.cloud.Policy;
@@ -40,20 +49,40 @@ import com.google.cloud.RetryHelper;
 import com.google.cloud.RetryHelper.RetryHelperException;
 import com.google.cloud.Tuple;
 import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
+import com.google.cloud.bigquery.JobStatistics.QueryStatistics;
 import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.cloud.bigquery.spi.v2.TableDataSource;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuery {
 
@@ -172,7 +201,8 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     }
   }
 
-  private static class TableDataPageFetcher implements NextPageFetcher<FieldValueList> {
+  private static class TableDataPageFetcher
+      implements NextPageFetcher<FieldValueList>, TableResult.ColumnarPageFetcher {
 
     private static final long serialVersionUID = -8501991114794410114L;
     private final Map<BigQueryRpc.Option, ?> requestOptions;
@@ -197,15 +227,30 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     public Page<FieldValueList> getNextPage() {
       return listTableData(table, schema, serviceOptions, requestOptions).x();
     }
+
+    @Override
+    public Tuple<ColumnarPage, TableResult.ColumnarPageFetcher> getNextColumnarPage() {
+      return listColumnarTableData(table, schema, serviceOptions, requestOptions);
+    }
   }
 
-  private class QueryPageFetcher extends Thread implements NextPageFetcher<FieldValueList> {
+  /**
+   * Fetches the page following the first page of a {@code jobs.query} response. If the query job is
+   * not done yet, waits for its completion with {@code jobs.getQueryResults} long polls.
+   */
+  private static class QueryPageFetcher implements NextPageFetcher<FieldValueList> {
 
     private static final long serialVersionUID = -8501991114794410114L;
+    private static final long LONG_POLL_TIMEOUT_MS = 10000L;
+    private static final long INITIAL_BACKOFF_MS = 100L;
+    private static final long MAX_BACKOFF_MS = 5000L;
+    private static final Map<BigQueryRpc.Option, ?> LONG_POLL_OPTIONS =
+        optionMap(
+            QueryResultsOption.pageSize(0L), QueryResultsOption.maxWaitTime(LONG_POLL_TIMEOUT_MS));
+
     private final Map<BigQueryRpc.Option, ?> requestOptions;
     private final BigQueryOptions serviceOptions;
-    private Job job;
-    private final TableId table;
+    private final JobId jobId;
     private final Schema schema;
 
     QueryPageFetcher(
@@ -217,26 +262,104 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
       this.requestOptions =
           PageImpl.nextRequestOptions(BigQueryRpc.Option.PAGE_TOKEN, cursor, optionMap);
       this.serviceOptions = serviceOptions;
-      this.job = getJob(jobId);
-      this.table = ((QueryJobConfiguration) job.getConfiguration()).getDestinationTable();
+      this.jobId = jobId;
       this.schema = schema;
     }
 
     @Override
     public Page<FieldValueList> getNextPage() {
-      while (!JobStatus.State.DONE.equals(job.getStatus().getState())) {
+      Job job = serviceOptions.getService().getJob(jobId);
+      if (job == null) {
+        throw new BigQueryException(HTTP_NOT_FOUND, "Query job " + jobId.getJob() + " not found");
+      }
+      if (!JobStatus.State.DONE.equals(job.getStatus().getState())) {
+        waitForCompletion();
+      }
+      TableId table = ((QueryJobConfiguration) job.getConfiguration()).getDestinationTable();
+      return listTableData(table, schema, serviceOptions, requestOptions).x();
+    }
+
+    /**
+     * Waits for the job to complete. Each {@code jobs.getQueryResults} request hangs on the server
+     * until the job completes or the long poll times out, so completion is seen as soon as the
+     * server reports it. Requests that return early without completion are spaced with an
+     * exponential backoff.
+     */
+    private void waitForCompletion() {
+      ApiClock clock = serviceOptions.getClock();
+      long backoffMillis = INITIAL_BACKOFF_MS;
+      while (true) {
+        long startMillis = clock.millisTime();
+        if (getQueryResults(jobId, serviceOptions, LONG_POLL_OPTIONS).getCompleted()) {
+          return;
+        }
+        if (clock.millisTime() - startMillis >= LONG_POLL_TIMEOUT_MS / 2) {
+          // the server held the request, poll again right away
+          backoffMillis = INITIAL_BACKOFF_MS;
+          continue;
+        }
         try {
-          sleep(5000);
+          Thread.sleep(backoffMillis);
         } catch (InterruptedException ex) {
-          throw new RuntimeException(ex.getMessage());
+          Thread.currentThread().interrupt();
+          throw new BigQueryException(BaseServiceException.UNKNOWN_CODE, ex.getMessage(), ex);
         }
-        job = job.reload();
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MS);
       }
-      return listTableData(table, schema, serviceOptions, requestOptions).x();
     }
   }
 
+  /**
+   * Fetches the page following a shared page of query results once, and shares it with all the
+   * callers that iterate through the results.
+   */
+  private static class SharedPageFetcher implements NextPageFetcher<FieldValueList> {
+
+    private static final long serialVersionUID = -2974384853217342066L;
+    private final Page<FieldValueList> page;
+    private Page<FieldValueList> nextPage;
+    private boolean fetched;
+
+    SharedPageFetcher(Page<FieldValueList> page) {
+      this.page = page;
+    }
+
+    @Override
+    public synchronized Page<FieldValueList> getNextPage() {
+      if (!fetched) {
+        Page<FieldValueList> next = page.getNextPage();
+        nextPage = next == null ? null : sharedPage(next);
+        fetched = true;
+      }
+      return nextPage;
+    }
+  }
+
+  private static final int MAX_REFERENCED_TABLES = 50;
+  // the backend limits insertAll requests to 50,000 rows and 10 MB: keep a margin for the estimate
+  private static final int MAX_INSERT_ALL_ROWS = 50_000;
+  private static final long MAX_INSERT_ALL_BYTES = 9L * 1024 * 1024;
+  private static final int MAX_INSERT_ALL_THREADS = 8;
+  private static final long INSERT_ALL_THREAD_KEEP_ALIVE_SECONDS = 60;
+  private static final String NOT_REITERABLE_ROWS =
+      "The rows to insert changed between iterations, they must be iterable more than once";
+
+  // leading whitespace, comments and parentheses of a statement
+  private static final Pattern STATEMENT_PREFIX =
+      Pattern.compile("^(\\s|\\(|--[^\\n]*|#[^\\n]*|/\\*.*?\\*/)*", Pattern.DOTALL);
+  private static final Pattern READ_ONLY_STATEMENT =
+      Pattern.compile("(SELECT|WITH)\\b", Pattern.CASE_INSENSITIVE);
+  private static final Pattern MULTIPLE_STATEMENTS = Pattern.compile(";\\s*\\S");
+  private static final Pattern NON_DETERMINISTIC_FUNCTION =
+      Pattern.compile(
+          "\\b(RAND|GENERATE_UUID|SESSION_USER|CURRENT_(DATE|DATETIME|TIME|TIMESTAMP))\\b",
+          Pattern.CASE_INSENSITIVE);
+
   private final BigQueryRpc bigQueryRpc;
+  // sends the parts of split insertAll requests, created on first use
+  private ExecutorService insertAllExecutor;
+  private final ConcurrentMap<QueryKey, SettableApiFuture<TableResult>> inFlightQueries =
+      new ConcurrentHashMap<>();
 
   BigQueryImpl(BigQueryOptions options) {
     super(options);
@@ -1005,6 +1128,117 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
 
   @Override
   public InsertAllResponse insertAll(InsertAllRequest request) {
+    List<InsertAllRequest> parts = request.split(MAX_INSERT_ALL_ROWS, MAX_INSERT_ALL_BYTES);
+    return parts.size() == 1 ? insertAllPart(request) : insertAllParts(parts);
+  }
+
+  /**
+   * Sends the parts of a request that exceeds the backend limits concurrently, and merges their
+   * responses. The indexes of the rows in the merged insert errors are those of the request. The
+   * parts are sent on the threads of the insert all executor rather than on the async executor,
+   * which may be running this call. All the parts are waited for: the rows of a part that fails are
+   * reported as insert errors, unless all the parts fail.
+   */
+  private InsertAllResponse insertAllParts(List<InsertAllRequest> parts) {
+    ExecutorService executor = getInsertAllExecutor();
+    List<Future<InsertAllResponse>> futures = new ArrayList<>(parts.size() - 1);
+    try {
+      for (final InsertAllRequest part : parts.subList(1, parts.size())) {
+        futures.add(
+            executor.submit(
+                new Callable<InsertAllResponse>() {
+                  @Override
+                  public InsertAllResponse call() {
+                    return insertAllPart(part);
+                  }
+                }));
+      }
+      Map<Long, List<BigQueryError>> insertErrors = new HashMap<>();
+      BigQueryException failure = null;
+      int failedParts = 0;
+      Throwable unexpected = null;
+      long offset = 0;
+      for (int i = 0; i < parts.size(); i++) {
+        InsertAllRequest part = parts.get(i);
+        InsertAllResponse response = null;
+        Throwable error = null;
+        try {
+          response =
+              i == 0
+                  ? insertAllPart(part)
+                  : Uninterruptibles.getUninterruptibly(futures.get(i - 1));
+        } catch (ExecutionException e) {
+          error = e.getCause();
+        } catch (RuntimeException e) {
+          error = e;
+        }
+        if (response != null) {
+          for (Map.Entry<Long, List<BigQueryError>> entry : response.getInsertErrors().entrySet()) {
+            insertErrors.put(offset + entry.getKey(), entry.getValue());
+          }
+        } else if (error instanceof BigQueryException) {
+          BigQueryException exception = (BigQueryException) error;
+          failure = failure != null ? failure : exception;
+          failedParts++;
+          List<BigQueryError> errors =
+              ImmutableList.of(
+                  exception.getError() != null
+                      ? exception.getError()
+                      : new BigQueryError(
+                          exception.getReason(), exception.getLocation(), exception.getMessage()));
+          for (int row = 0; row < part.getRows().size(); row++) {
+            insertErrors.put(offset + row, errors);
+          }
+        } else {
+          unexpected = unexpected != null ? unexpected : error;
+        }
+        offset += part.getRows().size();
+      }
+      if (unexpected != null) {
+        Throwables.throwIfUnchecked(unexpected);
+        throw new BigQueryException(
+            BaseServiceException.UNKNOWN_CODE, unexpected.getMessage(), unexpected);
+      }
+      if (failedParts == parts.size()) {
+        throw failure;
+      }
+      return new InsertAllResponse(insertErrors);
+    } finally {
+      // the parts not sent yet are not needed anymore if this call failed
+      for (Future<InsertAllResponse> future : futures) {
+        future.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Returns the executor the parts of split insertAll requests are sent on. Its daemon threads are
+   * bounded, and stop when they are idle.
+   */
+  private synchronized ExecutorService getInsertAllExecutor() {
+    if (insertAllExecutor == null) {
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              MAX_INSERT_ALL_THREADS,
+              MAX_INSERT_ALL_THREADS,
+              INSERT_ALL_THREAD_KEEP_ALIVE_SECONDS,
+              TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(),
+              new ThreadFactoryBuilder()
+                  .setDaemon(true)
+                  .setNameFormat("bigquery-insert-all-%d")
+                  .build());
+      executor.allowCoreThreadTimeOut(true);
+      insertAllExecutor = executor;
+    }
+    return insertAllExecutor;
+  }
+
+  private InsertAllResponse insertAllPart(InsertAllRequest request) {
+    RequestCompression compression = compression(request, request.getEstimatedSizeBytes());
+    if (getOptions().isStreamingRequestSerialization() || compression != null) {
+      return streamingInsertAll(request, ImmutableList.<RowToInsert>of(), null, compression);
+    }
     final TableId tableId =
         request
             .getTable()
@@ -1063,6 +1297,128 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     return InsertAllResponse.fromPb(responsePb);
   }
 
+  @Override
+  public <T> InsertAllResponse insertAll(
+      InsertAllRequest request, Iterable<T> rows, RowEncoder<? super T> encoder) {
+    // the size of the encoded rows is unknown
+    return streamingInsertAll(
+        request, checkNotNull(rows), checkNotNull(encoder), compression(request, Long.MAX_VALUE));
+  }
+
+  /**
+   * Returns the compression of the body of an insert all request of the given estimated size, or
+   * {@code null} if the body is compressed by default.
+   */
+  private RequestCompression compression(InsertAllRequest request, long sizeBytes) {
+    RequestCompression compression =
+        request.getRequestCompression() != null
+            ? request.getRequestCompression()
+            : getOptions().getRequestCompression();
+    if (compression == null || compression.appliesTo(sizeBytes)) {
+      return compression;
+    }
+    return RequestCompression.none();
+  }
+
+  /**
+   * Sends an insert all request whose rows are written directly to the request body, the rows of
+   * {@code request} first, then {@code rows} encoded by {@code encoder}. The insert ids of {@code
+   * rows} are read once, before the request is sent, and {@code rows} are iterated again for each
+   * attempt to send the request.
+   */
+  private <T> InsertAllResponse streamingInsertAll(
+      final InsertAllRequest request,
+      final Iterable<T> rows,
+      final RowEncoder<? super T> encoder,
+      final RequestCompression compression) {
+    final TableId tableId =
+        request
+            .getTable()
+            .setProjectId(
+                Strings.isNullOrEmpty(request.getTable().getProject())
+                    ? getOptions().getProjectId()
+                    : request.getTable().getProject());
+    final TableDataInsertAllRequest requestPb = new TableDataInsertAllRequest();
+    requestPb.setIgnoreUnknownValues(request.ignoreUnknownValues());
+    requestPb.setSkipInvalidRows(request.skipInvalidRows());
+    requestPb.setTemplateSuffix(request.getTemplateSuffix());
+    boolean allInsertIdsSet = true;
+    for (RowToInsert row : request.getRows()) {
+      allInsertIdsSet &= row.getId() != null;
+    }
+    final List<String> insertIds = new ArrayList<>();
+    for (T row : rows) {
+      String insertId = encoder.getInsertId(row);
+      allInsertIdsSet &= insertId != null;
+      insertIds.add(insertId);
+    }
+    final TableDataSource source =
+        new TableDataSource() {
+          @Override
+          public void writeRows(JsonGenerator generator) throws IOException {
+            for (RowToInsert row : request.getRows()) {
+              startRow(generator, row.getId());
+              generator.serialize(row.getContent());
+              generator.writeEndObject();
+            }
+            int index = 0;
+            for (T row : rows) {
+              checkState(index < insertIds.size(), NOT_REITERABLE_ROWS);
+              startRow(generator, insertIds.get(index++));
+              encoder.encode(row, generator);
+              generator.writeEndObject();
+            }
+            checkState(index == insertIds.size(), NOT_REITERABLE_ROWS);
+          }
+        };
+
+    TableDataInsertAllResponse responsePb;
+    if (allInsertIdsSet) {
+      // allowing retries only if all row insertIds are set (used for deduplication)
+      try {
+        responsePb =
+            runWithRetries(
+                new Callable<TableDataInsertAllResponse>() {
+                  @Override
+                  public TableDataInsertAllResponse call() {
+                    return bigQueryRpc.insertAll(
+                        tableId.getProject(),
+                        tableId.getDataset(),
+                        tableId.getTable(),
+                        requestPb,
+                        source,
+                        compression);
+                  }
+                },
+                getOptions().getRetrySettings(),
+                EXCEPTION_HANDLER,
+                getOptions().getClock());
+      } catch (RetryHelperException e) {
+        throw BigQueryException.translateAndThrow(e);
+      }
+    } else {
+      responsePb =
+          bigQueryRpc.insertAll(
+              tableId.getProject(),
+              tableId.getDataset(),
+              tableId.getTable(),
+              requestPb,
+              source,
+              compression);
+    }
+    return InsertAllResponse.fromPb(responsePb);
+  }
+
+  /** Starts the object of a row of an insert all request, up to its {@code json} field name. */
+  private static void startRow(JsonGenerator generator, String insertId) throws IOException {
+    generator.writeStartObject();
+    if (insertId != null) {
+      generator.writeFieldName("insertId");
+      generator.writeString(insertId);
+    }
+    generator.writeFieldName("json");
+  }
+
   @Override
   public TableResult listTableData(
       String datasetId, String tableId, TableDataListOption... options) {
@@ -1082,9 +1438,49 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
 
   @Override
   public TableResult listTableData(TableId tableId, Schema schema, TableDataListOption... options) {
+    Map<BigQueryRpc.Option, ?> optionsMap = optionMap(options);
+    Object selectedFields = optionsMap.get(BigQueryRpc.Option.SELECTED_FIELDS);
+    if (schema != null && selectedFields != null) {
+      // rows only contain the selected fields, the schema must match them
+      schema =
+          Schema.of(
+              schema
+                  .getFields()
+                  .select(Splitter.on(',').trimResults().split((String) selectedFields)));
+    }
     Tuple<? extends Page<FieldValueList>, Long> data =
-        listTableData(tableId, schema, getOptions(), optionMap(options));
-    return new TableResult(schema, data.y(), data.x());
+        listTableData(tableId, schema, getOptions(), optionsMap);
+    TableResult.ColumnarPageFetcher columnarPageFetcher = null;
+    if (schema != null && getOptions().isStreamingResponseParsing()) {
+      // columnar pages following this one are decoded as they are read from the responses
+      columnarPageFetcher =
+          new TableDataPageFetcher(
+              tableId,
+              schema,
+              getOptions(),
+              data.x().getNextPageToken(),
+              nextPageOptions(optionsMap));
+    }
+    return new TableResult(schema, data.y(), data.x(), columnarPageFetcher);
+  }
+
+  @Override
+  public ApiFuture<TableResult> listTableDataAsync(
+      final TableId tableId, final Schema schema, final TableDataListOption... options) {
+    return AsyncPoller.submit(
+        getOptions().getAsyncExecutor(),
+        new Callable<TableResult>() {
+          @Override
+          public TableResult call() {
+            return listTableData(tableId, schema, options);
+          }
+        });
+  }
+
+  @Override
+  public ParallelTableReader parallelRead(
+      TableId tableId, Schema schema, int parallelism, TableDataListOption... options) {
+    return ParallelTableReader.open(this, tableId, schema, parallelism, options);
   }
 
   private static Tuple<? extends Page<FieldValueList>, Long> listTableData(
@@ -1093,42 +1489,114 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
       final BigQueryOptions serviceOptions,
       final Map<BigQueryRpc.Option, ?> optionsMap) {
     try {
-      final TableId completeTableId =
-          tableId.setProjectId(
-              Strings.isNullOrEmpty(tableId.getProject())
-                  ? serviceOptions.getProjectId()
-                  : tableId.getProject());
-      TableDataList result =
+      final TableId completeTableId = completeTableId(tableId, serviceOptions);
+      Tuple<TableDataList, Iterable<FieldValueList>> result =
           runWithRetries(
-              new Callable<TableDataList>() {
+              new Callable<Tuple<TableDataList, Iterable<FieldValueList>>>() {
                 @Override
-                public TableDataList call() {
-                  return serviceOptions
-                      .getBigQueryRpcV2()
-                      .listTableData(
+                public Tuple<TableDataList, Iterable<FieldValueList>> call() {
+                  BigQueryRpc rpc = serviceOptions.getBigQueryRpcV2();
+                  if (serviceOptions.isStreamingResponseParsing()) {
+                    FieldValueListSink sink = new FieldValueListSink(schema);
+                    TableDataList tableDataList =
+                        rpc.listTableData(
+                            completeTableId.getProject(),
+                            completeTableId.getDataset(),
+                            completeTableId.getTable(),
+                            optionsMap,
+                            sink);
+                    return Tuple.<TableDataList, Iterable<FieldValueList>>of(
+                        tableDataList, sink.getRows());
+                  }
+                  TableDataList tableDataList =
+                      rpc.listTableData(
                           completeTableId.getProject(),
                           completeTableId.getDataset(),
                           completeTableId.getTable(),
                           optionsMap);
+                  return Tuple.of(
+                      tableDataList, transformTableData(tableDataList.getRows(), schema));
                 }
               },
               serviceOptions.getRetrySettings(),
               EXCEPTION_HANDLER,
               serviceOptions.getClock());
-      String cursor = result.getPageToken();
+      String cursor = result.x().getPageToken();
       Map<BigQueryRpc.Option, ?> pageOptionMap =
-          Strings.isNullOrEmpty(cursor) ? optionsMap : optionMap(TableDataListOption.startIndex(0));
+          Strings.isNullOrEmpty(cursor) ? optionsMap : nextPageOptions(optionsMap);
       return Tuple.of(
           new PageImpl<>(
               new TableDataPageFetcher(tableId, schema, serviceOptions, cursor, pageOptionMap),
               cursor,
-              transformTableData(result.getRows(), schema)),
-          result.getTotalRows());
+              result.y()),
+          result.x().getTotalRows());
     } catch (RetryHelper.RetryHelperException e) {
       throw BigQueryException.translateAndThrow(e);
     }
   }
 
+  /**
+   * Lists a page of table data directly into a {@link ColumnarPage}, decoding the rows as they are
+   * read from the response, and returns it with the fetcher of the next page, if any.
+   */
+  private static Tuple<ColumnarPage, TableResult.ColumnarPageFetcher> listColumnarTableData(
+      TableId tableId,
+      final Schema schema,
+      final BigQueryOptions serviceOptions,
+      final Map<BigQueryRpc.Option, ?> optionsMap) {
+    try {
+      final TableId completeTableId = completeTableId(tableId, serviceOptions);
+      Tuple<TableDataList, ColumnarPage> result =
+          runWithRetries(
+              new Callable<Tuple<TableDataList, ColumnarPage>>() {
+                @Override
+                public Tuple<TableDataList, ColumnarPage> call() {
+                  ColumnarPageSink sink = new ColumnarPageSink(schema.getFields());
+                  TableDataList tableDataList =
+                      serviceOptions
+                          .getBigQueryRpcV2()
+                          .listTableData(
+                              completeTableId.getProject(),
+                              completeTableId.getDataset(),
+                              completeTableId.getTable(),
+                              optionsMap,
+                              sink);
+                  return Tuple.of(tableDataList, sink.build());
+                }
+              },
+              serviceOptions.getRetrySettings(),
+              EXCEPTION_HANDLER,
+              serviceOptions.getClock());
+      String cursor = result.x().getPageToken();
+      TableResult.ColumnarPageFetcher next =
+          Strings.isNullOrEmpty(cursor)
+              ? null
+              : new TableDataPageFetcher(
+                  tableId, schema, serviceOptions, cursor, nextPageOptions(optionsMap));
+      return Tuple.of(result.y(), next);
+    } catch (RetryHelper.RetryHelperException e) {
+      throw BigQueryException.translateAndThrow(e);
+    }
+  }
+
+  private static TableId completeTableId(TableId tableId, BigQueryOptions serviceOptions) {
+    return tableId.setProjectId(
+        Strings.isNullOrEmpty(tableId.getProject())
+            ? serviceOptions.getProjectId()
+            : tableId.getProject());
+  }
+
+  /** Returns the options of the pages following the first page of table data. */
+  private static Map<BigQueryRpc.Option, ?> nextPageOptions(Map<BigQueryRpc.Option, ?> optionsMap) {
+    // the page token replaces the start index, selected fields still apply to all pages
+    Object selectedFields = optionsMap.get(BigQueryRpc.Option.SELECTED_FIELDS);
+    return selectedFields == null
+        ? optionMap(TableDataListOption.startIndex(0))
+        : optionMap(
+            TableDataListOption.startIndex(0),
+            TableDataListOption.selectedFields((String) selectedFields));
+  }
+
   private static Iterable<FieldValueList> transformTableData(
       Iterable<TableRow> tableDataPb, final Schema schema) {
     return ImmutableList.copyOf(
@@ -1252,22 +1720,232 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
   public TableResult query(QueryJobConfiguration configuration, JobOption... options)
       throws InterruptedException, JobException {
     Job.checkNotDryRun(configuration, "query");
+    if (getOptions().isQueryCoalescing() && isShareable(configuration)) {
+      return coalescedQuery(configuration, options);
+    }
+    return cachedQuery(configuration, options);
+  }
+
+  /**
+   * Runs a query, unless an identical query is already running, in which case waits for its results
+   * instead. The results are shared by all the callers, and their pages are fetched once.
+   */
+  private TableResult coalescedQuery(QueryJobConfiguration configuration, JobOption... options)
+      throws InterruptedException, JobException {
+    QueryKey key = queryKey(configuration, options);
+    while (true) {
+      SettableApiFuture<TableResult> future = SettableApiFuture.create();
+      SettableApiFuture<TableResult> inFlight = inFlightQueries.putIfAbsent(key, future);
+      if (inFlight == null) {
+        try {
+          TableResult result = sharedResult(cachedQuery(configuration, options));
+          future.set(result);
+          return result;
+        } catch (Throwable t) {
+          future.setException(t);
+          Throwables.throwIfInstanceOf(t, InterruptedException.class);
+          Throwables.throwIfUnchecked(t);
+          throw new AssertionError(t);
+        } finally {
+          inFlightQueries.remove(key, future);
+        }
+      }
+      try {
+        return inFlight.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof InterruptedException) {
+          // the thread running the query was interrupted, but this one was not: run it again
+          continue;
+        }
+        Throwables.throwIfUnchecked(e.getCause());
+        throw new BigQueryException(BaseServiceException.UNKNOWN_CODE, e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * Returns whether the callers of identical queries can share the results of a single query, as
+   * coalesced or cached queries do: the query must only read, so that its effects are not applied
+   * once instead of several times, and must be deterministic, so that every caller can expect the
+   * same results.
+   */
+  static boolean isShareable(QueryJobConfiguration configuration) {
+    if (configuration.getDestinationTable() != null
+        || configuration.getWriteDisposition() != null
+        || configuration.getCreateDisposition() != null
+        || configuration.getSchemaUpdateOptions() != null) {
+      return false;
+    }
+    String query = STATEMENT_PREFIX.matcher(configuration.getQuery()).replaceFirst("");
+    // DDL and DML statements and scripts do not start with SELECT or WITH
+    return READ_ONLY_STATEMENT.matcher(query).lookingAt()
+        && !MULTIPLE_STATEMENTS.matcher(query).find()
+        && !NON_DETERMINISTIC_FUNCTION.matcher(query).find();
+  }
+
+  /** Returns the key of a query run in the project and location of the client. */
+  private QueryKey queryKey(QueryJobConfiguration configuration, JobOption... options) {
+    return QueryKey.of(
+        getOptions().getProjectId(), getOptions().getLocation(), configuration, options);
+  }
+
+  /**
+   * Serves the results of a query from the client-side cache if the tables the query references
+   * were not modified since the results were cached. Otherwise runs the query, and caches its
+   * results if they fit in a single page. Queries that do not use the cache, or whose results
+   * cannot be shared, are only run.
+   */
+  private TableResult cachedQuery(QueryJobConfiguration configuration, JobOption... options)
+      throws InterruptedException, JobException {
+    QueryResultCache cache = getOptions().getQueryResultCache();
+    if (cache == null
+        || Boolean.FALSE.equals(configuration.useQueryCache())
+        || !isShareable(configuration)) {
+      return runQuery(configuration, options).result;
+    }
+    String key = queryKey(configuration, options).toString();
+    CachedQueryResult cached = cache.get(key);
+    if (cached != null) {
+      if (isUnmodified(cached.getTableModificationTimes())) {
+        return cached.toTableResult();
+      }
+      cache.invalidate(key);
+    }
+
+    QueryRun run = runQuery(configuration, options);
+    TableResult result = run.result;
+    if (run.jobId != null && !result.hasNextPage()) {
+      Map<TableId, Long> modificationTimes = getTableModificationTimes(run.jobId);
+      if (modificationTimes != null) {
+        cache.put(
+            key,
+            new CachedQueryResult(
+                result.getSchema(), result.getTotalRows(), result.getValues(), modificationTimes));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the last modification times of the tables referenced by a completed query job, or
+   * {@code null} if the results of the job cannot be cached.
+   */
+  private Map<TableId, Long> getTableModificationTimes(JobId jobId) {
+    Job job = getJob(jobId, JobOption.fields(JobField.STATISTICS));
+    if (job == null || !(job.getStatistics() instanceof QueryStatistics)) {
+      return null;
+    }
+    QueryStatistics statistics = job.getStatistics();
+    List<TableId> tables = statistics.getReferencedTables();
+    // the list of referenced tables is incomplete beyond its maximum size
+    if (!QueryStatistics.StatementType.SELECT.equals(statistics.getStatementType())
+        || statistics.getStartTime() == null
+        || tables == null
+        || tables.isEmpty()
+        || tables.size() >= MAX_REFERENCED_TABLES) {
+      return null;
+    }
+    Map<TableId, Long> modificationTimes = new HashMap<>();
+    for (TableId table : tables) {
+      Long modificationTime = getLastModifiedTime(table);
+      // the results may not reflect a modification made after the query started
+      if (modificationTime == null || modificationTime > statistics.getStartTime()) {
+        return null;
+      }
+      modificationTimes.put(table, modificationTime);
+    }
+    return modificationTimes;
+  }
+
+  private boolean isUnmodified(Map<TableId, Long> modificationTimes) {
+    for (Map.Entry<TableId, Long> entry : modificationTimes.entrySet()) {
+      if (!entry.getValue().equals(getLastModifiedTime(entry.getKey()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Long getLastModifiedTime(TableId tableId) {
+    Table table = getTable(tableId, TableOption.fields(TableField.LAST_MODIFIED_TIME));
+    return table == null ? null : table.getLastModifiedTime();
+  }
+
+  /** Returns query results whose pages are fetched once and shared by all their iterations. */
+  private static TableResult sharedResult(TableResult result) {
+    if (!result.hasNextPage()) {
+      return result;
+    }
+    return new TableResult(result.getSchema(), result.getTotalRows(), sharedPage(result));
+  }
+
+  private static Page<FieldValueList> sharedPage(Page<FieldValueList> page) {
+    return new PageImpl<>(
+        new SharedPageFetcher(page),
+        page.getNextPageToken(),
+        ImmutableList.copyOf(page.getValues()));
+  }
+
+  @Override
+  public PreparedQuery prepareQuery(QueryJobConfiguration configuration) {
+    return new PreparedQuery(this, configuration);
+  }
+
+  /**
+   * The first page of results of a query, with the id of the job that ran the query, or {@code
+   * null} if it is not known.
+   */
+  private static final class QueryRun {
+
+    final JobId jobId;
+    final TableResult result;
+
+    QueryRun(JobId jobId, TableResult result) {
+      this.jobId = jobId;
+      this.result = result;
+    }
+  }
 
+  private QueryRun runQuery(QueryJobConfiguration configuration, JobOption... options)
+      throws InterruptedException, JobException {
     // If all parameters passed in configuration are supported by the query() method on the backend,
     // put on fast path
     QueryRequestInfo requestInfo = new QueryRequestInfo(configuration);
     if (requestInfo.isFastQuerySupported()) {
       String projectId = getOptions().getProjectId();
-      QueryRequest content = requestInfo.toPb();
-      return queryRpc(projectId, content, options);
+      com.google.api.services.bigquery.model.QueryResponse results =
+          runQueryRpc(projectId, requestInfo.toPb());
+      JobId jobId =
+          results.getJobReference() != null ? JobId.fromPb(results.getJobReference()) : null;
+      return new QueryRun(jobId, completeQuery(results, options));
     }
     // Otherwise, fall back to the existing create query job logic
-    return create(JobInfo.of(configuration), options).getQueryResults();
+    Job job = create(JobInfo.of(configuration), options);
+    return new QueryRun(job.getJobId(), job.getQueryResults());
+  }
+
+  TableResult queryRpc(final String projectId, final QueryRequest content, JobOption... options)
+      throws InterruptedException {
+    return completeQuery(runQueryRpc(projectId, content), options);
   }
 
-  private TableResult queryRpc(
-      final String projectId, final QueryRequest content, JobOption... options)
+  /** Returns the first page of results of a {@code jobs.query} response, waiting for the job. */
+  private TableResult completeQuery(
+      com.google.api.services.bigquery.model.QueryResponse results, JobOption... options)
       throws InterruptedException {
+    if (!isQueryComplete(results)) {
+      // Query is long running (> 10s) and hasn't completed yet, or query completed but didn't
+      // return the schema, fallback. Some operations don't return the schema and can be optimized
+      // here, but this is left as future work.
+      JobId jobId = JobId.fromPb(results.getJobReference());
+      Job job = getJob(jobId, options);
+      return job.getQueryResults();
+    }
+    return queryResult(results, options);
+  }
+
+  private com.google.api.services.bigquery.model.QueryResponse runQueryRpc(
+      final String projectId, final QueryRequest content) {
     com.google.api.services.bigquery.model.QueryResponse results;
     try {
       results =
@@ -1292,25 +1970,25 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
       // with the case where there there is a HTTP error
       throw new BigQueryException(bigQueryErrors);
     }
+    return results;
+  }
 
+  private static boolean isQueryComplete(
+      com.google.api.services.bigquery.model.QueryResponse results) {
+    return results.getJobComplete() && results.getSchema() != null;
+  }
+
+  /** Returns the first page of results of a complete {@code jobs.query} response. */
+  private TableResult queryResult(
+      com.google.api.services.bigquery.model.QueryResponse results, JobOption... options) {
     long numRows;
-    Schema schema;
-    if (results.getJobComplete() && results.getSchema() != null) {
-      schema = Schema.fromPb(results.getSchema());
-      if (results.getNumDmlAffectedRows() == null && results.getTotalRows() == null) {
-        numRows = 0L;
-      } else if (results.getNumDmlAffectedRows() != null) {
-        numRows = results.getNumDmlAffectedRows();
-      } else {
-        numRows = results.getTotalRows().longValue();
-      }
+    Schema schema = Schema.fromPb(results.getSchema());
+    if (results.getNumDmlAffectedRows() == null && results.getTotalRows() == null) {
+      numRows = 0L;
+    } else if (results.getNumDmlAffectedRows() != null) {
+      numRows = results.getNumDmlAffectedRows();
     } else {
-      // Query is long running (> 10s) and hasn't completed yet, or query completed but didn't
-      // return the schema, fallback. Some operations don't return the schema and can be optimized
-      // here, but this is left as future work.
-      JobId jobId = JobId.fromPb(results.getJobReference());
-      Job job = getJob(jobId, options);
-      return job.getQueryResults();
+      numRows = results.getTotalRows().longValue();
     }
 
     if (results.getPageToken() != null) {
@@ -1336,6 +2014,69 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
             transformTableData(results.getRows(), schema)));
   }
 
+  @Override
+  public ApiFuture<TableResult> queryAsync(
+      QueryJobConfiguration configuration, final JobOption... options) {
+    Job.checkNotDryRun(configuration, "query");
+    QueryRequestInfo requestInfo = new QueryRequestInfo(configuration);
+    if (!requestInfo.isFastQuerySupported()) {
+      return queryJobAsync(JobInfo.of(configuration), options);
+    }
+    final String projectId = getOptions().getProjectId();
+    final QueryRequest content = requestInfo.toPb();
+    ApiFuture<com.google.api.services.bigquery.model.QueryResponse> response =
+        AsyncPoller.submit(
+            getOptions().getAsyncExecutor(),
+            new Callable<com.google.api.services.bigquery.model.QueryResponse>() {
+              @Override
+              public com.google.api.services.bigquery.model.QueryResponse call() {
+                return runQueryRpc(projectId, content);
+              }
+            });
+    return ApiFutures.transformAsync(
+        response,
+        new ApiAsyncFunction<com.google.api.services.bigquery.model.QueryResponse, TableResult>() {
+          @Override
+          public ApiFuture<TableResult> apply(
+              com.google.api.services.bigquery.model.QueryResponse results) {
+            if (isQueryComplete(results)) {
+              return ApiFutures.immediateFuture(queryResult(results, options));
+            }
+            JobId jobId = JobId.fromPb(results.getJobReference());
+            return getJob(jobId, options).getQueryResultsAsync();
+          }
+        },
+        getOptions().getAsyncExecutor());
+  }
+
+  @Override
+  public ApiFuture<TableResult> queryAsync(
+      QueryJobConfiguration configuration, JobId jobId, JobOption... options) {
+    Job.checkNotDryRun(configuration, "query");
+    return queryJobAsync(JobInfo.of(jobId, configuration), options);
+  }
+
+  private ApiFuture<TableResult> queryJobAsync(final JobInfo jobInfo, final JobOption... options) {
+    ApiFuture<Job> job =
+        AsyncPoller.submit(
+            getOptions().getAsyncExecutor(),
+            new Callable<Job>() {
+              @Override
+              public Job call() {
+                return create(jobInfo, options);
+              }
+            });
+    return ApiFutures.transformAsync(
+        job,
+        new ApiAsyncFunction<Job, TableResult>() {
+          @Override
+          public ApiFuture<TableResult> apply(Job job) {
+            return job.getQueryResultsAsync();
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
   @Override
   public TableResult query(QueryJobConfiguration configuration, JobId jobId, JobOption... options)
       throws InterruptedException, JobException {
@@ -1349,6 +2090,19 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
     return getQueryResults(jobId, getOptions(), optionsMap);
   }
 
+  @Override
+  public ApiFuture<QueryResponse> getQueryResultsAsync(
+      final JobId jobId, final QueryResultsOption... options) {
+    return AsyncPoller.submit(
+        getOptions().getAsyncExecutor(),
+        new Callable<QueryResponse>() {
+          @Override
+          public QueryResponse call() {
+            return getQueryResults(jobId, options);
+          }
+        });
+  }
+
   private static QueryResponse getQueryResults(
       JobId jobId,
       final BigQueryOptions serviceOptions,
@@ -1361,18 +2115,28 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
                     ? serviceOptions.getLocation()
                     : jobId.getLocation());
     try {
+      final AtomicReference<FieldValueListSink.Deferred> sink = new AtomicReference<>();
       GetQueryResultsResponse results =
           runWithRetries(
               new Callable<GetQueryResultsResponse>() {
                 @Override
                 public GetQueryResultsResponse call() {
-                  return serviceOptions
-                      .getBigQueryRpcV2()
-                      .getQueryResults(
-                          completeJobId.getProject(),
-                          completeJobId.getJob(),
-                          completeJobId.getLocation(),
-                          optionsMap);
+                  BigQueryRpc rpc = serviceOptions.getBigQueryRpcV2();
+                  if (serviceOptions.isStreamingResponseParsing()) {
+                    // a new sink for each attempt, so that a retry does not repeat rows
+                    sink.set(new FieldValueListSink.Deferred());
+                    return rpc.getQueryResults(
+                        completeJobId.getProject(),
+                        completeJobId.getJob(),
+                        completeJobId.getLocation(),
+                        optionsMap,
+                        sink.get());
+                  }
+                  return rpc.getQueryResults(
+                      completeJobId.getProject(),
+                      completeJobId.getJob(),
+                      completeJobId.getLocation(),
+                      optionsMap);
                 }
               },
               serviceOptions.getRetrySettings(),
@@ -1387,11 +2151,23 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
         }
       }
 
+      Schema schema = schemaPb == null ? null : Schema.fromPb(schemaPb);
+      // rows are omitted from the response when there are none, unless none were requested
+      boolean hasRows =
+          results.getJobComplete()
+              && !Long.valueOf(0L).equals(optionsMap.get(BigQueryRpc.Option.MAX_RESULTS));
       return QueryResponse.newBuilder()
           .setCompleted(results.getJobComplete())
-          .setSchema(schemaPb == null ? null : Schema.fromPb(schemaPb))
+          .setSchema(schema)
           .setTotalRows(results.getTotalRows() == null ? 0 : results.getTotalRows().longValue())
           .setErrors(errors.build())
+          .setRows(
+              !hasRows
+                  ? null
+                  : sink.get() != null
+                      ? sink.get().getRows(schema)
+                      : transformTableData(results.getRows(), schema))
+          .setPageToken(Strings.emptyToNull(results.getPageToken()))
           .build();
     } catch (RetryHelper.RetryHelperException e) {
       throw BigQueryException.translateAndThrow(e);
@@ -1412,6 +2188,46 @@ final class BigQueryImpl extends BaseService<BigQueryOptions> implements BigQuer
         writeChannelConfiguration.setProjectId(getOptions().getProjectId()));
   }
 
+  @Override
+  public Job load(Path path, WriteChannelConfiguration writeChannelConfiguration)
+      throws IOException {
+    return load(JobId.of(), path, writeChannelConfiguration);
+  }
+
+  @Override
+  public Job load(JobId jobId, Path path, WriteChannelConfiguration writeChannelConfiguration)
+      throws IOException {
+    return TableDataFileUpload.upload(
+        getOptions(),
+        jobId.setProjectId(getOptions().getProjectId()),
+        writeChannelConfiguration.setProjectId(getOptions().getProjectId()),
+        checkNotNull(path),
+        TableDataFileUpload.CHUNK_SIZE);
+  }
+
+  @Override
+  public ParallelLoadResult parallelLoad(
+      List<Path> paths, WriteChannelConfiguration writeChannelConfiguration, int parallelism)
+      throws IOException, InterruptedException {
+    return ParallelTableLoader.load(
+        this,
+        checkNotNull(paths),
+        writeChannelConfiguration,
+        parallelism,
+        ParallelTableLoader.MIN_REGION_SIZE);
+  }
+
+  @Override
+  public RowWriter rowWriter(WriteChannelConfiguration writeChannelConfiguration, Schema schema) {
+    return rowWriter(JobId.of(), writeChannelConfiguration, schema);
+  }
+
+  @Override
+  public RowWriter rowWriter(
+      JobId jobId, WriteChannelConfiguration writeChannelConfiguration, Schema schema) {
+    return RowWriter.open(this, jobId, checkNotNull(writeChannelConfiguration), schema);
+  }
+
   @Override
   public Policy getIamPolicy(TableId tableId, IAMOption... options) {
     final TableId completeTableId =
@@ -16,6 +16,7 @@
 
 package com.google.cloud.bigquery;
 
+import com.google.api.core.BetaApi;
 import com.google.cloud.ServiceDefaults;
 import com.google.cloud.ServiceOptions;
 import com.google.cloud.ServiceRpc;
@@ -25,7 +26,10 @@ import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
 import com.google.cloud.bigquery.spi.v2.HttpBigQueryRpc;
 import com.google.cloud.http.HttpTransportOptions;
 import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
 
@@ -34,6 +38,14 @@ public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
   private static final Set<String> SCOPES = ImmutableSet.of(BIGQUERY_SCOPE);
   private static final long serialVersionUID = -2437598817433266049L;
   private final String location;
+  private final boolean streamingResponseParsing;
+  private final boolean queryCoalescing;
+  private final boolean streamingRequestSerialization;
+  private final boolean pipelinedUploads;
+  private final transient ScheduledExecutorService asyncExecutor;
+  private final transient QueryResultCache queryResultCache;
+  private final RequestCompression requestCompression;
+  private transient RequestCompressionStats requestCompressionStats;
   // set the option ThrowNotFound when you want to throw the exception when the value not found
   private boolean setThrowNotFound;
 
@@ -60,11 +72,25 @@ public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
   public static class Builder extends ServiceOptions.Builder<BigQuery, BigQueryOptions, Builder> {
 
     private String location;
+    private boolean streamingResponseParsing;
+    private boolean queryCoalescing;
+    private boolean streamingRequestSerialization;
+    private boolean pipelinedUploads;
+    private ScheduledExecutorService asyncExecutor;
+    private QueryResultCache queryResultCache;
+    private RequestCompression requestCompression;
 
     private Builder() {}
 
     private Builder(BigQueryOptions options) {
       super(options);
+      this.streamingResponseParsing = options.streamingResponseParsing;
+      this.queryCoalescing = options.queryCoalescing;
+      this.streamingRequestSerialization = options.streamingRequestSerialization;
+      this.pipelinedUploads = options.pipelinedUploads;
+      this.asyncExecutor = options.asyncExecutor;
+      this.queryResultCache = options.queryResultCache;
+      this.requestCompression = options.requestCompression;
     }
 
     @Override
@@ -81,6 +107,107 @@ public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
       return this;
     }
 
+    /**
+     * Sets whether table rows returned by {@code tabledata.list} and {@code jobs.getQueryResults}
+     * are read with a streaming parser that decodes each cell directly from the response, instead
+     * of first materializing the whole response as generic JSON objects. This reduces the memory
+     * used by each page of results. Defaults to {@code false}.
+     */
+    @BetaApi
+    public Builder setStreamingResponseParsing(boolean streamingResponseParsing) {
+      this.streamingResponseParsing = streamingResponseParsing;
+      return this;
+    }
+
+    /**
+     * Sets whether the rows of {@link BigQuery#insertAll(InsertAllRequest)} requests are written
+     * directly to the request body, instead of first being copied into the request model and
+     * serialized as a whole. This reduces the memory used by large requests. Defaults to {@code
+     * false}.
+     */
+    @BetaApi
+    public Builder setStreamingRequestSerialization(boolean streamingRequestSerialization) {
+      this.streamingRequestSerialization = streamingRequestSerialization;
+      return this;
+    }
+
+    /**
+     * Sets whether the chunks written to {@link TableDataWriteChannel}s are uploaded on the {@link
+     * #setAsyncExecutor(ScheduledExecutorService) async executor}, so that each chunk is uploaded
+     * while the next one is written. Chunks are still uploaded one at a time and in order, and at
+     * most two chunks are held in memory. Upload failures are reported by the next call to the
+     * channel. Defaults to {@code false}.
+     */
+    @BetaApi
+    public Builder setPipelinedUploads(boolean pipelinedUploads) {
+      this.pipelinedUploads = pipelinedUploads;
+      return this;
+    }
+
+    /**
+     * Sets whether identical queries run concurrently with {@link
+     * BigQuery#query(QueryJobConfiguration, BigQuery.JobOption...)} share a single query job. When
+     * set, a query whose configuration, query parameters and options are identical to those of a
+     * query in flight waits for the results of that query instead of running its own. The shared
+     * results can be iterated by every caller, and each page of results is fetched once.
+     *
+     * <p>Only read-only, deterministic queries are coalesced: queries with a destination table, a
+     * write or create disposition or schema update options, queries that are not a single {@code
+     * SELECT} statement, such as DDL and DML statements and scripts, and queries that call {@code
+     * RAND}, {@code GENERATE_UUID}, {@code SESSION_USER} or the {@code CURRENT_} date and time
+     * functions always run their own query job. Defaults to {@code false}.
+     */
+    @BetaApi
+    public Builder setQueryCoalescing(boolean queryCoalescing) {
+      this.queryCoalescing = queryCoalescing;
+      return this;
+    }
+
+    /**
+     * Sets the executor that runs the requests and polling loops of asynchronous methods, such as
+     * {@link BigQuery#queryAsync(QueryJobConfiguration, BigQuery.JobOption...)}. Asynchronous
+     * methods do not hold a thread while waiting between polls, so a few threads can drive many
+     * concurrent queries. If not set, an executor shared by all clients is used. The executor is
+     * not serialized with the options.
+     */
+    @BetaApi
+    public Builder setAsyncExecutor(ScheduledExecutorService asyncExecutor) {
+      this.asyncExecutor = asyncExecutor;
+      return this;
+    }
+
+    /**
+     * Sets a client-side cache for the results of the queries run with {@link
+     * BigQuery#query(QueryJobConfiguration, BigQuery.JobOption...)}. Cached results are served
+     * without running the query again as long as the tables referenced by the query are not
+     * modified. Only the results of read-only queries that do not call non-deterministic functions
+     * such as {@code CURRENT_TIMESTAMP()} or {@code RAND()} are cached. If not set, results are not
+     * cached. The cache is not serialized with the options.
+     *
+     * @see QueryResultCache
+     */
+    @BetaApi
+    public Builder setQueryResultCache(QueryResultCache queryResultCache) {
+      this.queryResultCache = queryResultCache;
+      return this;
+    }
+
+    /**
+     * Sets the compression of the bodies of {@link BigQuery#insertAll(InsertAllRequest)} requests
+     * and of the chunks written to {@link TableDataWriteChannel}s. Compression can be set for a
+     * single insert all request with {@link
+     * InsertAllRequest.Builder#setRequestCompression(RequestCompression)}. If not set, insert all
+     * requests are compressed with gzip at its default level, whatever their size, and uploads are
+     * not compressed.
+     *
+     * @see #getRequestCompressionStats()
+     */
+    @BetaApi
+    public Builder setRequestCompression(RequestCompression requestCompression) {
+      this.requestCompression = requestCompression;
+      return this;
+    }
+
     @Override
     public BigQueryOptions build() {
       return new BigQueryOptions(this);
@@ -90,6 +217,14 @@ public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
   private BigQueryOptions(Builder builder) {
     super(BigQueryFactory.class, BigQueryRpcFactory.class, builder, new BigQueryDefaults());
     this.location = builder.location;
+    this.streamingResponseParsing = builder.streamingResponseParsing;
+    this.queryCoalescing = builder.queryCoalescing;
+    this.streamingRequestSerialization = builder.streamingRequestSerialization;
+    this.pipelinedUploads = builder.pipelinedUploads;
+    this.asyncExecutor = builder.asyncExecutor;
+    this.queryResultCache = builder.queryResultCache;
+    this.requestCompression = builder.requestCompression;
+    this.requestCompressionStats = new RequestCompressionStats();
   }
 
   private static class BigQueryDefaults implements ServiceDefaults<BigQuery, BigQueryOptions> {
@@ -129,6 +264,58 @@ public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
     return location;
   }
 
+  /** Returns whether table rows are read with a streaming response parser. */
+  @BetaApi
+  public boolean isStreamingResponseParsing() {
+    return streamingResponseParsing;
+  }
+
+  /** Returns whether the rows of insert all requests are written directly to the request body. */
+  @BetaApi
+  public boolean isStreamingRequestSerialization() {
+    return streamingRequestSerialization;
+  }
+
+  /** Returns whether the chunks of uploads are uploaded while the next chunk is written. */
+  @BetaApi
+  public boolean isPipelinedUploads() {
+    return pipelinedUploads;
+  }
+
+  /** Returns whether identical concurrent queries share a single query job. */
+  @BetaApi
+  public boolean isQueryCoalescing() {
+    return queryCoalescing;
+  }
+
+  /** Returns the executor that runs the requests and polling loops of asynchronous methods. */
+  @BetaApi
+  public ScheduledExecutorService getAsyncExecutor() {
+    return asyncExecutor != null ? asyncExecutor : AsyncPoller.defaultExecutor();
+  }
+
+  /** Returns the client-side cache of query results, or {@code null} if results are not cached. */
+  @BetaApi
+  public QueryResultCache getQueryResultCache() {
+    return queryResultCache;
+  }
+
+  /** Returns the compression of request bodies, or {@code null} if not set. */
+  @BetaApi
+  public RequestCompression getRequestCompression() {
+    return requestCompression;
+  }
+
+  /**
+   * Returns the counters of the request bodies compressed according to {@link
+   * #getRequestCompression()}, or to the compression of an insert all request, by the clients
+   * created with these options.
+   */
+  @BetaApi
+  public RequestCompressionStats getRequestCompressionStats() {
+    return requestCompressionStats;
+  }
+
   public void setThrowNotFound(boolean setThrowNotFound) {
     this.setThrowNotFound = setThrowNotFound;
   }
@@ -157,6 +344,11 @@ public class BigQueryOptions extends ServiceOptions<BigQuery, BigQueryOptions> {
     return baseEquals(other);
   }
 
+  private void readObject(ObjectInputStream input) throws IOException, ClassNotFoundException {
+    input.defaultReadObject();
+    this.requestCompressionStats = new RequestCompressionStats();
+  }
+
   public static BigQueryOptions getDefaultInstance() {
     return newBuilder().build();
   }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.BetaApi;
+import com.google.cloud.PageImpl;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * The results of a query stored in a {@link QueryResultCache}, with the last modification times of
+ * the tables the query referenced when it ran.
+ */
+@BetaApi
+public final class CachedQueryResult implements Serializable {
+
+  private static final long serialVersionUID = 6207563393390744315L;
+  private static final long OBJECT_OVERHEAD_BYTES = 32;
+
+  @Nullable private final Schema schema;
+  private final long totalRows;
+  private final ImmutableList<FieldValueList> rows;
+  private final ImmutableMap<TableId, Long> tableModificationTimes;
+  private final long sizeBytes;
+
+  CachedQueryResult(
+      Schema schema,
+      long totalRows,
+      Iterable<FieldValueList> rows,
+      Map<TableId, Long> tableModificationTimes) {
+    this.schema = schema;
+    this.totalRows = totalRows;
+    this.rows = ImmutableList.copyOf(rows);
+    this.tableModificationTimes = ImmutableMap.copyOf(tableModificationTimes);
+    long sizeBytes = OBJECT_OVERHEAD_BYTES * (tableModificationTimes.size() + 1);
+    for (FieldValueList row : this.rows) {
+      sizeBytes += sizeBytes(row);
+    }
+    this.sizeBytes = sizeBytes;
+  }
+
+  private static long sizeBytes(List<FieldValue> values) {
+    long sizeBytes = OBJECT_OVERHEAD_BYTES;
+    for (FieldValue value : values) {
+      switch (value.getAttribute()) {
+        case PRIMITIVE:
+          Object primitive = value.getValue();
+          sizeBytes +=
+              OBJECT_OVERHEAD_BYTES + (primitive == null ? 0 : 2L * primitive.toString().length());
+          break;
+        case REPEATED:
+          sizeBytes += sizeBytes(value.getRepeatedValue());
+          break;
+        case RECORD:
+          sizeBytes += sizeBytes(value.getRecordValue());
+          break;
+      }
+    }
+    return sizeBytes;
+  }
+
+  /** Returns the schema of the results. */
+  @Nullable
+  public Schema getSchema() {
+    return schema;
+  }
+
+  /** Returns the rows of the results. */
+  public List<FieldValueList> getRows() {
+    return rows;
+  }
+
+  /**
+   * Returns the last modification times of the tables referenced by the query, in milliseconds
+   * since epoch, when the results were cached.
+   */
+  public Map<TableId, Long> getTableModificationTimes() {
+    return tableModificationTimes;
+  }
+
+  /** Returns an estimate of the memory used by the results, in bytes. */
+  public long getSizeBytes() {
+    return sizeBytes;
+  }
+
+  TableResult toTableResult() {
+    return new TableResult(schema, totalRows, new PageImpl<>(null, null, rows));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("schema", schema)
+        .add("totalRows", totalRows)
+        .add("tableModificationTimes", tableModificationTimes)
+        .add("sizeBytes", sizeBytes)
+        .toString();
+  }
+}
@@ -0,0 +1,567 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.MoreObjects;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A page of table rows decoded column by column into primitive arrays.
+ *
+ * <p>Each column is decoded once, using the page schema, into a representation chosen by the field
+ * type:
+ *
+ * <ul>
+ *   <li>{@link LegacySQLTypeName#INTEGER} fields are stored as {@code long[]}, see {@link
+ *       #getLongColumn(int)}
+ *   <li>{@link LegacySQLTypeName#FLOAT} fields are stored as {@code double[]}, see {@link
+ *       #getDoubleColumn(int)}
+ *   <li>{@link LegacySQLTypeName#BOOLEAN} fields are stored as {@code boolean[]}, see {@link
+ *       #getBooleanColumn(int)}
+ *   <li>{@link LegacySQLTypeName#RECORD} fields and fields with {@link Field.Mode#REPEATED} mode
+ *       are kept as {@link FieldValue} objects, see {@link #getValue(int, int)}
+ *   <li>all other fields are stored as dictionary encoded strings, see {@link #getString(int, int)}
+ * </ul>
+ *
+ * <p>Nulls are tracked in a per-column bitmap, see {@link #isNull(int, int)}. The value stored in a
+ * primitive array for a {@code null} cell is unspecified.
+ *
+ * <p>Example of summing an integer column:
+ *
+ * <pre>{@code
+ * TableResult result = bigquery.listTableData(tableId, schema);
+ * for (ColumnarPage page : result.iterateColumnarPages()) {
+ *   int column = page.getColumnIndex("amount");
+ *   long[] values = page.getLongColumn(column);
+ *   for (int row = 0; row < page.getRowCount(); row++) {
+ *     if (!page.isNull(column, row)) {
+ *       sum += values[row];
+ *     }
+ *   }
+ * }
+ * }</pre>
+ */
+@BetaApi
+public final class ColumnarPage {
+
+  /** The in-memory representation of a column. */
+  public enum ColumnType {
+    /** Values are stored in a {@code long[]}. */
+    LONG,
+    /** Values are stored in a {@code double[]}. */
+    DOUBLE,
+    /** Values are stored in a {@code boolean[]}. */
+    BOOLEAN,
+    /** Values are stored as dictionary codes into a {@code String[]} dictionary. */
+    STRING,
+    /** Values are stored as {@link FieldValue} objects. */
+    VALUE
+  }
+
+  private static final int DEFAULT_CAPACITY = 64;
+
+  private final FieldList fields;
+  private final int rowCount;
+  private final Column[] columns;
+
+  private ColumnarPage(FieldList fields, int rowCount, Column[] columns) {
+    this.fields = fields;
+    this.rowCount = rowCount;
+    this.columns = columns;
+  }
+
+  /** Returns the fields of the columns in this page. */
+  public FieldList getFields() {
+    return fields;
+  }
+
+  /** Returns the number of rows in this page. */
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns the number of columns in this page. */
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * Returns the index of the column with the provided name.
+   *
+   * @throws IllegalArgumentException if no column with the given name exists
+   */
+  public int getColumnIndex(String name) {
+    return fields.getIndex(name);
+  }
+
+  /** Returns the in-memory representation of the column at the provided index. */
+  public ColumnType getColumnType(int column) {
+    return column(column).type;
+  }
+
+  /** Returns {@code true} if the value at the provided column and row is {@code null}. */
+  public boolean isNull(int column, int row) {
+    checkElementIndex(row, rowCount);
+    long[] nulls = column(column).nulls;
+    return (nulls[row >>> 6] & (1L << row)) != 0;
+  }
+
+  /**
+   * Returns the values of a {@link ColumnType#LONG} column. The returned array is the backing
+   * storage of this page and has exactly {@link #getRowCount()} elements; it must not be modified.
+   *
+   * @throws IllegalStateException if the column is not a {@link ColumnType#LONG} column
+   */
+  public long[] getLongColumn(int column) {
+    return ((LongColumn) column(column, ColumnType.LONG)).values;
+  }
+
+  /**
+   * Returns the values of a {@link ColumnType#DOUBLE} column. The returned array is the backing
+   * storage of this page and has exactly {@link #getRowCount()} elements; it must not be modified.
+   *
+   * @throws IllegalStateException if the column is not a {@link ColumnType#DOUBLE} column
+   */
+  public double[] getDoubleColumn(int column) {
+    return ((DoubleColumn) column(column, ColumnType.DOUBLE)).values;
+  }
+
+  /**
+   * Returns the values of a {@link ColumnType#BOOLEAN} column. The returned array is the backing
+   * storage of this page and has exactly {@link #getRowCount()} elements; it must not be modified.
+   *
+   * @throws IllegalStateException if the column is not a {@link ColumnType#BOOLEAN} column
+   */
+  public boolean[] getBooleanColumn(int column) {
+    return ((BooleanColumn) column(column, ColumnType.BOOLEAN)).values;
+  }
+
+  /**
+   * Returns the dictionary codes of a {@link ColumnType#STRING} column, one per row. Each code is
+   * an index into {@link #getDictionary(int)}. The returned array is the backing storage of this
+   * page and must not be modified.
+   *
+   * @throws IllegalStateException if the column is not a {@link ColumnType#STRING} column
+   */
+  public int[] getDictionaryCodes(int column) {
+    return ((StringColumn) column(column, ColumnType.STRING)).codes;
+  }
+
+  /**
+   * Returns the distinct values of a {@link ColumnType#STRING} column. The returned array is the
+   * backing storage of this page and must not be modified.
+   *
+   * @throws IllegalStateException if the column is not a {@link ColumnType#STRING} column
+   */
+  public String[] getDictionary(int column) {
+    return ((StringColumn) column(column, ColumnType.STRING)).dictionary;
+  }
+
+  /**
+   * Returns the string value at the provided column and row, or {@code null} if the value is {@code
+   * null}. For {@link ColumnType#LONG}, {@link ColumnType#DOUBLE} and {@link ColumnType#BOOLEAN}
+   * columns the decoded value is converted back to a string.
+   *
+   * @throws IllegalStateException if the column is a {@link ColumnType#VALUE} column
+   */
+  public String getString(int column, int row) {
+    if (isNull(column, row)) {
+      return null;
+    }
+    Column col = columns[column];
+    switch (col.type) {
+      case LONG:
+        return Long.toString(((LongColumn) col).values[row]);
+      case DOUBLE:
+        return Double.toString(((DoubleColumn) col).values[row]);
+      case BOOLEAN:
+        return Boolean.toString(((BooleanColumn) col).values[row]);
+      case STRING:
+        StringColumn strings = (StringColumn) col;
+        return strings.dictionary[strings.codes[row]];
+      default:
+        throw new IllegalStateException(
+            "Column " + fields.get(column).getName() + " does not hold primitive values");
+    }
+  }
+
+  /**
+   * Returns the value at the provided column and row as a {@link FieldValue}. This method works for
+   * every column type, but allocates for all but {@link ColumnType#VALUE} columns.
+   */
+  public FieldValue getValue(int column, int row) {
+    Column col = column(column);
+    if (col.type == ColumnType.VALUE) {
+      if (isNull(column, row)) {
+        return FieldValue.of(FieldValue.Attribute.PRIMITIVE, null);
+      }
+      return ((ValueColumn) col).values[row];
+    }
+    return FieldValue.of(FieldValue.Attribute.PRIMITIVE, getString(column, row));
+  }
+
+  private Column column(int column) {
+    checkElementIndex(column, columns.length);
+    return columns[column];
+  }
+
+  private Column column(int column, ColumnType type) {
+    Column col = column(column);
+    checkState(
+        col.type == type,
+        "Column %s is of type %s, not %s",
+        fields.get(column).getName(),
+        col.type,
+        type);
+    return col;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("fields", fields)
+        .add("rowCount", rowCount)
+        .toString();
+  }
+
+  /** Decodes the provided rows, which must conform to {@code fields}, into a columnar page. */
+  static ColumnarPage of(FieldList fields, Iterable<FieldValueList> rows) {
+    Builder builder = newBuilder(fields);
+    for (FieldValueList row : rows) {
+      builder.addRow(row);
+    }
+    return builder.build();
+  }
+
+  static Builder newBuilder(FieldList fields) {
+    return new Builder(fields, DEFAULT_CAPACITY);
+  }
+
+  static ColumnType columnType(Field field) {
+    if (field.getMode() == Field.Mode.REPEATED
+        || LegacySQLTypeName.RECORD.equals(field.getType())) {
+      return ColumnType.VALUE;
+    }
+    if (LegacySQLTypeName.INTEGER.equals(field.getType())) {
+      return ColumnType.LONG;
+    }
+    if (LegacySQLTypeName.FLOAT.equals(field.getType())) {
+      return ColumnType.DOUBLE;
+    }
+    if (LegacySQLTypeName.BOOLEAN.equals(field.getType())) {
+      return ColumnType.BOOLEAN;
+    }
+    return ColumnType.STRING;
+  }
+
+  /**
+   * Accumulates rows into growable column buffers. Rows are added either whole, with {@link
+   * #addRow(FieldValueList)}, or cell by cell in schema order, with {@link #addPrimitive(String)}
+   * and {@link #addValue(FieldValue)} enclosed by {@link #startRow()} and {@link #endRow()}.
+   */
+  static final class Builder {
+
+    private final FieldList fields;
+    private final Column[] columns;
+    private int capacity;
+    private int rowCount;
+    private int cell = -1;
+
+    private Builder(FieldList fields, int capacity) {
+      this.fields = checkNotNull(fields);
+      this.capacity = capacity;
+      this.columns = new Column[fields.size()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = Column.create(columnType(fields.get(i)), capacity);
+      }
+    }
+
+    Builder addRow(FieldValueList row) {
+      checkArgument(
+          row.size() == columns.length,
+          "Row has %s values but the schema has %s fields",
+          row.size(),
+          columns.length);
+      startRow();
+      for (int i = 0; i < columns.length; i++) {
+        FieldValue value = row.get(i);
+        if (columns[i].type == ColumnType.VALUE) {
+          addValue(value);
+        } else {
+          addPrimitive((String) value.getValue());
+        }
+      }
+      return endRow();
+    }
+
+    Builder startRow() {
+      checkState(cell < 0, "Previous row was not ended");
+      if (rowCount == capacity) {
+        capacity = capacity * 2;
+        for (Column column : columns) {
+          column.resize(capacity);
+        }
+      }
+      cell = 0;
+      return this;
+    }
+
+    /** Adds the next cell of the current row, {@code value} is {@code null} for null cells. */
+    Builder addPrimitive(String value) {
+      Column column = nextColumn();
+      if (value == null) {
+        column.setNull(rowCount);
+      } else {
+        column.set(rowCount, value);
+      }
+      return this;
+    }
+
+    /** Adds the next cell of the current row, used for record and repeated fields. */
+    Builder addValue(FieldValue value) {
+      Column column = nextColumn();
+      if (value.isNull()) {
+        column.setNull(rowCount);
+      } else if (column.type == ColumnType.VALUE) {
+        ((ValueColumn) column).values[rowCount] = value;
+      } else {
+        column.set(rowCount, value.getStringValue());
+      }
+      return this;
+    }
+
+    Builder endRow() {
+      checkState(
+          cell == columns.length,
+          "Row has %s values but the schema has %s fields",
+          cell,
+          columns.length);
+      cell = -1;
+      rowCount++;
+      return this;
+    }
+
+    int getRowCount() {
+      return rowCount;
+    }
+
+    private Column nextColumn() {
+      checkState(cell >= 0, "Row was not started");
+      checkState(cell < columns.length, "Row has more values than the schema has fields");
+      return columns[cell++];
+    }
+
+    ColumnarPage build() {
+      checkState(cell < 0, "Last row was not ended");
+      for (Column column : columns) {
+        column.resize(rowCount);
+        column.finish();
+      }
+      return new ColumnarPage(fields, rowCount, columns);
+    }
+  }
+
+  private abstract static class Column {
+
+    final ColumnType type;
+    long[] nulls;
+
+    Column(ColumnType type, int capacity) {
+      this.type = type;
+      this.nulls = new long[words(capacity)];
+    }
+
+    static Column create(ColumnType type, int capacity) {
+      switch (type) {
+        case LONG:
+          return new LongColumn(capacity);
+        case DOUBLE:
+          return new DoubleColumn(capacity);
+        case BOOLEAN:
+          return new BooleanColumn(capacity);
+        case STRING:
+          return new StringColumn(capacity);
+        default:
+          return new ValueColumn(capacity);
+      }
+    }
+
+    private static int words(int capacity) {
+      return (capacity + 63) >>> 6;
+    }
+
+    final void setNull(int row) {
+      nulls[row >>> 6] |= 1L << row;
+    }
+
+    void resize(int capacity) {
+      nulls = Arrays.copyOf(nulls, words(capacity));
+    }
+
+    abstract void set(int row, String value);
+
+    void finish() {}
+  }
+
+  private static final class LongColumn extends Column {
+
+    long[] values;
+
+    LongColumn(int capacity) {
+      super(ColumnType.LONG, capacity);
+      values = new long[capacity];
+    }
+
+    @Override
+    void set(int row, String value) {
+      values[row] = Long.parseLong(value);
+    }
+
+    @Override
+    void resize(int capacity) {
+      super.resize(capacity);
+      if (values.length != capacity) {
+        values = Arrays.copyOf(values, capacity);
+      }
+    }
+  }
+
+  private static final class DoubleColumn extends Column {
+
+    double[] values;
+
+    DoubleColumn(int capacity) {
+      super(ColumnType.DOUBLE, capacity);
+      values = new double[capacity];
+    }
+
+    @Override
+    void set(int row, String value) {
+      values[row] = Double.parseDouble(value);
+    }
+
+    @Override
+    void resize(int capacity) {
+      super.resize(capacity);
+      if (values.length != capacity) {
+        values = Arrays.copyOf(values, capacity);
+      }
+    }
+  }
+
+  private static final class BooleanColumn extends Column {
+
+    boolean[] values;
+
+    BooleanColumn(int capacity) {
+      super(ColumnType.BOOLEAN, capacity);
+      values = new boolean[capacity];
+    }
+
+    @Override
+    void set(int row, String value) {
+      if ("true".equalsIgnoreCase(value)) {
+        values[row] = true;
+      } else if ("false".equalsIgnoreCase(value)) {
+        values[row] = false;
+      } else {
+        throw new IllegalStateException("Field value is not of boolean type");
+      }
+    }
+
+    @Override
+    void resize(int capacity) {
+      super.resize(capacity);
+      if (values.length != capacity) {
+        values = Arrays.copyOf(values, capacity);
+      }
+    }
+  }
+
+  private static final class StringColumn extends Column {
+
+    int[] codes;
+    String[] dictionary;
+    private Map<String, Integer> index = new HashMap<>();
+    private int dictionarySize;
+
+    StringColumn(int capacity) {
+      super(ColumnType.STRING, capacity);
+      codes = new int[capacity];
+      dictionary = new String[DEFAULT_CAPACITY];
+    }
+
+    @Override
+    void set(int row, String value) {
+      Integer code = index.get(value);
+      if (code == null) {
+        code = dictionarySize;
+        if (dictionarySize == dictionary.length) {
+          dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        }
+        dictionary[dictionarySize++] = value;
+        index.put(value, code);
+      }
+      codes[row] = code;
+    }
+
+    @Override
+    void resize(int capacity) {
+      super.resize(capacity);
+      if (codes.length != capacity) {
+        codes = Arrays.copyOf(codes, capacity);
+      }
+    }
+
+    @Override
+    void finish() {
+      dictionary = Arrays.copyOf(dictionary, dictionarySize);
+      index = null;
+    }
+  }
+
+  private static final class ValueColumn extends Column {
+
+    FieldValue[] values;
+
+    ValueColumn(int capacity) {
+      super(ColumnType.VALUE, capacity);
+      values = new FieldValue[capacity];
+    }
+
+    @Override
+    void set(int row, String value) {
+      values[row] = FieldValue.of(FieldValue.Attribute.PRIMITIVE, value);
+    }
+
+    @Override
+    void resize(int capacity) {
+      super.resize(capacity);
+      if (values.length != capacity) {
+        values = Arrays.copyOf(values, capacity);
+      }
+    }
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.cloud.bigquery.spi.v2.TableDataSink;
+
+/**
+ * A {@link TableDataSink} that decodes the streamed rows directly into a {@link ColumnarPage},
+ * without building a {@link FieldValueList} for each row. Only record and repeated cells are
+ * converted to {@link FieldValue} objects.
+ */
+final class ColumnarPageSink implements TableDataSink {
+
+  private final FieldList fields;
+  private final ColumnarPage.Builder builder;
+  private int cell;
+
+  ColumnarPageSink(FieldList fields) {
+    this.fields = fields;
+    this.builder = ColumnarPage.newBuilder(fields);
+  }
+
+  @Override
+  public void startRow() {
+    builder.startRow();
+    cell = 0;
+  }
+
+  @Override
+  public void addCell(Object value) {
+    if (value == null || value instanceof String) {
+      builder.addPrimitive((String) value);
+    } else {
+      Field field = cell < fields.size() ? fields.get(cell) : null;
+      builder.addValue(FieldValue.fromPb(value, field));
+    }
+    cell++;
+  }
+
+  @Override
+  public void endRow() {
+    builder.endRow();
+  }
+
+  ColumnarPage build() {
+    return builder.build();
+  }
+}
@@ -16,14 +16,23 @@
 
 package com.google.cloud.bigquery;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.util.AbstractList;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Google BigQuery Table schema fields (columns). Each field has a unique name and index. Fields
@@ -33,10 +42,23 @@ public final class FieldList extends AbstractList<Field> implements Serializable
 
   private static final long serialVersionUID = 8736258375638733316L;
 
-  private final List<Field> fields;
-  private final Map<String, Integer> nameIndex;
+  // the serialized form of earlier versions, which serialized the name index as a map
+  private static final ObjectStreamField[] serialPersistentFields = {
+    new ObjectStreamField("fields", List.class), new ObjectStreamField("nameIndex", Map.class)
+  };
+
+  // not final only so that it can be set by readObject
+  private List<Field> fields;
+  private transient NameIndex nameIndex;
 
+  /**
+   * The name index of earlier versions, still written in the serialized form so that they can read
+   * it.
+   */
   private static class CaseInsensitiveMap extends HashMap<String, Integer> {
+
+    private static final long serialVersionUID = 696282172236876244L;
+
     @Override
     public Integer put(String key, Integer value) {
       return super.put(key.toLowerCase(), value);
@@ -48,16 +70,79 @@ public final class FieldList extends AbstractList<Field> implements Serializable
     }
   }
 
+  /**
+   * An open addressing hash table from field names to field indexes. Names are matched ignoring
+   * case, as in {@link String#equalsIgnoreCase(String)}, without allocating on lookup.
+   */
+  private static final class NameIndex {
+
+    private static final int NOT_FOUND = -1;
+
+    private final String[] names;
+    private final int[] indexes;
+    private final int mask;
+
+    NameIndex(List<Field> fields) {
+      int capacity = Integer.highestOneBit(Math.max(1, fields.size()) * 2) * 2;
+      names = new String[capacity];
+      indexes = new int[capacity];
+      mask = capacity - 1;
+      for (int i = 0; i < fields.size(); i++) {
+        put(fields.get(i).getName(), i);
+      }
+    }
+
+    private void put(String name, int index) {
+      int slot = hash(name) & mask;
+      while (names[slot] != null && !names[slot].equalsIgnoreCase(name)) {
+        slot = (slot + 1) & mask;
+      }
+      names[slot] = name;
+      indexes[slot] = index;
+    }
+
+    int get(String name) {
+      int slot = hash(name) & mask;
+      while (names[slot] != null) {
+        if (names[slot].equalsIgnoreCase(name)) {
+          return indexes[slot];
+        }
+        slot = (slot + 1) & mask;
+      }
+      return NOT_FOUND;
+    }
+
+    /** A hash code that is equal for strings that are equal ignoring case. */
+    private static int hash(String name) {
+      int hash = 0;
+      for (int i = 0; i < name.length(); i++) {
+        hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+      }
+      return hash ^ (hash >>> 16);
+    }
+  }
+
   private FieldList(Iterable<Field> fields) {
     this.fields = ImmutableList.copyOf(fields);
+    this.nameIndex = new NameIndex(this.fields);
+  }
+
+  private void writeObject(ObjectOutputStream out) throws IOException {
     Map<String, Integer> caseInsensitiveMap = new CaseInsensitiveMap();
-    int index = 0;
-    for (Field field : fields) {
-      caseInsensitiveMap.put(field.getName(), index);
-      index++;
+    for (int i = 0; i < fields.size(); i++) {
+      caseInsensitiveMap.put(fields.get(i).getName(), i);
     }
+    ObjectOutputStream.PutField serializedFields = out.putFields();
+    serializedFields.put("fields", fields);
+    serializedFields.put("nameIndex", caseInsensitiveMap);
+    out.writeFields();
+  }
 
-    this.nameIndex = caseInsensitiveMap;
+  @SuppressWarnings("unchecked")
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    // the name index is rebuilt from the fields
+    fields = (List<Field>) in.readFields().get("fields", null);
+    nameIndex = new NameIndex(fields);
   }
 
   /**
@@ -85,8 +170,8 @@ public final class FieldList extends AbstractList<Field> implements Serializable
    * @param name field (column) name
    */
   public int getIndex(String name) {
-    Integer index = nameIndex.get(name);
-    if (index == null) {
+    int index = nameIndex.get(name);
+    if (index == NameIndex.NOT_FOUND) {
       throw new IllegalArgumentException("Field with name '" + name + "' was not found");
     }
     return index;
@@ -118,6 +203,48 @@ public final class FieldList extends AbstractList<Field> implements Serializable
     return new FieldList(fields);
   }
 
+  /**
+   * Returns the fields selected by {@code paths}, in schema order. A path is either the name of a
+   * field, which selects the whole field, or a dotted path to a sub-field of a record, which
+   * selects the record pruned to the selected sub-fields.
+   *
+   * @throws IllegalArgumentException if a path does not match any field
+   */
+  FieldList select(Iterable<String> paths) {
+    Map<Integer, List<String>> subPaths = new HashMap<>();
+    Set<Integer> wholeFields = new HashSet<>();
+    for (String path : paths) {
+      int dot = path.indexOf('.');
+      int index = getIndex(dot < 0 ? path : path.substring(0, dot));
+      if (dot < 0) {
+        wholeFields.add(index);
+      } else {
+        checkArgument(
+            fields.get(index).getSubFields() != null,
+            "Field '%s' is not a record",
+            fields.get(index).getName());
+        if (!subPaths.containsKey(index)) {
+          subPaths.put(index, new ArrayList<String>());
+        }
+        subPaths.get(index).add(path.substring(dot + 1));
+      }
+    }
+    ImmutableList.Builder<Field> selected = ImmutableList.builder();
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (wholeFields.contains(i)) {
+        selected.add(field);
+      } else if (subPaths.containsKey(i)) {
+        selected.add(
+            field
+                .toBuilder()
+                .setType(field.getType(), field.getSubFields().select(subPaths.get(i)))
+                .build());
+      }
+    }
+    return new FieldList(selected.build());
+  }
+
   List<TableFieldSchema> toPb() {
     return Lists.transform(fields, Field.TO_PB_FUNCTION);
   }
@@ -23,11 +23,18 @@ import com.google.api.client.util.Data;
 import com.google.api.core.BetaApi;
 import com.google.common.base.MoreObjects;
 import com.google.common.io.BaseEncoding;
+import com.google.common.math.LongMath;
 import java.io.Serializable;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import org.threeten.bp.Instant;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.ZoneOffset;
 
 /**
  * Google BigQuery Table Field Value class. Objects of this class represent values of a BigQuery
@@ -182,9 +189,115 @@ public class FieldValue implements Serializable {
   public long getTimestampValue() {
     // timestamps are encoded in the format 1408452095.22 where the integer part is seconds since
     // epoch (e.g. 1408452095.22 == 2014-08-19 07:41:35.220 -05:00)
-    BigDecimal secondsWithMicro = new BigDecimal(getStringValue());
-    BigDecimal scaled = secondsWithMicro.scaleByPowerOfTen(6);
-    return scaled.longValue();
+    return TemporalParser.parseTimestampMicros(getStringValue());
+  }
+
+  /**
+   * Returns this field's value as an {@link Instant}. This method should only be used if the
+   * corresponding field has {@link LegacySQLTypeName#TIMESTAMP} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws NumberFormatException if the field's value could not be converted to a timestamp
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public Instant getTimestampInstant() {
+    long micros = getTimestampValue();
+    long seconds = LongMath.divide(micros, TemporalParser.MICROS_PER_SECOND, RoundingMode.FLOOR);
+    long nanos =
+        LongMath.mod(micros, TemporalParser.MICROS_PER_SECOND) * TemporalParser.NANOS_PER_MICRO;
+    return Instant.ofEpochSecond(seconds, nanos);
+  }
+
+  /**
+   * Returns this field's value as a {@code long}, representing a date in days since epoch. This
+   * method should only be used if the corresponding field has {@link LegacySQLTypeName#DATE} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws IllegalArgumentException if the field's value is not a date in the {@code YYYY-MM-DD}
+   *     format
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public long getDateEpochDays() {
+    return TemporalParser.parseDateEpochDays(getStringValue());
+  }
+
+  /**
+   * Returns this field's value as a {@link LocalDate}. This method should only be used if the
+   * corresponding field has {@link LegacySQLTypeName#DATE} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws IllegalArgumentException if the field's value is not a date in the {@code YYYY-MM-DD}
+   *     format
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public LocalDate getLocalDateValue() {
+    return LocalDate.ofEpochDay(getDateEpochDays());
+  }
+
+  /**
+   * Returns this field's value as a {@code long}, representing a time of day in nanoseconds. This
+   * method should only be used if the corresponding field has {@link LegacySQLTypeName#TIME} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws IllegalArgumentException if the field's value is not a time in the {@code
+   *     HH:MM:SS[.FFFFFF]} format
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public long getTimeNanos() {
+    return TemporalParser.parseTimeNanos(getStringValue());
+  }
+
+  /**
+   * Returns this field's value as a {@link LocalTime}. This method should only be used if the
+   * corresponding field has {@link LegacySQLTypeName#TIME} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws IllegalArgumentException if the field's value is not a time in the {@code
+   *     HH:MM:SS[.FFFFFF]} format
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public LocalTime getLocalTimeValue() {
+    return LocalTime.ofNanoOfDay(getTimeNanos());
+  }
+
+  /**
+   * Returns this field's value as a {@code long}, representing a date and time in microseconds
+   * since epoch, as if the date and time were in UTC. This method should only be used if the
+   * corresponding field has {@link LegacySQLTypeName#DATETIME} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws IllegalArgumentException if the field's value is not a date and time in the {@code
+   *     YYYY-MM-DDTHH:MM:SS[.FFFFFF]} format
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public long getDateTimeMicros() {
+    return TemporalParser.parseDateTimeMicros(getStringValue());
+  }
+
+  /**
+   * Returns this field's value as a {@link LocalDateTime}. This method should only be used if the
+   * corresponding field has {@link LegacySQLTypeName#DATETIME} type.
+   *
+   * @throws ClassCastException if the field is not a primitive type
+   * @throws IllegalArgumentException if the field's value is not a date and time in the {@code
+   *     YYYY-MM-DDTHH:MM:SS[.FFFFFF]} format
+   * @throws NullPointerException if {@link #isNull()} returns {@code true}
+   */
+  @BetaApi
+  public LocalDateTime getLocalDateTimeValue() {
+    long micros = getDateTimeMicros();
+    long seconds = LongMath.divide(micros, TemporalParser.MICROS_PER_SECOND, RoundingMode.FLOOR);
+    int nanos =
+        (int)
+            (LongMath.mod(micros, TemporalParser.MICROS_PER_SECOND)
+                * TemporalParser.NANOS_PER_MICRO);
+    return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
   }
 
   /**
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.cloud.bigquery.FieldValue.Attribute;
+import com.google.cloud.bigquery.spi.v2.TableDataSink;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A {@link TableDataSink} that collects the streamed rows as {@link FieldValueList}s. */
+final class FieldValueListSink implements TableDataSink {
+
+  private final FieldList fields;
+  private final ImmutableList.Builder<FieldValueList> rows = ImmutableList.builder();
+  private List<FieldValue> row;
+
+  FieldValueListSink(Schema schema) {
+    this.fields = schema != null ? schema.getFields() : null;
+  }
+
+  @Override
+  public void startRow() {
+    row = new ArrayList<>(fields != null ? fields.size() : 10);
+  }
+
+  @Override
+  public void addCell(Object value) {
+    if (value == null || value instanceof String) {
+      row.add(FieldValue.of(Attribute.PRIMITIVE, value));
+    } else {
+      Field field = fields != null && row.size() < fields.size() ? fields.get(row.size()) : null;
+      row.add(FieldValue.fromPb(value, field));
+    }
+  }
+
+  @Override
+  public void endRow() {
+    rows.add(FieldValueList.of(row, fields));
+    row = null;
+  }
+
+  List<FieldValueList> getRows() {
+    return rows.build();
+  }
+
+  /**
+   * A {@link TableDataSink} for responses that carry their own schema, such as those of {@code
+   * jobs.getQueryResults}. The streamed cells are kept as read and decoded once the schema is
+   * known.
+   */
+  static final class Deferred implements TableDataSink {
+
+    private final List<List<Object>> rows = new ArrayList<>();
+    private List<Object> row;
+
+    @Override
+    public void startRow() {
+      row = new ArrayList<>();
+    }
+
+    @Override
+    public void addCell(Object value) {
+      row.add(value);
+    }
+
+    @Override
+    public void endRow() {
+      rows.add(row);
+      row = null;
+    }
+
+    List<FieldValueList> getRows(Schema schema) {
+      FieldList fields = schema != null ? schema.getFields() : null;
+      ImmutableList.Builder<FieldValueList> builder = ImmutableList.builder();
+      for (List<Object> cells : rows) {
+        builder.add(FieldValueList.fromPb(cells, fields));
+      }
+      return builder.build();
+    }
+  }
+}
@@ -18,11 +18,14 @@ package com.google.cloud.bigquery;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.BetaApi;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Utf8;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -42,11 +45,16 @@ public final class InsertAllRequest implements Serializable {
 
   private static final long serialVersionUID = 211200307773853078L;
 
+  // {"rows":[],"skipInvalidRows":false,"ignoreUnknownValues":false,"templateSuffix":""}
+  private static final long REQUEST_OVERHEAD_BYTES = 96;
+
   private final TableId table;
   private final List<RowToInsert> rows;
   private final Boolean skipInvalidRows;
   private final Boolean ignoreUnknownValues;
   private final String templateSuffix;
+  private final RequestCompression requestCompression;
+  private transient volatile long estimatedSizeBytes;
 
   /**
    * A Google Big Query row to be inserted into a table. Each {@code RowToInsert} has an associated
@@ -78,11 +86,15 @@ public final class InsertAllRequest implements Serializable {
 
     private static final long serialVersionUID = 8563060538219179157L;
 
+    private static final long ROW_OVERHEAD_BYTES = 24;
+
     private final String id;
 
     // Always immutable, but might not be ImmutableMap, since they don't support nulls.
     private final Map<String, Object> content;
 
+    private transient volatile long estimatedSizeBytes;
+
     RowToInsert(String id, Map<String, ?> content) {
       this.id = id;
 
@@ -107,6 +119,48 @@ public final class InsertAllRequest implements Serializable {
       return content;
     }
 
+    /** Returns an estimate of the size of the row in the JSON body of a request, in bytes. */
+    long getEstimatedSizeBytes() {
+      long size = estimatedSizeBytes;
+      if (size == 0) {
+        // {"insertId":"...","json":...}
+        size =
+            ROW_OVERHEAD_BYTES + (id != null ? jsonSizeBytes(id) : 0) + estimatedSizeBytes(content);
+        estimatedSizeBytes = size;
+      }
+      return size;
+    }
+
+    private static long estimatedSizeBytes(Object value) {
+      if (value == null) {
+        return 4;
+      } else if (value instanceof CharSequence) {
+        return jsonSizeBytes((CharSequence) value) + 2;
+      } else if (value instanceof Number || value instanceof Boolean) {
+        return value.toString().length();
+      } else if (value instanceof byte[]) {
+        return (((byte[]) value).length + 2) / 3 * 4 + 2;
+      } else if (value instanceof Map) {
+        long size = 2;
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+          size +=
+              jsonSizeBytes(String.valueOf(entry.getKey()))
+                  + 4
+                  + estimatedSizeBytes(entry.getValue());
+        }
+        return size;
+      } else if (value instanceof Iterable) {
+        long size = 2;
+        for (Object element : (Iterable<?>) value) {
+          size += estimatedSizeBytes(element) + 1;
+        }
+        return size;
+      } else if (value instanceof Object[]) {
+        return estimatedSizeBytes(Arrays.asList((Object[]) value));
+      }
+      return jsonSizeBytes(value.toString()) + 2;
+    }
+
     @Override
     public String toString() {
       return MoreObjects.toStringHelper(this).add("id", id).add("content", content).toString();
@@ -161,6 +215,8 @@ public final class InsertAllRequest implements Serializable {
     private Boolean skipInvalidRows;
     private Boolean ignoreUnknownValues;
     private String templateSuffix;
+    private RequestCompression requestCompression;
+    private long rowsSizeBytes;
 
     private Builder() {}
 
@@ -173,6 +229,10 @@ public final class InsertAllRequest implements Serializable {
     /** Sets the rows to insert as a list of {@link RowToInsert} objects. */
     public Builder setRows(Iterable<RowToInsert> rows) {
       this.rows = Lists.newLinkedList(checkNotNull(rows));
+      rowsSizeBytes = 0;
+      for (RowToInsert row : this.rows) {
+        rowsSizeBytes += row.getEstimatedSizeBytes();
+      }
       return this;
     }
 
@@ -183,6 +243,7 @@ public final class InsertAllRequest implements Serializable {
         rows = Lists.newArrayList();
       }
       rows.add(rowToInsert);
+      rowsSizeBytes += rowToInsert.getEstimatedSizeBytes();
       return this;
     }
 
@@ -285,6 +346,27 @@ public final class InsertAllRequest implements Serializable {
       return this;
     }
 
+    /**
+     * Sets the compression of the request body, overriding {@link
+     * BigQueryOptions#getRequestCompression()}. The estimated size of the request is compared to
+     * the minimum size of the compression.
+     */
+    @BetaApi
+    public Builder setRequestCompression(RequestCompression requestCompression) {
+      this.requestCompression = requestCompression;
+      return this;
+    }
+
+    /**
+     * Returns an estimate of the size of the request body for the rows added so far, in bytes.
+     * Requests larger than the backend limits are split by {@link
+     * BigQuery#insertAll(InsertAllRequest)}.
+     */
+    @BetaApi
+    public long getEstimatedSizeBytes() {
+      return requestSizeBytes(rowsSizeBytes, templateSuffix);
+    }
+
     /** Creates an {@code InsertAllRequest} object. */
     public InsertAllRequest build() {
       return new InsertAllRequest(this);
@@ -293,10 +375,53 @@ public final class InsertAllRequest implements Serializable {
 
   private InsertAllRequest(Builder builder) {
     this.table = checkNotNull(builder.table);
-    this.rows = ImmutableList.copyOf(checkNotNull(builder.rows));
+    this.rows =
+        builder.rows != null ? ImmutableList.copyOf(builder.rows) : ImmutableList.<RowToInsert>of();
     this.ignoreUnknownValues = builder.ignoreUnknownValues;
     this.skipInvalidRows = builder.skipInvalidRows;
     this.templateSuffix = builder.templateSuffix;
+    this.requestCompression = builder.requestCompression;
+    this.estimatedSizeBytes = builder.getEstimatedSizeBytes();
+  }
+
+  private InsertAllRequest(InsertAllRequest request, List<RowToInsert> rows) {
+    this.table = request.table;
+    this.rows = ImmutableList.copyOf(rows);
+    this.ignoreUnknownValues = request.ignoreUnknownValues;
+    this.skipInvalidRows = request.skipInvalidRows;
+    this.templateSuffix = request.templateSuffix;
+    this.requestCompression = request.requestCompression;
+  }
+
+  private static long requestSizeBytes(long rowsSizeBytes, String templateSuffix) {
+    return REQUEST_OVERHEAD_BYTES
+        + (templateSuffix != null ? jsonSizeBytes(templateSuffix) : 0)
+        + rowsSizeBytes;
+  }
+
+  /**
+   * Returns the size of a string in a JSON body, without its quotes: its UTF-8 length, plus the
+   * backslashes of its escaped characters and the hexadecimal digits of its escaped control
+   * characters.
+   */
+  private static long jsonSizeBytes(CharSequence value) {
+    long size;
+    try {
+      size = Utf8.encodedLength(value);
+    } catch (IllegalArgumentException e) {
+      // unpaired surrogates are replaced or escaped, at most 6 bytes for each character
+      size = 6L * value.length();
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\' || c == '\b' || c == '\f' || c == '\n' || c == '\r' || c == '\t') {
+        size += 1;
+      } else if (c < 0x20) {
+        // escaped as a backslash, a u and four hexadecimal digits
+        size += 5;
+      }
+    }
+    return size;
   }
 
   /** Returns the destination table for rows insert request. */
@@ -348,6 +473,56 @@ public final class InsertAllRequest implements Serializable {
     return templateSuffix;
   }
 
+  /**
+   * Returns the compression of the request body, or {@code null} to use that of {@link
+   * BigQueryOptions#getRequestCompression()}.
+   */
+  @BetaApi
+  public RequestCompression getRequestCompression() {
+    return requestCompression;
+  }
+
+  /** Returns an estimate of the size of the request body, in bytes. */
+  @BetaApi
+  public long getEstimatedSizeBytes() {
+    long size = estimatedSizeBytes;
+    if (size == 0) {
+      long rowsSizeBytes = 0;
+      for (RowToInsert row : rows) {
+        rowsSizeBytes += row.getEstimatedSizeBytes();
+      }
+      size = requestSizeBytes(rowsSizeBytes, templateSuffix);
+      estimatedSizeBytes = size;
+    }
+    return size;
+  }
+
+  /**
+   * Splits this request into requests of consecutive rows, each with at most {@code maxRows} rows
+   * and an estimated size of at most {@code maxBytes}, unless it has a single larger row. Returns a
+   * list with only this request if it needs no split.
+   */
+  List<InsertAllRequest> split(int maxRows, long maxBytes) {
+    if (rows.size() <= maxRows && getEstimatedSizeBytes() <= maxBytes) {
+      return ImmutableList.of(this);
+    }
+    long emptySizeBytes = requestSizeBytes(0, templateSuffix);
+    ImmutableList.Builder<InsertAllRequest> parts = ImmutableList.builder();
+    int start = 0;
+    long size = emptySizeBytes;
+    for (int i = 0; i < rows.size(); i++) {
+      long rowSizeBytes = rows.get(i).getEstimatedSizeBytes();
+      if (i > start && (i - start == maxRows || size + rowSizeBytes > maxBytes)) {
+        parts.add(new InsertAllRequest(this, rows.subList(start, i)));
+        start = i;
+        size = emptySizeBytes;
+      }
+      size += rowSizeBytes;
+    }
+    parts.add(new InsertAllRequest(this, rows.subList(start, rows.size())));
+    return parts.build();
+  }
+
   /** Returns a builder for an {@code InsertAllRequest} object given the destination table. */
   public static Builder newBuilder(TableId table) {
     return new Builder().setTable(table);
@@ -456,12 +631,14 @@ public final class InsertAllRequest implements Serializable {
         .add("ignoreUnknownValues", ignoreUnknownValues)
         .add("skipInvalidRows", skipInvalidRows)
         .add("templateSuffix", templateSuffix)
+        .add("requestCompression", requestCompression)
         .toString();
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(table, rows, ignoreUnknownValues, skipInvalidRows, templateSuffix);
+    return Objects.hash(
+        table, rows, ignoreUnknownValues, skipInvalidRows, templateSuffix, requestCompression);
   }
 
   @Override
@@ -477,6 +654,7 @@ public final class InsertAllRequest implements Serializable {
         && Objects.equals(rows, other.rows)
         && Objects.equals(ignoreUnknownValues, other.ignoreUnknownValues)
         && Objects.equals(skipInvalidRows, other.skipInvalidRows)
-        && Objects.equals(templateSuffix, other.templateSuffix);
+        && Objects.equals(templateSuffix, other.templateSuffix)
+        && Objects.equals(requestCompression, other.requestCompression);
   }
 }
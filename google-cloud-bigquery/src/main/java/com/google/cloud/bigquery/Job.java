@@ -18,20 +18,29 @@ package com.google.cloud.bigquery;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.api.core.ApiFunction;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.BetaApi;
+import com.google.api.gax.paging.Page;
 import com.google.api.gax.retrying.BasicResultRetryAlgorithm;
 import com.google.api.gax.retrying.RetrySettings;
 import com.google.api.gax.retrying.TimedAttemptSettings;
+import com.google.cloud.PageImpl;
+import com.google.cloud.PageImpl.NextPageFetcher;
 import com.google.cloud.RetryHelper;
 import com.google.cloud.RetryOption;
 import com.google.cloud.bigquery.BigQuery.JobOption;
 import com.google.cloud.bigquery.BigQuery.QueryResultsOption;
 import com.google.cloud.bigquery.BigQuery.TableDataListOption;
 import com.google.cloud.bigquery.JobConfiguration.Type;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Callable;
@@ -71,6 +80,19 @@ public class Job extends JobInfo {
     QueryResultsOption.pageSize(0L),
   };
 
+  static final RetrySettings DEFAULT_ASYNC_QUERY_WAIT_SETTINGS =
+      RetrySettings.newBuilder()
+          .setTotalTimeout(Duration.ofHours(12L))
+          .setInitialRetryDelay(Duration.ofMillis(250L))
+          .setRetryDelayMultiplier(1.5)
+          .setMaxRetryDelay(Duration.ofSeconds(5L))
+          .build();
+
+  // asynchronous polls do not wait on the server, so that they do not hold a thread
+  static final QueryResultsOption[] ASYNC_QUERY_WAIT_OPTIONS = {
+    QueryResultsOption.pageSize(0L), QueryResultsOption.maxWaitTime(0L),
+  };
+
   private final BigQueryOptions options;
   private transient BigQuery bigquery;
 
@@ -248,6 +270,126 @@ public class Job extends JobInfo {
     return completedJobResponse == null ? null : reload();
   }
 
+  /**
+   * Returns a future that completes with this job's latest information once the job completes its
+   * execution, either failing or succeeding, or with {@code null} if the job no longer exists. The
+   * job status is polled on the executor returned by {@link BigQueryOptions#getAsyncExecutor()},
+   * without holding a thread between polls. By default, query jobs are polled using jittered
+   * exponential backoff with 250 milliseconds as an initial delay, 1.5 as a backoff factor and 5
+   * seconds as maximum delay between polls, other jobs as in {@link #waitFor(RetryOption...)}. The
+   * total timeout is 12 hours. Cancelling the returned future stops polling.
+   *
+   * <p>Example usage of {@code waitForAsync()}.
+   *
+   * <pre>{@code
+   * ApiFutures.addCallback(
+   *     job.waitForAsync(),
+   *     new ApiFutureCallback<Job>() {
+   *       public void onSuccess(Job completedJob) {
+   *         // check completedJob.getStatus().getError()
+   *       }
+   *
+   *       public void onFailure(Throwable t) {
+   *         // handle error
+   *       }
+   *     },
+   *     MoreExecutors.directExecutor());
+   * }</pre>
+   *
+   * @param waitOptions options to configure checking period and timeout
+   */
+  @BetaApi
+  public ApiFuture<Job> waitForAsync(RetryOption... waitOptions) {
+    checkNotDryRun("waitFor");
+    ApiFuture<?> completed;
+    if (getConfiguration().getType() == Type.QUERY) {
+      completed =
+          pollQueryResults(
+              RetryOption.mergeToSettings(DEFAULT_ASYNC_QUERY_WAIT_SETTINGS, waitOptions),
+              ASYNC_QUERY_WAIT_OPTIONS);
+    } else {
+      completed =
+          AsyncPoller.poll(
+              options.getAsyncExecutor(),
+              new Callable<Job>() {
+                @Override
+                public Job call() {
+                  return bigquery.getJob(getJobId(), JobOption.fields(BigQuery.JobField.STATUS));
+                }
+              },
+              new Predicate<Job>() {
+                @Override
+                public boolean apply(Job job) {
+                  return job == null || JobStatus.State.DONE.equals(job.getStatus().getState());
+                }
+              },
+              RetryOption.mergeToSettings(DEFAULT_QUERY_JOB_WAIT_SETTINGS, waitOptions),
+              options.getClock());
+    }
+    return ApiFutures.transform(
+        completed,
+        new ApiFunction<Object, Job>() {
+          @Override
+          public Job apply(Object response) {
+            return response == null ? null : reload();
+          }
+        },
+        options.getAsyncExecutor());
+  }
+
+  /**
+   * Returns a future that completes with the query results of this job, polling for completion as
+   * {@link #waitForAsync(RetryOption...)} does. The final poll requests the first page of rows, so
+   * that the results are built from its response. The job is only reloaded, on an executor thread,
+   * when the query returned no rows, and the rows are listed from the destination table when no
+   * rows were requested.
+   */
+  ApiFuture<TableResult> getQueryResultsAsync(final QueryResultsOption... options) {
+    checkNotDryRun("getQueryResults");
+    if (getConfiguration().getType() != Type.QUERY) {
+      throw new UnsupportedOperationException(
+          "Getting query results is supported only for " + Type.QUERY + " jobs");
+    }
+    // polls return immediately, and rows are only returned once the job is complete
+    List<QueryResultsOption> pollOptions = new ArrayList<>();
+    for (QueryResultsOption option : options) {
+      if (option.getRpcOption() != BigQueryRpc.Option.TIMEOUT) {
+        pollOptions.add(option);
+      }
+    }
+    pollOptions.add(QueryResultsOption.maxWaitTime(0L));
+    return ApiFutures.transform(
+        pollQueryResults(
+            DEFAULT_ASYNC_QUERY_WAIT_SETTINGS, pollOptions.toArray(new QueryResultsOption[0])),
+        new ApiFunction<QueryResponse, TableResult>() {
+          @Override
+          public TableResult apply(QueryResponse response) {
+            return queryResult(response, options);
+          }
+        },
+        this.options.getAsyncExecutor());
+  }
+
+  private ApiFuture<QueryResponse> pollQueryResults(
+      RetrySettings waitSettings, final QueryResultsOption... resultsOptions) {
+    return AsyncPoller.poll(
+        options.getAsyncExecutor(),
+        new Callable<QueryResponse>() {
+          @Override
+          public QueryResponse call() {
+            return bigquery.getQueryResults(getJobId(), resultsOptions);
+          }
+        },
+        new Predicate<QueryResponse>() {
+          @Override
+          public boolean apply(QueryResponse response) {
+            return response == null || response.getCompleted();
+          }
+        },
+        waitSettings,
+        options.getClock());
+  }
+
   /**
    * Gets the query results of this job. This job must be of type {@code
    * JobConfiguration.Type.QUERY}, otherwise this method will throw {@link
@@ -267,31 +409,64 @@ public class Job extends JobInfo {
           "Getting query results is supported only for " + Type.QUERY + " jobs");
     }
 
-    List<QueryResultsOption> waitOptions =
-        new ArrayList<>(Arrays.asList(DEFAULT_QUERY_WAIT_OPTIONS));
-    List<TableDataListOption> listOptions = new ArrayList<>();
+    // The final jobs.getQueryResults response carries the first page of rows, so the results are
+    // requested with the same paging options used to list the following pages.
+    return queryResult(waitForQueryResults(DEFAULT_JOB_WAIT_SETTINGS, options), options);
+  }
+
+  /** Returns the results of this query job from the response of its completion. */
+  private TableResult queryResult(QueryResponse response, QueryResultsOption... options) {
+    Long pageSize = null;
     for (QueryResultsOption option : options) {
-      switch (option.getRpcOption()) {
-        case MAX_RESULTS:
-          listOptions.add(TableDataListOption.pageSize((Long) option.getValue()));
-          break;
-        case PAGE_TOKEN:
-          listOptions.add(TableDataListOption.pageToken((String) option.getValue()));
-          break;
-        case START_INDEX:
-          listOptions.add(TableDataListOption.startIndex((Long) option.getValue()));
-          break;
-        case TIMEOUT:
-          waitOptions.add(QueryResultsOption.maxWaitTime((Long) option.getValue()));
-          break;
+      if (option.getRpcOption() == BigQueryRpc.Option.MAX_RESULTS) {
+        pageSize = (Long) option.getValue();
+      }
+    }
+
+    // If there are no rows in the result, this may have been a DDL query.
+    // Listing table data might fail, such as with CREATE VIEW queries.
+    // Avoid a tabledata.list API request by returning an empty TableResult.
+    if (response.getTotalRows() == 0) {
+      checkJobErrors();
+      return new EmptyTableResult(response.getSchema());
+    }
+
+    if (response.getRows() == null) {
+      // no rows were requested, list them from the destination table
+      checkJobErrors();
+      List<TableDataListOption> listOptions = new ArrayList<>();
+      for (QueryResultsOption option : options) {
+        switch (option.getRpcOption()) {
+          case MAX_RESULTS:
+            listOptions.add(TableDataListOption.pageSize((Long) option.getValue()));
+            break;
+          case PAGE_TOKEN:
+            listOptions.add(TableDataListOption.pageToken((String) option.getValue()));
+            break;
+          case START_INDEX:
+            listOptions.add(TableDataListOption.startIndex((Long) option.getValue()));
+            break;
+          default:
+            break;
+        }
       }
+      return bigquery.listTableData(
+          getDestinationTable(),
+          response.getSchema(),
+          listOptions.toArray(new TableDataListOption[0]));
     }
 
-    QueryResponse response =
-        waitForQueryResults(
-            DEFAULT_JOB_WAIT_SETTINGS, waitOptions.toArray(new QueryResultsOption[0]));
+    // The query returned rows, so it succeeded and the job does not need to be reloaded.
+    QueryResultsPageFetcher fetcher =
+        new QueryResultsPageFetcher(this, response.getSchema(), response.getPageToken(), pageSize);
+    return new TableResult(
+        response.getSchema(),
+        response.getTotalRows(),
+        new PageImpl<>(fetcher, response.getPageToken(), response.getRows()));
+  }
 
-    // Get the job resource to determine if it has errored.
+  /** Throws a {@link BigQueryException} if the job, reloaded if not known to be done, failed. */
+  private void checkJobErrors() {
     Job job = this;
     if (job.getStatus() == null || !JobStatus.State.DONE.equals(job.getStatus().getState())) {
       job = reload();
@@ -302,20 +477,54 @@ public class Job extends JobInfo {
               ? ImmutableList.of(job.getStatus().getError())
               : ImmutableList.copyOf(job.getStatus().getExecutionErrors()));
     }
+  }
+
+  /**
+   * Returns the destination table of this query job, fetching the job if the destination table was
+   * not set in its configuration.
+   */
+  private TableId getDestinationTable() {
+    TableId table = ((QueryJobConfiguration) getConfiguration()).getDestinationTable();
+    if (table == null) {
+      Job job = bigquery.getJob(getJobId());
+      if (job == null) {
+        throw new BigQueryException(
+            HttpURLConnection.HTTP_NOT_FOUND, "Query job " + getJobId() + " not found");
+      }
+      table = ((QueryJobConfiguration) job.getConfiguration()).getDestinationTable();
+    }
+    return table;
+  }
 
-    // If there are no rows in the result, this may have been a DDL query.
-    // Listing table data might fail, such as with CREATE VIEW queries.
-    // Avoid a tabledata.list API request by returning an empty TableResult.
-    if (response.getTotalRows() == 0) {
-      return new EmptyTableResult(response.getSchema());
+  /**
+   * Fetches the pages of query results following the first page, returned by {@code
+   * jobs.getQueryResults}, with {@code tabledata.list}.
+   */
+  private static class QueryResultsPageFetcher implements NextPageFetcher<FieldValueList> {
+
+    private static final long serialVersionUID = 2590323720917431458L;
+    private final Job job;
+    private final Schema schema;
+    private final String cursor;
+    private final Long pageSize;
+
+    QueryResultsPageFetcher(Job job, Schema schema, String cursor, Long pageSize) {
+      this.job = job;
+      this.schema = schema;
+      this.cursor = cursor;
+      this.pageSize = pageSize;
     }
 
-    TableId table =
-        ((QueryJobConfiguration) getConfiguration()).getDestinationTable() == null
-            ? ((QueryJobConfiguration) job.getConfiguration()).getDestinationTable()
-            : ((QueryJobConfiguration) getConfiguration()).getDestinationTable();
-    return bigquery.listTableData(
-        table, response.getSchema(), listOptions.toArray(new TableDataListOption[0]));
+    @Override
+    public Page<FieldValueList> getNextPage() {
+      List<TableDataListOption> listOptions = new ArrayList<>();
+      listOptions.add(TableDataListOption.pageToken(cursor));
+      if (pageSize != null) {
+        listOptions.add(TableDataListOption.pageSize(pageSize));
+      }
+      return job.bigquery.listTableData(
+          job.getDestinationTable(), schema, listOptions.toArray(new TableDataListOption[0]));
+    }
   }
 
   private QueryResponse waitForQueryResults(
@@ -0,0 +1,353 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.bigquery.BigQuery.JobField;
+import com.google.cloud.bigquery.BigQuery.JobListOption;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.threeten.bp.Duration;
+
+/**
+ * Waits for the completion of many jobs at once, polling their state in aggregate.
+ *
+ * <p>{@link Job#waitFor(com.google.cloud.RetryOption...)} polls the state of a single job, so
+ * waiting for many jobs concurrently sends one stream of {@code jobs.get} requests per job. A
+ * {@code JobWatcher} instead polls all the jobs it watches with a single {@code jobs.list} request
+ * per poll interval, listing the done jobs created between the earliest and the latest creation
+ * times of the watched jobs, and completes the future of each watched job that is listed.
+ *
+ * <p>Jobs are fetched individually with {@code jobs.get} only when their creation time is not
+ * known, on the first poll after they are watched, and on every poll when they belong to a project
+ * other than the one of the client, as {@code jobs.list} only lists the jobs of that project. Jobs
+ * created by other users are listed only if {@link Builder#setAllUsers(boolean)} is set.
+ *
+ * <p>A poll that fails with a retryable error, once the retries of the client are exhausted, is
+ * retried on the next poll. Other errors, such as a missing permission, fail the futures of the
+ * jobs polled.
+ *
+ * <p>Example of waiting for the completion of a batch of load jobs:
+ *
+ * <pre>{@code
+ * try (JobWatcher watcher = JobWatcher.newBuilder(bigquery).build()) {
+ *   List<ApiFuture<Job>> completions = new ArrayList<>();
+ *   for (JobInfo jobInfo : jobInfos) {
+ *     completions.add(watcher.watch(bigquery.create(jobInfo)));
+ *   }
+ *   for (Job completedJob : ApiFutures.allAsList(completions).get()) {
+ *     // check completedJob.getStatus().getError()
+ *   }
+ * }
+ * }</pre>
+ */
+@BetaApi
+public final class JobWatcher implements AutoCloseable {
+
+  private static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(5L);
+  private static final long LIST_PAGE_SIZE = 1000L;
+
+  private final BigQuery bigquery;
+  private final String projectId;
+  private final long pollIntervalMillis;
+  private final boolean allUsers;
+  private final ScheduledExecutorService executor;
+  private final Map<JobId, Watch> watches = new ConcurrentHashMap<>();
+  private boolean scheduled;
+  private boolean closed;
+
+  /** A watched job, and the future completed when the job is done. */
+  private static final class Watch {
+
+    final JobId jobId;
+    final SettableApiFuture<Job> future = SettableApiFuture.create();
+    volatile Long creationTime;
+
+    Watch(JobId jobId, Long creationTime) {
+      this.jobId = jobId;
+      this.creationTime = creationTime;
+    }
+  }
+
+  /** A builder for {@code JobWatcher} objects. */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+    private boolean allUsers;
+    private ScheduledExecutorService executor;
+
+    private Builder(BigQuery bigquery) {
+      this.bigquery = checkNotNull(bigquery);
+    }
+
+    /** Sets the interval between two polls of the state of the watched jobs. */
+    public Builder setPollInterval(Duration pollInterval) {
+      checkArgument(!pollInterval.isNegative() && !pollInterval.isZero(), "Invalid poll interval");
+      this.pollInterval = pollInterval;
+      return this;
+    }
+
+    /**
+     * Sets whether the jobs of all the users of the project are listed. This must be set to watch
+     * jobs created by other users, and requires the project owner role.
+     */
+    public Builder setAllUsers(boolean allUsers) {
+      this.allUsers = allUsers;
+      return this;
+    }
+
+    /**
+     * Sets the executor used to poll the state of the watched jobs. If not set, the async executor
+     * of the client is used.
+     *
+     * @see BigQueryOptions#getAsyncExecutor()
+     */
+    public Builder setExecutor(ScheduledExecutorService executor) {
+      this.executor = checkNotNull(executor);
+      return this;
+    }
+
+    /** Creates a {@code JobWatcher} object. */
+    public JobWatcher build() {
+      return new JobWatcher(this);
+    }
+  }
+
+  private JobWatcher(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.projectId = bigquery.getOptions().getProjectId();
+    this.pollIntervalMillis = builder.pollInterval.toMillis();
+    this.allUsers = builder.allUsers;
+    this.executor =
+        builder.executor != null ? builder.executor : bigquery.getOptions().getAsyncExecutor();
+  }
+
+  /** Returns a builder for a {@code JobWatcher} that polls jobs with {@code bigquery}. */
+  public static Builder newBuilder(BigQuery bigquery) {
+    return new Builder(bigquery);
+  }
+
+  /**
+   * Watches a job. The returned future completes with the job once it is done, or with {@code null}
+   * if the job does not exist. The completed job has its identity, configuration and status set.
+   * Watching a job that is already watched returns the same future. Cancelling the returned future
+   * stops watching the job.
+   */
+  public ApiFuture<Job> watch(JobId jobId) {
+    return watch(jobId, null);
+  }
+
+  /**
+   * Watches a job. The returned future completes with the job once it is done. If {@code job} is
+   * already done the future is completed immediately. Cancelling the returned future stops watching
+   * the job.
+   */
+  public ApiFuture<Job> watch(Job job) {
+    if (job.getStatus() != null && JobStatus.State.DONE.equals(job.getStatus().getState())) {
+      SettableApiFuture<Job> future = SettableApiFuture.create();
+      future.set(job);
+      return future;
+    }
+    Long creationTime = job.getStatistics() != null ? job.getStatistics().getCreationTime() : null;
+    return watch(job.getJobId(), creationTime);
+  }
+
+  private ApiFuture<Job> watch(JobId jobId, Long creationTime) {
+    final JobId key = key(jobId);
+    final Watch watch = new Watch(jobId, creationTime);
+    synchronized (this) {
+      checkState(!closed, "JobWatcher is closed");
+      Watch previous = watches.get(key);
+      if (previous != null) {
+        return previous.future;
+      }
+      watches.put(key, watch);
+      scheduleIfNeeded();
+    }
+    // completed watches are removed when they complete, cancelled ones are removed here
+    watch.future.addListener(
+        new Runnable() {
+          @Override
+          public void run() {
+            if (watch.future.isCancelled()) {
+              watches.remove(key, watch);
+            }
+          }
+        },
+        MoreExecutors.directExecutor());
+    return watch.future;
+  }
+
+  /** Returns the number of jobs being watched. */
+  public int getWatchedJobCount() {
+    return watches.size();
+  }
+
+  /**
+   * Stops polling. The futures of the jobs that are still watched are cancelled, but the jobs are
+   * not.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    for (Watch watch : new ArrayList<>(watches.values())) {
+      watch.future.cancel(false);
+    }
+  }
+
+  private JobId key(JobId jobId) {
+    String project = jobId.getProject() != null ? jobId.getProject() : projectId;
+    return JobId.of(project, jobId.getJob());
+  }
+
+  private synchronized void scheduleIfNeeded() {
+    if (scheduled || closed || watches.isEmpty()) {
+      return;
+    }
+    try {
+      executor.schedule(
+          new Runnable() {
+            @Override
+            public void run() {
+              try {
+                poll();
+              } finally {
+                synchronized (JobWatcher.this) {
+                  scheduled = false;
+                  scheduleIfNeeded();
+                }
+              }
+            }
+          },
+          pollIntervalMillis,
+          TimeUnit.MILLISECONDS);
+      scheduled = true;
+    } catch (RejectedExecutionException e) {
+      for (Watch watch : new ArrayList<>(watches.values())) {
+        fail(watch, e);
+      }
+    }
+  }
+
+  /** Polls the state of all the watched jobs. */
+  private void poll() {
+    List<Watch> listed = new ArrayList<>();
+    for (Watch watch : watches.values()) {
+      if (watch.creationTime == null || !projectId.equals(key(watch.jobId).getProject())) {
+        getJob(watch);
+      } else {
+        listed.add(watch);
+      }
+    }
+    if (!listed.isEmpty()) {
+      listJobs(listed);
+    }
+  }
+
+  private void getJob(Watch watch) {
+    try {
+      Job job =
+          bigquery.getJob(watch.jobId, JobOption.fields(JobField.STATUS, JobField.STATISTICS));
+      if (job == null) {
+        complete(watch, null);
+      } else if (JobStatus.State.DONE.equals(job.getStatus().getState())) {
+        complete(watch, job);
+      } else if (job.getStatistics() != null) {
+        watch.creationTime = job.getStatistics().getCreationTime();
+      }
+    } catch (RuntimeException e) {
+      if (!isTransient(e)) {
+        fail(watch, e);
+      }
+    }
+  }
+
+  /** Completes the watches of the jobs that are done with one listing of the done jobs. */
+  private void listJobs(List<Watch> listed) {
+    long minCreationTime = Long.MAX_VALUE;
+    long maxCreationTime = Long.MIN_VALUE;
+    for (Watch watch : listed) {
+      minCreationTime = Math.min(minCreationTime, watch.creationTime);
+      maxCreationTime = Math.max(maxCreationTime, watch.creationTime);
+    }
+    List<JobListOption> options = new ArrayList<>();
+    options.add(JobListOption.stateFilter(JobStatus.State.DONE));
+    options.add(JobListOption.minCreationTime(minCreationTime));
+    options.add(JobListOption.maxCreationTime(maxCreationTime));
+    options.add(JobListOption.fields(JobField.STATUS));
+    options.add(JobListOption.pageSize(LIST_PAGE_SIZE));
+    if (allUsers) {
+      options.add(JobListOption.allUsers());
+    }
+    try {
+      Set<Watch> pending = new HashSet<>(listed);
+      for (Job job : bigquery.listJobs(options.toArray(new JobListOption[0])).iterateAll()) {
+        Watch watch = watches.get(key(job.getJobId()));
+        if (watch != null && pending.remove(watch)) {
+          complete(watch, job);
+          if (pending.isEmpty()) {
+            // stop before fetching the following pages
+            break;
+          }
+        }
+      }
+    } catch (RuntimeException e) {
+      if (!isTransient(e)) {
+        for (Watch watch : listed) {
+          fail(watch, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns whether a failed poll is retried on the next poll rather than failing the watches: the
+   * client has run out of retries, but for the watcher the error is still transient.
+   */
+  private static boolean isTransient(RuntimeException e) {
+    return e instanceof BigQueryException && ((BigQueryException) e).isRetryable();
+  }
+
+  // the watch is removed before its future completes, waiters are released before listeners run
+  private void complete(Watch watch, Job job) {
+    watches.remove(key(watch.jobId), watch);
+    watch.future.set(job);
+  }
+
+  private void fail(Watch watch, Throwable throwable) {
+    watches.remove(key(watch.jobId), watch);
+    watch.future.setException(throwable);
+  }
+}
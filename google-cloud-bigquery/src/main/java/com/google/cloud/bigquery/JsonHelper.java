@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.client.json.JsonFactory;
+
+final class JsonHelper {
+
+  private JsonHelper() {}
+
+  /**
+   * Returns the JSON factory used to serialize API model objects outside of a request, the same
+   * Jackson factory {@code HttpBigQueryRpc} builds its client with.
+   */
+  @SuppressWarnings("deprecation")
+  static JsonFactory getJsonFactory() {
+    return com.google.api.client.json.jackson2.JacksonFactory.getDefaultInstance();
+  }
+}
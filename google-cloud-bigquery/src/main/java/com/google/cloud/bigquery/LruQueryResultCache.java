@@ -0,0 +1,327 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.BetaApi;
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.StringEnumValue;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.threeten.bp.Duration;
+
+/**
+ * A {@link QueryResultCache} that keeps the most recently used results in memory, up to a number of
+ * bytes, and optionally spills the results evicted from memory to files in a directory, up to
+ * another number of bytes. Results expire after a time to live, even if their referenced tables
+ * were not modified.
+ *
+ * <p>Example of caching up to 64 MiB of results in memory for 10 minutes:
+ *
+ * <pre>{@code
+ * QueryResultCache cache =
+ *     LruQueryResultCache.newBuilder()
+ *         .setMaxBytes(64L << 20)
+ *         .setTimeToLive(Duration.ofMinutes(10L))
+ *         .build();
+ * BigQuery bigquery = BigQueryOptions.newBuilder().setQueryResultCache(cache).build().getService();
+ * }</pre>
+ */
+@BetaApi
+public final class LruQueryResultCache implements QueryResultCache {
+
+  private static final String SPILL_FILE_SUFFIX = ".bqresult";
+  // the classes of the serialized form of CachedQueryResult
+  private static final ImmutableSet<String> SPILLED_CLASSES =
+      ImmutableSet.of(
+          CachedQueryResult.class.getName(),
+          Schema.class.getName(),
+          FieldList.class.getName(),
+          FieldList.class.getName() + "$CaseInsensitiveMap",
+          Field.class.getName(),
+          LegacySQLTypeName.class.getName(),
+          StandardSQLTypeName.class.getName(),
+          StringEnumValue.class.getName(),
+          PolicyTags.class.getName(),
+          "com.google.cloud.bigquery.AutoValue_PolicyTags",
+          FieldValueList.class.getName(),
+          FieldValue.class.getName(),
+          FieldValue.Attribute.class.getName(),
+          "[L" + FieldValue.class.getName() + ";",
+          TableId.class.getName(),
+          "com.google.common.collect.ImmutableList$SerializedForm",
+          "com.google.common.collect.ImmutableMap$SerializedForm",
+          "com.google.common.collect.ImmutableBiMap$SerializedForm",
+          "[Ljava.lang.Object;",
+          Enum.class.getName(),
+          Number.class.getName(),
+          Integer.class.getName(),
+          Long.class.getName(),
+          ArrayList.class.getName(),
+          "java.util.Arrays$ArrayList",
+          HashMap.class.getName());
+
+  private final long maxBytes;
+  private final long timeToLiveMillis;
+  private final Path spillDirectory;
+  private final long maxSpillBytes;
+  private final ApiClock clock;
+  // access ordered, the eldest entries are the least recently used
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Long> spilledEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes;
+  private long spilledBytes;
+
+  /**
+   * Reads spilled results, and only them: the spill directory may be writable by others, and
+   * deserializing arbitrary classes can run arbitrary code.
+   */
+  private static final class SpillInputStream extends ObjectInputStream {
+
+    SpillInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (!SPILLED_CLASSES.contains(desc.getName())) {
+        throw new InvalidClassException(desc.getName(), "Unexpected class in spilled results");
+      }
+      return super.resolveClass(desc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+      throw new InvalidClassException("Unexpected proxy class in spilled results");
+    }
+  }
+
+  private static final class Entry {
+
+    final CachedQueryResult result;
+    final long createdMillis;
+
+    Entry(CachedQueryResult result, long createdMillis) {
+      this.result = result;
+      this.createdMillis = createdMillis;
+    }
+  }
+
+  /** A builder for {@code LruQueryResultCache} objects. */
+  public static final class Builder {
+
+    private long maxBytes = 32L << 20;
+    private Duration timeToLive = Duration.ofHours(1L);
+    private Path spillDirectory;
+    private long maxSpillBytes;
+    private ApiClock clock = CurrentMillisClock.getDefaultClock();
+
+    private Builder() {}
+
+    /** Sets the maximum size of the results kept in memory. The default is 32 MiB. */
+    public Builder setMaxBytes(long maxBytes) {
+      checkArgument(maxBytes > 0, "The maximum size must be positive");
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    /** Sets the time after which cached results expire. The default is one hour. */
+    public Builder setTimeToLive(Duration timeToLive) {
+      checkArgument(!timeToLive.isNegative(), "The time to live must not be negative");
+      this.timeToLive = timeToLive;
+      return this;
+    }
+
+    /**
+     * Sets a directory where the results evicted from memory are written, up to {@code
+     * maxSpillBytes}. Spilled results are read back and moved to memory when they are used again.
+     * The directory must exist and should not be shared with other caches.
+     */
+    public Builder setSpillDirectory(Path spillDirectory, long maxSpillBytes) {
+      checkArgument(Files.isDirectory(spillDirectory), "%s is not a directory", spillDirectory);
+      checkArgument(maxSpillBytes > 0, "The maximum spill size must be positive");
+      this.spillDirectory = spillDirectory;
+      this.maxSpillBytes = maxSpillBytes;
+      return this;
+    }
+
+    /** Sets the clock used to expire results. */
+    public Builder setClock(ApiClock clock) {
+      this.clock = checkNotNull(clock);
+      return this;
+    }
+
+    /** Creates a {@code LruQueryResultCache} object. */
+    public LruQueryResultCache build() {
+      return new LruQueryResultCache(this);
+    }
+  }
+
+  private LruQueryResultCache(Builder builder) {
+    this.maxBytes = builder.maxBytes;
+    this.timeToLiveMillis = builder.timeToLive.toMillis();
+    this.spillDirectory = builder.spillDirectory;
+    this.maxSpillBytes = builder.maxSpillBytes;
+    this.clock = builder.clock;
+  }
+
+  /** Returns a builder for {@code LruQueryResultCache} objects. */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public synchronized CachedQueryResult get(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null && spilledEntries.containsKey(key)) {
+      entry = unspill(key);
+      if (entry != null) {
+        add(key, entry);
+      }
+    }
+    if (entry == null) {
+      return null;
+    }
+    if (clock.millisTime() - entry.createdMillis > timeToLiveMillis) {
+      invalidate(key);
+      return null;
+    }
+    return entry.result;
+  }
+
+  @Override
+  public synchronized void put(String key, CachedQueryResult result) {
+    invalidate(key);
+    if (result.getSizeBytes() <= maxBytes) {
+      add(key, new Entry(result, clock.millisTime()));
+    }
+  }
+
+  @Override
+  public synchronized void invalidate(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      bytes -= entry.result.getSizeBytes();
+    }
+    Long size = spilledEntries.remove(key);
+    if (size != null) {
+      spilledBytes -= size;
+      deleteSpillFile(key);
+    }
+  }
+
+  /** Returns the size of the results kept in memory. */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /** Returns the size of the files of the results spilled to disk. */
+  public synchronized long getSpilledBytes() {
+    return spilledBytes;
+  }
+
+  private void add(String key, Entry entry) {
+    entries.put(key, entry);
+    bytes += entry.result.getSizeBytes();
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (bytes > maxBytes) {
+      Map.Entry<String, Entry> evicted = eldest.next();
+      eldest.remove();
+      bytes -= evicted.getValue().result.getSizeBytes();
+      if (spillDirectory != null) {
+        spill(evicted.getKey(), evicted.getValue());
+      }
+    }
+  }
+
+  private Path spillFile(String key) {
+    return spillDirectory.resolve(
+        Hashing.sha256().hashString(key, Charsets.UTF_8).toString() + SPILL_FILE_SUFFIX);
+  }
+
+  private void spill(String key, Entry entry) {
+    Path file = spillFile(key);
+    try (ObjectOutputStream out = new ObjectOutputStream(Files.newOutputStream(file))) {
+      out.writeUTF(key);
+      out.writeLong(entry.createdMillis);
+      out.writeObject(entry.result);
+    } catch (IOException e) {
+      // the results are dropped from the cache
+      deleteSpillFile(key);
+      return;
+    }
+    long size;
+    try {
+      size = Files.size(file);
+    } catch (IOException e) {
+      deleteSpillFile(key);
+      return;
+    }
+    spilledEntries.put(key, size);
+    spilledBytes += size;
+    Iterator<Map.Entry<String, Long>> eldest = spilledEntries.entrySet().iterator();
+    while (spilledBytes > maxSpillBytes) {
+      Map.Entry<String, Long> evicted = eldest.next();
+      eldest.remove();
+      spilledBytes -= evicted.getValue();
+      deleteSpillFile(evicted.getKey());
+    }
+  }
+
+  /** Reads spilled results, and removes them from the disk. */
+  private Entry unspill(String key) {
+    spilledBytes -= spilledEntries.remove(key);
+    Path file = spillFile(key);
+    try (ObjectInputStream in = new SpillInputStream(Files.newInputStream(file))) {
+      if (!key.equals(in.readUTF())) {
+        return null;
+      }
+      long createdMillis = in.readLong();
+      return new Entry((CachedQueryResult) in.readObject(), createdMillis);
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      return null;
+    } finally {
+      deleteSpillFile(key);
+    }
+  }
+
+  private void deleteSpillFile(String key) {
+    try {
+      Files.deleteIfExists(spillFile(key));
+    } catch (IOException e) {
+      // the file is overwritten if the key is spilled again
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.BetaApi;
+import com.google.cloud.bigquery.JobStatistics.LoadStatistics;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/**
+ * The result of a parallel load: the load jobs that loaded the regions of the input into the
+ * staging table, the copy job that copied the staging table to the destination table, and the
+ * statistics of the load jobs summed up.
+ *
+ * @see BigQuery#parallelLoad(List, WriteChannelConfiguration, int)
+ */
+@BetaApi
+public final class ParallelLoadResult {
+
+  private final List<Job> loadJobs;
+  private final Job copyJob;
+  private final LoadStatistics statistics;
+
+  ParallelLoadResult(List<Job> loadJobs, Job copyJob) {
+    this.loadJobs = ImmutableList.copyOf(loadJobs);
+    this.copyJob = copyJob;
+    this.statistics = sum(loadJobs);
+  }
+
+  /** Returns the completed load jobs, one per region of the input. */
+  public List<Job> getLoadJobs() {
+    return loadJobs;
+  }
+
+  /** Returns the completed job that copied the staging table to the destination table. */
+  public Job getCopyJob() {
+    return copyJob;
+  }
+
+  /**
+   * Returns the statistics of the load jobs: the input and output sizes and the bad records are
+   * summed up, and the times span from the first job created to the last job ended.
+   */
+  public LoadStatistics getStatistics() {
+    return statistics;
+  }
+
+  private static LoadStatistics sum(List<Job> loadJobs) {
+    Long inputBytes = null;
+    Long inputFiles = null;
+    Long outputBytes = null;
+    Long outputRows = null;
+    Long badRecords = null;
+    Long creationTime = null;
+    Long startTime = null;
+    Long endTime = null;
+    for (Job job : loadJobs) {
+      LoadStatistics statistics = job.getStatistics();
+      if (statistics == null) {
+        continue;
+      }
+      inputBytes = sum(inputBytes, statistics.getInputBytes());
+      inputFiles = sum(inputFiles, statistics.getInputFiles());
+      outputBytes = sum(outputBytes, statistics.getOutputBytes());
+      outputRows = sum(outputRows, statistics.getOutputRows());
+      badRecords = sum(badRecords, statistics.getBadRecords());
+      creationTime = min(creationTime, statistics.getCreationTime());
+      startTime = min(startTime, statistics.getStartTime());
+      endTime = max(endTime, statistics.getEndTime());
+    }
+    return LoadStatistics.newBuilder()
+        .setInputBytes(inputBytes)
+        .setInputFiles(inputFiles)
+        .setOutputBytes(outputBytes)
+        .setOutputRows(outputRows)
+        .setBadRecords(badRecords)
+        .setCreationTimestamp(creationTime)
+        .setStartTime(startTime)
+        .setEndTime(endTime)
+        .build();
+  }
+
+  private static Long sum(Long total, Long value) {
+    if (value == null) {
+      return total;
+    }
+    return total == null ? value : Long.valueOf(total + value);
+  }
+
+  private static Long min(Long min, Long value) {
+    if (value == null) {
+      return min;
+    }
+    return min == null ? value : Long.valueOf(Math.min(min, value));
+  }
+
+  private static Long max(Long max, Long value) {
+    if (value == null) {
+      return max;
+    }
+    return max == null ? value : Long.valueOf(Math.max(max, value));
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("loadJobs", loadJobs.size())
+        .add("copyJob", copyJob.getJobId())
+        .add("statistics", statistics)
+        .toString();
+  }
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
+
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.bigquery.JobInfo.CreateDisposition;
+import com.google.cloud.bigquery.JobInfo.WriteDisposition;
+import com.google.cloud.bigquery.JobStatistics.LoadStatistics;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads local files into a table with several concurrent resumable upload sessions.
+ *
+ * <p>The files are split into regions, one load job each: by file, or, for newline-delimited JSON
+ * and for CSV without quoted newlines, also at record boundaries within the files, so that a few
+ * large files are loaded by as many sessions as requested. Regions are read from the files as they
+ * are sent, so memory does not grow with their size. The load jobs append to a staging table, which
+ * is copied to the destination table once all of them succeeded, and then deleted: the destination
+ * table is modified only if the whole input is loaded. The maximum number of bad records of the
+ * configuration applies to each load job, and to the bad records of all the jobs before the copy.
+ * If the caller is interrupted, the load jobs are cancelled before the staging table is deleted.
+ */
+final class ParallelTableLoader {
+
+  // regions are not made smaller than this, since each one is a load job
+  static final long MIN_REGION_SIZE = 64L * 1024 * 1024;
+
+  private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+  private final BigQuery bigquery;
+  private final BigQueryOptions options;
+  private final WriteChannelConfiguration configuration;
+  private final TableId stagingTable;
+
+  private ParallelTableLoader(BigQuery bigquery, WriteChannelConfiguration configuration) {
+    this.bigquery = bigquery;
+    this.options = bigquery.getOptions();
+    this.configuration = configuration.setProjectId(options.getProjectId());
+    TableId destination = this.configuration.getDestinationTable();
+    // the staging table is named after the destination table, without its partition decorator
+    String table = destination.getTable();
+    int decorator = table.indexOf('$');
+    this.stagingTable =
+        TableId.of(
+            destination.getProject(),
+            destination.getDataset(),
+            (decorator >= 0 ? table.substring(0, decorator) : table)
+                + "_staging_"
+                + UUID.randomUUID().toString().replace("-", ""));
+  }
+
+  /**
+   * Loads the files into the destination table of the configuration, with up to {@code parallelism}
+   * concurrent upload sessions.
+   */
+  static ParallelLoadResult load(
+      BigQuery bigquery,
+      List<Path> paths,
+      WriteChannelConfiguration configuration,
+      int parallelism,
+      long minRegionSize)
+      throws IOException, InterruptedException {
+    checkArgument(parallelism > 0, "Parallelism must be positive");
+    checkArgument(!paths.isEmpty(), "No file to load");
+    return new ParallelTableLoader(bigquery, configuration)
+        .load(split(paths, configuration, parallelism, minRegionSize), parallelism);
+  }
+
+  private ParallelLoadResult load(List<Region> regions, int parallelism)
+      throws IOException, InterruptedException {
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            Math.min(parallelism, regions.size()),
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("bigquery-parallel-load-%d")
+                .build());
+    // the load jobs created so far, cancelled if the caller is interrupted
+    final List<Job> createdJobs = Collections.synchronizedList(new ArrayList<Job>());
+    try {
+      List<Future<Job>> uploads = new ArrayList<>(regions.size());
+      for (final Region region : regions) {
+        uploads.add(
+            executor.submit(
+                new Callable<Job>() {
+                  @Override
+                  public Job call() throws IOException {
+                    Job loadJob = upload(region);
+                    createdJobs.add(loadJob);
+                    return loadJob;
+                  }
+                }));
+      }
+      List<Job> loadJobs;
+      try {
+        loadJobs = awaitLoadJobs(uploads);
+      } catch (InterruptedException e) {
+        cancelLoadJobs(executor, createdJobs);
+        throw e;
+      }
+      checkBadRecords(loadJobs);
+      Job copyJob =
+          bigquery.create(
+              JobInfo.of(
+                  JobId.of(),
+                  CopyJobConfiguration.newBuilder(configuration.getDestinationTable(), stagingTable)
+                      .setCreateDisposition(configuration.getCreateDisposition())
+                      .setWriteDisposition(
+                          MoreObjects.firstNonNull(
+                              configuration.getWriteDisposition(), WriteDisposition.WRITE_APPEND))
+                      .setDestinationEncryptionConfiguration(
+                          configuration.getDestinationEncryptionConfiguration())
+                      .build()));
+      return new ParallelLoadResult(loadJobs, waitFor(copyJob));
+    } finally {
+      executor.shutdownNow();
+      try {
+        bigquery.delete(stagingTable);
+      } catch (BigQueryException e) {
+        // the destination table does not depend on the staging table anymore
+      }
+    }
+  }
+
+  /** Uploads a region to a new load job that appends it to the staging table. */
+  private Job upload(Region region) throws IOException {
+    WriteChannelConfiguration.Builder regionConfiguration =
+        configuration
+            .toBuilder()
+            .setDestinationTable(stagingTable)
+            .setCreateDisposition(CreateDisposition.CREATE_IF_NEEDED)
+            .setWriteDisposition(WriteDisposition.WRITE_APPEND);
+    CsvOptions csvOptions = configuration.getCsvOptions();
+    if (region.offset > 0 && csvOptions != null && csvOptions.getSkipLeadingRows() != null) {
+      // only the region at the start of a file has the leading rows
+      regionConfiguration.setFormatOptions(csvOptions.toBuilder().setSkipLeadingRows(0).build());
+    }
+    return TableDataFileUpload.upload(
+        options,
+        JobId.of().setProjectId(options.getProjectId()),
+        regionConfiguration.build(),
+        region.path,
+        region.offset,
+        region.length,
+        TableDataFileUpload.CHUNK_SIZE);
+  }
+
+  /**
+   * Waits for the uploads and for their load jobs to complete. If one fails, the uploads not
+   * started yet are cancelled, the others and their jobs are still awaited so that nothing writes
+   * to the staging table once it is deleted, and the first failure is thrown.
+   */
+  private List<Job> awaitLoadJobs(List<Future<Job>> uploads)
+      throws IOException, InterruptedException {
+    List<Job> loadJobs = new ArrayList<>(uploads.size());
+    Throwable failure = null;
+    try {
+      for (Future<Job> upload : uploads) {
+        try {
+          loadJobs.add(waitFor(upload.get()));
+        } catch (CancellationException e) {
+          // not started, since another upload or load job failed
+        } catch (ExecutionException | BigQueryException e) {
+          if (failure == null) {
+            failure = e instanceof ExecutionException ? e.getCause() : e;
+            for (Future<Job> other : uploads) {
+              other.cancel(false);
+            }
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      for (Future<Job> upload : uploads) {
+        upload.cancel(true);
+      }
+      throw e;
+    }
+    if (failure != null) {
+      Throwables.propagateIfPossible(failure, IOException.class);
+      throw new BigQueryException(BaseServiceException.UNKNOWN_CODE, failure.getMessage(), failure);
+    }
+    return loadJobs;
+  }
+
+  /**
+   * Cancels the load jobs once the uploads in progress stopped, so that no load job recreates the
+   * staging table after it is deleted.
+   */
+  private void cancelLoadJobs(ExecutorService executor, List<Job> createdJobs) {
+    executor.shutdownNow();
+    boolean terminated = false;
+    while (!terminated) {
+      try {
+        terminated = executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        // the caller is already interrupted, uploads still have to stop before the table is deleted
+      }
+    }
+    synchronized (createdJobs) {
+      for (Job loadJob : createdJobs) {
+        try {
+          bigquery.cancel(loadJob.getJobId());
+        } catch (BigQueryException e) {
+          // the job may have completed or failed in the meantime
+        }
+      }
+    }
+  }
+
+  /**
+   * Throws a {@link BigQueryException} if the load jobs found more bad records altogether than the
+   * configuration allows, since each load job only checks the bad records of its region.
+   */
+  private void checkBadRecords(List<Job> loadJobs) {
+    long maxBadRecords = MoreObjects.firstNonNull(configuration.getMaxBadRecords(), 0);
+    long badRecords = 0;
+    for (Job loadJob : loadJobs) {
+      LoadStatistics statistics = loadJob.getStatistics();
+      if (statistics != null && statistics.getBadRecords() != null) {
+        badRecords += statistics.getBadRecords();
+      }
+    }
+    if (badRecords > maxBadRecords) {
+      String message =
+          "The load jobs found "
+              + badRecords
+              + " bad records, more than the maximum of "
+              + maxBadRecords;
+      throw new BigQueryException(
+          BaseServiceException.UNKNOWN_CODE,
+          message,
+          new BigQueryError("invalid", null, message));
+    }
+  }
+
+  /** Waits for a job to complete, and throws a {@link BigQueryException} if it failed. */
+  private static Job waitFor(Job job) throws InterruptedException {
+    Job completedJob = job.waitFor();
+    if (completedJob == null) {
+      throw new BigQueryException(HTTP_NOT_FOUND, "Job " + job.getJobId().getJob() + " not found");
+    }
+    return completedJob;
+  }
+
+  /**
+   * Splits the files into regions. Files are split at record boundaries only if the format allows
+   * it and there are fewer files than {@code parallelism}, into regions of about {@code 1 /
+   * parallelism} of the total size and at least {@code minRegionSize} bytes.
+   */
+  static List<Region> split(
+      List<Path> paths,
+      WriteChannelConfiguration configuration,
+      int parallelism,
+      long minRegionSize)
+      throws IOException {
+    long regionSize = Long.MAX_VALUE;
+    if (paths.size() < parallelism && isSplittable(configuration)) {
+      long totalSize = 0;
+      for (Path path : paths) {
+        totalSize += Files.size(path);
+      }
+      regionSize = Math.max(minRegionSize, (totalSize + parallelism - 1) / parallelism);
+    }
+    List<Region> regions = new ArrayList<>();
+    for (Path path : paths) {
+      try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+        long size = file.size();
+        long start = 0;
+        do {
+          long end = size - start > regionSize ? nextRecord(file, start + regionSize) : size;
+          regions.add(new Region(path, start, end - start));
+          start = end;
+        } while (start < size);
+      }
+    }
+    return regions;
+  }
+
+  /** Returns whether records never contain newlines, so that a file can be split at newlines. */
+  private static boolean isSplittable(WriteChannelConfiguration configuration) {
+    if (FormatOptions.JSON.equals(configuration.getFormat())) {
+      return true;
+    }
+    CsvOptions csvOptions = configuration.getCsvOptions();
+    return FormatOptions.CSV.equals(configuration.getFormat())
+        && (csvOptions == null || !Boolean.TRUE.equals(csvOptions.allowQuotedNewLines()));
+  }
+
+  /**
+   * Returns the offset following the first newline at or after {@code position - 1}, or the size of
+   * the file if there is none.
+   */
+  private static long nextRecord(FileChannel file, long position) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+    long offset = position - 1;
+    while (true) {
+      buffer.clear();
+      int read = file.read(buffer, offset);
+      if (read < 0) {
+        return file.size();
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return offset + i + 1;
+        }
+      }
+      offset += read;
+    }
+  }
+
+  /** A region of a file, loaded by its own job. */
+  static final class Region {
+
+    final Path path;
+    final long offset;
+    final long length;
+
+    Region(Path path, long offset, long length) {
+      this.path = path;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("path", path)
+          .add("offset", offset)
+          .add("length", length)
+          .toString();
+    }
+  }
+}
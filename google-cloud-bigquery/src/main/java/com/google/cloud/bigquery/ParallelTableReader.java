@@ -0,0 +1,310 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.BetaApi;
+import com.google.api.gax.paging.Page;
+import com.google.cloud.bigquery.BigQuery.TableDataListOption;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.primitives.Ints;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Reads the rows of a table with several concurrent {@code tabledata.list} cursors.
+ *
+ * <p>The rows of the table, {@code [0, totalRows)}, are split into contiguous ranges, one per
+ * reader, and each range is listed independently using start indexes. Ranges can be consumed as
+ * independent iterators, for instance one per consumer thread, or as a single merged iterator that
+ * returns rows from all ranges as soon as they are fetched. Each iteration reads its ranges on
+ * threads of its own, one per range, so that iterations never wait for each other; they are stopped
+ * when the iteration is consumed to the end or closed, or when the reader is closed.
+ *
+ * <p>The table must not be modified while it is being read, otherwise rows can be skipped or read
+ * more than once.
+ *
+ * <p>Example of reading a table with 8 concurrent cursors:
+ *
+ * <pre>{@code
+ * try (ParallelTableReader reader = bigquery.parallelRead(tableId, schema, 8)) {
+ *   try (PrefetchingRowIterator rows = reader.iterateAll(16)) {
+ *     while (rows.hasNext()) {
+ *       FieldValueList row = rows.next();
+ *       // do something with the row
+ *     }
+ *   }
+ * }
+ * }</pre>
+ *
+ * @see BigQuery#parallelRead(TableId, Schema, int, TableDataListOption...)
+ */
+@BetaApi
+public final class ParallelTableReader implements AutoCloseable {
+
+  private final BigQuery bigquery;
+  private final TableId tableId;
+  private final Schema schema;
+  private final List<TableDataListOption> options;
+  private final long pageSize;
+  private final long totalRows;
+  private final List<RangePage> firstPages;
+  private final List<PrefetchingRowIterator> iterators = new ArrayList<>();
+  private boolean closed;
+
+  private ParallelTableReader(
+      BigQuery bigquery,
+      TableId tableId,
+      Schema schema,
+      int parallelism,
+      TableDataListOption... options) {
+    checkArgument(parallelism > 0, "Parallelism must be positive");
+    this.bigquery = checkNotNull(bigquery);
+    this.tableId = checkNotNull(tableId);
+    this.schema = schema;
+    long pageSize = Long.MAX_VALUE;
+    ImmutableList.Builder<TableDataListOption> otherOptions = ImmutableList.builder();
+    for (TableDataListOption option : options) {
+      BigQueryRpc.Option rpcOption = option.getRpcOption();
+      checkArgument(
+          rpcOption != BigQueryRpc.Option.START_INDEX && rpcOption != BigQueryRpc.Option.PAGE_TOKEN,
+          "Parallel reads do not support the %s option",
+          rpcOption.value());
+      if (rpcOption == BigQueryRpc.Option.MAX_RESULTS) {
+        pageSize = Math.max(1, (Long) option.getValue());
+      } else {
+        otherOptions.add(option);
+      }
+    }
+    this.options = otherOptions.build();
+    this.pageSize = pageSize;
+
+    // the first page of the first range also tells how many rows the table has
+    TableResult first = list(0, pageSize);
+    this.totalRows = first.getTotalRows();
+    int rangeCount = (int) Math.max(1, Math.min(parallelism, totalRows));
+    long rangeSize = (totalRows + rangeCount - 1) / rangeCount;
+    ImmutableList.Builder<RangePage> firstPages = ImmutableList.builder();
+    firstPages.add(new RangePage(0, Math.min(rangeSize, totalRows), first.getValues()));
+    for (int i = 1; i < rangeCount; i++) {
+      long start = Math.min(i * rangeSize, totalRows);
+      firstPages.add(new RangePage(start, Math.min(start + rangeSize, totalRows), null));
+    }
+    this.firstPages = firstPages.build();
+  }
+
+  static ParallelTableReader open(
+      BigQuery bigquery,
+      TableId tableId,
+      Schema schema,
+      int parallelism,
+      TableDataListOption... options) {
+    return new ParallelTableReader(bigquery, tableId, schema, parallelism, options);
+  }
+
+  /** Returns the number of rows in the table when the reader was opened. */
+  public long getTotalRows() {
+    return totalRows;
+  }
+
+  /**
+   * Returns the number of ranges the table was split into. This is the requested parallelism,
+   * unless the table has fewer rows.
+   */
+  public int getRangeCount() {
+    return firstPages.size();
+  }
+
+  /** Returns the index of the first row in the range at the provided index. */
+  public long getRangeStart(int range) {
+    checkElementIndex(range, firstPages.size());
+    return firstPages.get(range).start;
+  }
+
+  /** Returns the index following the last row in the range at the provided index. */
+  public long getRangeEnd(int range) {
+    checkElementIndex(range, firstPages.size());
+    return firstPages.get(range).end;
+  }
+
+  /**
+   * Returns one iterator per range. All ranges are fetched concurrently, each iterator buffering up
+   * to {@code depth} pages ahead of its consumer. Iterators can be consumed by different threads;
+   * those not consumed to the end must be closed, or the reader closed, to stop fetching.
+   */
+  public synchronized List<PrefetchingRowIterator> iterateRanges(int depth) {
+    checkState(!closed, "Reader is closed");
+    ImmutableList.Builder<PrefetchingRowIterator> rangeIterators = ImmutableList.builder();
+    for (RangePage firstPage : firstPages) {
+      PrefetchingRowIterator iterator =
+          PrefetchingRowIterator.start(ImmutableList.of(firstPage.asCallable()), depth, null);
+      iterators.add(iterator);
+      rangeIterators.add(iterator);
+    }
+    return rangeIterators.build();
+  }
+
+  /**
+   * Returns an iterator over the rows of all ranges, which are fetched concurrently. Rows are
+   * returned in the order pages are fetched, so rows from different ranges are interleaved. Up to
+   * {@code depth} pages are buffered ahead of the consumer.
+   */
+  public synchronized PrefetchingRowIterator iterateAll(int depth) {
+    checkState(!closed, "Reader is closed");
+    List<Callable<RangePage>> sources = new ArrayList<>(firstPages.size());
+    for (RangePage firstPage : firstPages) {
+      sources.add(firstPage.asCallable());
+    }
+    PrefetchingRowIterator iterator = PrefetchingRowIterator.start(sources, depth, null);
+    iterators.add(iterator);
+    return iterator;
+  }
+
+  /** Stops all the iterators returned by this reader. */
+  @Override
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (PrefetchingRowIterator iterator : iterators) {
+      iterator.close();
+    }
+    iterators.clear();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("tableId", tableId)
+        .add("totalRows", totalRows)
+        .add("ranges", firstPages.size())
+        .toString();
+  }
+
+  private TableResult list(long startIndex, long maxResults) {
+    List<TableDataListOption> pageOptions = new ArrayList<>(options);
+    pageOptions.add(TableDataListOption.startIndex(startIndex));
+    if (maxResults != Long.MAX_VALUE) {
+      pageOptions.add(TableDataListOption.pageSize(maxResults));
+    }
+    return bigquery.listTableData(
+        tableId, schema, pageOptions.toArray(new TableDataListOption[pageOptions.size()]));
+  }
+
+  /**
+   * A page of the range {@code [start, end)}. Pages are requested by start index, rather than by
+   * page token, so that no page goes past the end of its range.
+   */
+  private class RangePage implements Page<FieldValueList> {
+
+    private final long start;
+    private final long end;
+    private List<FieldValueList> values;
+
+    RangePage(long start, long end, Iterable<FieldValueList> values) {
+      this.start = start;
+      this.end = end;
+      this.values = values != null ? limit(values) : null;
+    }
+
+    private List<FieldValueList> limit(Iterable<FieldValueList> values) {
+      return ImmutableList.copyOf(
+          Iterables.limit(values, Ints.saturatedCast(Math.min(end - start, pageSize))));
+    }
+
+    Callable<RangePage> asCallable() {
+      return new Callable<RangePage>() {
+        @Override
+        public RangePage call() {
+          return fetched();
+        }
+      };
+    }
+
+    /** Returns this page, fetching its rows if needed. */
+    synchronized RangePage fetched() {
+      if (values == null) {
+        values =
+            start < end
+                ? limit(list(start, Math.min(end - start, pageSize)).getValues())
+                : ImmutableList.<FieldValueList>of();
+      }
+      return this;
+    }
+
+    private long nextStart() {
+      return start + values.size();
+    }
+
+    @Override
+    public boolean hasNextPage() {
+      // an empty page means the table has fewer rows than expected
+      return !fetched().values.isEmpty() && nextStart() < end;
+    }
+
+    @Override
+    public String getNextPageToken() {
+      return hasNextPage() ? String.valueOf(nextStart()) : null;
+    }
+
+    @Override
+    public RangePage getNextPage() {
+      return hasNextPage() ? new RangePage(nextStart(), end, null).fetched() : null;
+    }
+
+    @Override
+    public Iterable<FieldValueList> iterateAll() {
+      return new Iterable<FieldValueList>() {
+        @Override
+        public Iterator<FieldValueList> iterator() {
+          return new AbstractIterator<FieldValueList>() {
+            private RangePage page = fetched();
+            private Iterator<FieldValueList> current = page.values.iterator();
+
+            @Override
+            protected FieldValueList computeNext() {
+              while (!current.hasNext()) {
+                page = page.getNextPage();
+                if (page == null) {
+                  return endOfData();
+                }
+                current = page.values.iterator();
+              }
+              return current.next();
+            }
+          };
+        }
+      };
+    }
+
+    @Override
+    public Iterable<FieldValueList> getValues() {
+      return fetched().values;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.api.core.BetaApi;
+import com.google.api.gax.paging.Page;
+import com.google.cloud.BaseServiceException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An iterator over table rows that fetches the following pages of results in the background while
+ * the current page is being consumed.
+ *
+ * <p>At most {@code depth} pages are fetched ahead of the page being consumed, so memory usage
+ * stays bounded no matter how slowly rows are consumed. If fetching a page fails, the error is
+ * thrown by {@link #hasNext()} or {@link #next()} once all the rows fetched before the failure have
+ * been returned. Iterators that are not consumed to the end must be closed, to stop fetching pages:
+ *
+ * <pre>{@code
+ * try (PrefetchingRowIterator rows = result.iterateAllPrefetching(2)) {
+ *   while (rows.hasNext()) {
+ *     FieldValueList row = rows.next();
+ *     // do something with the row
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>Instances of this class are not thread-safe: rows must be consumed by a single thread.
+ */
+@BetaApi
+public final class PrefetchingRowIterator implements Iterator<FieldValueList>, AutoCloseable {
+
+  private static final ThreadFactory THREAD_FACTORY =
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("bigquery-prefetch-%d").build();
+  private static final Object END_OF_PAGES = new Object();
+
+  private final BlockingQueue<Object> queue;
+  private final List<Future<?>> producers;
+  private final ExecutorService ownedExecutor;
+  private int remainingProducers;
+  private Iterator<FieldValueList> current = Collections.emptyIterator();
+  private volatile boolean closed;
+
+  private PrefetchingRowIterator(
+      List<? extends Callable<? extends Page<FieldValueList>>> firstPages,
+      int depth,
+      ExecutorService executor) {
+    checkArgument(depth > 0, "Prefetch depth must be positive");
+    this.queue = new ArrayBlockingQueue<>(depth);
+    this.ownedExecutor =
+        executor == null
+            ? Executors.newFixedThreadPool(Math.max(1, firstPages.size()), THREAD_FACTORY)
+            : null;
+    ExecutorService producerExecutor = executor != null ? executor : ownedExecutor;
+    this.remainingProducers = firstPages.size();
+    List<Future<?>> futures = new ArrayList<>(firstPages.size());
+    for (Callable<? extends Page<FieldValueList>> firstPage : firstPages) {
+      futures.add(producerExecutor.submit(new Producer(firstPage)));
+    }
+    this.producers = futures;
+  }
+
+  /**
+   * Starts fetching pages from each of {@code firstPages}, following next pages until the last one.
+   * Rows from different sources are returned in the order their pages are fetched. If {@code
+   * executor} is {@code null} an executor is created and shut down when the iterator is closed.
+   */
+  static PrefetchingRowIterator start(
+      List<? extends Callable<? extends Page<FieldValueList>>> firstPages,
+      int depth,
+      ExecutorService executor) {
+    return new PrefetchingRowIterator(firstPages, depth, executor);
+  }
+
+  /** Starts fetching the pages that follow {@code page}, whose values are returned first. */
+  static PrefetchingRowIterator start(
+      final Page<FieldValueList> page, int depth, ExecutorService executor) {
+    Callable<Page<FieldValueList>> firstPage =
+        new Callable<Page<FieldValueList>>() {
+          @Override
+          public Page<FieldValueList> call() {
+            return page;
+          }
+        };
+    return start(ImmutableList.of(firstPage), depth, executor);
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!current.hasNext()) {
+      if (closed || remainingProducers == 0) {
+        close();
+        return false;
+      }
+      Object item;
+      try {
+        item = queue.take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        close();
+        throw new BigQueryException(
+            BaseServiceException.UNKNOWN_CODE, "Interrupted while waiting for a page of rows", e);
+      }
+      if (item == END_OF_PAGES) {
+        remainingProducers--;
+      } else if (item instanceof Throwable) {
+        close();
+        if (item instanceof Error) {
+          throw (Error) item;
+        }
+        throw (RuntimeException) item;
+      } else {
+        @SuppressWarnings("unchecked")
+        Iterable<FieldValueList> values = (Iterable<FieldValueList>) item;
+        current = values.iterator();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public FieldValueList next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  /**
+   * Stops fetching pages and releases the buffered ones. After this method is called {@link
+   * #hasNext()} returns {@code false}. Calling this method more than once has no effect.
+   */
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    current = Collections.emptyIterator();
+    for (Future<?> producer : producers) {
+      producer.cancel(true);
+    }
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdownNow();
+    }
+    queue.clear();
+  }
+
+  private class Producer implements Runnable {
+
+    private final Callable<? extends Page<FieldValueList>> firstPage;
+
+    Producer(Callable<? extends Page<FieldValueList>> firstPage) {
+      this.firstPage = firstPage;
+    }
+
+    @Override
+    public void run() {
+      try {
+        Page<FieldValueList> page = firstPage.call();
+        while (page != null && !closed) {
+          queue.put(page.getValues());
+          page = page.hasNextPage() ? page.getNextPage() : null;
+        }
+        queue.put(END_OF_PAGES);
+      } catch (InterruptedException e) {
+        // the iterator was closed
+      } catch (Throwable t) {
+        try {
+          queue.put(t instanceof Exception && !(t instanceof RuntimeException) ? wrap(t) : t);
+        } catch (InterruptedException e) {
+          // the iterator was closed
+        }
+      }
+    }
+
+    private BigQueryException wrap(Throwable t) {
+      return new BigQueryException(BaseServiceException.UNKNOWN_CODE, t.getMessage(), t);
+    }
+  }
+}
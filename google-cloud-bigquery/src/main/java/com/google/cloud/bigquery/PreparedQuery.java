@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.BetaApi;
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.api.services.bigquery.model.QueryRequest;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A query prepared once to be run many times with different parameter values. Objects of this class
+ * are created with {@link BigQuery#prepareQuery(QueryJobConfiguration)}.
+ *
+ * <p>The request sent to run the query is built once, and each parameter value is encoded again
+ * only when it differs from the value of the previous run. Queries that cannot run with {@code
+ * jobs.query}, and queries run by a client that caches or coalesces query results, are run with
+ * {@link BigQuery#query(QueryJobConfiguration, JobOption...)} instead.
+ *
+ * <p>Example of looking up rows by key.
+ *
+ * <pre>{@code
+ * PreparedQuery lookup =
+ *     bigquery.prepareQuery(
+ *         QueryJobConfiguration.newBuilder("SELECT * FROM my_dataset.my_table WHERE key = @key")
+ *             .addNamedParameter("key", QueryParameterValue.string(""))
+ *             .build());
+ * for (String key : keys) {
+ *   TableResult result =
+ *       lookup.query(ImmutableMap.of("key", QueryParameterValue.string(key)));
+ *   // process the results
+ * }
+ * }</pre>
+ *
+ * <p>Objects of this class are thread-safe.
+ */
+@BetaApi
+public final class PreparedQuery {
+
+  private final BigQueryImpl bigquery;
+  private final QueryJobConfiguration configuration;
+  private final boolean fastQuerySupported;
+  private final QueryRequest request;
+  // the names of the parameters in order, or null if parameters are positional
+  private final List<String> names;
+  private final List<EncodedParameter> configuredParameters;
+  // the parameters of the previous run that differ from the configured parameters
+  private final AtomicReferenceArray<EncodedParameter> lastParameters;
+
+  /** A parameter value and its encoding in requests. */
+  private static final class EncodedParameter {
+
+    final QueryParameterValue value;
+    final QueryParameter parameterPb;
+
+    EncodedParameter(String name, QueryParameterValue value) {
+      this.value = value;
+      this.parameterPb =
+          new QueryParameter()
+              .setName(name)
+              .setParameterType(value.toTypePb())
+              .setParameterValue(value.toValuePb());
+    }
+  }
+
+  PreparedQuery(BigQueryImpl bigquery, QueryJobConfiguration configuration) {
+    Job.checkNotDryRun(configuration, "prepareQuery");
+    this.bigquery = bigquery;
+    this.configuration = configuration;
+    QueryRequestInfo requestInfo = new QueryRequestInfo(configuration);
+    this.fastQuerySupported = requestInfo.isFastQuerySupported();
+    // the request id and parameters are set for each run
+    this.request = requestInfo.toPb().setRequestId(null).setQueryParameters(null);
+    List<QueryParameterValue> values;
+    if (!configuration.getNamedParameters().isEmpty()) {
+      this.names = ImmutableList.copyOf(configuration.getNamedParameters().keySet());
+      values = ImmutableList.copyOf(configuration.getNamedParameters().values());
+    } else {
+      this.names = null;
+      values = configuration.getPositionalParameters();
+    }
+    ImmutableList.Builder<EncodedParameter> configuredParameters = ImmutableList.builder();
+    for (int i = 0; i < values.size(); i++) {
+      configuredParameters.add(new EncodedParameter(name(i), values.get(i)));
+    }
+    this.configuredParameters = configuredParameters.build();
+    this.lastParameters = new AtomicReferenceArray<>(values.size());
+  }
+
+  /** Returns the configuration of the query. */
+  public QueryJobConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /** Returns whether the query runs with {@code jobs.query}, rather than by creating a job. */
+  boolean isFastQuerySupported() {
+    return fastQuerySupported;
+  }
+
+  /**
+   * Runs the query with the parameter values of its configuration. See {@link
+   * BigQuery#query(QueryJobConfiguration, JobOption...)}.
+   *
+   * @throws BigQueryException upon failure
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the query
+   *     to complete
+   * @throws JobException if the job completes unsuccessfully
+   */
+  public TableResult query(JobOption... options) throws InterruptedException, JobException {
+    return query(new QueryParameterValue[configuredParameters.size()], options);
+  }
+
+  /**
+   * Runs the query with the given values for its named parameters. The parameters missing from
+   * {@code namedParameters} keep the values of the query configuration.
+   *
+   * @throws IllegalArgumentException if the query has no named parameter in {@code namedParameters}
+   * @throws BigQueryException upon failure
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the query
+   *     to complete
+   * @throws JobException if the job completes unsuccessfully
+   */
+  public TableResult query(Map<String, QueryParameterValue> namedParameters, JobOption... options)
+      throws InterruptedException, JobException {
+    QueryParameterValue[] values = new QueryParameterValue[configuredParameters.size()];
+    for (Map.Entry<String, QueryParameterValue> parameter : namedParameters.entrySet()) {
+      int index = names == null ? -1 : names.indexOf(parameter.getKey());
+      checkArgument(index >= 0, "The query has no parameter named %s", parameter.getKey());
+      values[index] = checkNotNull(parameter.getValue());
+    }
+    return query(values, options);
+  }
+
+  /**
+   * Runs the query with the given values for its positional parameters.
+   *
+   * @throws IllegalArgumentException if the query has named parameters, or a different number of
+   *     positional parameters
+   * @throws BigQueryException upon failure
+   * @throws InterruptedException if the current thread gets interrupted while waiting for the query
+   *     to complete
+   * @throws JobException if the job completes unsuccessfully
+   */
+  public TableResult query(List<QueryParameterValue> positionalParameters, JobOption... options)
+      throws InterruptedException, JobException {
+    checkArgument(
+        names == null && positionalParameters.size() == configuredParameters.size(),
+        "The query has %s positional parameters",
+        names == null ? configuredParameters.size() : 0);
+    QueryParameterValue[] values = new QueryParameterValue[configuredParameters.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = checkNotNull(positionalParameters.get(i));
+    }
+    return query(values, options);
+  }
+
+  /** Runs the query, {@code null} values keep the values of the query configuration. */
+  private TableResult query(QueryParameterValue[] values, JobOption... options)
+      throws InterruptedException, JobException {
+    if (!fastQuerySupported
+        || bigquery.getOptions().getQueryResultCache() != null
+        || bigquery.getOptions().isQueryCoalescing()) {
+      return bigquery.query(configuration(values), options);
+    }
+    QueryParameter[] parametersPb = new QueryParameter[values.length];
+    for (int i = 0; i < values.length; i++) {
+      parametersPb[i] = encode(i, values[i]).parameterPb;
+    }
+    QueryRequest content = new QueryRequest();
+    content.putAll(request);
+    content.setRequestId(UUID.randomUUID().toString());
+    if (parametersPb.length > 0) {
+      content.setQueryParameters(Arrays.asList(parametersPb));
+    }
+    return bigquery.queryRpc(bigquery.getOptions().getProjectId(), content, options);
+  }
+
+  /** Returns the encoding of a parameter, encoding its value only if it changed. */
+  private EncodedParameter encode(int index, QueryParameterValue value) {
+    EncodedParameter configured = configuredParameters.get(index);
+    if (value == null || value.equals(configured.value)) {
+      return configured;
+    }
+    EncodedParameter last = lastParameters.get(index);
+    if (last == null || !value.equals(last.value)) {
+      last = new EncodedParameter(name(index), value);
+      lastParameters.set(index, last);
+    }
+    return last;
+  }
+
+  private QueryJobConfiguration configuration(QueryParameterValue[] values) {
+    if (values.length == 0) {
+      return configuration;
+    }
+    QueryParameterValue[] merged = new QueryParameterValue[values.length];
+    for (int i = 0; i < values.length; i++) {
+      merged[i] = values[i] != null ? values[i] : configuredParameters.get(i).value;
+    }
+    if (names == null) {
+      return configuration.toBuilder().setPositionalParameters(Arrays.asList(merged)).build();
+    }
+    Map<String, QueryParameterValue> namedParameters = Maps.newHashMap();
+    for (int i = 0; i < merged.length; i++) {
+      namedParameters.put(names.get(i), merged[i]);
+    }
+    return configuration.toBuilder().setNamedParameters(namedParameters).build();
+  }
+
+  private String name(int index) {
+    return names == null ? null : names.get(index);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("configuration", configuration)
+        .add("fastQuerySupported", fastQuerySupported)
+        .toString();
+  }
+}
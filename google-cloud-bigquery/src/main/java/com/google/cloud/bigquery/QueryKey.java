@@ -0,0 +1,119 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.services.bigquery.model.JobConfiguration;
+import com.google.api.services.bigquery.model.QueryParameter;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Identifies the queries that return the same results. Two keys are equal if they are run in the
+ * same project and location, if their configurations are equal once serialized, regardless of the
+ * order of their named parameters, and if they are run with the same options.
+ */
+final class QueryKey {
+
+  private static final Comparator<QueryParameter> BY_NAME =
+      new Comparator<QueryParameter>() {
+        @Override
+        public int compare(QueryParameter first, QueryParameter second) {
+          return first.getName().compareTo(second.getName());
+        }
+      };
+
+  private final String projectId;
+  private final String location;
+  private final String configuration;
+  private final List<JobOption> options;
+
+  private QueryKey(
+      String projectId, String location, String configuration, List<JobOption> options) {
+    this.projectId = projectId;
+    this.location = location;
+    this.configuration = configuration;
+    this.options = options;
+  }
+
+  /**
+   * Returns the key of a query run in a project and location. A {@code null} location stands for
+   * the default location of the project.
+   */
+  static QueryKey of(
+      String projectId,
+      String location,
+      QueryJobConfiguration configuration,
+      JobOption... options) {
+    JobConfiguration configurationPb = configuration.toPb();
+    List<QueryParameter> parameters = configurationPb.getQuery().getQueryParameters();
+    if (parameters != null && !configuration.getNamedParameters().isEmpty()) {
+      parameters = new ArrayList<>(parameters);
+      Collections.sort(parameters, BY_NAME);
+      configurationPb.getQuery().setQueryParameters(parameters);
+    }
+    try {
+      return new QueryKey(
+          projectId,
+          location,
+          JsonHelper.getJsonFactory().toString(configurationPb),
+          ImmutableList.copyOf(options));
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to serialize the query configuration", e);
+    }
+  }
+
+  /** Returns the serialized configuration of the query. */
+  String getConfiguration() {
+    return configuration;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(projectId, location, configuration, options);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof QueryKey)) {
+      return false;
+    }
+    QueryKey other = (QueryKey) obj;
+    return Objects.equals(projectId, other.projectId)
+        && Objects.equals(location, other.location)
+        && configuration.equals(other.configuration)
+        && options.equals(other.options);
+  }
+
+  /**
+   * Returns the project and location of the query, followed by its serialized configuration and by
+   * its options if any.
+   */
+  @Override
+  public String toString() {
+    String key = projectId + "/" + Objects.toString(location, "") + " " + configuration;
+    return options.isEmpty() ? key : key + " " + options;
+  }
+}
@@ -38,6 +38,13 @@ public abstract class QueryResponse {
 
   abstract ImmutableList<BigQueryError> getErrors();
 
+  // The first page of rows, only set if the query is complete and rows were requested.
+  @Nullable
+  abstract Iterable<FieldValueList> getRows();
+
+  @Nullable
+  abstract String getPageToken();
+
   static Builder newBuilder() {
     return new AutoValue_QueryResponse.Builder();
   }
@@ -52,6 +59,10 @@ public abstract class QueryResponse {
 
     abstract Builder setErrors(ImmutableList<BigQueryError> val);
 
+    abstract Builder setRows(Iterable<FieldValueList> val);
+
+    abstract Builder setPageToken(String val);
+
     abstract QueryResponse build();
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.BetaApi;
+
+/**
+ * A client-side cache of query results, set with {@link
+ * BigQueryOptions.Builder#setQueryResultCache(QueryResultCache)}.
+ *
+ * <p>Results are cached by {@link BigQuery#query(QueryJobConfiguration, BigQuery.JobOption...)} for
+ * the read-only queries that return all their rows in a single page, along with the last
+ * modification times of the tables the queries referenced. Queries that call non-deterministic
+ * functions such as {@code CURRENT_TIMESTAMP()} or {@code RAND()} are never cached. Before serving
+ * cached results, the client checks that none of the referenced tables was modified since, and
+ * invalidates the results otherwise. Keys identify the query configuration, including its
+ * parameters, and the options of the query.
+ *
+ * <p>Results are not revalidated against changes that do not update the last modification time of
+ * the referenced tables, such as rows still in the streaming buffer. Queries that must not be
+ * served from the cache can set {@link QueryJobConfiguration.Builder#setUseQueryCache(Boolean)} to
+ * {@code false}.
+ *
+ * <p>Implementations must be thread-safe.
+ *
+ * @see LruQueryResultCache
+ */
+@BetaApi
+public interface QueryResultCache {
+
+  /** Returns the results cached for {@code key}, or {@code null} if there are none. */
+  CachedQueryResult get(String key);
+
+  /** Caches {@code result} for {@code key}, replacing the results cached for the key, if any. */
+  void put(String key, CachedQueryResult result);
+
+  /** Removes the results cached for {@code key}, if any. */
+  void invalidate(String key);
+}
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.ApiClock;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.BetaApi;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.cloud.bigquery.QueryJobConfiguration.Priority;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import org.threeten.bp.Duration;
+
+/**
+ * Admits queries to BigQuery under a client-side concurrency limit, queuing the queries in excess.
+ *
+ * <p>Queries are grouped by the project and location they run in, and at most a configured number
+ * of queries per project and location run at once, so that bursts of queries do not exceed the
+ * concurrent query quota of the project and fail with rate limit errors. {@link Priority#BATCH}
+ * queries do not count toward that quota, so they have a separate limit and do not take the slots
+ * of {@link Priority#INTERACTIVE} queries. Queued queries are admitted in round-robin order across
+ * callers, so that a caller submitting many queries does not delay the queries of the other callers
+ * until all its queries ran.
+ *
+ * <p>Queries are run with {@link BigQuery#queryAsync(QueryJobConfiguration, JobId, JobOption...)}.
+ * A query holds its slot until its results are available, or until its future is cancelled, which
+ * also cancels its query job.
+ *
+ * <p>Example of running queries from several tenants under a limit of 50 concurrent queries:
+ *
+ * <pre>{@code
+ * QueryScheduler scheduler =
+ *     QueryScheduler.newBuilder(bigquery).setMaxConcurrentQueries(50).build();
+ * ApiFuture<TableResult> result = scheduler.query(tenantId, queryConfig, null);
+ * }</pre>
+ */
+@BetaApi
+public final class QueryScheduler implements AutoCloseable {
+
+  private static final int DEFAULT_MAX_CONCURRENT_QUERIES = 100;
+  private static final String DEFAULT_CALLER = "";
+
+  private final BigQuery bigquery;
+  private final ApiClock clock;
+  private final int maxConcurrentQueries;
+  private final int maxConcurrentBatchQueries;
+  private final Map<String, Integer> maxConcurrentQueriesByLocation;
+  private final Map<String, Lane> lanes = new HashMap<>();
+  private int queueDepth;
+  private int runningCount;
+  private long admittedCount;
+  private long totalWaitMillis;
+  private long maxWaitMillis;
+  private boolean closed;
+
+  /** A query waiting to be admitted. */
+  private static final class Task {
+
+    final QueryJobConfiguration configuration;
+    final JobId jobId;
+    final JobOption[] options;
+    final long submitMillis;
+    final SettableApiFuture<TableResult> future = SettableApiFuture.create();
+    boolean released;
+
+    Task(QueryJobConfiguration configuration, JobId jobId, JobOption[] options, long submitMillis) {
+      this.configuration = configuration;
+      this.jobId = jobId;
+      this.options = options;
+      this.submitMillis = submitMillis;
+    }
+  }
+
+  /** The queued queries of a caller. */
+  private static final class CallerQueue {
+
+    final ArrayDeque<Task> tasks = new ArrayDeque<>();
+    long lastTurn;
+  }
+
+  /** The queries of a priority in a project and location, queued by caller. */
+  private static final class Lane {
+
+    final int maxConcurrentQueries;
+    final LinkedHashMap<String, CallerQueue> callers = new LinkedHashMap<>();
+    int running;
+    long turns;
+
+    Lane(int maxConcurrentQueries) {
+      this.maxConcurrentQueries = maxConcurrentQueries;
+    }
+
+    CallerQueue callerQueue(String caller) {
+      CallerQueue queue = callers.get(caller);
+      if (queue == null) {
+        queue = new CallerQueue();
+        callers.put(caller, queue);
+      }
+      return queue;
+    }
+
+    /**
+     * Removes the next task to admit. The task is taken from the caller whose last turn is the
+     * oldest, so that callers take turns.
+     */
+    Task poll() {
+      CallerQueue next = null;
+      for (CallerQueue queue : callers.values()) {
+        if (!queue.tasks.isEmpty() && (next == null || queue.lastTurn < next.lastTurn)) {
+          next = queue;
+        }
+      }
+      if (next != null) {
+        next.lastTurn = ++turns;
+        return next.tasks.poll();
+      }
+      // nothing is queued, the turns of the callers can be forgotten
+      callers.clear();
+      return null;
+    }
+  }
+
+  /** A builder for {@code QueryScheduler} objects. */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private int maxConcurrentQueries = DEFAULT_MAX_CONCURRENT_QUERIES;
+    private int maxConcurrentBatchQueries = DEFAULT_MAX_CONCURRENT_QUERIES;
+    private final Map<String, Integer> maxConcurrentQueriesByLocation = new HashMap<>();
+
+    private Builder(BigQuery bigquery) {
+      this.bigquery = checkNotNull(bigquery);
+    }
+
+    /**
+     * Sets the maximum number of interactive queries run at once in each project and location. The
+     * default is 100.
+     */
+    public Builder setMaxConcurrentQueries(int maxConcurrentQueries) {
+      checkArgument(maxConcurrentQueries > 0, "The concurrency limit must be positive");
+      this.maxConcurrentQueries = maxConcurrentQueries;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of interactive queries run at once in a project and location,
+     * overriding {@link #setMaxConcurrentQueries(int)}. A {@code null} location stands for the
+     * queries that do not set their location.
+     */
+    public Builder setMaxConcurrentQueries(
+        String projectId, String location, int maxConcurrentQueries) {
+      checkArgument(maxConcurrentQueries > 0, "The concurrency limit must be positive");
+      maxConcurrentQueriesByLocation.put(
+          laneKey(checkNotNull(projectId), location), maxConcurrentQueries);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of batch queries run at once in each project and location. Batch
+     * queries do not take the slots of interactive queries. The default is 100.
+     */
+    public Builder setMaxConcurrentBatchQueries(int maxConcurrentBatchQueries) {
+      checkArgument(maxConcurrentBatchQueries > 0, "The concurrency limit must be positive");
+      this.maxConcurrentBatchQueries = maxConcurrentBatchQueries;
+      return this;
+    }
+
+    /** Creates a {@code QueryScheduler} object. */
+    public QueryScheduler build() {
+      return new QueryScheduler(this);
+    }
+  }
+
+  private QueryScheduler(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.clock = bigquery.getOptions().getClock();
+    this.maxConcurrentQueries = builder.maxConcurrentQueries;
+    this.maxConcurrentBatchQueries = builder.maxConcurrentBatchQueries;
+    this.maxConcurrentQueriesByLocation =
+        ImmutableMap.copyOf(builder.maxConcurrentQueriesByLocation);
+  }
+
+  /** Returns a builder for a {@code QueryScheduler} that runs queries with {@code bigquery}. */
+  public static Builder newBuilder(BigQuery bigquery) {
+    return new Builder(bigquery);
+  }
+
+  /**
+   * Runs a query once it is admitted. The returned future completes with the results of the query.
+   * Cancelling the returned future removes the query from the queue, or cancels its job if it was
+   * admitted.
+   *
+   * @see BigQuery#queryAsync(QueryJobConfiguration, JobOption...)
+   */
+  public ApiFuture<TableResult> query(QueryJobConfiguration configuration, JobOption... options) {
+    return query(DEFAULT_CALLER, configuration, null, options);
+  }
+
+  /**
+   * Runs a query on behalf of {@code caller} once it is admitted. Queries of different callers with
+   * the same priority are admitted in turns. The returned future completes with the results of the
+   * query. Cancelling the returned future removes the query from the queue, or cancels its job if
+   * it was admitted.
+   *
+   * @param caller identifies the caller, for instance a tenant or a service
+   * @param jobId the id of the query job, or {@code null} to generate a random one
+   * @see BigQuery#queryAsync(QueryJobConfiguration, JobId, JobOption...)
+   */
+  public ApiFuture<TableResult> query(
+      String caller, QueryJobConfiguration configuration, JobId jobId, JobOption... options) {
+    checkNotNull(caller);
+    checkNotNull(configuration);
+    // the job id is set so that the job can be cancelled with the future
+    final Task task =
+        new Task(configuration, jobId != null ? jobId : JobId.of(), options, clock.millisTime());
+    String locationKey = laneKey(jobId);
+    Priority priority =
+        configuration.getPriority() != null ? configuration.getPriority() : Priority.INTERACTIVE;
+    String laneKey = locationKey + "/" + priority;
+    synchronized (this) {
+      checkState(!closed, "QueryScheduler is closed");
+      Lane lane = lanes.get(laneKey);
+      if (lane == null) {
+        int max = maxConcurrentBatchQueries;
+        if (priority == Priority.INTERACTIVE) {
+          Integer locationMax = maxConcurrentQueriesByLocation.get(locationKey);
+          max = locationMax != null ? locationMax : maxConcurrentQueries;
+        }
+        lane = new Lane(max);
+        lanes.put(laneKey, lane);
+      }
+      final ArrayDeque<Task> queue = lane.callerQueue(caller).tasks;
+      queue.add(task);
+      queueDepth++;
+      task.future.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              synchronized (QueryScheduler.this) {
+                // removes the task if it was cancelled while queued
+                if (queue.remove(task)) {
+                  queueDepth--;
+                }
+              }
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+    dispatch(laneKey);
+    return task.future;
+  }
+
+  /** Admits the queued queries of a lane while it has free slots. */
+  private void dispatch(final String laneKey) {
+    List<Task> admitted = new ArrayList<>();
+    synchronized (this) {
+      Lane lane = lanes.get(laneKey);
+      while (lane.running < lane.maxConcurrentQueries) {
+        Task task = lane.poll();
+        if (task == null) {
+          break;
+        }
+        queueDepth--;
+        lane.running++;
+        runningCount++;
+        long waitMillis = clock.millisTime() - task.submitMillis;
+        admittedCount++;
+        totalWaitMillis += waitMillis;
+        maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        admitted.add(task);
+      }
+    }
+    for (final Task task : admitted) {
+      ApiFuture<TableResult> result;
+      try {
+        result = bigquery.queryAsync(task.configuration, task.jobId, task.options);
+      } catch (RuntimeException e) {
+        result = ApiFutures.immediateFailedFuture(e);
+      }
+      ApiFutures.addCallback(
+          result,
+          new ApiFutureCallback<TableResult>() {
+            @Override
+            public void onFailure(Throwable t) {
+              release(laneKey, task);
+              task.future.setException(t);
+            }
+
+            @Override
+            public void onSuccess(TableResult tableResult) {
+              release(laneKey, task);
+              task.future.set(tableResult);
+            }
+          },
+          MoreExecutors.directExecutor());
+      final ApiFuture<TableResult> running = result;
+      task.future.addListener(
+          new Runnable() {
+            @Override
+            public void run() {
+              if (task.future.isCancelled() && !running.isDone()) {
+                running.cancel(false);
+                cancelJob(task.jobId);
+                release(laneKey, task);
+              }
+            }
+          },
+          MoreExecutors.directExecutor());
+    }
+  }
+
+  /** Cancels a query job on the async executor, so that cancelling a future does not block. */
+  private void cancelJob(final JobId jobId) {
+    bigquery
+        .getOptions()
+        .getAsyncExecutor()
+        .execute(
+            new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  bigquery.cancel(jobId);
+                } catch (BigQueryException e) {
+                  // the job may not exist yet or be done already, there is nothing else to do
+                }
+              }
+            });
+  }
+
+  /** Frees the slot of an admitted task, once, and admits the next queued query of its lane. */
+  private void release(String laneKey, Task task) {
+    synchronized (this) {
+      if (task.released) {
+        return;
+      }
+      task.released = true;
+      lanes.get(laneKey).running--;
+      runningCount--;
+    }
+    dispatch(laneKey);
+  }
+
+  private String laneKey(JobId jobId) {
+    BigQueryOptions options = bigquery.getOptions();
+    String projectId =
+        jobId != null && jobId.getProject() != null ? jobId.getProject() : options.getProjectId();
+    String location =
+        jobId != null && jobId.getLocation() != null ? jobId.getLocation() : options.getLocation();
+    return laneKey(projectId, location);
+  }
+
+  private static String laneKey(String projectId, String location) {
+    return projectId + "/" + Objects.toString(location, "");
+  }
+
+  /** Returns the number of queries waiting to be admitted. */
+  public synchronized int getQueueDepth() {
+    return queueDepth;
+  }
+
+  /** Returns the number of admitted queries whose results are not available yet. */
+  public synchronized int getRunningCount() {
+    return runningCount;
+  }
+
+  /** Returns the number of queries admitted since this scheduler was created. */
+  public synchronized long getAdmittedCount() {
+    return admittedCount;
+  }
+
+  /** Returns the average time admitted queries waited in the queue. */
+  public synchronized Duration getAverageWaitTime() {
+    return Duration.ofMillis(admittedCount == 0 ? 0 : totalWaitMillis / admittedCount);
+  }
+
+  /** Returns the longest time an admitted query waited in the queue. */
+  public synchronized Duration getMaxWaitTime() {
+    return Duration.ofMillis(maxWaitMillis);
+  }
+
+  /**
+   * Stops admitting queries. The futures of the queued queries are cancelled, the queries already
+   * admitted keep running.
+   */
+  @Override
+  public void close() {
+    List<Task> queued = new ArrayList<>();
+    synchronized (this) {
+      closed = true;
+      for (Lane lane : lanes.values()) {
+        for (Task task = lane.poll(); task != null; task = lane.poll()) {
+          queued.add(task);
+        }
+      }
+      queueDepth = 0;
+    }
+    for (Task task : queued) {
+      task.future.cancel(false);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.MoreObjects;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.zip.Deflater;
+
+/**
+ * The compression of the bodies of {@code tabledata.insertAll} requests and of the chunks of
+ * uploads. Bodies are compressed with gzip, and sent with a {@code Content-Encoding: gzip} header,
+ * only if they are at least as large as the minimum size of the compression: compressing small
+ * bodies costs more CPU than it saves bytes.
+ *
+ * @see BigQueryOptions.Builder#setRequestCompression(RequestCompression)
+ * @see InsertAllRequest.Builder#setRequestCompression(RequestCompression)
+ * @see RequestCompressionStats
+ */
+@BetaApi
+public final class RequestCompression implements Serializable {
+
+  private static final long serialVersionUID = -3216495728342185721L;
+
+  /** The default minimum size of the bodies to compress, in bytes. */
+  public static final int DEFAULT_MIN_SIZE_BYTES = 1024;
+
+  private static final RequestCompression NONE =
+      new RequestCompression(false, Deflater.DEFAULT_COMPRESSION, 0);
+
+  private final boolean enabled;
+  private final int level;
+  private final long minSizeBytes;
+
+  private RequestCompression(boolean enabled, int level, long minSizeBytes) {
+    this.enabled = enabled;
+    this.level = level;
+    this.minSizeBytes = minSizeBytes;
+  }
+
+  /** Returns whether request bodies are compressed. */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the gzip compression level, from {@link Deflater#BEST_SPEED} to {@link
+   * Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  public int getLevel() {
+    return level;
+  }
+
+  /** Returns the minimum size of the request bodies to compress, in bytes. */
+  public long getMinSizeBytes() {
+    return minSizeBytes;
+  }
+
+  /** Returns whether a request body of the given size, in bytes, is compressed. */
+  public boolean appliesTo(long sizeBytes) {
+    return enabled && sizeBytes >= minSizeBytes;
+  }
+
+  /**
+   * Returns a compression of request bodies with gzip at its default level, for bodies of at least
+   * {@link #DEFAULT_MIN_SIZE_BYTES}.
+   */
+  public static RequestCompression gzip() {
+    return gzip(Deflater.DEFAULT_COMPRESSION, DEFAULT_MIN_SIZE_BYTES);
+  }
+
+  /**
+   * Returns a compression of request bodies with gzip at the given level, for bodies of at least
+   * {@code minSizeBytes}.
+   *
+   * @param level the compression level, from {@link Deflater#BEST_SPEED} to {@link
+   *     Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}
+   * @param minSizeBytes the minimum size of the request bodies to compress, in bytes
+   */
+  public static RequestCompression gzip(int level, long minSizeBytes) {
+    checkArgument(
+        level == Deflater.DEFAULT_COMPRESSION
+            || level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION,
+        "Invalid compression level %s",
+        level);
+    checkArgument(minSizeBytes >= 0, "The minimum size must not be negative");
+    return new RequestCompression(true, level, minSizeBytes);
+  }
+
+  /** Returns a compression that leaves request bodies uncompressed. */
+  public static RequestCompression none() {
+    return NONE;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("enabled", enabled)
+        .add("level", level)
+        .add("minSizeBytes", minSizeBytes)
+        .toString();
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(enabled, level, minSizeBytes);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj == this) {
+      return true;
+    }
+    if (!(obj instanceof RequestCompression)) {
+      return false;
+    }
+    RequestCompression other = (RequestCompression) obj;
+    return enabled == other.enabled && level == other.level && minSizeBytes == other.minSizeBytes;
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.BetaApi;
+import com.google.api.core.InternalApi;
+import com.google.common.base.MoreObjects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the request bodies compressed according to a {@link RequestCompression}, and of their
+ * sizes before and after compression. Objects of this class are returned by {@link
+ * BigQueryOptions#getRequestCompressionStats()}, and are updated as requests are sent.
+ */
+@BetaApi
+public final class RequestCompressionStats {
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong uncompressedBytes = new AtomicLong();
+  private final AtomicLong compressedBytes = new AtomicLong();
+
+  RequestCompressionStats() {}
+
+  /** Records a compressed request body. */
+  @InternalApi
+  public void record(long uncompressedBytes, long compressedBytes) {
+    this.requestCount.incrementAndGet();
+    this.uncompressedBytes.addAndGet(uncompressedBytes);
+    this.compressedBytes.addAndGet(compressedBytes);
+  }
+
+  /** Returns the number of compressed request bodies sent, including retries. */
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  /** Returns the total size of the compressed request bodies before compression, in bytes. */
+  public long getUncompressedBytes() {
+    return uncompressedBytes.get();
+  }
+
+  /** Returns the total size of the compressed request bodies as sent, in bytes. */
+  public long getCompressedBytes() {
+    return compressedBytes.get();
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("requestCount", getRequestCount())
+        .add("uncompressedBytes", getUncompressedBytes())
+        .add("compressedBytes", getCompressedBytes())
+        .toString();
+  }
+}
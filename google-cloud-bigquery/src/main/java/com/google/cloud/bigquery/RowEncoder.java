@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.core.BetaApi;
+import java.io.IOException;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes objects of type {@code T} as rows of a streaming insert, writing each row directly to the
+ * body of the request with {@link BigQuery#insertAll(InsertAllRequest, Iterable, RowEncoder)}.
+ *
+ * <p>Example of encoding a class as a row.
+ *
+ * <pre>{@code
+ * RowEncoder<Event> encoder =
+ *     new RowEncoder<Event>() {
+ *       public String getInsertId(Event event) {
+ *         return event.getId();
+ *       }
+ *
+ *       public void encode(Event event, JsonGenerator generator) throws IOException {
+ *         generator.writeStartObject();
+ *         generator.writeFieldName("name");
+ *         generator.writeString(event.getName());
+ *         generator.writeFieldName("timestamp");
+ *         generator.writeNumber(event.getTimestampMillis() / 1000.0);
+ *         generator.writeEndObject();
+ *       }
+ *     };
+ * }</pre>
+ *
+ * @param <T> the type of the encoded objects
+ */
+@BetaApi
+public interface RowEncoder<T> {
+
+  /**
+   * Returns the insert id of {@code row}, used to deduplicate rows, or {@code null} if the row has
+   * none. Requests are retried only if all their rows have an insert id.
+   */
+  @Nullable
+  String getInsertId(T row);
+
+  /**
+   * Writes {@code row} as a JSON object whose fields are the columns of the row. This method is
+   * called again for each row if the request is retried, and must write the same content.
+   */
+  void encode(T row, JsonGenerator generator) throws IOException;
+}
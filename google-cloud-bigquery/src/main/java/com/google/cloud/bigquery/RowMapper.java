@@ -0,0 +1,533 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.Throwables;
+import com.google.common.primitives.Primitives;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts table rows into objects of type {@code T}.
+ *
+ * <p>A {@code RowMapper} is built once for a target class and a schema, which resolves every
+ * property of the class to a field index and a value converter. Mapping a row then only reads
+ * values by index and invokes pre-resolved method handles: there is no name lookup or reflection
+ * per row. The following target classes are supported, in order of precedence:
+ *
+ * <ul>
+ *   <li>records, whose components are matched to fields by name
+ *   <li>classes with a constructor whose parameters are all annotated with {@link Column}
+ *   <li>beans with a no-argument constructor, whose setters are matched to fields by property name
+ *       or by the {@link Column} annotation on the setter. Fields without a matching setter are
+ *       ignored.
+ * </ul>
+ *
+ * <p>Names are matched ignoring case. Properties can be of type {@link String}, {@code long},
+ * {@code int}, {@code double}, {@code float}, {@code boolean} (or their boxed versions), {@link
+ * BigDecimal}, {@code byte[]}, {@link FieldValue}, {@link FieldValueList}, a class mapping a {@link
+ * LegacySQLTypeName#RECORD} field, or a {@link List} of any of these for {@link
+ * Field.Mode#REPEATED} fields. {@link LegacySQLTypeName#TIMESTAMP} fields mapped to {@code long}
+ * are converted to microseconds since epoch. Null values are mapped to {@code null}, or to the
+ * default value of primitive types.
+ *
+ * <p>Example of mapping query results to a bean:
+ *
+ * <pre>{@code
+ * RowMapper<WordCount> mapper = RowMapper.of(WordCount.class, result.getSchema());
+ * for (WordCount wordCount : result.map(mapper)) {
+ *   // do something with wordCount
+ * }
+ * }</pre>
+ *
+ * <p>Instances of this class are thread-safe.
+ *
+ * @param <T> the type rows are mapped to
+ */
+@BetaApi
+public abstract class RowMapper<T> {
+
+  /**
+   * Sets the name of the field a constructor parameter or a bean setter is mapped from. All the
+   * parameters of a constructor must be annotated for it to be used. Getters and fields of the rows
+   * written by a {@link RowWriter} can be annotated as well.
+   */
+  @Retention(RetentionPolicy.RUNTIME)
+  @Target({ElementType.PARAMETER, ElementType.METHOD, ElementType.FIELD})
+  public @interface Column {
+    /** The name of the field. */
+    String value();
+  }
+
+  RowMapper() {}
+
+  /** Converts {@code row} into an object of type {@code T}. */
+  public abstract T map(FieldValueList row);
+
+  /**
+   * Builds a mapper from rows with the provided schema to objects of class {@code type}.
+   *
+   * @throws IllegalArgumentException if {@code type} can not be mapped from the schema
+   */
+  public static <T> RowMapper<T> of(Class<T> type, Schema schema) {
+    return of(type, schema.getFields());
+  }
+
+  /**
+   * Builds a mapper from rows with the provided fields to objects of class {@code type}.
+   *
+   * @throws IllegalArgumentException if {@code type} can not be mapped from the fields
+   */
+  public static <T> RowMapper<T> of(Class<T> type, FieldList fields) {
+    checkNotNull(type);
+    checkNotNull(fields);
+    RowMapper<T> mapper = RecordMapper.create(type, fields);
+    if (mapper == null) {
+      mapper = ConstructorMapper.create(type, fields);
+    }
+    if (mapper == null) {
+      mapper = BeanMapper.create(type, fields);
+    }
+    return mapper;
+  }
+
+  /**
+   * Returns the name of the field a method is mapped to or from: the value of its {@link Column}
+   * annotation, or else the name of the property it accesses if the method name starts with {@code
+   * prefix}, or {@code null}. Fields are matched to these names ignoring case.
+   */
+  static String columnName(Method method, String prefix) {
+    Column column = method.getAnnotation(Column.class);
+    if (column != null) {
+      return column.value();
+    }
+    String name = method.getName();
+    return name.startsWith(prefix) && name.length() > prefix.length()
+        ? name.substring(prefix.length())
+        : null;
+  }
+
+  /** Returns the name of the field a Java field is mapped to or from, as for methods. */
+  static String columnName(java.lang.reflect.Field field) {
+    Column column = field.getAnnotation(Column.class);
+    return column != null ? column.value() : field.getName();
+  }
+
+  private static RuntimeException propagate(Throwable t) {
+    Throwables.throwIfUnchecked(t);
+    return new IllegalStateException("Failed to map row", t);
+  }
+
+  private static MethodHandle unreflect(Constructor<?> constructor) {
+    try {
+      constructor.setAccessible(true);
+      return MethodHandles.lookup().unreflectConstructor(constructor);
+    } catch (IllegalAccessException | RuntimeException e) {
+      throw new IllegalArgumentException("Constructor " + constructor + " is not accessible", e);
+    }
+  }
+
+  /** Maps rows by invoking a constructor with one argument per field. */
+  private static class ConstructorMapper<T> extends RowMapper<T> {
+
+    private final MethodHandle constructor;
+    private final int[] indexes;
+    private final ValueConverter[] converters;
+
+    ConstructorMapper(Constructor<T> constructor, List<String> names, FieldList fields) {
+      Type[] parameterTypes = constructor.getGenericParameterTypes();
+      checkArgument(
+          parameterTypes.length == names.size(),
+          "Constructor %s has unnamed arguments",
+          constructor);
+      this.indexes = new int[parameterTypes.length];
+      this.converters = new ValueConverter[parameterTypes.length];
+      for (int i = 0; i < parameterTypes.length; i++) {
+        indexes[i] = fields.getIndex(names.get(i));
+        converters[i] = ValueConverter.of(fields.get(indexes[i]), parameterTypes[i]);
+      }
+      this.constructor =
+          unreflect(constructor)
+              .asSpreader(Object[].class, parameterTypes.length)
+              .asType(MethodType.methodType(Object.class, Object[].class));
+    }
+
+    static <T> ConstructorMapper<T> create(Class<T> type, FieldList fields) {
+      for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+        Annotation[][] annotations = constructor.getParameterAnnotations();
+        if (annotations.length == 0) {
+          continue;
+        }
+        List<String> names = new ArrayList<>();
+        for (Annotation[] parameterAnnotations : annotations) {
+          for (Annotation annotation : parameterAnnotations) {
+            if (annotation instanceof Column) {
+              names.add(((Column) annotation).value());
+            }
+          }
+        }
+        if (names.size() == annotations.length) {
+          @SuppressWarnings("unchecked")
+          Constructor<T> typedConstructor = (Constructor<T>) constructor;
+          return new ConstructorMapper<>(typedConstructor, names, fields);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public T map(FieldValueList row) {
+      Object[] arguments = new Object[indexes.length];
+      for (int i = 0; i < indexes.length; i++) {
+        arguments[i] = converters[i].convert(row.get(indexes[i]));
+      }
+      try {
+        @SuppressWarnings("unchecked")
+        T result = (T) (Object) constructor.invokeExact(arguments);
+        return result;
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+  }
+
+  /**
+   * Maps rows to records through their canonical constructor. Records are detected reflectively so
+   * that this class does not depend on the Java version records were introduced in.
+   */
+  private static final class RecordMapper {
+
+    static <T> RowMapper<T> create(Class<T> type, FieldList fields) {
+      Object[] components;
+      try {
+        if (!(Boolean) Class.class.getMethod("isRecord").invoke(type)) {
+          return null;
+        }
+        components = (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+      } catch (NoSuchMethodException e) {
+        return null;
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalArgumentException("Failed to inspect record " + type, e);
+      }
+      List<String> names = new ArrayList<>(components.length);
+      Class<?>[] componentTypes = new Class<?>[components.length];
+      try {
+        for (int i = 0; i < components.length; i++) {
+          Method getName = components[i].getClass().getMethod("getName");
+          Method getType = components[i].getClass().getMethod("getType");
+          names.add((String) getName.invoke(components[i]));
+          componentTypes[i] = (Class<?>) getType.invoke(components[i]);
+        }
+        return new ConstructorMapper<>(type.getDeclaredConstructor(componentTypes), names, fields);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalArgumentException("Failed to inspect record " + type, e);
+      }
+    }
+  }
+
+  /** Maps rows by creating a bean with its no-argument constructor and calling its setters. */
+  private static final class BeanMapper<T> extends RowMapper<T> {
+
+    private final MethodHandle constructor;
+    private final MethodHandle[] setters;
+    private final int[] indexes;
+    private final ValueConverter[] converters;
+
+    private BeanMapper(
+        MethodHandle constructor,
+        List<MethodHandle> setters,
+        List<Integer> indexes,
+        List<ValueConverter> converters) {
+      this.constructor = constructor;
+      this.setters = setters.toArray(new MethodHandle[setters.size()]);
+      this.indexes = new int[indexes.size()];
+      for (int i = 0; i < this.indexes.length; i++) {
+        this.indexes[i] = indexes.get(i);
+      }
+      this.converters = converters.toArray(new ValueConverter[converters.size()]);
+    }
+
+    static <T> BeanMapper<T> create(Class<T> type, FieldList fields) {
+      Constructor<T> constructor;
+      try {
+        constructor = type.getDeclaredConstructor();
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException(
+            "Class "
+                + type.getName()
+                + " is not a record, has no constructor annotated with @Column parameters and no"
+                + " no-argument constructor",
+            e);
+      }
+      List<MethodHandle> setters = new ArrayList<>();
+      List<Integer> indexes = new ArrayList<>();
+      List<ValueConverter> converters = new ArrayList<>();
+      for (Method method : type.getMethods()) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterTypes().length != 1) {
+          continue;
+        }
+        String name = columnName(method, "set");
+        if (name == null) {
+          continue;
+        }
+        int index;
+        try {
+          index = fields.getIndex(name);
+        } catch (IllegalArgumentException e) {
+          if (method.isAnnotationPresent(Column.class)) {
+            throw e;
+          }
+          continue;
+        }
+        try {
+          method.setAccessible(true);
+          setters.add(
+              MethodHandles.lookup()
+                  .unreflect(method)
+                  .asType(MethodType.methodType(void.class, Object.class, Object.class)));
+        } catch (IllegalAccessException | RuntimeException e) {
+          throw new IllegalArgumentException("Setter " + method + " is not accessible", e);
+        }
+        indexes.add(index);
+        converters.add(ValueConverter.of(fields.get(index), method.getGenericParameterTypes()[0]));
+      }
+      return new BeanMapper<>(
+          unreflect(constructor).asType(MethodType.methodType(Object.class)),
+          setters,
+          indexes,
+          converters);
+    }
+
+    @Override
+    public T map(FieldValueList row) {
+      try {
+        @SuppressWarnings("unchecked")
+        T bean = (T) (Object) constructor.invokeExact();
+        for (int i = 0; i < setters.length; i++) {
+          setters[i].invokeExact((Object) bean, converters[i].convert(row.get(indexes[i])));
+        }
+        return bean;
+      } catch (Throwable t) {
+        throw propagate(t);
+      }
+    }
+  }
+
+  /** Converts a field value to a given Java type, resolved once per field. */
+  private abstract static class ValueConverter {
+
+    private final Object nullValue;
+
+    ValueConverter(Object nullValue) {
+      this.nullValue = nullValue;
+    }
+
+    Object convert(FieldValue value) {
+      return value.isNull() ? nullValue : convertNonNull(value);
+    }
+
+    abstract Object convertNonNull(FieldValue value);
+
+    static ValueConverter of(Field field, Type type) {
+      if (field.getMode() == Field.Mode.REPEATED) {
+        // repeated values are converted to an ArrayList, which must fit the property type
+        if (!rawType(type).isAssignableFrom(ArrayList.class)) {
+          throw unsupported(field, type);
+        }
+        Type elementType =
+            type instanceof ParameterizedType
+                ? ((ParameterizedType) type).getActualTypeArguments()[0]
+                : Object.class;
+        final ValueConverter element =
+            of(field.toBuilder().setMode(Field.Mode.NULLABLE).build(), elementType);
+        return new ValueConverter(null) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            List<FieldValue> values = value.getRepeatedValue();
+            List<Object> result = new ArrayList<>(values.size());
+            for (FieldValue item : values) {
+              result.add(element.convert(item));
+            }
+            return result;
+          }
+        };
+      }
+      final Class<?> rawType = Primitives.wrap(rawType(type));
+      Object nullValue = rawType(type).isPrimitive() ? defaultValue(rawType(type)) : null;
+      if (rawType == FieldValue.class || rawType == Object.class) {
+        return new ValueConverter(null) {
+          @Override
+          Object convert(FieldValue value) {
+            return value;
+          }
+
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value;
+          }
+        };
+      }
+      if (LegacySQLTypeName.RECORD.equals(field.getType())) {
+        if (rawType == FieldValueList.class) {
+          return new ValueConverter(null) {
+            @Override
+            Object convertNonNull(FieldValue value) {
+              return value.getRecordValue();
+            }
+          };
+        }
+        final RowMapper<?> mapper = RowMapper.of(rawType, field.getSubFields());
+        return new ValueConverter(null) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return mapper.map(value.getRecordValue());
+          }
+        };
+      }
+      if (rawType == String.class) {
+        return new ValueConverter(null) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getStringValue();
+          }
+        };
+      }
+      if (rawType == Long.class && LegacySQLTypeName.TIMESTAMP.equals(field.getType())) {
+        return new ValueConverter(nullValue) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getTimestampValue();
+          }
+        };
+      }
+      if (rawType == Long.class) {
+        return new ValueConverter(nullValue) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getLongValue();
+          }
+        };
+      }
+      if (rawType == Integer.class) {
+        return new ValueConverter(nullValue) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return Integer.parseInt(value.getStringValue());
+          }
+        };
+      }
+      if (rawType == Double.class) {
+        return new ValueConverter(nullValue) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getDoubleValue();
+          }
+        };
+      }
+      if (rawType == Float.class) {
+        return new ValueConverter(nullValue) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return Float.parseFloat(value.getStringValue());
+          }
+        };
+      }
+      if (rawType == Boolean.class) {
+        return new ValueConverter(nullValue) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getBooleanValue();
+          }
+        };
+      }
+      if (rawType == BigDecimal.class) {
+        return new ValueConverter(null) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getNumericValue();
+          }
+        };
+      }
+      if (rawType == byte[].class) {
+        return new ValueConverter(null) {
+          @Override
+          Object convertNonNull(FieldValue value) {
+            return value.getBytesValue();
+          }
+        };
+      }
+      throw unsupported(field, type);
+    }
+
+    private static Class<?> rawType(Type type) {
+      if (type instanceof Class) {
+        return (Class<?>) type;
+      }
+      if (type instanceof ParameterizedType) {
+        return (Class<?>) ((ParameterizedType) type).getRawType();
+      }
+      return Object.class;
+    }
+
+    private static Object defaultValue(Class<?> primitive) {
+      if (primitive == boolean.class) {
+        return false;
+      }
+      if (primitive == long.class) {
+        return 0L;
+      }
+      if (primitive == int.class) {
+        return 0;
+      }
+      if (primitive == double.class) {
+        return 0.0d;
+      }
+      if (primitive == float.class) {
+        return 0.0f;
+      }
+      throw new IllegalArgumentException("Unsupported primitive type " + primitive);
+    }
+
+    private static IllegalArgumentException unsupported(Field field, Type type) {
+      return new IllegalArgumentException(
+          "Field '"
+              + field.getName()
+              + "' of type "
+              + field.getType()
+              + " can not be mapped to "
+              + type);
+    }
+  }
+}
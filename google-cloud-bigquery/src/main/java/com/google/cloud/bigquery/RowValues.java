@@ -0,0 +1,373 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.cloud.Timestamp;
+import com.google.common.io.BaseEncoding;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.format.DateTimeFormatter;
+
+/**
+ * Reads the values of rows written by a {@link RowWriter}, and converts them to the representation
+ * of their column type.
+ *
+ * <p>Rows are {@link Map}s keyed by column name, {@link FieldValueList}s, or objects with a getter
+ * or a field for each column. Getters and fields are matched to columns as {@link RowMapper}
+ * matches setters: by their {@link RowMapper.Column} annotation, or else by property name ignoring
+ * case, so that a {@code userId} field or a {@code getUserId()} getter match a {@code USERID}
+ * column. Getters take precedence over fields. Values of a column are converted as follows, {@link
+ * FieldValue}s being accepted for any type:
+ *
+ * <ul>
+ *   <li>{@code INTEGER}: a {@link Number} or a decimal string, to a {@code long}
+ *   <li>{@code FLOAT}: a {@link Number} or a decimal string, to a {@code double}
+ *   <li>{@code NUMERIC}, {@code BIGNUMERIC}: a {@link Number} or a decimal string, to a {@link
+ *       BigDecimal}
+ *   <li>{@code BOOLEAN}: a {@link Boolean} or a string, to a {@code boolean}
+ *   <li>{@code BYTES}: a {@code byte[]}, a {@link ByteBuffer} or a base64 string, to a {@code
+ *       byte[]}
+ *   <li>{@code TIMESTAMP}: a {@link Timestamp}, a {@link Date}, microseconds since epoch or a
+ *       timestamp string, to microseconds since epoch
+ *   <li>{@code DATE}: a {@link LocalDate}, a {@link com.google.cloud.Date}, days since epoch or a
+ *       {@code YYYY-MM-DD} string, to days since epoch
+ *   <li>{@code TIME}: a {@link LocalTime}, microseconds of day or a {@code HH:MM:SS[.FFFFFF]}
+ *       string, to microseconds of day
+ *   <li>{@code DATETIME}: a {@link LocalDateTime} or a string, to a {@code YYYY-MM-DD
+ *       HH:MM:SS.FFFFFF} string
+ *   <li>{@code STRING}, {@code GEOGRAPHY}: any object, to its string representation
+ * </ul>
+ */
+final class RowValues {
+
+  private static final DateTimeFormatter TIME_FORMAT =
+      DateTimeFormatter.ofPattern("HH:mm:ss.SSSSSS");
+  private static final DateTimeFormatter DATE_TIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSSSSS");
+  // computed once per class, and stored with the class so that it can still be unloaded
+  private static final ClassValue<Map<String, AccessibleObject>> ACCESSORS =
+      new ClassValue<Map<String, AccessibleObject>>() {
+        @Override
+        protected Map<String, AccessibleObject> computeValue(Class<?> type) {
+          return accessors(type);
+        }
+      };
+
+  private RowValues() {}
+
+  /**
+   * Returns the value of the column {@code field}, at {@code index} in its schema, of a row. Values
+   * that are {@link FieldValue}s are unwrapped: {@code null} for a null value, a list of values for
+   * a repeated value, a {@link FieldValueList} for a record value.
+   */
+  static Object get(Object row, com.google.cloud.bigquery.Field field, int index) {
+    Object value;
+    if (row instanceof Map) {
+      value = ((Map<?, ?>) row).get(field.getName());
+    } else if (row instanceof FieldValueList) {
+      FieldValueList values = (FieldValueList) row;
+      value = values.hasSchema() ? values.get(field.getName()) : values.get(index);
+    } else {
+      AccessibleObject accessor = ACCESSORS.get(row.getClass()).get(normalize(field.getName()));
+      if (accessor == null) {
+        throw new IllegalArgumentException(
+            "No getter or field for column " + field.getName() + " in " + row.getClass());
+      }
+      value = read(accessor, row);
+    }
+    if (value instanceof FieldValue) {
+      FieldValue fieldValue = (FieldValue) value;
+      if (fieldValue.isNull()) {
+        return null;
+      }
+      switch (fieldValue.getAttribute()) {
+        case REPEATED:
+          return fieldValue.getRepeatedValue();
+        case RECORD:
+          return fieldValue.getRecordValue();
+        default:
+          return fieldValue;
+      }
+    }
+    return value;
+  }
+
+  /** Returns the elements of a repeated value: an {@link Iterable} or an array. */
+  static Iterable<?> getElements(Object value) {
+    if (value instanceof Iterable) {
+      return (Iterable<?>) value;
+    }
+    if (value instanceof Object[]) {
+      return Arrays.asList((Object[]) value);
+    }
+    if (value != null && value.getClass().isArray()) {
+      int length = java.lang.reflect.Array.getLength(value);
+      List<Object> elements = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) {
+        elements.add(java.lang.reflect.Array.get(value, i));
+      }
+      return elements;
+    }
+    throw new IllegalArgumentException("Not a repeated value: " + value);
+  }
+
+  /** Unwraps an element of a repeated value, which can be a {@link FieldValue}. */
+  static Object getElement(Object element) {
+    if (element instanceof FieldValue) {
+      FieldValue fieldValue = (FieldValue) element;
+      if (fieldValue.isNull()) {
+        return null;
+      }
+      return fieldValue.getAttribute() == FieldValue.Attribute.RECORD
+          ? fieldValue.getRecordValue()
+          : fieldValue;
+    }
+    return element;
+  }
+
+  static long toLong(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getLongValue();
+    }
+    return Long.parseLong(value.toString());
+  }
+
+  static double toDouble(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).doubleValue();
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getDoubleValue();
+    }
+    return Double.parseDouble(value.toString());
+  }
+
+  static BigDecimal toDecimal(Object value) {
+    if (value instanceof BigDecimal) {
+      return (BigDecimal) value;
+    }
+    if (value instanceof BigInteger) {
+      return new BigDecimal((BigInteger) value);
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getNumericValue();
+    }
+    return new BigDecimal(value.toString());
+  }
+
+  static boolean toBoolean(Object value) {
+    if (value instanceof Boolean) {
+      return (Boolean) value;
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getBooleanValue();
+    }
+    return Boolean.parseBoolean(value.toString());
+  }
+
+  static byte[] toBytes(Object value) {
+    if (value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    if (value instanceof ByteBuffer) {
+      ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return bytes;
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getBytesValue();
+    }
+    return BaseEncoding.base64().decode(value.toString());
+  }
+
+  static long toTimestampMicros(Object value) {
+    if (value instanceof Timestamp) {
+      Timestamp timestamp = (Timestamp) value;
+      return timestamp.getSeconds() * TemporalParser.MICROS_PER_SECOND
+          + timestamp.getNanos() / TemporalParser.NANOS_PER_MICRO;
+    }
+    if (value instanceof Date) {
+      return ((Date) value).getTime() * 1000;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getTimestampValue();
+    }
+    return TemporalParser.parseTimestampMicros(value.toString());
+  }
+
+  static long toEpochDays(Object value) {
+    if (value instanceof LocalDate) {
+      return ((LocalDate) value).toEpochDay();
+    }
+    if (value instanceof com.google.cloud.Date) {
+      com.google.cloud.Date date = (com.google.cloud.Date) value;
+      return LocalDate.of(date.getYear(), date.getMonth(), date.getDayOfMonth()).toEpochDay();
+    }
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getDateEpochDays();
+    }
+    return TemporalParser.parseDateEpochDays(value.toString());
+  }
+
+  static long toTimeMicros(Object value) {
+    if (value instanceof LocalTime) {
+      return ((LocalTime) value).toNanoOfDay() / TemporalParser.NANOS_PER_MICRO;
+    }
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    }
+    if (value instanceof FieldValue) {
+      return ((FieldValue) value).getTimeNanos() / TemporalParser.NANOS_PER_MICRO;
+    }
+    return TemporalParser.parseTimeNanos(value.toString()) / TemporalParser.NANOS_PER_MICRO;
+  }
+
+  static String toDateTimeString(Object value) {
+    if (value instanceof LocalDateTime) {
+      return DATE_TIME_FORMAT.format((LocalDateTime) value);
+    }
+    if (value instanceof FieldValue) {
+      return DATE_TIME_FORMAT.format(((FieldValue) value).getLocalDateTimeValue());
+    }
+    return value.toString();
+  }
+
+  static String toString(Object value) {
+    return value instanceof FieldValue ? ((FieldValue) value).getStringValue() : value.toString();
+  }
+
+  /**
+   * Returns the text of a value of a column with a primitive type, as loaded from CSV or JSON, or
+   * {@code null} if the value is {@code null}.
+   */
+  static String toText(com.google.cloud.bigquery.Field field, Object value) {
+    if (value == null) {
+      return null;
+    }
+    switch (field.getType().getStandardType()) {
+      case INT64:
+        return String.valueOf(toLong(value));
+      case FLOAT64:
+        return String.valueOf(toDouble(value));
+      case NUMERIC:
+      case BIGNUMERIC:
+        return toDecimal(value).toPlainString();
+      case BOOL:
+        return String.valueOf(toBoolean(value));
+      case BYTES:
+        return BaseEncoding.base64().encode(toBytes(value));
+      case TIMESTAMP:
+        return Timestamp.ofTimeMicroseconds(toTimestampMicros(value)).toString();
+      case DATE:
+        return LocalDate.ofEpochDay(toEpochDays(value)).toString();
+      case TIME:
+        return TIME_FORMAT.format(
+            LocalTime.ofNanoOfDay(toTimeMicros(value) * TemporalParser.NANOS_PER_MICRO));
+      case DATETIME:
+        return toDateTimeString(value);
+      default:
+        return toString(value);
+    }
+  }
+
+  private static String normalize(String name) {
+    return name.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Returns the getters and fields of a class, by normalized column name. Getters take precedence.
+   * Getters and fields that cannot be made accessible, such as those of classes in modules that are
+   * not open, are skipped.
+   */
+  private static Map<String, AccessibleObject> accessors(Class<?> type) {
+    Map<String, AccessibleObject> accessors = new HashMap<>();
+    for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+      for (Field field : c.getDeclaredFields()) {
+        String name = normalize(RowMapper.columnName(field));
+        if (!Modifier.isStatic(field.getModifiers())
+            && !accessors.containsKey(name)
+            && makeAccessible(field)) {
+          accessors.put(name, field);
+        }
+      }
+    }
+    for (Method method : type.getMethods()) {
+      if (method.getParameterTypes().length > 0
+          || Modifier.isStatic(method.getModifiers())
+          || method.getDeclaringClass() == Object.class) {
+        continue;
+      }
+      String name = RowMapper.columnName(method, "get");
+      if (name == null) {
+        name = RowMapper.columnName(method, "is");
+      }
+      // public methods of a class that is not public can only be invoked once made accessible
+      if (name != null && makeAccessible(method)) {
+        accessors.put(normalize(name), method);
+      }
+    }
+    return Collections.unmodifiableMap(accessors);
+  }
+
+  private static boolean makeAccessible(AccessibleObject accessor) {
+    try {
+      accessor.setAccessible(true);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static Object read(AccessibleObject accessor, Object row) {
+    try {
+      return accessor instanceof Method
+          ? ((Method) accessor).invoke(row)
+          : ((Field) accessor).get(row);
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException(e);
+    } catch (InvocationTargetException e) {
+      throw new IllegalArgumentException(e.getCause());
+    }
+  }
+}
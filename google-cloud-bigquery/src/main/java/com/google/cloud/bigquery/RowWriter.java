@@ -0,0 +1,338 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.core.BetaApi;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A writer of rows into a load job. Rows are encoded as they are written, in the format of the
+ * {@link WriteChannelConfiguration}: an Avro object container file, newline-delimited JSON or CSV.
+ * Encoded rows are written to a {@link TableDataWriteChannel} in blocks of about its chunk size, so
+ * that memory does not grow with the number of rows.
+ *
+ * <p>Rows are {@link java.util.Map}s keyed by column name, {@link FieldValueList}s, or objects with
+ * a getter or a field for each column, matched ignoring case as {@link RowMapper} matches setters:
+ * {@code getUserId()} or {@code userId} for a {@code userid} column, or a getter or field annotated
+ * with {@code @RowMapper.Column("user_id")} for a {@code user_id} column. Values are converted to
+ * the type of their column: for instance a {@code TIMESTAMP} value can be a {@link
+ * com.google.cloud.Timestamp}, a {@link java.util.Date}, a number of microseconds since epoch or a
+ * timestamp string. A row that cannot be encoded is rejected with an {@link
+ * IllegalArgumentException}, and the rows written before it are kept.
+ *
+ * <p>Avro uploads set {@link WriteChannelConfiguration#getUseAvroLogicalTypes()}, so that {@code
+ * TIMESTAMP}, {@code DATE}, {@code TIME}, {@code DATETIME}, {@code NUMERIC} and {@code BIGNUMERIC}
+ * columns are loaded from their Avro logical types. CSV uploads do not support {@code RECORD} and
+ * {@code REPEATED} columns.
+ *
+ * <p>This class is not thread-safe. The load job is available with {@link #getJob()} once the
+ * writer is closed.
+ *
+ * @see BigQuery#rowWriter(WriteChannelConfiguration, Schema)
+ */
+@BetaApi
+public final class RowWriter implements Closeable {
+
+  private final TableDataWriteChannel channel;
+  private final Format format;
+  private final Block block = new Block();
+  private int blockSize;
+  private long blockRowCount;
+  private long rowCount;
+  private boolean closed;
+
+  RowWriter(TableDataWriteChannel channel, Format format) {
+    this.channel = channel;
+    this.format = format;
+    this.blockSize = channel.getUploadStats().getChunkSize();
+  }
+
+  /**
+   * Opens a writer of rows with the given schema into a new load job. If {@code schema} is {@code
+   * null}, the schema of the configuration is used.
+   */
+  static RowWriter open(
+      BigQuery bigquery, JobId jobId, WriteChannelConfiguration configuration, Schema schema) {
+    Schema rowSchema = schema != null ? schema : configuration.getSchema();
+    checkArgument(rowSchema != null, "A schema is required to write rows");
+    String formatName = configuration.getFormat();
+    Format format;
+    WriteChannelConfiguration.Builder builder = configuration.toBuilder();
+    if (FormatOptions.AVRO.equals(formatName)) {
+      format = new AvroRowFormat(rowSchema);
+      builder.setUseAvroLogicalTypes(true);
+    } else if (FormatOptions.JSON.equals(formatName)) {
+      format = new JsonFormat(rowSchema);
+    } else if (formatName == null || FormatOptions.CSV.equals(formatName)) {
+      format = new CsvFormat(rowSchema, configuration);
+    } else {
+      throw new IllegalArgumentException("Rows cannot be written in format " + formatName);
+    }
+    if (!FormatOptions.AVRO.equals(formatName) && configuration.getSchema() == null) {
+      // CSV and JSON do not carry their schema
+      builder.setSchema(rowSchema);
+    }
+    return new RowWriter(bigquery.writer(jobId, builder.build()), format);
+  }
+
+  /**
+   * Encodes a row and writes it to the upload. The encoded rows are sent to the channel once they
+   * reach its chunk size.
+   *
+   * @throws IllegalArgumentException if the row has no value for a required column, or a value
+   *     cannot be converted to the type of its column
+   * @throws IOException if the upload fails
+   */
+  public void write(Object row) throws IOException {
+    checkState(!closed, "Writer is closed");
+    checkNotNull(row);
+    int size = block.size();
+    try {
+      format.encode(row, block);
+    } catch (RuntimeException e) {
+      block.truncate(size);
+      throw e;
+    }
+    blockRowCount++;
+    rowCount++;
+    if (block.size() >= blockSize) {
+      flushBlock();
+    }
+  }
+
+  /**
+   * Sends the rows encoded so far to the channel. The channel still uploads them only once it has a
+   * full chunk or is closed.
+   */
+  public void flush() throws IOException {
+    checkState(!closed, "Writer is closed");
+    if (blockRowCount > 0) {
+      flushBlock();
+    }
+  }
+
+  /** Sends the remaining rows and closes the channel, which completes the upload. */
+  @Override
+  public void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      try {
+        flushBlock();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /** Returns the number of rows written. */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns the statistics of the upload of the rows written so far. */
+  public UploadStats getUploadStats() {
+    return channel.getUploadStats();
+  }
+
+  /** Returns the load job, or {@code null} if the writer is not closed yet. */
+  public Job getJob() {
+    return channel.getJob();
+  }
+
+  private void flushBlock() throws IOException {
+    format.writeBlock(channel, block.buffer(), block.size(), blockRowCount);
+    block.reset();
+    blockRowCount = 0;
+    // the chunk size of the channel can change as it is adapted to the throughput
+    blockSize = channel.getUploadStats().getChunkSize();
+  }
+
+  /** Writes all of {@code bytes} up to {@code length} to a channel. */
+  static void write(WritableByteChannel channel, byte[] bytes, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /** The encoded rows not sent to the channel yet. */
+  private static final class Block extends ByteArrayOutputStream {
+
+    byte[] buffer() {
+      return buf;
+    }
+
+    void truncate(int size) {
+      count = size;
+    }
+  }
+
+  /** The encoding of rows. */
+  abstract static class Format {
+
+    /** Encodes a row. */
+    abstract void encode(Object row, OutputStream out) throws IOException;
+
+    /** Writes a block of {@code rowCount} encoded rows, possibly none, to a channel. */
+    void writeBlock(WritableByteChannel channel, byte[] rows, int length, long rowCount)
+        throws IOException {
+      write(channel, rows, length);
+    }
+  }
+
+  /** Encodes rows as newline-delimited JSON. Null values are omitted. */
+  private static final class JsonFormat extends Format {
+
+    private final Schema schema;
+
+    JsonFormat(Schema schema) {
+      this.schema = schema;
+    }
+
+    @Override
+    void encode(Object row, OutputStream out) throws IOException {
+      JsonGenerator generator =
+          JsonHelper.getJsonFactory().createJsonGenerator(out, StandardCharsets.UTF_8);
+      writeRecord(generator, schema.getFields(), row);
+      // flushes the generator but not the block, which closing would do
+      generator.flush();
+      out.write('\n');
+    }
+
+    private void writeRecord(JsonGenerator generator, FieldList fields, Object row)
+        throws IOException {
+      generator.writeStartObject();
+      for (int i = 0; i < fields.size(); i++) {
+        Field field = fields.get(i);
+        Object value = RowValues.get(row, field, i);
+        if (value == null) {
+          continue;
+        }
+        generator.writeFieldName(field.getName());
+        if (field.getMode() == Field.Mode.REPEATED) {
+          generator.writeStartArray();
+          for (Object element : RowValues.getElements(value)) {
+            Object elementValue = RowValues.getElement(element);
+            if (elementValue == null) {
+              throw new IllegalArgumentException(
+                  "Null element in repeated column " + field.getName());
+            }
+            writeValue(generator, field, elementValue);
+          }
+          generator.writeEndArray();
+        } else {
+          writeValue(generator, field, value);
+        }
+      }
+      generator.writeEndObject();
+    }
+
+    private void writeValue(JsonGenerator generator, Field field, Object value) throws IOException {
+      switch (field.getType().getStandardType()) {
+        case INT64:
+          generator.writeNumber(RowValues.toLong(value));
+          break;
+        case FLOAT64:
+          generator.writeNumber(RowValues.toDouble(value));
+          break;
+        case BOOL:
+          generator.writeBoolean(RowValues.toBoolean(value));
+          break;
+        case STRUCT:
+          writeRecord(generator, field.getSubFields(), value);
+          break;
+        default:
+          generator.writeString(RowValues.toText(field, value));
+      }
+    }
+  }
+
+  /**
+   * Encodes rows as CSV, with the field delimiter, quote and encoding of the {@link CsvOptions}.
+   * Values are quoted only if they need to be, and null values are written as the null marker.
+   */
+  private static final class CsvFormat extends Format {
+
+    private final FieldList fields;
+    private final String delimiter;
+    private final String quote;
+    private final byte[] nullMarker;
+    private final Charset charset;
+
+    CsvFormat(Schema schema, WriteChannelConfiguration configuration) {
+      this.fields = schema.getFields();
+      for (Field field : fields) {
+        checkArgument(
+            field.getMode() != Field.Mode.REPEATED
+                && field.getType().getStandardType() != StandardSQLTypeName.STRUCT,
+            "CSV does not support the repeated or record column %s",
+            field.getName());
+      }
+      CsvOptions csvOptions = configuration.getCsvOptions();
+      String delimiterValue = csvOptions != null ? csvOptions.getFieldDelimiter() : null;
+      String quoteValue = csvOptions != null ? csvOptions.getQuote() : null;
+      String encoding = csvOptions != null ? csvOptions.getEncoding() : null;
+      this.charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+      if (delimiterValue == null) {
+        delimiterValue = ",";
+      } else if ("\\t".equals(delimiterValue) || "tab".equalsIgnoreCase(delimiterValue)) {
+        delimiterValue = "\t";
+      }
+      this.delimiter = delimiterValue;
+      this.quote = quoteValue != null ? quoteValue : "\"";
+      String nullMarkerValue = configuration.getNullMarker();
+      this.nullMarker = nullMarkerValue != null ? nullMarkerValue.getBytes(charset) : new byte[0];
+    }
+
+    @Override
+    void encode(Object row, OutputStream out) throws IOException {
+      for (int i = 0; i < fields.size(); i++) {
+        if (i > 0) {
+          out.write(delimiter.getBytes(charset));
+        }
+        Field field = fields.get(i);
+        String text = RowValues.toText(field, RowValues.get(row, field, i));
+        if (text == null) {
+          out.write(nullMarker);
+        } else if (!quote.isEmpty()
+            && (text.isEmpty()
+                || text.contains(delimiter)
+                || text.contains(quote)
+                || text.indexOf('\n') >= 0
+                || text.indexOf('\r') >= 0)) {
+          // an empty quoted value is an empty string rather than a null value
+          out.write((quote + text.replace(quote, quote + quote) + quote).getBytes(charset));
+        } else {
+          out.write(text.getBytes(charset));
+        }
+      }
+      out.write('\n');
+    }
+  }
+}
@@ -0,0 +1,500 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.BetaApi;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.threeten.bp.Duration;
+
+/**
+ * Inserts rows in a table with streaming inserts, batching the rows added by many threads into
+ * {@code tabledata.insertAll} requests.
+ *
+ * <p>Rows are buffered until a batch reaches a number of rows or an estimated size, or until the
+ * oldest buffered row waited for a linger time, and a number of requests is sent concurrently. Rows
+ * that fail only with retryable errors, such as the rows that were not inserted because another row
+ * of their request was invalid, are sent again in a following request. Each added row has a future
+ * that completes when the row is inserted, or fails with a {@link BigQueryException} carrying the
+ * errors of the row.
+ *
+ * <p>Example of inserting rows from many threads:
+ *
+ * <pre>{@code
+ * try (StreamingInserter inserter =
+ *     StreamingInserter.newBuilder(bigquery, TableId.of("dataset", "table"))
+ *         .setMaxBatchRows(500)
+ *         .setLinger(Duration.ofMillis(50L))
+ *         .build()) {
+ *   ApiFuture<Void> inserted = inserter.add(RowToInsert.of(rowId, rowContent));
+ *   // ...
+ * }
+ * }</pre>
+ *
+ * <p>Objects of this class are thread-safe.
+ */
+@BetaApi
+public final class StreamingInserter implements AutoCloseable {
+
+  // the reasons of the row errors for which the row was not inserted but could be
+  private static final Set<String> RETRYABLE_REASONS =
+      ImmutableSet.of("stopped", "timeout", "backendError", "internalError");
+
+  private final BigQuery bigquery;
+  private final TableId table;
+  private final int maxBatchRows;
+  private final long maxBatchBytes;
+  private final long lingerMillis;
+  private final int maxInFlightRequests;
+  private final long maxBufferedBytes;
+  private final int maxAttempts;
+  private final Boolean skipInvalidRows;
+  private final Boolean ignoreUnknownValues;
+  private final String templateSuffix;
+  private final ScheduledExecutorService executor;
+  // the rows not sent yet, in the order they are added
+  private final ArrayDeque<PendingRow> buffer = new ArrayDeque<>();
+  private long bufferBytes;
+  // the size of the rows added and not completed yet, including the rows being sent
+  private long pendingBytes;
+  private int pendingRows;
+  private int inFlightRequests;
+  private int flushes;
+  private boolean lingerScheduled;
+  private boolean closed;
+
+  /** A row added to the inserter, and the future completed when the row is inserted. */
+  private static final class PendingRow {
+
+    final RowToInsert row;
+    final long sizeBytes;
+    final long addedMillis;
+    final SettableApiFuture<Void> future = SettableApiFuture.create();
+    int attempts;
+
+    PendingRow(RowToInsert row, long addedMillis) {
+      this.row = row;
+      this.sizeBytes = row.getEstimatedSizeBytes();
+      this.addedMillis = addedMillis;
+    }
+  }
+
+  /** A builder for {@code StreamingInserter} objects. */
+  public static final class Builder {
+
+    private final BigQuery bigquery;
+    private final TableId table;
+    private int maxBatchRows = 500;
+    private long maxBatchBytes = 5L << 20;
+    private Duration linger = Duration.ofMillis(10L);
+    private int maxInFlightRequests = 4;
+    private long maxBufferedBytes = 64L << 20;
+    private int maxAttempts = 3;
+    private Boolean skipInvalidRows;
+    private Boolean ignoreUnknownValues;
+    private String templateSuffix;
+    private ScheduledExecutorService executor;
+
+    private Builder(BigQuery bigquery, TableId table) {
+      this.bigquery = checkNotNull(bigquery);
+      this.table = checkNotNull(table);
+    }
+
+    /** Sets the maximum number of rows of a request. The default is 500. */
+    public Builder setMaxBatchRows(int maxBatchRows) {
+      checkArgument(maxBatchRows > 0, "The maximum number of rows must be positive");
+      this.maxBatchRows = maxBatchRows;
+      return this;
+    }
+
+    /**
+     * Sets the maximum estimated size of the rows of a request. A row larger than this size is sent
+     * alone. The default is 5 MiB.
+     */
+    public Builder setMaxBatchBytes(long maxBatchBytes) {
+      checkArgument(maxBatchBytes > 0, "The maximum size must be positive");
+      this.maxBatchBytes = maxBatchBytes;
+      return this;
+    }
+
+    /**
+     * Sets how long rows are buffered waiting for more rows before an incomplete batch is sent. The
+     * default is 10 milliseconds.
+     */
+    public Builder setLinger(Duration linger) {
+      checkArgument(!linger.isNegative(), "The linger time must not be negative");
+      this.linger = linger;
+      return this;
+    }
+
+    /** Sets the maximum number of requests sent concurrently. The default is 4. */
+    public Builder setMaxInFlightRequests(int maxInFlightRequests) {
+      checkArgument(maxInFlightRequests > 0, "The maximum number of requests must be positive");
+      this.maxInFlightRequests = maxInFlightRequests;
+      return this;
+    }
+
+    /**
+     * Sets the maximum estimated size of the rows added and not inserted yet. Adding a row blocks
+     * while this size is reached. The default is 64 MiB.
+     */
+    public Builder setMaxBufferedBytes(long maxBufferedBytes) {
+      checkArgument(maxBufferedBytes > 0, "The maximum size must be positive");
+      this.maxBufferedBytes = maxBufferedBytes;
+      return this;
+    }
+
+    /**
+     * Sets how many times a row failing with retryable errors is sent before its future fails. The
+     * default is 3.
+     */
+    public Builder setMaxAttempts(int maxAttempts) {
+      checkArgument(maxAttempts > 0, "The maximum number of attempts must be positive");
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets whether to insert the valid rows of a request that contains invalid rows. If not set,
+     * the valid rows are not inserted and are sent again in a following request.
+     *
+     * @see InsertAllRequest.Builder#setSkipInvalidRows(boolean)
+     */
+    public Builder setSkipInvalidRows(boolean skipInvalidRows) {
+      this.skipInvalidRows = skipInvalidRows;
+      return this;
+    }
+
+    /**
+     * Sets whether to accept rows with values that do not match the table schema.
+     *
+     * @see InsertAllRequest.Builder#setIgnoreUnknownValues(boolean)
+     */
+    public Builder setIgnoreUnknownValues(boolean ignoreUnknownValues) {
+      this.ignoreUnknownValues = ignoreUnknownValues;
+      return this;
+    }
+
+    /**
+     * Sets the suffix of the table created from the template table to insert rows into.
+     *
+     * @see InsertAllRequest.Builder#setTemplateSuffix(String)
+     */
+    public Builder setTemplateSuffix(String templateSuffix) {
+      this.templateSuffix = templateSuffix;
+      return this;
+    }
+
+    /**
+     * Sets the executor that sends the requests. If not set, the async executor of the client is
+     * used.
+     *
+     * @see BigQueryOptions#getAsyncExecutor()
+     */
+    public Builder setExecutor(ScheduledExecutorService executor) {
+      this.executor = checkNotNull(executor);
+      return this;
+    }
+
+    /** Creates a {@code StreamingInserter} object. */
+    public StreamingInserter build() {
+      return new StreamingInserter(this);
+    }
+  }
+
+  private StreamingInserter(Builder builder) {
+    this.bigquery = builder.bigquery;
+    this.table = builder.table;
+    this.maxBatchRows = builder.maxBatchRows;
+    this.maxBatchBytes = builder.maxBatchBytes;
+    this.lingerMillis = builder.linger.toMillis();
+    this.maxInFlightRequests = builder.maxInFlightRequests;
+    this.maxBufferedBytes = builder.maxBufferedBytes;
+    this.maxAttempts = builder.maxAttempts;
+    this.skipInvalidRows = builder.skipInvalidRows;
+    this.ignoreUnknownValues = builder.ignoreUnknownValues;
+    this.templateSuffix = builder.templateSuffix;
+    this.executor =
+        builder.executor != null ? builder.executor : bigquery.getOptions().getAsyncExecutor();
+  }
+
+  /** Returns a builder for a {@code StreamingInserter} that inserts rows in {@code table}. */
+  public static Builder newBuilder(BigQuery bigquery, TableId table) {
+    return new Builder(bigquery, table);
+  }
+
+  /**
+   * Adds a row to insert. The returned future completes when the row is inserted, or fails with a
+   * {@link BigQueryException} if the row is not inserted. Blocks while the rows not inserted yet
+   * reach the maximum buffered size.
+   *
+   * <p>Rows without an insert id are not deduplicated, so they may be inserted more than once if a
+   * request fails after the rows were inserted.
+   *
+   * @throws IllegalStateException if the inserter is closed
+   * @throws InterruptedException if the current thread is interrupted while waiting for buffer
+   *     space
+   */
+  public ApiFuture<Void> add(RowToInsert row) throws InterruptedException {
+    PendingRow pending = new PendingRow(checkNotNull(row), now());
+    synchronized (this) {
+      checkState(!closed, "StreamingInserter is closed");
+      while (pendingRows > 0 && pendingBytes + pending.sizeBytes > maxBufferedBytes) {
+        wait();
+        checkState(!closed, "StreamingInserter is closed");
+      }
+      pendingBytes += pending.sizeBytes;
+      pendingRows++;
+      buffer.addLast(pending);
+      bufferBytes += pending.sizeBytes;
+      send();
+    }
+    return pending.future;
+  }
+
+  /** Adds a row to insert, without insert id. See {@link #add(RowToInsert)}. */
+  public ApiFuture<Void> add(Map<String, ?> content) throws InterruptedException {
+    return add(RowToInsert.of(content));
+  }
+
+  /** Returns the number of rows added and not inserted or failed yet. */
+  public synchronized int getPendingRowCount() {
+    return pendingRows;
+  }
+
+  /**
+   * Sends the buffered rows without waiting for the linger time, and blocks until all the rows
+   * added are inserted or failed, including the rows added while flushing.
+   */
+  public void flush() throws InterruptedException {
+    synchronized (this) {
+      flushes++;
+      try {
+        send();
+        while (pendingRows > 0) {
+          wait();
+        }
+      } finally {
+        flushes--;
+      }
+    }
+  }
+
+  /** Flushes the rows added, and stops accepting rows. */
+  @Override
+  public void close() throws InterruptedException {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      notifyAll();
+    }
+    flush();
+  }
+
+  private long now() {
+    return bigquery.getOptions().getClock().millisTime();
+  }
+
+  /** Sends the batches that are ready, as long as requests can be sent. */
+  private synchronized void send() {
+    while (inFlightRequests < maxInFlightRequests && isBatchReady()) {
+      List<PendingRow> batch = new ArrayList<>();
+      long batchBytes = 0;
+      while (!buffer.isEmpty()
+          && batch.size() < maxBatchRows
+          && (batch.isEmpty() || batchBytes + buffer.peekFirst().sizeBytes <= maxBatchBytes)) {
+        PendingRow row = buffer.pollFirst();
+        batch.add(row);
+        batchBytes += row.sizeBytes;
+      }
+      bufferBytes -= batchBytes;
+      inFlightRequests++;
+      send(batch);
+    }
+    if (!buffer.isEmpty() && !lingerScheduled && inFlightRequests < maxInFlightRequests) {
+      long delayMillis = Math.max(0, buffer.peekFirst().addedMillis + lingerMillis - now());
+      try {
+        executor.schedule(
+            new Runnable() {
+              @Override
+              public void run() {
+                synchronized (StreamingInserter.this) {
+                  lingerScheduled = false;
+                  send();
+                }
+              }
+            },
+            delayMillis,
+            TimeUnit.MILLISECONDS);
+        lingerScheduled = true;
+      } catch (RejectedExecutionException e) {
+        List<PendingRow> rejected = new ArrayList<>(buffer);
+        buffer.clear();
+        bufferBytes = 0;
+        release(rejected);
+        for (PendingRow row : rejected) {
+          row.future.setException(e);
+        }
+      }
+    }
+  }
+
+  private boolean isBatchReady() {
+    return !buffer.isEmpty()
+        && (flushes > 0
+            || closed
+            || buffer.size() >= maxBatchRows
+            || bufferBytes >= maxBatchBytes
+            || buffer.peekFirst().addedMillis + lingerMillis <= now());
+  }
+
+  private void send(final List<PendingRow> batch) {
+    final InsertAllRequest.Builder request = InsertAllRequest.newBuilder(table);
+    for (PendingRow row : batch) {
+      row.attempts++;
+      request.addRow(row.row);
+    }
+    if (skipInvalidRows != null) {
+      request.setSkipInvalidRows(skipInvalidRows);
+    }
+    if (ignoreUnknownValues != null) {
+      request.setIgnoreUnknownValues(ignoreUnknownValues);
+    }
+    if (templateSuffix != null) {
+      request.setTemplateSuffix(templateSuffix);
+    }
+    ApiFuture<InsertAllResponse> response =
+        AsyncPoller.submit(
+            executor,
+            new Callable<InsertAllResponse>() {
+              @Override
+              public InsertAllResponse call() {
+                return bigquery.insertAll(request.build());
+              }
+            });
+    ApiFutures.addCallback(
+        response,
+        new ApiFutureCallback<InsertAllResponse>() {
+          @Override
+          public void onSuccess(InsertAllResponse response) {
+            onResponse(batch, response);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            onResponse(batch, t);
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /** Completes the rows of a request, and buffers again the rows to retry. */
+  private void onResponse(List<PendingRow> batch, InsertAllResponse response) {
+    List<PendingRow> inserted = new ArrayList<>();
+    Map<PendingRow, Throwable> failed = new LinkedHashMap<>();
+    synchronized (this) {
+      List<PendingRow> retries = new ArrayList<>();
+      for (int i = 0; i < batch.size(); i++) {
+        PendingRow row = batch.get(i);
+        List<BigQueryError> errors = response.getErrorsFor(i);
+        if (errors == null) {
+          inserted.add(row);
+        } else if (row.attempts < maxAttempts && isRetryable(errors)) {
+          retries.add(row);
+        } else {
+          failed.put(
+              row,
+              errors.isEmpty()
+                  ? new BigQueryException(
+                      BaseServiceException.UNKNOWN_CODE, "The row was not inserted")
+                  : new BigQueryException(errors));
+        }
+      }
+      // retried rows are sent before the rows added since
+      for (int i = retries.size() - 1; i >= 0; i--) {
+        buffer.addFirst(retries.get(i));
+        bufferBytes += retries.get(i).sizeBytes;
+      }
+      release(inserted);
+      release(failed.keySet());
+      inFlightRequests--;
+      send();
+    }
+    // futures are completed without holding the lock, as their callbacks may run directly
+    for (PendingRow row : inserted) {
+      row.future.set(null);
+    }
+    for (Map.Entry<PendingRow, Throwable> row : failed.entrySet()) {
+      row.getKey().future.setException(row.getValue());
+    }
+  }
+
+  private void onResponse(List<PendingRow> batch, Throwable failure) {
+    synchronized (this) {
+      release(batch);
+      inFlightRequests--;
+      send();
+    }
+    for (PendingRow row : batch) {
+      row.future.setException(failure);
+    }
+  }
+
+  private static boolean isRetryable(List<BigQueryError> errors) {
+    if (errors.isEmpty()) {
+      return false;
+    }
+    for (BigQueryError error : errors) {
+      if (!RETRYABLE_REASONS.contains(error.getReason())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Releases the buffer space of rows that are inserted or failed. */
+  private synchronized void release(Collection<PendingRow> rows) {
+    for (PendingRow row : rows) {
+      pendingBytes -= row.sizeBytes;
+      pendingRows--;
+    }
+    notifyAll();
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.cloud.RetryHelper.runWithRetries;
+
+import com.google.cloud.BaseServiceException;
+import com.google.cloud.RetryHelper;
+import com.google.cloud.Tuple;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Callable;
+
+/**
+ * Uploads a file, or a region of a file, to a resumable upload session, in chunks read from the
+ * file as they are sent. When a chunk fails, the upload resumes from the last byte persisted by the
+ * session.
+ */
+final class TableDataFileUpload {
+
+  // a multiple of the 256 KiB granularity of resumable uploads
+  static final long CHUNK_SIZE = 256L * 256 * 1024;
+
+  private final BigQueryOptions options;
+  private final BigQueryRpc rpc;
+  private final String uploadId;
+  private final FileChannel file;
+  private final long fileOffset;
+  private final long size;
+  private final long chunkSize;
+
+  private TableDataFileUpload(
+      BigQueryOptions options,
+      String uploadId,
+      FileChannel file,
+      long fileOffset,
+      long size,
+      long chunkSize) {
+    this.options = options;
+    this.rpc = options.getBigQueryRpcV2();
+    this.uploadId = uploadId;
+    this.file = file;
+    this.fileOffset = fileOffset;
+    this.size = size;
+    this.chunkSize = chunkSize;
+  }
+
+  /** Uploads a file to a new load job, and returns the job. */
+  static Job upload(
+      BigQueryOptions options,
+      JobId jobId,
+      WriteChannelConfiguration configuration,
+      Path path,
+      long chunkSize)
+      throws IOException {
+    return upload(options, jobId, configuration, path, 0, Long.MAX_VALUE, chunkSize);
+  }
+
+  /**
+   * Uploads the region of a file that starts at {@code offset}, and is {@code length} bytes long or
+   * ends with the file, to a new load job, and returns the job.
+   */
+  static Job upload(
+      BigQueryOptions options,
+      JobId jobId,
+      WriteChannelConfiguration configuration,
+      Path path,
+      long offset,
+      long length,
+      long chunkSize)
+      throws IOException {
+    try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = Math.max(0, Math.min(length, file.size() - offset));
+      String uploadId = TableDataWriteChannel.open(options, jobId, configuration);
+      com.google.api.services.bigquery.model.Job jobPb =
+          new TableDataFileUpload(options, uploadId, file, offset, size, chunkSize).run();
+      return Job.fromPb(options.getService(), jobPb);
+    }
+  }
+
+  private com.google.api.services.bigquery.model.Job run() {
+    long offset = 0;
+    while (true) {
+      Tuple<Long, com.google.api.services.bigquery.model.Job> status = uploadChunk(offset);
+      if (status.y() != null) {
+        return status.y();
+      }
+      if (status.x() <= offset) {
+        throw new BigQueryException(
+            BaseServiceException.UNKNOWN_CODE,
+            "Upload session persisted no bytes past offset " + offset);
+      }
+      offset = status.x();
+    }
+  }
+
+  /**
+   * Uploads the chunk starting at {@code offset}, and returns the upload status. Retried attempts
+   * upload the chunk starting at the last byte persisted by the session.
+   */
+  private Tuple<Long, com.google.api.services.bigquery.model.Job> uploadChunk(final long offset) {
+    try {
+      return runWithRetries(
+          new Callable<Tuple<Long, com.google.api.services.bigquery.model.Job>>() {
+            private boolean retried;
+
+            @Override
+            public Tuple<Long, com.google.api.services.bigquery.model.Job> call() {
+              long start = offset;
+              if (retried) {
+                Tuple<Long, com.google.api.services.bigquery.model.Job> status =
+                    rpc.getUploadStatus(uploadId);
+                if (status.y() != null) {
+                  return status;
+                }
+                start = status.x();
+              }
+              retried = true;
+              long length = Math.min(chunkSize, size - start);
+              return rpc.write(
+                  uploadId, file, fileOffset + start, start, length, start + length == size);
+            }
+          },
+          options.getRetrySettings(),
+          BigQueryImpl.EXCEPTION_HANDLER,
+          options.getClock());
+    } catch (RetryHelper.RetryHelperException e) {
+      throw BigQueryException.translateAndThrow(e);
+    }
+  }
+}
@@ -17,24 +17,57 @@
 package com.google.cloud.bigquery;
 
 import static com.google.cloud.RetryHelper.runWithRetries;
+import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.BetaApi;
+import com.google.cloud.BaseServiceException;
 import com.google.cloud.BaseWriteChannel;
 import com.google.cloud.RestorableState;
 import com.google.cloud.RetryHelper;
 import com.google.cloud.WriteChannel;
+import com.google.common.base.Throwables;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * {@link WriteChannel} implementation to stream data into a BigQuery table. Use {@link #getJob()}
  * to get the job used to insert streamed data. Please notice that {@link #getJob()} returns {@code
  * null} until the channel is closed.
+ *
+ * <p>If {@link BigQueryOptions#isPipelinedUploads()} is set, each full chunk is uploaded in the
+ * background while the next chunk is written to the channel. Chunks are still uploaded one at a
+ * time and in order, and a failed upload is reported by the next call that writes, closes or
+ * captures the channel.
+ *
+ * <p>If {@link #setAdaptiveChunkSize(int, int)} is called, the chunk size is adapted after each
+ * chunk: it grows towards the size that the measured throughput uploads in {@link
+ * #TARGET_CHUNK_UPLOAD_MILLIS}, and it is halved when the upload of a chunk had to be retried. Use
+ * {@link #getUploadStats()} to get the chunk size in use and the effective throughput.
  */
 public class TableDataWriteChannel
     extends BaseWriteChannel<BigQueryOptions, WriteChannelConfiguration> {
 
+  /** The time the upload of a chunk should take when the chunk size is adapted, in milliseconds. */
+  @BetaApi public static final long TARGET_CHUNK_UPLOAD_MILLIS = 5000;
+
   private Job job;
+  // the upload of the previous chunk, if chunks are uploaded in the background
+  private ApiFuture<Void> pendingUpload;
+  // the bounds of the chunk size, or 0 if the chunk size is not adapted
+  private int minChunkSize;
+  private int maxChunkSize;
+  // the last uploaded chunk, until the chunk size is adapted to it
+  private int lastChunkLength;
+  private int lastChunkRetries;
+  private long lastChunkMillis;
+  private final AtomicLong chunkCount = new AtomicLong();
+  private final AtomicLong uploadedBytes = new AtomicLong();
+  private final AtomicLong retryCount = new AtomicLong();
+  private final AtomicLong uploadTimeMillis = new AtomicLong();
 
   TableDataWriteChannel(
       BigQueryOptions options, JobId jobId, WriteChannelConfiguration writeChannelConfiguration) {
@@ -48,24 +81,161 @@ public class TableDataWriteChannel
 
   @Override
   protected void flushBuffer(final int length, final boolean last) {
-    try {
+    awaitPendingUpload();
+    adaptChunkSize();
+    if (last || !getOptions().isPipelinedUploads()) {
       com.google.api.services.bigquery.model.Job jobPb =
+          upload(getBuffer(), getPosition(), length, last);
+      job = jobPb != null ? Job.fromPb(getOptions().getService(), jobPb) : null;
+      adaptChunkSize();
+      return;
+    }
+    // once a chunk is flushed, the channel writes the following data to a new buffer, so this one
+    // is not modified while it is uploaded
+    final byte[] buffer = getBuffer();
+    final long position = getPosition();
+    pendingUpload =
+        AsyncPoller.submit(
+            getOptions().getAsyncExecutor(),
+            new Callable<Void>() {
+              @Override
+              public Void call() {
+                upload(buffer, position, length, false);
+                return null;
+              }
+            });
+  }
+
+  private com.google.api.services.bigquery.model.Job upload(
+      final byte[] buffer, final long position, final int length, final boolean last) {
+    final int[] attempts = new int[1];
+    long start = getOptions().getClock().millisTime();
+    com.google.api.services.bigquery.model.Job jobPb;
+    try {
+      jobPb =
           runWithRetries(
               new Callable<com.google.api.services.bigquery.model.Job>() {
                 @Override
                 public com.google.api.services.bigquery.model.Job call() {
+                  attempts[0]++;
                   return getOptions()
                       .getBigQueryRpcV2()
-                      .write(getUploadId(), getBuffer(), 0, getPosition(), length, last);
+                      .write(getUploadId(), buffer, 0, position, length, last);
                 }
               },
               getOptions().getRetrySettings(),
               BigQueryImpl.EXCEPTION_HANDLER,
               getOptions().getClock());
-      job = jobPb != null ? Job.fromPb(getOptions().getService(), jobPb) : null;
     } catch (RetryHelper.RetryHelperException e) {
       throw BigQueryException.translateAndThrow(e);
     }
+    long millis = getOptions().getClock().millisTime() - start;
+    chunkCount.incrementAndGet();
+    uploadedBytes.addAndGet(length);
+    retryCount.addAndGet(attempts[0] - 1);
+    uploadTimeMillis.addAndGet(millis);
+    lastChunkLength = length;
+    lastChunkRetries = attempts[0] - 1;
+    lastChunkMillis = millis;
+    return jobPb;
+  }
+
+  /**
+   * Adapts the chunk size to the last uploaded chunk, if the chunk size is adaptive. Must be called
+   * once its upload completed, and not while another chunk is uploaded.
+   */
+  private void adaptChunkSize() {
+    if (maxChunkSize == 0 || lastChunkLength == 0) {
+      return;
+    }
+    int chunkSize = getChunkSize();
+    long nextChunkSize;
+    if (lastChunkRetries > 0) {
+      // smaller chunks are cheaper to send again
+      nextChunkSize = chunkSize / 2;
+    } else {
+      // the size uploaded in the target time at the last chunk's throughput, at most doubling
+      nextChunkSize = lastChunkLength * TARGET_CHUNK_UPLOAD_MILLIS / Math.max(1, lastChunkMillis);
+      nextChunkSize = Math.min(nextChunkSize, 2L * chunkSize);
+    }
+    // the bounds are multiples of the minimum chunk size, so rounding keeps the size within them
+    setChunkSize((int) Math.max(minChunkSize, Math.min(maxChunkSize, nextChunkSize)));
+    lastChunkLength = 0;
+  }
+
+  /**
+   * Makes the chunk size adaptive, within the given bounds. Each bound is rounded up to a multiple
+   * of 256 KiB, the granularity of resumable uploads. The chunk size grows while chunks upload in
+   * less than {@link #TARGET_CHUNK_UPLOAD_MILLIS}, shrinks while they take longer, and is halved
+   * when the upload of a chunk is retried. A later call to {@link #setChunkSize(int)} only sets the
+   * size of the next chunk. The adaptive bounds are not part of the state returned by {@link
+   * #capture()}.
+   *
+   * @param minChunkSize the minimum chunk size, in bytes
+   * @param maxChunkSize the maximum chunk size, in bytes
+   * @throws IllegalArgumentException if {@code minChunkSize} is greater than {@code maxChunkSize}
+   */
+  @BetaApi
+  public void setAdaptiveChunkSize(int minChunkSize, int maxChunkSize) {
+    checkArgument(
+        minChunkSize <= maxChunkSize,
+        "The minimum chunk size %s is greater than the maximum chunk size %s",
+        minChunkSize,
+        maxChunkSize);
+    this.minChunkSize = roundChunkSize(minChunkSize);
+    this.maxChunkSize = roundChunkSize(maxChunkSize);
+    setChunkSize(Math.max(this.minChunkSize, Math.min(this.maxChunkSize, getChunkSize())));
+  }
+
+  private int roundChunkSize(int chunkSize) {
+    int minSize = getMinChunkSize();
+    return Math.max(minSize, (chunkSize + minSize - 1) / minSize * minSize);
+  }
+
+  /**
+   * Returns the statistics of the chunks uploaded so far, and the chunk size in use. Chunks that
+   * are still being uploaded are not counted.
+   */
+  @BetaApi
+  public UploadStats getUploadStats() {
+    return new UploadStats(
+        chunkCount.get(),
+        uploadedBytes.get(),
+        retryCount.get(),
+        uploadTimeMillis.get(),
+        getChunkSize());
+  }
+
+  /**
+   * Waits for the upload of the previous chunk, if any. Rethrows its failure, and keeps doing so on
+   * later calls since the following chunks cannot be uploaded at their offsets.
+   */
+  private void awaitPendingUpload() {
+    if (pendingUpload == null) {
+      return;
+    }
+    try {
+      pendingUpload.get();
+      pendingUpload = null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new BigQueryException(BaseServiceException.UNKNOWN_CODE, e.getMessage(), e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new BigQueryException(BaseServiceException.UNKNOWN_CODE, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Waits for the upload of the previous chunk, if any, so that the captured state does not
+   * depend on uploads in progress.
+   */
+  @Override
+  public RestorableState<WriteChannel> capture() {
+    awaitPendingUpload();
+    return super.capture();
   }
 
   @Override
@@ -73,7 +243,7 @@ public class TableDataWriteChannel
     return StateImpl.builder(getOptions(), getEntity(), getUploadId(), job);
   }
 
-  private static String open(
+  static String open(
       final BigQueryOptions options,
       final JobId jobId,
       final WriteChannelConfiguration writeChannelConfiguration) {
@@ -17,15 +17,21 @@
 package com.google.cloud.bigquery;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
+import com.google.api.core.BetaApi;
 import com.google.api.core.InternalApi;
 import com.google.api.gax.paging.Page;
+import com.google.cloud.Tuple;
 import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import javax.annotation.Nullable;
 
 public class TableResult implements Page<FieldValueList>, Serializable {
@@ -35,6 +41,18 @@ public class TableResult implements Page<FieldValueList>, Serializable {
   @Nullable private final Schema schema;
   private final long totalRows;
   private final Page<FieldValueList> pageNoSchema;
+  @Nullable private final ColumnarPageFetcher columnarPageFetcher;
+  private transient ColumnarPage columnarPage;
+
+  /** Fetches the page following a page of results directly into a {@link ColumnarPage}. */
+  interface ColumnarPageFetcher extends Serializable {
+
+    /**
+     * Returns the next page, and the fetcher of the page following it, or {@code null} if there is
+     * none.
+     */
+    Tuple<ColumnarPage, ColumnarPageFetcher> getNextColumnarPage();
+  }
 
   /**
    * If {@code schema} is non-null, {@code TableResult} adds the schema to {@code FieldValueList}s
@@ -42,9 +60,22 @@ public class TableResult implements Page<FieldValueList>, Serializable {
    */
   @InternalApi("Exposed for testing")
   public TableResult(Schema schema, long totalRows, Page<FieldValueList> pageNoSchema) {
+    this(schema, totalRows, pageNoSchema, null);
+  }
+
+  /**
+   * If {@code columnarPageFetcher} is non-null, {@link #iterateColumnarPages()} fetches the pages
+   * following this one with it, rather than as {@code FieldValueList}s.
+   */
+  TableResult(
+      Schema schema,
+      long totalRows,
+      Page<FieldValueList> pageNoSchema,
+      ColumnarPageFetcher columnarPageFetcher) {
     this.schema = schema;
     this.totalRows = totalRows;
     this.pageNoSchema = checkNotNull(pageNoSchema);
+    this.columnarPageFetcher = columnarPageFetcher;
   }
 
   /** Returns the schema of the results. Null if the schema is not supplied. */
@@ -83,11 +114,126 @@ public class TableResult implements Page<FieldValueList>, Serializable {
     return addSchema(pageNoSchema.iterateAll());
   }
 
+  /**
+   * Returns an iterator over all the rows in this and the following pages that fetches up to {@code
+   * depth} pages ahead, on a background thread, while the current page is being consumed. The
+   * iterator must be closed if it is not consumed to the end.
+   *
+   * @param depth the maximum number of pages fetched ahead of the page being consumed
+   * @see PrefetchingRowIterator
+   */
+  @BetaApi
+  public PrefetchingRowIterator iterateAllPrefetching(int depth) {
+    return PrefetchingRowIterator.start(this, depth, null);
+  }
+
+  /**
+   * Returns an iterator over all the rows in this and the following pages that fetches up to {@code
+   * depth} pages ahead, using {@code executor}, while the current page is being consumed. The
+   * iterator must be closed if it is not consumed to the end.
+   *
+   * @param depth the maximum number of pages fetched ahead of the page being consumed
+   * @param executor the executor used to fetch pages
+   * @see PrefetchingRowIterator
+   */
+  @BetaApi
+  public PrefetchingRowIterator iterateAllPrefetching(int depth, ExecutorService executor) {
+    return PrefetchingRowIterator.start(this, depth, checkNotNull(executor));
+  }
+
+  /**
+   * Returns an iterable over all the rows in this and the following pages, converted by {@code
+   * mapper}. Rows are converted lazily, as the iteration advances. The mapper must have been built
+   * for the schema of these results.
+   *
+   * @see RowMapper
+   */
+  @BetaApi
+  public <T> Iterable<T> map(final RowMapper<T> mapper) {
+    checkNotNull(mapper);
+    // the mapper reads fields by index, so rows do not need the schema attached
+    return Iterables.transform(
+        pageNoSchema.iterateAll(),
+        new Function<FieldValueList, T>() {
+          @Override
+          public T apply(FieldValueList row) {
+            return mapper.map(row);
+          }
+        });
+  }
+
   @Override
   public Iterable<FieldValueList> getValues() {
     return addSchema(pageNoSchema.getValues());
   }
 
+  /**
+   * Returns the rows of this page decoded into a {@link ColumnarPage}. The page is decoded once,
+   * the first time this method is called, and then reused.
+   *
+   * @throws IllegalStateException if the schema of the results is not known
+   */
+  @BetaApi
+  public ColumnarPage getColumnarPage() {
+    checkState(schema != null, "Columnar decoding requires the schema of the results");
+    if (columnarPage == null) {
+      columnarPage = ColumnarPage.of(schema.getFields(), getValues());
+    }
+    return columnarPage;
+  }
+
+  /**
+   * Returns an iterable over this page and all the following pages, each decoded into a {@link
+   * ColumnarPage}. Pages are fetched and decoded lazily as the iteration advances, so only one page
+   * is held in memory at a time.
+   *
+   * <p>For table data listed with a schema and with {@link
+   * BigQueryOptions.Builder#setStreamingResponseParsing(boolean)} set, the following pages are
+   * decoded into columns as they are read from the responses, without building a {@link
+   * FieldValueList} for each row. This page has already been read into rows, and is decoded from
+   * them.
+   *
+   * @throws IllegalStateException if the schema of the results is not known
+   */
+  @BetaApi
+  public Iterable<ColumnarPage> iterateColumnarPages() {
+    checkState(schema != null, "Columnar decoding requires the schema of the results");
+    return new Iterable<ColumnarPage>() {
+      @Override
+      public Iterator<ColumnarPage> iterator() {
+        return new AbstractIterator<ColumnarPage>() {
+          // the page returned last, whose next page is fetched only when it is asked for
+          private TableResult current;
+          // the fetcher of the next page, if the following pages are fetched into columns
+          private ColumnarPageFetcher nextColumnarPage;
+
+          @Override
+          protected ColumnarPage computeNext() {
+            if (current == null) {
+              current = TableResult.this;
+              nextColumnarPage = hasNextPage() ? columnarPageFetcher : null;
+              return getColumnarPage();
+            }
+            if (columnarPageFetcher != null) {
+              if (nextColumnarPage == null) {
+                return endOfData();
+              }
+              Tuple<ColumnarPage, ColumnarPageFetcher> next =
+                  nextColumnarPage.getNextColumnarPage();
+              nextColumnarPage = next.y();
+              return next.x();
+            }
+            current = current.getNextPage();
+            if (current == null) {
+              return endOfData();
+            }
+            return current.getColumnarPage();
+          }
+        };
+      }
+    };
+  }
+
   private Iterable<FieldValueList> addSchema(Iterable<FieldValueList> iter) {
     if (schema == null) {
       return iter;
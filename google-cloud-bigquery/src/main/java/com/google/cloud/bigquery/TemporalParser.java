@@ -0,0 +1,319 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import java.math.BigDecimal;
+
+/**
+ * Parsers for the wire formats of temporal values. Values are parsed directly from their string
+ * representation into primitive numbers, without allocating intermediate objects.
+ *
+ * <ul>
+ *   <li>{@code TIMESTAMP}: seconds since epoch in decimal or scientific notation, e.g. {@code
+ *       1.408452095220E9}, or a canonical timestamp string, e.g. {@code 2014-08-19
+ *       12:41:35.220000+00:00}, parsed to microseconds since epoch
+ *   <li>{@code DATE}: {@code YYYY-MM-DD}, parsed to days since epoch
+ *   <li>{@code TIME}: {@code HH:MM:SS[.FFFFFF]}, parsed to nanoseconds of day
+ *   <li>{@code DATETIME}: {@code YYYY-MM-DDTHH:MM:SS[.FFFFFF]}, parsed to microseconds since epoch
+ *       of the date-time in UTC
+ * </ul>
+ */
+final class TemporalParser {
+
+  static final long MICROS_PER_SECOND = 1000000L;
+  static final long NANOS_PER_MICRO = 1000L;
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long SECONDS_PER_DAY = 86400L;
+  private static final long MICROS_PER_DAY = SECONDS_PER_DAY * MICROS_PER_SECOND;
+
+  /** Mantissas below this value can be multiplied by 10 and added a digit without overflowing. */
+  private static final long MAX_MANTISSA = Long.MAX_VALUE / 10;
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  private TemporalParser() {}
+
+  /**
+   * Parses a {@code TIMESTAMP} value to microseconds since epoch. Sub-microsecond digits are
+   * truncated toward zero, like {@link BigDecimal#longValue()} does.
+   *
+   * @throws NumberFormatException if the value is not a valid timestamp
+   */
+  static long parseTimestampMicros(String value) {
+    if (value.length() >= 19 && value.charAt(4) == '-') {
+      return parseTimestampString(value);
+    }
+    int length = value.length();
+    int pos = 0;
+    boolean negative = false;
+    if (pos < length && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+      negative = value.charAt(pos) == '-';
+      pos++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int fractionDigits = 0;
+    boolean fraction = false;
+    for (; pos < length; pos++) {
+      char c = value.charAt(pos);
+      if (c >= '0' && c <= '9') {
+        if (mantissa >= MAX_MANTISSA) {
+          return parseTimestampSlow(value);
+        }
+        mantissa = mantissa * 10 + (c - '0');
+        digits++;
+        if (fraction) {
+          fractionDigits++;
+        }
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        break;
+      }
+    }
+    if (digits == 0) {
+      throw new NumberFormatException("Invalid timestamp value: " + value);
+    }
+    int exponent = 0;
+    if (pos < length) {
+      char c = value.charAt(pos++);
+      if (c != 'E' && c != 'e') {
+        throw new NumberFormatException("Invalid timestamp value: " + value);
+      }
+      boolean negativeExponent = false;
+      if (pos < length && (value.charAt(pos) == '-' || value.charAt(pos) == '+')) {
+        negativeExponent = value.charAt(pos) == '-';
+        pos++;
+      }
+      if (pos == length) {
+        throw new NumberFormatException("Invalid timestamp value: " + value);
+      }
+      for (; pos < length; pos++) {
+        c = value.charAt(pos);
+        if (c < '0' || c > '9' || exponent > 1000) {
+          return parseTimestampSlow(value);
+        }
+        exponent = exponent * 10 + (c - '0');
+      }
+      if (negativeExponent) {
+        exponent = -exponent;
+      }
+    }
+    // value = mantissa * 10^(exponent - fractionDigits), in microseconds
+    int scale = exponent - fractionDigits + 6;
+    long micros;
+    if (scale >= 0) {
+      if (scale >= POWERS_OF_TEN.length || mantissa > Long.MAX_VALUE / POWERS_OF_TEN[scale]) {
+        return parseTimestampSlow(value);
+      }
+      micros = mantissa * POWERS_OF_TEN[scale];
+    } else {
+      micros = -scale >= POWERS_OF_TEN.length ? 0 : mantissa / POWERS_OF_TEN[-scale];
+    }
+    return negative ? -micros : micros;
+  }
+
+  private static long parseTimestampSlow(String value) {
+    return new BigDecimal(value).scaleByPowerOfTen(6).longValue();
+  }
+
+  /**
+   * Parses a timestamp string, e.g. {@code 2014-08-19 12:41:35.220000+00:00}. The time zone can be
+   * omitted, or be {@code Z}, {@code UTC} or an offset from UTC.
+   */
+  private static long parseTimestampString(String value) {
+    try {
+      int length = value.length();
+      int end = parseDateTimeEnd(value);
+      long micros = parseDateTimeMicros(value, end);
+      int pos = end;
+      if (pos < length && value.charAt(pos) == ' ') {
+        pos++;
+      }
+      if (pos == length) {
+        return micros;
+      }
+      char c = value.charAt(pos);
+      if (c == 'Z' && pos + 1 == length) {
+        return micros;
+      }
+      if (value.regionMatches(pos, "UTC", 0, 3) && pos + 3 == length) {
+        return micros;
+      }
+      if (c != '+' && c != '-') {
+        throw new NumberFormatException("Invalid timestamp value: " + value);
+      }
+      int hours = parseDigits(value, pos + 1, 2);
+      int minutes = 0;
+      pos += 3;
+      if (pos < length) {
+        if (value.charAt(pos) == ':') {
+          pos++;
+        }
+        minutes = parseDigits(value, pos, 2);
+        pos += 2;
+      }
+      if (pos != length || hours > 23 || minutes > 59) {
+        throw new NumberFormatException("Invalid timestamp value: " + value);
+      }
+      long offsetMicros = (hours * 60L + minutes) * 60L * MICROS_PER_SECOND;
+      return c == '+' ? micros - offsetMicros : micros + offsetMicros;
+    } catch (IllegalArgumentException ex) {
+      NumberFormatException exception =
+          new NumberFormatException("Invalid timestamp value: " + value);
+      exception.initCause(ex);
+      throw exception;
+    }
+  }
+
+  /**
+   * Parses a {@code DATE} value, e.g. {@code 2014-08-19}, to days since epoch.
+   *
+   * @throws IllegalArgumentException if the value is not a valid date
+   */
+  static long parseDateEpochDays(String value) {
+    if (value.length() != 10) {
+      throw new IllegalArgumentException("Invalid date value: " + value);
+    }
+    return parseEpochDays(value);
+  }
+
+  /**
+   * Parses a {@code TIME} value, e.g. {@code 12:41:35.220000}, to nanoseconds of day.
+   *
+   * @throws IllegalArgumentException if the value is not a valid time
+   */
+  static long parseTimeNanos(String value) {
+    return parseTimeNanos(value, 0, value.length());
+  }
+
+  /**
+   * Parses a {@code DATETIME} value, e.g. {@code 2014-08-19T12:41:35.220000}, to microseconds since
+   * epoch of the date-time in UTC. A space is also accepted as the date and time separator.
+   * Sub-microsecond digits are truncated.
+   *
+   * @throws IllegalArgumentException if the value is not a valid date-time
+   */
+  static long parseDateTimeMicros(String value) {
+    return parseDateTimeMicros(value, value.length());
+  }
+
+  private static long parseDateTimeMicros(String value, int end) {
+    if (end < 19 || (value.charAt(10) != 'T' && value.charAt(10) != ' ')) {
+      throw new IllegalArgumentException("Invalid datetime value: " + value);
+    }
+    long nanos = parseTimeNanos(value, 11, end);
+    return parseEpochDays(value) * MICROS_PER_DAY + nanos / NANOS_PER_MICRO;
+  }
+
+  /** Returns the index following the date-time at the beginning of a timestamp string. */
+  private static int parseDateTimeEnd(String value) {
+    int pos = 19;
+    if (pos < value.length() && value.charAt(pos) == '.') {
+      pos++;
+      while (pos < value.length() && value.charAt(pos) >= '0' && value.charAt(pos) <= '9') {
+        pos++;
+      }
+    }
+    return pos;
+  }
+
+  /** Parses the {@code YYYY-MM-DD} date at the beginning of {@code value}. */
+  private static long parseEpochDays(String value) {
+    if (value.length() < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+      throw new IllegalArgumentException("Invalid date value: " + value);
+    }
+    int year = parseDigits(value, 0, 4);
+    int month = parseDigits(value, 5, 2);
+    int day = parseDigits(value, 8, 2);
+    if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+      throw new IllegalArgumentException("Invalid date value: " + value);
+    }
+    return epochDays(year, month, day);
+  }
+
+  /** Parses the {@code HH:MM:SS[.F...]} time in {@code value} between {@code start} and end. */
+  private static long parseTimeNanos(String value, int start, int end) {
+    if (end - start < 8 || value.charAt(start + 2) != ':' || value.charAt(start + 5) != ':') {
+      throw new IllegalArgumentException("Invalid time value: " + value);
+    }
+    int hour = parseDigits(value, start, 2);
+    int minute = parseDigits(value, start + 3, 2);
+    int second = parseDigits(value, start + 6, 2);
+    if (hour > 23 || minute > 59 || second > 59) {
+      throw new IllegalArgumentException("Invalid time value: " + value);
+    }
+    long nanos = 0;
+    int pos = start + 8;
+    if (pos < end) {
+      if (value.charAt(pos) != '.' || pos + 1 == end || end - pos - 1 > 9) {
+        throw new IllegalArgumentException("Invalid time value: " + value);
+      }
+      int digits = end - pos - 1;
+      nanos = parseDigits(value, pos + 1, digits) * POWERS_OF_TEN[9 - digits];
+    }
+    return ((hour * 60L + minute) * 60L + second) * NANOS_PER_SECOND + nanos;
+  }
+
+  private static int parseDigits(String value, int start, int count) {
+    if (start + count > value.length()) {
+      throw new IllegalArgumentException("Invalid temporal value: " + value);
+    }
+    int result = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new IllegalArgumentException("Invalid temporal value: " + value);
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  private static int daysInMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return leap ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /** Returns the days since epoch of a date in the proleptic Gregorian calendar. */
+  static long epochDays(int year, int month, int day) {
+    // shifts the start of the year to March, so that the leap day is the last day of the year
+    long y = month <= 2 ? year - 1 : year;
+    long era = (y >= 0 ? y : y - 399) / 400;
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import com.google.api.core.BetaApi;
+import com.google.common.base.MoreObjects;
+
+/**
+ * A snapshot of the chunks uploaded by a {@link TableDataWriteChannel}: how many were uploaded, how
+ * large they were, how many attempts were retried and how long the uploads took. Objects of this
+ * class are returned by {@link TableDataWriteChannel#getUploadStats()}.
+ */
+@BetaApi
+public final class UploadStats {
+
+  private final long chunkCount;
+  private final long uploadedBytes;
+  private final long retryCount;
+  private final long uploadTimeMillis;
+  private final int chunkSize;
+
+  UploadStats(
+      long chunkCount, long uploadedBytes, long retryCount, long uploadTimeMillis, int chunkSize) {
+    this.chunkCount = chunkCount;
+    this.uploadedBytes = uploadedBytes;
+    this.retryCount = retryCount;
+    this.uploadTimeMillis = uploadTimeMillis;
+    this.chunkSize = chunkSize;
+  }
+
+  /** Returns the number of chunks uploaded, including the last one. */
+  public long getChunkCount() {
+    return chunkCount;
+  }
+
+  /** Returns the total size of the chunks uploaded, in bytes. */
+  public long getUploadedBytes() {
+    return uploadedBytes;
+  }
+
+  /** Returns the number of chunk uploads that were retried, summed over all the chunks. */
+  public long getRetryCount() {
+    return retryCount;
+  }
+
+  /** Returns the total time spent uploading the chunks, including retries, in milliseconds. */
+  public long getUploadTimeMillis() {
+    return uploadTimeMillis;
+  }
+
+  /** Returns the size of the chunks the channel currently uploads, in bytes. */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Returns the effective upload throughput, in bytes per second, or {@code 0} if no time was spent
+   * uploading yet.
+   */
+  public long getThroughputBytesPerSecond() {
+    return uploadTimeMillis > 0 ? uploadedBytes * 1000 / uploadTimeMillis : 0;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("chunkCount", chunkCount)
+        .add("uploadedBytes", uploadedBytes)
+        .add("retryCount", retryCount)
+        .add("uploadTimeMillis", uploadTimeMillis)
+        .add("chunkSize", chunkSize)
+        .toString();
+  }
+}
@@ -34,6 +34,8 @@ import com.google.api.services.bigquery.model.TestIamPermissionsResponse;
 import com.google.cloud.ServiceRpc;
 import com.google.cloud.Tuple;
 import com.google.cloud.bigquery.BigQueryException;
+import com.google.cloud.bigquery.RequestCompression;
+import java.nio.channels.FileChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -55,7 +57,8 @@ public interface BigQueryRpc extends ServiceRpc {
     START_INDEX("startIndex"),
     STATE_FILTER("stateFilter"),
     TIMEOUT("timeoutMs"),
-    REQUESTED_POLICY_VERSION("requestedPolicyVersion");
+    REQUESTED_POLICY_VERSION("requestedPolicyVersion"),
+    SELECTED_FIELDS("selectedFields");
 
     private final String value;
 
@@ -238,6 +241,35 @@ public interface BigQueryRpc extends ServiceRpc {
   TableDataInsertAllResponse insertAll(
       String projectId, String datasetId, String tableId, TableDataInsertAllRequest request);
 
+  /**
+   * Sends an insert all request whose rows are written by {@code rows} directly to the request
+   * body, in place of the rows of {@code request}.
+   *
+   * @throws BigQueryException upon failure
+   */
+  TableDataInsertAllResponse insertAll(
+      String projectId,
+      String datasetId,
+      String tableId,
+      TableDataInsertAllRequest request,
+      TableDataSource rows);
+
+  /**
+   * Sends an insert all request whose rows are written by {@code rows} directly to the request
+   * body, in place of the rows of {@code request}. The body is compressed according to {@code
+   * compression}, whatever its size, or with the default compression of the client if {@code
+   * compression} is {@code null}.
+   *
+   * @throws BigQueryException upon failure
+   */
+  TableDataInsertAllResponse insertAll(
+      String projectId,
+      String datasetId,
+      String tableId,
+      TableDataInsertAllRequest request,
+      TableDataSource rows,
+      RequestCompression compression);
+
   /**
    * Lists the table's rows.
    *
@@ -246,6 +278,19 @@ public interface BigQueryRpc extends ServiceRpc {
   TableDataList listTableData(
       String projectId, String datasetId, String tableId, Map<Option, ?> options);
 
+  /**
+   * Lists the table's rows, streaming each row into {@code sink} as it is read from the response.
+   * The returned {@link TableDataList} carries everything but the rows.
+   *
+   * @throws BigQueryException upon failure
+   */
+  TableDataList listTableData(
+      String projectId,
+      String datasetId,
+      String tableId,
+      Map<Option, ?> options,
+      TableDataSink sink);
+
   /**
    * Returns the requested job or {@code null} if not found.
    *
@@ -286,6 +331,16 @@ public interface BigQueryRpc extends ServiceRpc {
   GetQueryResultsResponse getQueryResults(
       String projectId, String jobId, String location, Map<Option, ?> options);
 
+  /**
+   * Returns results of the query associated with the provided job, streaming each row into {@code
+   * sink} as it is read from the response. The returned {@link GetQueryResultsResponse} carries
+   * everything but the rows.
+   *
+   * @throws BigQueryException upon failure
+   */
+  GetQueryResultsResponse getQueryResults(
+      String projectId, String jobId, String location, Map<Option, ?> options, TableDataSink sink);
+
   /**
    * Runs a BigQuery SQL query synchronously and returns query results if the query completes within
    * a specified timeout.
@@ -331,6 +386,40 @@ public interface BigQueryRpc extends ServiceRpc {
       int length,
       boolean last);
 
+  /**
+   * Uploads a region of a file to the resumable upload session. The region is read from the file as
+   * it is sent. Returns the number of bytes persisted by the session, and the job created to insert
+   * the rows once the upload completed.
+   *
+   * @param uploadId the resumable upload session URI
+   * @param file the file to upload
+   * @param fileOffset the offset of the region in the file
+   * @param destOffset offset in the destination where to upload the region to
+   * @param length the length of the region
+   * @param last {@code true} if the region ends the upload
+   * @return the number of bytes persisted, or {@code null} if the upload completed, and the job
+   *     created to insert the rows if the upload completed
+   * @throws BigQueryException upon failure
+   */
+  Tuple<Long, Job> write(
+      String uploadId,
+      FileChannel file,
+      long fileOffset,
+      long destOffset,
+      long length,
+      boolean last);
+
+  /**
+   * Returns the number of bytes persisted by the resumable upload session, and the job created to
+   * insert the rows if the upload completed.
+   *
+   * @param uploadId the resumable upload session URI
+   * @return the number of bytes persisted, or {@code null} if the upload completed, and the job
+   *     created to insert the rows if the upload completed
+   * @throws BigQueryException upon failure
+   */
+  Tuple<Long, Job> getUploadStatus(String uploadId);
+
   /**
    * Returns the IAM Policy for the specified resource, using Policy V1.
    *
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery.spi.v2;
+
+import com.google.api.client.http.HttpEncoding;
+import com.google.api.client.util.StreamingContent;
+import com.google.cloud.bigquery.RequestCompressionStats;
+import com.google.common.io.CountingOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip content encoding with a configurable compression level, which records the sizes of the
+ * content before and after compression.
+ */
+final class GzipContentEncoding implements HttpEncoding {
+
+  private final int level;
+  private final RequestCompressionStats stats;
+
+  GzipContentEncoding(int level, RequestCompressionStats stats) {
+    this.level = level;
+    this.stats = stats;
+  }
+
+  @Override
+  public String getName() {
+    return "gzip";
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public void encode(StreamingContent content, OutputStream out) throws IOException {
+    // the underlying output stream must not be closed, so the gzip stream is finished instead
+    CountingOutputStream compressed = new CountingOutputStream(out);
+    LeveledGzipOutputStream zipper = new LeveledGzipOutputStream(compressed, level);
+    try {
+      CountingOutputStream uncompressed = new CountingOutputStream(zipper);
+      content.writeTo(uncompressed);
+      zipper.finish();
+      zipper.flush();
+      stats.record(uncompressed.getCount(), compressed.getCount());
+    } finally {
+      zipper.end();
+    }
+  }
+
+  /** A gzip output stream with a given compression level, whose deflater can be ended. */
+  private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+    LeveledGzipOutputStream(OutputStream out, int level) throws IOException {
+      super(out, 8192);
+      def.setLevel(level);
+    }
+
+    /** Releases the native resources of the deflater, without closing the underlying stream. */
+    void end() {
+      def.end();
+    }
+  }
+}
@@ -20,8 +20,13 @@ import static java.net.HttpURLConnection.HTTP_CREATED;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.net.HttpURLConnection.HTTP_OK;
 
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.AbstractHttpContent;
 import com.google.api.client.http.ByteArrayContent;
+import com.google.api.client.http.EmptyContent;
 import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpContent;
+import com.google.api.client.http.HttpMediaType;
 import com.google.api.client.http.HttpRequest;
 import com.google.api.client.http.HttpRequestFactory;
 import com.google.api.client.http.HttpRequestInitializer;
@@ -29,7 +34,13 @@ import com.google.api.client.http.HttpResponse;
 import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.http.HttpTransport;
 import com.google.api.client.http.json.JsonHttpContent;
+import com.google.api.client.json.CustomizeJsonParser;
+import com.google.api.client.json.GenericJson;
+import com.google.api.client.json.Json;
 import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.JsonParser;
+import com.google.api.client.json.JsonToken;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.core.InternalApi;
 import com.google.api.core.InternalExtensionOnly;
@@ -64,12 +75,19 @@ import com.google.api.services.bigquery.model.TestIamPermissionsResponse;
 import com.google.cloud.Tuple;
 import com.google.cloud.bigquery.BigQueryException;
 import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.RequestCompression;
 import com.google.cloud.http.HttpTransportOptions;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -495,26 +513,138 @@ public class HttpBigQueryRpc implements BigQueryRpc {
     }
   }
 
+  @Override
+  public TableDataInsertAllResponse insertAll(
+      String projectId,
+      String datasetId,
+      String tableId,
+      TableDataInsertAllRequest request,
+      TableDataSource rows) {
+    return insertAll(projectId, datasetId, tableId, request, rows, null);
+  }
+
+  @Override
+  public TableDataInsertAllResponse insertAll(
+      String projectId,
+      String datasetId,
+      String tableId,
+      TableDataInsertAllRequest request,
+      TableDataSource rows,
+      RequestCompression compression) {
+    try {
+      HttpRequest httpRequest =
+          bigquery
+              .tabledata()
+              .insertAll(projectId, datasetId, tableId, request)
+              .setPrettyPrint(false)
+              .buildHttpRequest();
+      httpRequest.setContent(new InsertAllContent(bigquery.getJsonFactory(), request, rows));
+      if (compression != null) {
+        httpRequest.setEncoding(
+            compression.isEnabled()
+                ? new GzipContentEncoding(
+                    compression.getLevel(), options.getRequestCompressionStats())
+                : null);
+      }
+      httpRequest.setThrowExceptionOnExecuteError(false);
+      HttpResponse response = httpRequest.execute();
+      if (!response.isSuccessStatusCode()) {
+        throw GoogleJsonResponseException.from(bigquery.getJsonFactory(), response);
+      }
+      return response.parseAs(TableDataInsertAllResponse.class);
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
+  /**
+   * The body of an insert all request, written field by field with the rows written by a {@link
+   * TableDataSource}, so that the request is never materialized in memory. The length of the body
+   * is unknown, so that it is sent chunked rather than written once more to compute its length.
+   */
+  private static final class InsertAllContent extends AbstractHttpContent {
+
+    private final JsonFactory jsonFactory;
+    private final TableDataInsertAllRequest request;
+    private final TableDataSource rows;
+
+    InsertAllContent(
+        JsonFactory jsonFactory, TableDataInsertAllRequest request, TableDataSource rows) {
+      super(new HttpMediaType(Json.MEDIA_TYPE).setCharsetParameter(Charsets.UTF_8));
+      this.jsonFactory = jsonFactory;
+      this.request = request;
+      this.rows = rows;
+    }
+
+    @Override
+    public long getLength() {
+      return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      JsonGenerator generator = jsonFactory.createJsonGenerator(out, getCharset());
+      generator.writeStartObject();
+      for (Map.Entry<String, Object> field : request.entrySet()) {
+        if (!"rows".equals(field.getKey()) && field.getValue() != null) {
+          generator.writeFieldName(field.getKey());
+          generator.serialize(field.getValue());
+        }
+      }
+      generator.writeFieldName("rows");
+      generator.writeStartArray();
+      rows.writeRows(generator);
+      generator.writeEndArray();
+      generator.writeEndObject();
+      generator.flush();
+    }
+  }
+
   @Override
   public TableDataList listTableData(
       String projectId, String datasetId, String tableId, Map<Option, ?> options) {
     try {
-      return bigquery
-          .tabledata()
-          .list(projectId, datasetId, tableId)
-          .setPrettyPrint(false)
-          .setMaxResults(Option.MAX_RESULTS.getLong(options))
-          .setPageToken(Option.PAGE_TOKEN.getString(options))
-          .setStartIndex(
-              Option.START_INDEX.getLong(options) != null
-                  ? BigInteger.valueOf(Option.START_INDEX.getLong(options))
-                  : null)
-          .execute();
+      return listTableDataRequest(projectId, datasetId, tableId, options).execute();
     } catch (IOException ex) {
       throw translate(ex);
     }
   }
 
+  @Override
+  public TableDataList listTableData(
+      String projectId,
+      String datasetId,
+      String tableId,
+      Map<Option, ?> options,
+      TableDataSink sink) {
+    try {
+      TableDataList tableDataList = new TableDataList();
+      parseRows(
+          listTableDataRequest(projectId, datasetId, tableId, options).executeUnparsed(),
+          tableDataList,
+          sink);
+      return tableDataList;
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
+  private Bigquery.Tabledata.List listTableDataRequest(
+      String projectId, String datasetId, String tableId, Map<Option, ?> options)
+      throws IOException {
+    return bigquery
+        .tabledata()
+        .list(projectId, datasetId, tableId)
+        .setPrettyPrint(false)
+        .setMaxResults(Option.MAX_RESULTS.getLong(options))
+        .setPageToken(Option.PAGE_TOKEN.getString(options))
+        .setSelectedFields(Option.SELECTED_FIELDS.getString(options))
+        .setStartIndex(
+            Option.START_INDEX.getLong(options) != null
+                ? BigInteger.valueOf(Option.START_INDEX.getLong(options))
+                : null);
+  }
+
   @Override
   public Job getJob(String projectId, String jobId, String location, Map<Option, ?> options) {
     try {
@@ -626,24 +756,123 @@ public class HttpBigQueryRpc implements BigQueryRpc {
   public GetQueryResultsResponse getQueryResults(
       String projectId, String jobId, String location, Map<Option, ?> options) {
     try {
-      return bigquery
-          .jobs()
-          .getQueryResults(projectId, jobId)
-          .setPrettyPrint(false)
-          .setLocation(location)
-          .setMaxResults(Option.MAX_RESULTS.getLong(options))
-          .setPageToken(Option.PAGE_TOKEN.getString(options))
-          .setStartIndex(
-              Option.START_INDEX.getLong(options) != null
-                  ? BigInteger.valueOf(Option.START_INDEX.getLong(options))
-                  : null)
-          .setTimeoutMs(Option.TIMEOUT.getLong(options))
-          .execute();
+      return getQueryResultsRequest(projectId, jobId, location, options).execute();
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
+  @Override
+  public GetQueryResultsResponse getQueryResults(
+      String projectId, String jobId, String location, Map<Option, ?> options, TableDataSink sink) {
+    try {
+      GetQueryResultsResponse queryResults = new GetQueryResultsResponse();
+      parseRows(
+          getQueryResultsRequest(projectId, jobId, location, options).executeUnparsed(),
+          queryResults,
+          sink);
+      return queryResults;
     } catch (IOException ex) {
       throw translate(ex);
     }
   }
 
+  private Bigquery.Jobs.GetQueryResults getQueryResultsRequest(
+      String projectId, String jobId, String location, Map<Option, ?> options) throws IOException {
+    return bigquery
+        .jobs()
+        .getQueryResults(projectId, jobId)
+        .setPrettyPrint(false)
+        .setLocation(location)
+        .setMaxResults(Option.MAX_RESULTS.getLong(options))
+        .setPageToken(Option.PAGE_TOKEN.getString(options))
+        .setStartIndex(
+            Option.START_INDEX.getLong(options) != null
+                ? BigInteger.valueOf(Option.START_INDEX.getLong(options))
+                : null)
+        .setTimeoutMs(Option.TIMEOUT.getLong(options));
+  }
+
+  /**
+   * Parses a response carrying table rows into {@code destination}, except for the {@code rows}
+   * field which is read token by token and streamed into {@code sink}, so that the rows are never
+   * materialized as generic JSON objects.
+   */
+  private void parseRows(HttpResponse response, final GenericJson destination, TableDataSink sink)
+      throws IOException {
+    CustomizeJsonParser stopAtRows =
+        new CustomizeJsonParser() {
+          @Override
+          public boolean stopAt(Object context, String key) {
+            return context == destination && "rows".equals(key);
+          }
+        };
+    try {
+      JsonParser parser =
+          bigquery
+              .getJsonFactory()
+              .createJsonParser(response.getContent(), response.getContentCharset());
+      try {
+        parser.parse(destination, stopAtRows);
+        // the parser stops on the value of the "rows" field, or on the end of the response
+        while (parser.getCurrentToken() != null
+            && parser.getCurrentToken() != JsonToken.END_OBJECT) {
+          if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              parseRow(parser, sink);
+            }
+          } else {
+            parser.skipChildren();
+          }
+          parser.nextToken();
+          parser.parse(destination, stopAtRows);
+        }
+      } finally {
+        parser.close();
+      }
+    } finally {
+      response.disconnect();
+    }
+  }
+
+  private static void parseRow(JsonParser parser, TableDataSink sink) throws IOException {
+    sink.startRow();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String key = parser.getText();
+      if (parser.nextToken() == JsonToken.START_ARRAY && "f".equals(key)) {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          Object value = null;
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String cellKey = parser.getText();
+            JsonToken token = parser.nextToken();
+            if ("v".equals(cellKey)) {
+              value = parseCellValue(parser, token);
+            } else {
+              parser.skipChildren();
+            }
+          }
+          sink.addCell(value);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+    sink.endRow();
+  }
+
+  private static Object parseCellValue(JsonParser parser, JsonToken token) throws IOException {
+    switch (token) {
+      case VALUE_NULL:
+        return null;
+      case START_ARRAY:
+      case START_OBJECT:
+        // repeated and record cells are rare enough to be parsed through the generic object model
+        return parser.parse(Object.class, false);
+      default:
+        return parser.getText();
+    }
+  }
+
   @Override
   public QueryResponse queryRpc(String projectId, QueryRequest content) {
     try {
@@ -689,6 +918,11 @@ public class HttpBigQueryRpc implements BigQueryRpc {
               .getRequestFactory()
               .buildPutRequest(url, new ByteArrayContent(null, toWrite, toWriteOffset, length));
       httpRequest.setParser(bigquery.getObjectParser());
+      RequestCompression compression = options.getRequestCompression();
+      if (compression != null && compression.appliesTo(length)) {
+        httpRequest.setEncoding(
+            new GzipContentEncoding(compression.getLevel(), options.getRequestCompressionStats()));
+      }
       long limit = destOffset + length;
       StringBuilder range = new StringBuilder("bytes ");
       range.append(destOffset).append('-').append(limit - 1).append('/');
@@ -724,6 +958,110 @@ public class HttpBigQueryRpc implements BigQueryRpc {
     }
   }
 
+  @Override
+  public Tuple<Long, Job> write(
+      String uploadId,
+      FileChannel file,
+      long fileOffset,
+      long destOffset,
+      long length,
+      boolean last) {
+    StringBuilder range = new StringBuilder("bytes ");
+    if (length > 0) {
+      range.append(destOffset).append('-').append(destOffset + length - 1);
+    } else {
+      range.append('*');
+    }
+    range.append('/').append(last ? String.valueOf(destOffset + length) : "*");
+    HttpContent content =
+        length > 0 ? new FileRegionContent(file, fileOffset, length) : new EmptyContent();
+    RequestCompression compression = options.getRequestCompression();
+    return uploadStatus(
+        uploadId,
+        content,
+        range.toString(),
+        compression != null && compression.appliesTo(length) ? compression : null);
+  }
+
+  @Override
+  public Tuple<Long, Job> getUploadStatus(String uploadId) {
+    return uploadStatus(uploadId, new EmptyContent(), "bytes */*", null);
+  }
+
+  /**
+   * Sends content to a resumable upload session, and returns the number of bytes persisted, or the
+   * job created to insert the rows if the upload completed.
+   */
+  private Tuple<Long, Job> uploadStatus(
+      String uploadId, HttpContent content, String range, RequestCompression compression) {
+    try {
+      HttpRequest httpRequest =
+          bigquery.getRequestFactory().buildPutRequest(new GenericUrl(uploadId), content);
+      httpRequest.setParser(bigquery.getObjectParser());
+      httpRequest.getHeaders().setContentRange(range);
+      if (compression != null) {
+        httpRequest.setEncoding(
+            new GzipContentEncoding(compression.getLevel(), options.getRequestCompressionStats()));
+      }
+      httpRequest.setThrowExceptionOnExecuteError(false);
+      HttpResponse response = httpRequest.execute();
+      int code = response.getStatusCode();
+      if (code == HTTP_OK || code == HTTP_CREATED) {
+        return Tuple.<Long, Job>of(null, response.parseAs(Job.class));
+      }
+      if (code != HTTP_RESUME_INCOMPLETE) {
+        throw GoogleJsonResponseException.from(bigquery.getJsonFactory(), response);
+      }
+      response.disconnect();
+      // the persisted bytes are reported as "bytes=0-<last persisted byte>"
+      String persisted = response.getHeaders().getRange();
+      return Tuple.<Long, Job>of(
+          persisted == null
+              ? 0L
+              : Long.parseLong(persisted.substring(persisted.lastIndexOf('-') + 1)) + 1,
+          null);
+    } catch (IOException ex) {
+      throw translate(ex);
+    }
+  }
+
+  /** A region of a file, read from the file as it is written to the request body. */
+  private static final class FileRegionContent extends AbstractHttpContent {
+
+    private final FileChannel file;
+    private final long offset;
+    private final long length;
+
+    FileRegionContent(FileChannel file, long offset, long length) {
+      super((String) null);
+      this.file = file;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public long getLength() {
+      return length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+      WritableByteChannel target = Channels.newChannel(out);
+      long position = offset;
+      long end = offset + length;
+      while (position < end) {
+        long transferred = file.transferTo(position, end - position, target);
+        if (transferred == 0) {
+          // nothing is transferred past the end of the file, which was truncated since the upload
+          // started
+          throw new EOFException("Unexpected end of file at position " + position);
+        }
+        position += transferred;
+      }
+      out.flush();
+    }
+  }
+
   @Override
   public Policy getIamPolicy(String resourceId, Map<Option, ?> options) {
     try {
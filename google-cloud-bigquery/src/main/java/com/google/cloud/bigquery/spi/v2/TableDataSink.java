@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery.spi.v2;
+
+import com.google.api.core.InternalApi;
+
+/**
+ * Receives the rows of a {@code tabledata.list} or {@code jobs.getQueryResults} response as they
+ * are read from the wire, so that callers can decode cells without first materializing the whole
+ * response. For each row {@link #startRow()} is called, then {@link #addCell(Object)} once per
+ * cell, in schema order, then {@link #endRow()}.
+ */
+@InternalApi
+public interface TableDataSink {
+
+  /** Signals the start of a new row. */
+  void startRow();
+
+  /**
+   * Adds the next cell of the current row. {@code value} is a {@link String} for scalar cells,
+   * {@code null} for null cells, or the {@link java.util.List} or {@link java.util.Map} JSON
+   * representation of the cell for repeated and record fields.
+   */
+  void addCell(Object value);
+
+  /** Signals the end of the current row. */
+  void endRow();
+}
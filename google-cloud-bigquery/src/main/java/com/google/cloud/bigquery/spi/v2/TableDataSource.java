@@ -0,0 +1,37 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery.spi.v2;
+
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.core.InternalApi;
+import java.io.IOException;
+
+/**
+ * Writes the rows of a {@code tabledata.insertAll} request directly to the request body, so that
+ * callers can encode rows without first materializing the whole request. This is the counterpart of
+ * {@link TableDataSink} for requests.
+ */
+@InternalApi
+public interface TableDataSource {
+
+  /**
+   * Writes the elements of the {@code rows} array of the request, each row as an object with an
+   * optional {@code insertId} field and a {@code json} field. This method is called again if the
+   * request is retried, and must write the same rows.
+   */
+  void writeRows(JsonGenerator generator) throws IOException;
+}
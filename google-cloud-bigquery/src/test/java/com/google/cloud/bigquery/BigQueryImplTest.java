@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
@@ -29,14 +30,19 @@ import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.gax.paging.Page;
 import com.google.api.services.bigquery.model.ErrorProto;
 import com.google.api.services.bigquery.model.GetQueryResultsResponse;
 import com.google.api.services.bigquery.model.JobConfigurationQuery;
+import com.google.api.services.bigquery.model.JobStatistics2;
+import com.google.api.services.bigquery.model.QueryParameter;
 import com.google.api.services.bigquery.model.QueryRequest;
 import com.google.api.services.bigquery.model.TableCell;
 import com.google.api.services.bigquery.model.TableDataInsertAllRequest;
@@ -50,25 +56,38 @@ import com.google.cloud.bigquery.BigQuery.QueryResultsOption;
 import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
 import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
 import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.cloud.bigquery.spi.v2.TableDataSink;
+import com.google.cloud.bigquery.spi.v2.TableDataSource;
 import com.google.common.base.Function;
+import com.google.common.base.Strings;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Captor;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 @RunWith(MockitoJUnitRunner.class)
 public class BigQueryImplTest {
@@ -1274,6 +1293,278 @@ public class BigQueryImplTest {
     verify(bigqueryRpcMock, times(2)).insertAll(PROJECT, DATASET, TABLE, requestPb);
   }
 
+  @Test
+  public void testInsertAllSplitsLargeRequest() {
+    Map<String, Object> content =
+        ImmutableMap.<String, Object>of("field", Strings.repeat("a", 4 * 1024 * 1024));
+    InsertAllRequest request =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow(content)
+            .addRow(content)
+            .addRow(content)
+            .setSkipInvalidRows(true)
+            .build();
+    final List<Integer> rowCounts = Collections.synchronizedList(Lists.<Integer>newArrayList());
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT), eq(DATASET), eq(TABLE), any(TableDataInsertAllRequest.class)))
+        .thenAnswer(
+            new Answer<TableDataInsertAllResponse>() {
+              @Override
+              public TableDataInsertAllResponse answer(InvocationOnMock invocation) {
+                TableDataInsertAllRequest requestPb =
+                    (TableDataInsertAllRequest) invocation.getArguments()[3];
+                assertTrue(requestPb.getSkipInvalidRows());
+                rowCounts.add(requestPb.getRows().size());
+                return new TableDataInsertAllResponse()
+                    .setInsertErrors(
+                        ImmutableList.of(
+                            new TableDataInsertAllResponse.InsertErrors()
+                                .setIndex(0L)
+                                .setErrors(
+                                    ImmutableList.of(new ErrorProto().setMessage("invalid")))));
+              }
+            });
+    bigquery = options.getService();
+    InsertAllResponse response = bigquery.insertAll(request);
+    assertThat(rowCounts).containsExactly(2, 1);
+    assertEquals(ImmutableSet.of(0L, 2L), response.getInsertErrors().keySet());
+    assertEquals("invalid", response.getErrorsFor(2L).get(0).getMessage());
+  }
+
+  @Test
+  public void testInsertAllSplitMergesFailedParts() {
+    Map<String, Object> content =
+        ImmutableMap.<String, Object>of("field", Strings.repeat("a", 4 * 1024 * 1024));
+    InsertAllRequest request =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow(content)
+            .addRow(content)
+            .addRow(content)
+            .build();
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT), eq(DATASET), eq(TABLE), any(TableDataInsertAllRequest.class)))
+        .thenAnswer(
+            new Answer<TableDataInsertAllResponse>() {
+              @Override
+              public TableDataInsertAllResponse answer(InvocationOnMock invocation) {
+                TableDataInsertAllRequest requestPb =
+                    (TableDataInsertAllRequest) invocation.getArguments()[3];
+                if (requestPb.getRows().size() == 1) {
+                  throw new BigQueryException(400, "invalid part");
+                }
+                return new TableDataInsertAllResponse();
+              }
+            });
+    bigquery = options.getService();
+    // the first part of two rows succeeds, the row of the failed part is reported
+    InsertAllResponse response = bigquery.insertAll(request);
+    assertEquals(ImmutableSet.of(2L), response.getInsertErrors().keySet());
+    assertEquals("invalid part", response.getErrorsFor(2L).get(0).getMessage());
+  }
+
+  @Test
+  public void testInsertAllSplitAllPartsFail() {
+    Map<String, Object> content =
+        ImmutableMap.<String, Object>of("field", Strings.repeat("a", 4 * 1024 * 1024));
+    InsertAllRequest request =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow(content)
+            .addRow(content)
+            .addRow(content)
+            .build();
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT), eq(DATASET), eq(TABLE), any(TableDataInsertAllRequest.class)))
+        .thenThrow(new BigQueryException(400, "invalid"));
+    bigquery = options.getService();
+    try {
+      bigquery.insertAll(request);
+      fail();
+    } catch (BigQueryException expected) {
+      assertEquals(400, expected.getCode());
+    }
+    verify(bigqueryRpcMock, times(2))
+        .insertAll(eq(PROJECT), eq(DATASET), eq(TABLE), any(TableDataInsertAllRequest.class));
+  }
+
+  @Test
+  public void testInsertAllRequestCompression() {
+    InsertAllRequest request =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow("row1", ImmutableMap.<String, Object>of("field", "value1"))
+            .build();
+    InsertAllRequest compressedRequest =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .setRows(request.getRows())
+            .setRequestCompression(RequestCompression.gzip(Deflater.BEST_SPEED, 0))
+            .build();
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            any(TableDataInsertAllRequest.class),
+            any(TableDataSource.class),
+            any(RequestCompression.class)))
+        .thenReturn(new TableDataInsertAllResponse());
+    bigquery =
+        options.toBuilder().setRequestCompression(RequestCompression.gzip()).build().getService();
+    bigquery.insertAll(request);
+    bigquery.insertAll(compressedRequest);
+    // the request is smaller than the minimum size of the compression of the options
+    verify(bigqueryRpcMock)
+        .insertAll(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            any(TableDataInsertAllRequest.class),
+            any(TableDataSource.class),
+            eq(RequestCompression.none()));
+    verify(bigqueryRpcMock)
+        .insertAll(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            any(TableDataInsertAllRequest.class),
+            any(TableDataSource.class),
+            eq(RequestCompression.gzip(Deflater.BEST_SPEED, 0)));
+  }
+
+  private static String render(TableDataSource source) throws IOException {
+    StringWriter writer = new StringWriter();
+    JsonGenerator generator = JacksonFactory.getDefaultInstance().createJsonGenerator(writer);
+    generator.writeStartArray();
+    source.writeRows(generator);
+    generator.writeEndArray();
+    generator.flush();
+    return writer.toString();
+  }
+
+  @Test
+  public void testInsertAllWithRowEncoder() throws IOException {
+    Map<String, Object> row1 = ImmutableMap.<String, Object>of("field", "value1");
+    InsertAllRequest request =
+        InsertAllRequest.newBuilder(TABLE_ID).addRow("id1", row1).setSkipInvalidRows(true).build();
+    RowEncoder<String> encoder =
+        new RowEncoder<String>() {
+          @Override
+          public String getInsertId(String row) {
+            return "id-" + row;
+          }
+
+          @Override
+          public void encode(String row, JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeFieldName("field");
+            generator.writeString(row);
+            generator.writeEndObject();
+          }
+        };
+    TableDataInsertAllRequest requestPb = new TableDataInsertAllRequest().setSkipInvalidRows(true);
+    ArgumentCaptor<TableDataSource> source = ArgumentCaptor.forClass(TableDataSource.class);
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            eq(requestPb),
+            source.capture(),
+            ArgumentMatchers.<RequestCompression>isNull()))
+        .thenReturn(new TableDataInsertAllResponse());
+
+    bigquery = options.getService();
+    InsertAllResponse response =
+        bigquery.insertAll(request, ImmutableList.of("value2", "value3"), encoder);
+    assertFalse(response.hasErrors());
+    List<TableDataInsertAllRequest.Rows> expectedRows =
+        ImmutableList.of(
+            new TableDataInsertAllRequest.Rows().setInsertId("id1").setJson(row1),
+            new TableDataInsertAllRequest.Rows()
+                .setInsertId("id-value2")
+                .setJson(ImmutableMap.<String, Object>of("field", "value2")),
+            new TableDataInsertAllRequest.Rows()
+                .setInsertId("id-value3")
+                .setJson(ImmutableMap.<String, Object>of("field", "value3")));
+    assertEquals(
+        JacksonFactory.getDefaultInstance().toString(expectedRows), render(source.getValue()));
+  }
+
+  @Test
+  public void testInsertAllWithRowEncoderRequiresReiterableRows() throws IOException {
+    final Iterator<String> iterator = ImmutableList.of("value1", "value2").iterator();
+    Iterable<String> rows =
+        new Iterable<String>() {
+          @Override
+          public Iterator<String> iterator() {
+            return iterator;
+          }
+        };
+    final List<String> insertIdRows = new ArrayList<>();
+    RowEncoder<String> encoder =
+        new RowEncoder<String>() {
+          @Override
+          public String getInsertId(String row) {
+            insertIdRows.add(row);
+            return "id-" + row;
+          }
+
+          @Override
+          public void encode(String row, JsonGenerator generator) throws IOException {
+            generator.writeString(row);
+          }
+        };
+    ArgumentCaptor<TableDataSource> source = ArgumentCaptor.forClass(TableDataSource.class);
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            any(TableDataInsertAllRequest.class),
+            source.capture(),
+            ArgumentMatchers.<RequestCompression>isNull()))
+        .thenReturn(new TableDataInsertAllResponse());
+
+    bigquery = options.getService();
+    bigquery.insertAll(InsertAllRequest.newBuilder(TABLE_ID).build(), rows, encoder);
+    assertEquals(ImmutableList.of("value1", "value2"), insertIdRows);
+    // the rows were consumed reading their insert ids
+    try {
+      render(source.getValue());
+      fail();
+    } catch (IllegalStateException expected) {
+    }
+    assertEquals(ImmutableList.of("value1", "value2"), insertIdRows);
+  }
+
+  @Test
+  public void testInsertAllStreamingRequestSerialization() throws IOException {
+    Map<String, Object> row1 = ImmutableMap.<String, Object>of("field", "value1");
+    Map<String, Object> row2 =
+        ImmutableMap.<String, Object>of("field", ImmutableList.of(1L, 2L), "other", true);
+    InsertAllRequest request =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow(row1)
+            .addRow(row2)
+            .setTemplateSuffix("suffix")
+            .build();
+    TableDataInsertAllRequest requestPb =
+        new TableDataInsertAllRequest().setTemplateSuffix("suffix");
+    ArgumentCaptor<TableDataSource> source = ArgumentCaptor.forClass(TableDataSource.class);
+    when(bigqueryRpcMock.insertAll(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            eq(requestPb),
+            source.capture(),
+            ArgumentMatchers.<RequestCompression>isNull()))
+        .thenReturn(new TableDataInsertAllResponse());
+
+    bigquery = options.toBuilder().setStreamingRequestSerialization(true).build().getService();
+    assertFalse(bigquery.insertAll(request).hasErrors());
+    List<TableDataInsertAllRequest.Rows> expectedRows =
+        ImmutableList.of(
+            new TableDataInsertAllRequest.Rows().setJson(row1),
+            new TableDataInsertAllRequest.Rows().setJson(row2));
+    assertEquals(
+        JacksonFactory.getDefaultInstance().toString(expectedRows), render(source.getValue()));
+  }
+
   @Test
   public void testInsertAllWithoutRowIdShouldNotRetry() {
     Map<String, Object> row1 = ImmutableMap.<String, Object>of("field", "value1");
@@ -1430,6 +1721,79 @@ public class BigQueryImplTest {
     verify(bigqueryRpcMock).listTableData(PROJECT, DATASET, TABLE, EMPTY_RPC_OPTIONS);
   }
 
+  @Test
+  public void testListTableDataStreaming() {
+    when(bigqueryRpcMock.listTableData(
+            eq(PROJECT), eq(DATASET), eq(TABLE), eq(EMPTY_RPC_OPTIONS), any(TableDataSink.class)))
+        .thenAnswer(
+            new Answer<TableDataList>() {
+              @Override
+              public TableDataList answer(InvocationOnMock invocation) {
+                TableDataSink sink = invocation.getArgument(4);
+                for (String value : ImmutableList.of("Value1", "Value2")) {
+                  sink.startRow();
+                  sink.addCell(value);
+                  sink.endRow();
+                }
+                return new TableDataList().setPageToken(CURSOR).setTotalRows(3L);
+              }
+            });
+    bigquery = options.toBuilder().setStreamingResponseParsing(true).build().getService();
+    TableResult page = bigquery.listTableData(DATASET, TABLE);
+    assertEquals(CURSOR, page.getNextPageToken());
+    assertEquals(3L, page.getTotalRows());
+    assertArrayEquals(TABLE_DATA.toArray(), Iterables.toArray(page.getValues(), List.class));
+  }
+
+  @Test
+  public void testIterateColumnarPagesStreaming() {
+    when(bigqueryRpcMock.listTableData(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            ArgumentMatchers.<BigQueryRpc.Option, Object>anyMap(),
+            any(TableDataSink.class)))
+        .thenAnswer(
+            new Answer<TableDataList>() {
+              @Override
+              public TableDataList answer(InvocationOnMock invocation) {
+                Map<BigQueryRpc.Option, ?> options = invocation.getArgument(3);
+                TableDataSink sink = invocation.getArgument(4);
+                boolean firstPage = !options.containsKey(BigQueryRpc.Option.PAGE_TOKEN);
+                List<String> rows = firstPage ? ImmutableList.of("1", "2") : ImmutableList.of("3");
+                for (String value : rows) {
+                  sink.startRow();
+                  sink.addCell(value);
+                  sink.endRow();
+                }
+                return new TableDataList().setPageToken(firstPage ? CURSOR : null).setTotalRows(3L);
+              }
+            });
+    bigquery = options.toBuilder().setStreamingResponseParsing(true).build().getService();
+    Schema schema = Schema.of(Field.of("f1", LegacySQLTypeName.INTEGER));
+    List<Long> values = new ArrayList<>();
+    for (ColumnarPage page : bigquery.listTableData(TABLE_ID, schema).iterateColumnarPages()) {
+      for (long value : page.getLongColumn(0)) {
+        values.add(value);
+      }
+    }
+    assertEquals(ImmutableList.of(1L, 2L, 3L), values);
+    // the second page is decoded into columns as it is read, without rows
+    verify(bigqueryRpcMock, times(2))
+        .listTableData(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            ArgumentMatchers.<BigQueryRpc.Option, Object>anyMap(),
+            any(TableDataSink.class));
+    verify(bigqueryRpcMock, never())
+        .listTableData(
+            eq(PROJECT),
+            eq(DATASET),
+            eq(TABLE),
+            ArgumentMatchers.<BigQueryRpc.Option, Object>anyMap());
+  }
+
   @Test
   public void testListTableDataFromTableId() {
     when(bigqueryRpcMock.listTableData(PROJECT, DATASET, TABLE, EMPTY_RPC_OPTIONS))
@@ -1505,6 +1869,58 @@ public class BigQueryImplTest {
     verify(bigqueryRpcMock).listTableData(PROJECT, DATASET, TABLE, SECOND_TABLE_DATA_LIST_OPTIONS);
   }
 
+  @Test
+  public void testListTableDataWithSelectedFields() {
+    Schema schema =
+        Schema.of(
+            Field.of("a", LegacySQLTypeName.STRING),
+            Field.of("b", LegacySQLTypeName.INTEGER),
+            Field.of(
+                "c",
+                LegacySQLTypeName.RECORD,
+                Field.of("x", LegacySQLTypeName.STRING),
+                Field.of("y", LegacySQLTypeName.STRING)));
+    Map<BigQueryRpc.Option, ?> listOptions =
+        ImmutableMap.of(BigQueryRpc.Option.SELECTED_FIELDS, "c.y,a");
+    TableCell recordCell =
+        new TableCell()
+            .setV(ImmutableMap.of("f", ImmutableList.of(new TableCell().setV("Value2"))));
+    when(bigqueryRpcMock.listTableData(PROJECT, DATASET, TABLE, listOptions))
+        .thenReturn(
+            new TableDataList()
+                .setPageToken(CURSOR)
+                .setTotalRows(2L)
+                .setRows(
+                    ImmutableList.of(
+                        new TableRow()
+                            .setF(ImmutableList.of(new TableCell().setV("Value1"), recordCell)))));
+    Map<BigQueryRpc.Option, ?> nextPageOptions =
+        ImmutableMap.of(
+            BigQueryRpc.Option.PAGE_TOKEN,
+            CURSOR,
+            BigQueryRpc.Option.START_INDEX,
+            0L,
+            BigQueryRpc.Option.SELECTED_FIELDS,
+            "c.y,a");
+    when(bigqueryRpcMock.listTableData(PROJECT, DATASET, TABLE, nextPageOptions))
+        .thenReturn(new TableDataList().setTotalRows(2L));
+    bigquery = options.getService();
+    TableResult result =
+        bigquery.listTableData(
+            TABLE_ID, schema, BigQuery.TableDataListOption.selectedFields("c.y", "a"));
+
+    Schema expectedSchema =
+        Schema.of(
+            Field.of("a", LegacySQLTypeName.STRING),
+            Field.of("c", LegacySQLTypeName.RECORD, Field.of("y", LegacySQLTypeName.STRING)));
+    assertEquals(expectedSchema, result.getSchema());
+    FieldValueList row = result.getValues().iterator().next();
+    assertEquals("Value1", row.get("a").getStringValue());
+    assertEquals("Value2", row.get("c").getRecordValue().get("y").getStringValue());
+    assertNotNull(result.getNextPage());
+    verify(bigqueryRpcMock).listTableData(PROJECT, DATASET, TABLE, nextPageOptions);
+  }
+
   // The "minimally initialized" Job that lets Job.fromPb run without throwing.
   private static com.google.api.services.bigquery.model.Job newJobPb() {
     return new com.google.api.services.bigquery.model.Job()
@@ -1843,16 +2259,8 @@ public class BigQueryImplTest {
     when(bigqueryRpcMock.create(
             JOB_INFO.toPb(), Collections.<BigQueryRpc.Option, Object>emptyMap()))
         .thenReturn(jobResponsePb);
-    when(bigqueryRpcMock.getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS)))
+    when(bigqueryRpcMock.getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS))
         .thenReturn(responsePb);
-    when(bigqueryRpcMock.listTableData(
-            PROJECT, DATASET, TABLE, Collections.<BigQueryRpc.Option, Object>emptyMap()))
-        .thenReturn(
-            new TableDataList()
-                .setPageToken("")
-                .setRows(ImmutableList.of(TABLE_ROW))
-                .setTotalRows(1L));
 
     bigquery = options.getService();
     TableResult result = bigquery.query(QUERY_JOB_CONFIGURATION_FOR_QUERY, queryJob);
@@ -1864,11 +2272,9 @@ public class BigQueryImplTest {
     }
     verify(bigqueryRpcMock)
         .create(JOB_INFO.toPb(), Collections.<BigQueryRpc.Option, Object>emptyMap());
-    verify(bigqueryRpcMock)
-        .getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS));
+    verify(bigqueryRpcMock).getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
 
-    verify(bigqueryRpcMock)
+    verify(bigqueryRpcMock, never())
         .listTableData(PROJECT, DATASET, TABLE, Collections.<BigQueryRpc.Option, Object>emptyMap());
   }
 
@@ -1970,6 +2376,51 @@ public class BigQueryImplTest {
     verify(bigqueryRpcMock).queryRpc(eq(PROJECT), requestPbCapture.capture());
   }
 
+  @Test
+  public void testFastQueryNextPageWaitsForJobCompletion() throws InterruptedException {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    com.google.api.services.bigquery.model.Job runningJob =
+        new com.google.api.services.bigquery.model.Job()
+            .setConfiguration(QUERY_JOB_CONFIGURATION_FOR_QUERY.toPb())
+            .setJobReference(queryJob.toPb())
+            .setId(JOB)
+            .setStatus(new com.google.api.services.bigquery.model.JobStatus().setState("RUNNING"));
+    runningJob.getConfiguration().getQuery().setDestinationTable(TABLE_ID.toPb());
+    Map<BigQueryRpc.Option, ?> longPollOptions =
+        BigQueryImpl.optionMap(
+            BigQuery.QueryResultsOption.pageSize(0L),
+            BigQuery.QueryResultsOption.maxWaitTime(10000L));
+    when(bigqueryRpcMock.getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS)).thenReturn(runningJob);
+    when(bigqueryRpcMock.getQueryResults(PROJECT, JOB, null, longPollOptions))
+        .thenReturn(
+            new GetQueryResultsResponse().setJobReference(queryJob.toPb()).setJobComplete(false),
+            new GetQueryResultsResponse().setJobReference(queryJob.toPb()).setJobComplete(true));
+    when(bigqueryRpcMock.listTableData(
+            PROJECT,
+            DATASET,
+            TABLE,
+            BigQueryImpl.optionMap(BigQuery.TableDataListOption.pageToken(CURSOR))))
+        .thenReturn(new TableDataList().setRows(ImmutableList.of(TABLE_ROW)).setTotalRows(2L));
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(
+            new com.google.api.services.bigquery.model.QueryResponse()
+                .setJobReference(queryJob.toPb())
+                .setJobComplete(true)
+                .setPageToken(CURSOR)
+                .setRows(ImmutableList.of(TABLE_ROW))
+                .setSchema(TABLE_SCHEMA.toPb())
+                .setTotalRows(BigInteger.valueOf(2L)));
+
+    bigquery = options.getService();
+    TableResult result = bigquery.query(QUERY_JOB_CONFIGURATION_FOR_QUERY);
+    TableResult nextPage = result.getNextPage();
+    assertThat(nextPage.getValues()).hasSize(1);
+    assertFalse(nextPage.hasNextPage());
+
+    verify(bigqueryRpcMock).getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
+    verify(bigqueryRpcMock, times(2)).getQueryResults(PROJECT, JOB, null, longPollOptions);
+  }
+
   @Test
   public void testFastQuerySlowDdl() throws InterruptedException {
     // mock new fast query path response when running a query that takes more than 10s
@@ -2002,11 +2453,8 @@ public class BigQueryImplTest {
         .thenReturn(queryResponsePb);
     responseJob.getConfiguration().getQuery().setDestinationTable(TABLE_ID.toPb());
     when(bigqueryRpcMock.getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS)).thenReturn(responseJob);
-    when(bigqueryRpcMock.getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS)))
+    when(bigqueryRpcMock.getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS))
         .thenReturn(queryResultsResponsePb);
-    when(bigqueryRpcMock.listTableData(PROJECT, DATASET, TABLE, EMPTY_RPC_OPTIONS))
-        .thenReturn(new TableDataList().setRows(ImmutableList.of(TABLE_ROW)).setTotalRows(1L));
 
     bigquery = options.getService();
     TableResult result = bigquery.query(QUERY_JOB_CONFIGURATION_FOR_QUERY);
@@ -2024,12 +2472,398 @@ public class BigQueryImplTest {
         requestPb.getDefaultDataset().getDatasetId());
     assertEquals(QUERY_JOB_CONFIGURATION_FOR_QUERY.useQueryCache(), requestPb.getUseQueryCache());
 
+    verify(bigqueryRpcMock).queryRpc(eq(PROJECT), requestPbCapture.capture());
+    verify(bigqueryRpcMock).getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
+    verify(bigqueryRpcMock).getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
+    verify(bigqueryRpcMock, never()).listTableData(PROJECT, DATASET, TABLE, EMPTY_RPC_OPTIONS);
+  }
+
+  @Test
+  public void testQueryAsyncFastQueryCompleted() throws Exception {
+    com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setCacheHit(false)
+            .setJobComplete(true)
+            .setKind("bigquery#queryResponse")
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(TABLE_SCHEMA.toPb())
+            .setTotalRows(BigInteger.valueOf(1L));
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(queryResponsePb);
+
+    bigquery = options.getService();
+    TableResult result =
+        bigquery.queryAsync(QUERY_JOB_CONFIGURATION_FOR_QUERY).get(10, TimeUnit.SECONDS);
+    assertFalse(result.hasNextPage());
+    assertThat(result.getSchema()).isEqualTo(TABLE_SCHEMA);
+    assertThat(result.getTotalRows()).isEqualTo(1);
+    assertThat(result.getValues().iterator().next().get(1).getLongValue()).isEqualTo(1);
+    verify(bigqueryRpcMock).queryRpc(eq(PROJECT), requestPbCapture.capture());
+  }
+
+  @Test
+  public void testQueryAsyncPollsLongRunningQuery() throws Exception {
+    JobId queryJob = JobId.of(PROJECT, JOB);
+    com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobComplete(false)
+            .setJobReference(queryJob.toPb());
+    com.google.api.services.bigquery.model.Job responseJob =
+        new com.google.api.services.bigquery.model.Job()
+            .setConfiguration(QUERY_JOB_CONFIGURATION_FOR_QUERY.toPb())
+            .setJobReference(queryJob.toPb())
+            .setId(JOB)
+            .setStatus(new com.google.api.services.bigquery.model.JobStatus().setState("DONE"));
+    responseJob.getConfiguration().getQuery().setDestinationTable(TABLE_ID.toPb());
+    GetQueryResultsResponse runningPb =
+        new GetQueryResultsResponse().setJobReference(queryJob.toPb()).setJobComplete(false);
+    GetQueryResultsResponse completedPb =
+        new GetQueryResultsResponse()
+            .setJobReference(queryJob.toPb())
+            .setJobComplete(true)
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setTotalRows(BigInteger.valueOf(1L))
+            .setSchema(TABLE_SCHEMA.toPb());
+
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(queryResponsePb);
+    when(bigqueryRpcMock.getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS)).thenReturn(responseJob);
+    // the results are built from the final poll, which returns the first page of rows
+    Map<BigQueryRpc.Option, ?> pollOptions =
+        BigQueryImpl.optionMap(QueryResultsOption.maxWaitTime(0L));
+    when(bigqueryRpcMock.getQueryResults(PROJECT, JOB, null, pollOptions))
+        .thenReturn(runningPb, runningPb, completedPb);
+
+    bigquery = options.getService();
+    TableResult result =
+        bigquery.queryAsync(QUERY_JOB_CONFIGURATION_FOR_QUERY).get(10, TimeUnit.SECONDS);
+    assertThat(result.getSchema()).isEqualTo(TABLE_SCHEMA);
+    assertThat(result.getTotalRows()).isEqualTo(1);
+    assertThat(result.getValues()).hasSize(1);
+    verify(bigqueryRpcMock, times(3)).getQueryResults(PROJECT, JOB, null, pollOptions);
+    verify(bigqueryRpcMock, never()).getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
+    verify(bigqueryRpcMock, never()).listTableData(PROJECT, DATASET, TABLE, EMPTY_RPC_OPTIONS);
+  }
+
+  @Test
+  public void testQueryAsyncFailure() throws Exception {
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenThrow(new BigQueryException(400, "invalid query"));
+
+    bigquery = options.getService();
+    try {
+      bigquery.queryAsync(QUERY_JOB_CONFIGURATION_FOR_QUERY).get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(BigQueryException.class);
+      assertThat(((BigQueryException) expected.getCause()).getCode()).isEqualTo(400);
+    }
+  }
+
+  @Test
+  public void testQueryCoalescing() throws Exception {
+    final QueryJobConfiguration configuration =
+        QUERY_JOB_CONFIGURATION_FOR_QUERY
+            .toBuilder()
+            .setQuery("SELECT * FROM table")
+            .setUseQueryCache(true)
+            .build();
+    final com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobComplete(true)
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setPageToken(CURSOR)
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(TABLE_SCHEMA.toPb())
+            .setTotalRows(BigInteger.valueOf(2L));
+    final TableResult[] concurrentResult = new TableResult[1];
+    final Thread concurrentQuery =
+        new Thread() {
+          @Override
+          public void run() {
+            try {
+              concurrentResult[0] = bigquery.query(configuration);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+          }
+        };
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.QueryResponse>() {
+              @Override
+              public com.google.api.services.bigquery.model.QueryResponse answer(
+                  InvocationOnMock invocation) throws InterruptedException {
+                // the identical query waits for this one to complete
+                concurrentQuery.start();
+                while (concurrentQuery.getState() != Thread.State.WAITING) {
+                  Thread.sleep(1L);
+                }
+                return queryResponsePb;
+              }
+            });
+    com.google.api.services.bigquery.model.Job jobPb =
+        new com.google.api.services.bigquery.model.Job()
+            .setConfiguration(configuration.toPb())
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setId(JOB)
+            .setStatus(new com.google.api.services.bigquery.model.JobStatus().setState("DONE"));
+    jobPb.getConfiguration().getQuery().setDestinationTable(TABLE_ID.toPb());
+    when(bigqueryRpcMock.getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS)).thenReturn(jobPb);
+    when(bigqueryRpcMock.listTableData(
+            PROJECT, DATASET, TABLE, ImmutableMap.of(BigQueryRpc.Option.PAGE_TOKEN, CURSOR)))
+        .thenReturn(new TableDataList().setRows(ImmutableList.of(TABLE_ROW)).setTotalRows(2L));
+
+    // queries are coalesced whether or not they can be served from the cache
+    bigquery =
+        options
+            .toBuilder()
+            .setQueryCoalescing(true)
+            .setQueryResultCache(LruQueryResultCache.newBuilder().build())
+            .build()
+            .getService();
+    TableResult result = bigquery.query(configuration);
+    concurrentQuery.join();
+    assertSame(result, concurrentResult[0]);
+    assertThat(result.iterateAll()).hasSize(2);
+    assertThat(concurrentResult[0].iterateAll()).hasSize(2);
     verify(bigqueryRpcMock).queryRpc(eq(PROJECT), requestPbCapture.capture());
     verify(bigqueryRpcMock).getJob(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
     verify(bigqueryRpcMock)
-        .getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS));
-    verify(bigqueryRpcMock).listTableData(PROJECT, DATASET, TABLE, EMPTY_RPC_OPTIONS);
+        .listTableData(
+            PROJECT, DATASET, TABLE, ImmutableMap.of(BigQueryRpc.Option.PAGE_TOKEN, CURSOR));
+  }
+
+  @Test
+  public void testIsShareable() {
+    QueryJobConfiguration select =
+        QueryJobConfiguration.of("-- comment\n/* comment */ (SELECT * FROM table);\n");
+    assertTrue(BigQueryImpl.isShareable(select));
+    assertTrue(
+        BigQueryImpl.isShareable(QueryJobConfiguration.of("with t AS (SELECT 1) SELECT *")));
+    assertFalse(
+        BigQueryImpl.isShareable(
+            select.toBuilder().setDestinationTable(TableId.of(DATASET, TABLE)).build()));
+    assertFalse(
+        BigQueryImpl.isShareable(
+            select.toBuilder().setWriteDisposition(JobInfo.WriteDisposition.WRITE_APPEND).build()));
+    assertFalse(BigQueryImpl.isShareable(QueryJobConfiguration.of("DELETE FROM table")));
+    assertFalse(BigQueryImpl.isShareable(QueryJobConfiguration.of("CREATE TABLE t AS SELECT 1")));
+    assertFalse(BigQueryImpl.isShareable(QueryJobConfiguration.of("SELECT 1; DROP TABLE t")));
+    assertFalse(BigQueryImpl.isShareable(QueryJobConfiguration.of("SELECT RAND()")));
+    assertFalse(BigQueryImpl.isShareable(QueryJobConfiguration.of("SELECT current_timestamp()")));
+  }
+
+  @Test
+  public void testQueryResultCache() throws InterruptedException {
+    QueryJobConfiguration configuration =
+        QUERY_JOB_CONFIGURATION_FOR_QUERY
+            .toBuilder()
+            .setQuery("SELECT * FROM table")
+            .setUseQueryCache(true)
+            .build();
+    com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobComplete(true)
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(TABLE_SCHEMA.toPb())
+            .setTotalRows(BigInteger.valueOf(1L));
+    com.google.api.services.bigquery.model.Job jobPb =
+        new com.google.api.services.bigquery.model.Job()
+            .setConfiguration(configuration.toPb())
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setStatistics(
+                new com.google.api.services.bigquery.model.JobStatistics()
+                    .setStartTime(2000L)
+                    .setQuery(
+                        new JobStatistics2()
+                            .setStatementType("SELECT")
+                            .setReferencedTables(ImmutableList.of(TABLE_ID_WITH_PROJECT.toPb()))));
+    Map<BigQueryRpc.Option, ?> jobOptions =
+        BigQueryImpl.optionMap(BigQuery.JobOption.fields(BigQuery.JobField.STATISTICS));
+    Map<BigQueryRpc.Option, ?> tableOptions =
+        BigQueryImpl.optionMap(BigQuery.TableOption.fields(BigQuery.TableField.LAST_MODIFIED_TIME));
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(queryResponsePb);
+    when(bigqueryRpcMock.getJob(PROJECT, JOB, null, jobOptions)).thenReturn(jobPb);
+    when(bigqueryRpcMock.getTable(PROJECT, DATASET, TABLE, tableOptions))
+        .thenReturn(TABLE_INFO_WITH_PROJECT.toPb().setLastModifiedTime(BigInteger.valueOf(1000L)));
+
+    LruQueryResultCache cache = LruQueryResultCache.newBuilder().build();
+    bigquery = options.toBuilder().setQueryResultCache(cache).build().getService();
+    TableResult result = bigquery.query(configuration);
+    assertThat(result.iterateAll()).hasSize(1);
+    assertThat(cache.getBytes()).isGreaterThan(0L);
+    TableResult cachedResult = bigquery.query(configuration);
+    assertEquals(TABLE_SCHEMA, cachedResult.getSchema());
+    assertEquals(1L, cachedResult.getTotalRows());
+    assertEquals(
+        ImmutableList.copyOf(result.getValues()), ImmutableList.copyOf(cachedResult.getValues()));
+    verify(bigqueryRpcMock).queryRpc(eq(PROJECT), requestPbCapture.capture());
+    verify(bigqueryRpcMock).getJob(PROJECT, JOB, null, jobOptions);
+    verify(bigqueryRpcMock, times(2)).getTable(PROJECT, DATASET, TABLE, tableOptions);
+  }
+
+  @Test
+  public void testQueryResultCacheNonDeterministicQuery() throws InterruptedException {
+    QueryJobConfiguration configuration =
+        QueryJobConfiguration.newBuilder("SELECT *, CURRENT_TIMESTAMP() FROM t")
+            .setUseQueryCache(true)
+            .build();
+    com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobComplete(true)
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(TABLE_SCHEMA.toPb())
+            .setTotalRows(BigInteger.valueOf(1L));
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(queryResponsePb);
+
+    LruQueryResultCache cache = LruQueryResultCache.newBuilder().build();
+    bigquery = options.toBuilder().setQueryResultCache(cache).build().getService();
+    bigquery.query(configuration);
+    // the results depend on when the query runs, they are neither cached nor served from the cache
+    assertEquals(0L, cache.getBytes());
+    bigquery.query(configuration);
+    verify(bigqueryRpcMock, times(2)).queryRpc(eq(PROJECT), requestPbCapture.capture());
+    verify(bigqueryRpcMock, never())
+        .getJob(
+            PROJECT,
+            JOB,
+            null,
+            BigQueryImpl.optionMap(BigQuery.JobOption.fields(BigQuery.JobField.STATISTICS)));
+  }
+
+  @Test
+  public void testQueryResultCacheModifiedTable() throws InterruptedException {
+    QueryJobConfiguration configuration =
+        QUERY_JOB_CONFIGURATION_FOR_QUERY
+            .toBuilder()
+            .setQuery("SELECT * FROM table")
+            .setUseQueryCache(true)
+            .build();
+    com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobComplete(true)
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(TABLE_SCHEMA.toPb())
+            .setTotalRows(BigInteger.valueOf(1L));
+    com.google.api.services.bigquery.model.Job jobPb =
+        new com.google.api.services.bigquery.model.Job()
+            .setConfiguration(configuration.toPb())
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setStatistics(
+                new com.google.api.services.bigquery.model.JobStatistics()
+                    .setStartTime(2000L)
+                    .setQuery(
+                        new JobStatistics2()
+                            .setStatementType("SELECT")
+                            .setReferencedTables(ImmutableList.of(TABLE_ID_WITH_PROJECT.toPb()))));
+    Map<BigQueryRpc.Option, ?> jobOptions =
+        BigQueryImpl.optionMap(BigQuery.JobOption.fields(BigQuery.JobField.STATISTICS));
+    Map<BigQueryRpc.Option, ?> tableOptions =
+        BigQueryImpl.optionMap(BigQuery.TableOption.fields(BigQuery.TableField.LAST_MODIFIED_TIME));
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(queryResponsePb);
+    when(bigqueryRpcMock.getJob(PROJECT, JOB, null, jobOptions)).thenReturn(jobPb);
+    when(bigqueryRpcMock.getTable(PROJECT, DATASET, TABLE, tableOptions))
+        .thenReturn(TABLE_INFO_WITH_PROJECT.toPb().setLastModifiedTime(BigInteger.valueOf(1000L)))
+        .thenReturn(TABLE_INFO_WITH_PROJECT.toPb().setLastModifiedTime(BigInteger.valueOf(1500L)))
+        .thenReturn(TABLE_INFO_WITH_PROJECT.toPb().setLastModifiedTime(BigInteger.valueOf(1500L)));
+
+    bigquery =
+        options
+            .toBuilder()
+            .setQueryResultCache(LruQueryResultCache.newBuilder().build())
+            .build()
+            .getService();
+    bigquery.query(configuration);
+    // the table was modified since the results were cached, the query runs again
+    TableResult result = bigquery.query(configuration);
+    assertThat(result.iterateAll()).hasSize(1);
+    verify(bigqueryRpcMock, times(2)).queryRpc(eq(PROJECT), requestPbCapture.capture());
+    verify(bigqueryRpcMock, times(2)).getJob(PROJECT, JOB, null, jobOptions);
+    verify(bigqueryRpcMock, times(3)).getTable(PROJECT, DATASET, TABLE, tableOptions);
+  }
+
+  @Test
+  public void testPreparedQuery() throws InterruptedException {
+    QueryJobConfiguration configuration =
+        QueryJobConfiguration.newBuilder("SELECT * FROM t WHERE a = @a AND b = @b")
+            .setDefaultDataset(DatasetId.of(PROJECT, DATASET))
+            .addNamedParameter("a", QueryParameterValue.int64(1L))
+            .addNamedParameter("b", QueryParameterValue.string("x"))
+            .build();
+    com.google.api.services.bigquery.model.QueryResponse queryResponsePb =
+        new com.google.api.services.bigquery.model.QueryResponse()
+            .setJobComplete(true)
+            .setJobReference(JobId.of(PROJECT, JOB).toPb())
+            .setRows(ImmutableList.of(TABLE_ROW))
+            .setSchema(TABLE_SCHEMA.toPb())
+            .setTotalRows(BigInteger.valueOf(1L));
+    when(bigqueryRpcMock.queryRpc(eq(PROJECT), requestPbCapture.capture()))
+        .thenReturn(queryResponsePb);
+
+    bigquery = options.getService();
+    PreparedQuery preparedQuery = bigquery.prepareQuery(configuration);
+    assertTrue(preparedQuery.isFastQuerySupported());
+    TableResult result = preparedQuery.query(ImmutableMap.of("a", QueryParameterValue.int64(2L)));
+    assertThat(result.iterateAll()).hasSize(1);
+    preparedQuery.query(ImmutableMap.of("a", QueryParameterValue.int64(2L)));
+    preparedQuery.query();
+
+    List<QueryRequest> requests = requestPbCapture.getAllValues();
+    assertEquals(3, requests.size());
+    QueryRequest expected = new QueryRequestInfo(configuration).toPb();
+    for (QueryRequest request : requests) {
+      assertEquals(expected.getQuery(), request.getQuery());
+      assertEquals(expected.getDefaultDataset(), request.getDefaultDataset());
+      assertNotNull(request.getRequestId());
+    }
+    assertNotEquals(requests.get(0).getRequestId(), requests.get(1).getRequestId());
+    List<QueryParameter> first = requests.get(0).getQueryParameters();
+    List<QueryParameter> second = requests.get(1).getQueryParameters();
+    List<QueryParameter> third = requests.get(2).getQueryParameters();
+    assertEquals("a", first.get(0).getName());
+    assertEquals("2", first.get(0).getParameterValue().getValue());
+    assertEquals("x", first.get(1).getParameterValue().getValue());
+    assertEquals(expected.getQueryParameters(), third);
+    // unchanged values are not encoded again
+    assertSame(first.get(0), second.get(0));
+    assertSame(first.get(1), second.get(1));
+    assertSame(first.get(1), third.get(1));
+    verify(bigqueryRpcMock, times(3)).queryRpc(eq(PROJECT), any(QueryRequest.class));
+  }
+
+  @Test
+  public void testPreparedQueryInvalidParameters() throws InterruptedException {
+    bigquery = options.getService();
+    PreparedQuery namedQuery =
+        bigquery.prepareQuery(
+            QueryJobConfiguration.newBuilder("SELECT @a")
+                .addNamedParameter("a", QueryParameterValue.int64(1L))
+                .build());
+    PreparedQuery positionalQuery =
+        bigquery.prepareQuery(
+            QueryJobConfiguration.newBuilder("SELECT ?")
+                .addPositionalParameter(QueryParameterValue.int64(1L))
+                .build());
+    try {
+      namedQuery.query(ImmutableMap.of("b", QueryParameterValue.int64(2L)));
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+    try {
+      positionalQuery.query(
+          ImmutableList.of(QueryParameterValue.int64(2L), QueryParameterValue.int64(3L)));
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
   }
 
   @Test
@@ -2061,15 +2895,7 @@ public class BigQueryImplTest {
     QueryResultsOption pageSizeOption = QueryResultsOption.pageSize(42L);
     optionMap.put(pageSizeOption.getRpcOption(), pageSizeOption.getValue());
 
-    when(bigqueryRpcMock.getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS)))
-        .thenReturn(responsePb);
-    when(bigqueryRpcMock.listTableData(PROJECT, DATASET, TABLE, optionMap))
-        .thenReturn(
-            new TableDataList()
-                .setPageToken("")
-                .setRows(ImmutableList.of(TABLE_ROW))
-                .setTotalRows(1L));
+    when(bigqueryRpcMock.getQueryResults(PROJECT, JOB, null, optionMap)).thenReturn(responsePb);
 
     bigquery = options.getService();
     Job job = bigquery.create(JobInfo.of(queryJob, QUERY_JOB_CONFIGURATION_FOR_QUERY));
@@ -2082,10 +2908,8 @@ public class BigQueryImplTest {
     }
     verify(bigqueryRpcMock)
         .create(JOB_INFO.toPb(), Collections.<BigQueryRpc.Option, Object>emptyMap());
-    verify(bigqueryRpcMock)
-        .getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS));
-    verify(bigqueryRpcMock).listTableData(PROJECT, DATASET, TABLE, optionMap);
+    verify(bigqueryRpcMock).getQueryResults(PROJECT, JOB, null, optionMap);
+    verify(bigqueryRpcMock, never()).listTableData(PROJECT, DATASET, TABLE, optionMap);
   }
 
   @Test
@@ -2117,19 +2941,8 @@ public class BigQueryImplTest {
     when(bigqueryRpcMock.create(
             JOB_INFO.toPb(), Collections.<BigQueryRpc.Option, Object>emptyMap()))
         .thenReturn(jobResponsePb1);
-    when(bigqueryRpcMock.getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS)))
-        .thenReturn(responsePb1);
-    when(bigqueryRpcMock.getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS)))
-        .thenReturn(responsePb2);
-    when(bigqueryRpcMock.listTableData(
-            PROJECT, DATASET, TABLE, Collections.<BigQueryRpc.Option, Object>emptyMap()))
-        .thenReturn(
-            new TableDataList()
-                .setPageToken("")
-                .setRows(ImmutableList.of(TABLE_ROW))
-                .setTotalRows(1L));
+    when(bigqueryRpcMock.getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS))
+        .thenReturn(responsePb1, responsePb2);
 
     bigquery = options.getService();
     TableResult result = bigquery.query(QUERY_JOB_CONFIGURATION_FOR_QUERY, queryJob);
@@ -2141,13 +2954,8 @@ public class BigQueryImplTest {
     }
     verify(bigqueryRpcMock)
         .create(JOB_INFO.toPb(), Collections.<BigQueryRpc.Option, Object>emptyMap());
-    verify(bigqueryRpcMock)
-        .getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS));
-    verify(bigqueryRpcMock)
-        .getQueryResults(
-            PROJECT, JOB, null, BigQueryImpl.optionMap(Job.DEFAULT_QUERY_WAIT_OPTIONS));
-    verify(bigqueryRpcMock)
+    verify(bigqueryRpcMock, times(2)).getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
+    verify(bigqueryRpcMock, never())
         .listTableData(PROJECT, DATASET, TABLE, Collections.<BigQueryRpc.Option, Object>emptyMap());
   }
 
@@ -2173,6 +2981,44 @@ public class BigQueryImplTest {
     verify(bigqueryRpcMock).getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
   }
 
+  @Test
+  public void testGetQueryResultsStreaming() {
+    final JobId queryJob = JobId.of(JOB);
+    final Schema schema = Schema.of(Field.of("f1", LegacySQLTypeName.INTEGER));
+    when(bigqueryRpcMock.getQueryResults(
+            eq(PROJECT),
+            eq(JOB),
+            ArgumentMatchers.<String>isNull(),
+            eq(EMPTY_RPC_OPTIONS),
+            any(TableDataSink.class)))
+        .thenAnswer(
+            new Answer<GetQueryResultsResponse>() {
+              @Override
+              public GetQueryResultsResponse answer(InvocationOnMock invocation) {
+                TableDataSink sink = invocation.getArgument(4);
+                for (String value : ImmutableList.of("1", "2")) {
+                  sink.startRow();
+                  sink.addCell(value);
+                  sink.endRow();
+                }
+                return new GetQueryResultsResponse()
+                    .setJobReference(queryJob.toPb())
+                    .setJobComplete(true)
+                    .setSchema(schema.toPb())
+                    .setTotalRows(BigInteger.valueOf(2L));
+              }
+            });
+    bigquery = options.toBuilder().setStreamingResponseParsing(true).build().getService();
+    QueryResponse response = bigquery.getQueryResults(queryJob);
+    assertEquals(schema, response.getSchema());
+    assertEquals(2L, response.getTotalRows());
+    List<FieldValueList> rows = ImmutableList.copyOf(response.getRows());
+    assertEquals(2, rows.size());
+    assertEquals(1L, rows.get(0).get("f1").getLongValue());
+    assertEquals(2L, rows.get(1).get("f1").getLongValue());
+    verify(bigqueryRpcMock, never()).getQueryResults(PROJECT, JOB, null, EMPTY_RPC_OPTIONS);
+  }
+
   @Test
   public void testGetQueryResultsWithProject() {
     JobId queryJob = JobId.of(OTHER_PROJECT, JOB);
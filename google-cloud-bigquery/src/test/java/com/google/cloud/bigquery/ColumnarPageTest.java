@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.cloud.bigquery.FieldValue.Attribute.PRIMITIVE;
+import static com.google.cloud.bigquery.FieldValue.Attribute.REPEATED;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.cloud.bigquery.ColumnarPage.ColumnType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class ColumnarPageTest {
+
+  private static final FieldList FIELDS =
+      FieldList.of(
+          Field.of("id", LegacySQLTypeName.INTEGER),
+          Field.of("score", LegacySQLTypeName.FLOAT),
+          Field.of("active", LegacySQLTypeName.BOOLEAN),
+          Field.of("country", LegacySQLTypeName.STRING),
+          Field.newBuilder("tags", LegacySQLTypeName.STRING).setMode(Field.Mode.REPEATED).build());
+  private static final FieldValue TAGS =
+      FieldValue.of(REPEATED, ImmutableList.of(FieldValue.of(PRIMITIVE, "a")));
+  private static final FieldValue NULL = FieldValue.of(PRIMITIVE, null);
+
+  private static FieldValueList row(
+      String id, String score, String active, String country, FieldValue tags) {
+    return FieldValueList.of(
+        ImmutableList.of(
+            FieldValue.of(PRIMITIVE, id),
+            FieldValue.of(PRIMITIVE, score),
+            FieldValue.of(PRIMITIVE, active),
+            FieldValue.of(PRIMITIVE, country),
+            tags),
+        FIELDS);
+  }
+
+  private static final List<FieldValueList> ROWS =
+      ImmutableList.of(
+          row("1", "1.5", "true", "US", TAGS),
+          row(null, "2.5", "FALSE", "FR", NULL),
+          row("3", null, null, "US", TAGS));
+
+  @Test
+  public void testColumnTypes() {
+    ColumnarPage page = ColumnarPage.of(FIELDS, ROWS);
+    assertThat(page.getRowCount()).isEqualTo(3);
+    assertThat(page.getColumnCount()).isEqualTo(5);
+    assertThat(page.getColumnType(0)).isEqualTo(ColumnType.LONG);
+    assertThat(page.getColumnType(1)).isEqualTo(ColumnType.DOUBLE);
+    assertThat(page.getColumnType(2)).isEqualTo(ColumnType.BOOLEAN);
+    assertThat(page.getColumnType(3)).isEqualTo(ColumnType.STRING);
+    assertThat(page.getColumnType(4)).isEqualTo(ColumnType.VALUE);
+    assertThat(page.getColumnIndex("COUNTRY")).isEqualTo(3);
+  }
+
+  @Test
+  public void testPrimitiveColumns() {
+    ColumnarPage page = ColumnarPage.of(FIELDS, ROWS);
+    long[] ids = page.getLongColumn(0);
+    assertThat(ids).hasLength(3);
+    assertThat(ids[0]).isEqualTo(1L);
+    assertThat(page.isNull(0, 1)).isTrue();
+    assertThat(ids[2]).isEqualTo(3L);
+
+    double[] scores = page.getDoubleColumn(1);
+    assertThat(scores[0]).isEqualTo(1.5);
+    assertThat(scores[1]).isEqualTo(2.5);
+    assertThat(page.isNull(1, 2)).isTrue();
+
+    boolean[] active = page.getBooleanColumn(2);
+    assertThat(active[0]).isTrue();
+    assertThat(active[1]).isFalse();
+    assertThat(page.isNull(2, 2)).isTrue();
+    assertThat(page.getString(2, 0)).isEqualTo("true");
+  }
+
+  @Test
+  public void testDictionaryColumn() {
+    ColumnarPage page = ColumnarPage.of(FIELDS, ROWS);
+    assertThat(page.getDictionary(3)).asList().containsExactly("US", "FR").inOrder();
+    assertThat(page.getDictionaryCodes(3)).asList().containsExactly(0, 1, 0).inOrder();
+    assertThat(page.getString(3, 2)).isEqualTo("US");
+    assertThat(page.getValue(3, 1)).isEqualTo(FieldValue.of(PRIMITIVE, "FR"));
+  }
+
+  @Test
+  public void testValueColumn() {
+    ColumnarPage page = ColumnarPage.of(FIELDS, ROWS);
+    assertThat(page.getValue(4, 0)).isEqualTo(TAGS);
+    assertThat(page.isNull(4, 1)).isTrue();
+    assertThat(page.getValue(4, 1).isNull()).isTrue();
+    try {
+      page.getString(4, 0);
+      fail();
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testWrongColumnType() {
+    ColumnarPage page = ColumnarPage.of(FIELDS, ROWS);
+    try {
+      page.getDoubleColumn(0);
+      fail();
+    } catch (IllegalStateException expected) {
+      assertThat(expected.getMessage()).contains("id");
+    }
+  }
+
+  @Test
+  public void testGrowsBeyondInitialCapacity() {
+    FieldList fields = FieldList.of(Field.of("n", LegacySQLTypeName.INTEGER));
+    List<FieldValueList> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add(
+          FieldValueList.of(
+              ImmutableList.of(FieldValue.of(PRIMITIVE, i % 7 == 0 ? null : String.valueOf(i))),
+              fields));
+    }
+    ColumnarPage page = ColumnarPage.of(fields, rows);
+    assertThat(page.getRowCount()).isEqualTo(1000);
+    long[] values = page.getLongColumn(0);
+    assertThat(values).hasLength(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(page.isNull(0, i)).isEqualTo(i % 7 == 0);
+      if (i % 7 != 0) {
+        assertThat(values[i]).isEqualTo(i);
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyPage() {
+    ColumnarPage page = ColumnarPage.of(FIELDS, ImmutableList.<FieldValueList>of());
+    assertThat(page.getRowCount()).isEqualTo(0);
+    assertThat(page.getLongColumn(0)).hasLength(0);
+    assertThat(page.getDictionary(3)).hasLength(0);
+  }
+
+  @Test
+  public void testInvalidBoolean() {
+    try {
+      ColumnarPage.of(FIELDS, ImmutableList.of(row("1", "1", "yes", "US", TAGS)));
+      fail();
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testSink() {
+    // the cells of ROWS, as read from a response
+    Object tags = ImmutableList.of(ImmutableMap.of("v", "a"));
+    List<List<Object>> cells =
+        ImmutableList.<List<Object>>of(
+            Arrays.<Object>asList("1", "1.5", "true", "US", tags),
+            Arrays.<Object>asList(null, "2.5", "FALSE", "FR", null),
+            Arrays.<Object>asList("3", null, null, "US", tags));
+    ColumnarPageSink sink = new ColumnarPageSink(FIELDS);
+    for (List<Object> row : cells) {
+      sink.startRow();
+      for (Object cell : row) {
+        sink.addCell(cell);
+      }
+      sink.endRow();
+    }
+    ColumnarPage page = sink.build();
+    ColumnarPage expected = ColumnarPage.of(FIELDS, ROWS);
+    assertThat(page.getRowCount()).isEqualTo(3);
+    for (int column = 0; column < FIELDS.size(); column++) {
+      for (int row = 0; row < 3; row++) {
+        assertThat(page.getValue(column, row)).isEqualTo(expected.getValue(column, row));
+      }
+    }
+  }
+}
@@ -19,7 +19,17 @@ package com.google.cloud.bigquery;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
-
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.BaseEncoding;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import org.junit.Test;
 
 public class FieldListTest {
@@ -43,6 +53,28 @@ public class FieldListTest {
   private static final String FIELD_DESCRIPTION2 = "FieldDescription2";
   private static final String FIELD_DESCRIPTION3 = "FieldDescription3";
 
+  // a FieldList of a Name STRING field and a count INTEGER field, serialized before the name index
+  private static final String SERIALIZED_FIELD_LIST =
+      "rO0ABXNyACNjb20uZ29vZ2xlLmNsb3VkLmJpZ3F1ZXJ5LkZpZWxkTGlzdHk9bLS5+lIEAgACTAAGZmllbGRz"
+          + "dAAQTGphdmEvdXRpbC9MaXN0O0wACW5hbWVJbmRleHQAD0xqYXZhL3V0aWwvTWFwO3hwc3IANmNvbS5nb29n"
+          + "bGUuY29tbW9uLmNvbGxlY3QuSW1tdXRhYmxlTGlzdCRTZXJpYWxpemVkRm9ybQAAAAAAAAAAAgABWwAIZWxl"
+          + "bWVudHN0ABNbTGphdmEvbGFuZy9PYmplY3Q7eHB1cgATW0xqYXZhLmxhbmcuT2JqZWN0O5DOWJ8QcylsAgAA"
+          + "eHAAAAACc3IAH2NvbS5nb29nbGUuY2xvdWQuYmlncXVlcnkuRmllbGR6g1Jgyuwv3AIACUwAC2Rlc2NyaXB0"
+          + "aW9udAASTGphdmEvbGFuZy9TdHJpbmc7TAAJbWF4TGVuZ3RodAAQTGphdmEvbGFuZy9Mb25nO0wABG1vZGVx"
+          + "AH4ACkwABG5hbWVxAH4ACkwACnBvbGljeVRhZ3N0ACZMY29tL2dvb2dsZS9jbG91ZC9iaWdxdWVyeS9Qb2xp"
+          + "Y3lUYWdzO0wACXByZWNpc2lvbnEAfgALTAAFc2NhbGVxAH4AC0wACXN1YkZpZWxkc3QAJUxjb20vZ29vZ2xl"
+          + "L2Nsb3VkL2JpZ3F1ZXJ5L0ZpZWxkTGlzdDtMAAR0eXBldAAtTGNvbS9nb29nbGUvY2xvdWQvYmlncXVlcnkv"
+          + "TGVnYWN5U1FMVHlwZU5hbWU7eHBwcHB0AAROYW1lcHBwcHNyACtjb20uZ29vZ2xlLmNsb3VkLmJpZ3F1ZXJ5"
+          + "LkxlZ2FjeVNRTFR5cGVOYW1lE7iMxw2sMyMCAAFMAAplcXVpdmFsZW50dAAvTGNvbS9nb29nbGUvY2xvdWQv"
+          + "YmlncXVlcnkvU3RhbmRhcmRTUUxUeXBlTmFtZTt4cgAgY29tLmdvb2dsZS5jbG91ZC5TdHJpbmdFbnVtVmFs"
+          + "dWUU13+1zEYBnAIAAUwACGNvbnN0YW50cQB+AAp4cHQABlNUUklOR35yAC1jb20uZ29vZ2xlLmNsb3VkLmJp"
+          + "Z3F1ZXJ5LlN0YW5kYXJkU1FMVHlwZU5hbWUAAAAAAAAAABIAAHhyAA5qYXZhLmxhbmcuRW51bQAAAAAAAAAA"
+          + "EgAAeHB0AAZTVFJJTkdzcQB+AAlwcHB0AAVjb3VudHBwcHBzcQB+ABF0AAdJTlRFR0VSfnEAfgAWdAAFSU5U"
+          + "NjRzcgA2Y29tLmdvb2dsZS5jbG91ZC5iaWdxdWVyeS5GaWVsZExpc3QkQ2FzZUluc2Vuc2l0aXZlTWFwCamw"
+          + "8lOdydQCAAB4cgARamF2YS51dGlsLkhhc2hNYXAFB9rBwxZg0QMAAkYACmxvYWRGYWN0b3JJAAl0aHJlc2hv"
+          + "bGR4cD9AAAAAAAAMdwgAAAAQAAAAAnQABG5hbWVzcgARamF2YS5sYW5nLkludGVnZXIS4qCk94GHOAIAAUkA"
+          + "BXZhbHVleHIAEGphdmEubGFuZy5OdW1iZXKGrJUdC5TgiwIAAHhwAAAAAHEAfgAbc3EAfgAkAAAAAXg=";
+
   private final Field fieldSchema1 =
       Field.newBuilder(FIELD_NAME1, FIELD_TYPE1)
           .setMode(FIELD_MODE1)
@@ -128,4 +160,83 @@ public class FieldListTest {
 
     assertEquals(fieldsSchema, FieldList.fromPb(fieldsSchema.toPb()));
   }
+
+  @Test
+  public void testGetIndexManyFields() {
+    List<Field> fields = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      fields.add(Field.of("Field_" + i, FIELD_TYPE1));
+    }
+    FieldList fieldList = FieldList.of(fields);
+    for (int i = 0; i < 500; i++) {
+      assertEquals(i, fieldList.getIndex("field_" + i));
+      assertEquals(i, fieldList.getIndex("FIELD_" + i));
+    }
+  }
+
+  @Test
+  public void testGetIndexAfterDeserialization() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+      output.writeObject(fieldsSchema);
+    }
+    FieldList copy;
+    try (ObjectInputStream input =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      copy = (FieldList) input.readObject();
+    }
+    assertEquals(fieldsSchema, copy);
+    assertEquals(2, copy.getIndex(FIELD_NAME_CASE_INSENSITIVE6));
+  }
+
+  @Test
+  public void testSelect() {
+    assertEquals(
+        FieldList.of(fieldSchema1, fieldSchema3),
+        fieldsSchema.select(ImmutableList.of(FIELD_NAME3, FIELD_NAME_CASE_INSENSITIVE1)));
+
+    FieldList selected =
+        fieldsSchema.select(ImmutableList.of(FIELD_NAME_CASE_INSENSITIVE3 + "." + FIELD_NAME2));
+    assertEquals(1, selected.size());
+    assertEquals(FIELD_NAME3, selected.get(0).getName());
+    assertEquals(FIELD_MODE3, selected.get(0).getMode());
+    assertEquals(FieldList.of(fieldSchema2), selected.get(0).getSubFields());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSelectNonExistentField() {
+    fieldsSchema.select(ImmutableList.of(FIELD_NAME4));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSelectSubFieldOfNonRecord() {
+    fieldsSchema.select(ImmutableList.of(FIELD_NAME1 + ".foo"));
+  }
+
+  @Test
+  public void testDeserializePreviousVersion() throws Exception {
+    byte[] bytes = BaseEncoding.base64().decode(SERIALIZED_FIELD_LIST);
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      FieldList fields = (FieldList) in.readObject();
+      assertEquals(
+          FieldList.of(
+              Field.of("Name", LegacySQLTypeName.STRING),
+              Field.of("count", LegacySQLTypeName.INTEGER)),
+          fields);
+      assertEquals(0, fields.getIndex("name"));
+      assertEquals(1, fields.getIndex("COUNT"));
+    }
+  }
+
+  @Test
+  public void testSerializedFormKeepsNameIndexMap() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(fieldsSchema);
+    }
+    // earlier versions read their name index map from the serialized form
+    assertTrue(
+        new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1)
+            .contains("com.google.cloud.bigquery.FieldList$CaseInsensitiveMap"));
+  }
 }
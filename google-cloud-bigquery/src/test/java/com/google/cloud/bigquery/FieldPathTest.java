@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.cloud.bigquery.FieldValue.Attribute.PRIMITIVE;
+import static com.google.cloud.bigquery.FieldValue.Attribute.RECORD;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class FieldPathTest {
+
+  private static final Field CITY = Field.of("city", LegacySQLTypeName.STRING);
+  private static final Field ZIP = Field.of("zip", LegacySQLTypeName.INTEGER);
+  private static final Field ADDRESS = Field.of("address", LegacySQLTypeName.RECORD, CITY, ZIP);
+  private static final Field NAME = Field.of("name", LegacySQLTypeName.STRING);
+  private static final Field PHONES =
+      Field.newBuilder(
+              "phones", LegacySQLTypeName.RECORD, Field.of("number", LegacySQLTypeName.STRING))
+          .setMode(Field.Mode.REPEATED)
+          .build();
+  private static final Schema SCHEMA = Schema.of(NAME, ADDRESS, PHONES);
+
+  private static FieldValueList row(String name, FieldValue address) {
+    return FieldValueList.of(
+        ImmutableList.of(
+            FieldValue.of(PRIMITIVE, name),
+            address,
+            FieldValue.of(FieldValue.Attribute.REPEATED, ImmutableList.of())),
+        SCHEMA.getFields());
+  }
+
+  private static FieldValue address(String city, String zip) {
+    return FieldValue.of(
+        RECORD,
+        FieldValueList.of(
+            ImmutableList.of(FieldValue.of(PRIMITIVE, city), FieldValue.of(PRIMITIVE, zip)),
+            ADDRESS.getSubFields()));
+  }
+
+  @Test
+  public void testTopLevelField() {
+    FieldPath path = FieldPath.of(SCHEMA, "NAME");
+    assertEquals("NAME", path.getPath());
+    assertEquals(NAME, path.getField());
+    assertEquals("Ada", path.getStringValue(row("Ada", address("London", "1"))));
+  }
+
+  @Test
+  public void testNestedField() {
+    FieldPath city = FieldPath.of(SCHEMA, "address.City");
+    FieldPath zip = FieldPath.of(SCHEMA.getFields(), "address.zip");
+    assertEquals(CITY, city.getField());
+    FieldValueList row = row("Ada", address("London", "12"));
+    assertEquals("London", city.getStringValue(row));
+    assertEquals(12L, zip.getLongValue(row));
+    assertFalse(zip.isNull(row));
+  }
+
+  @Test
+  public void testNullRecord() {
+    FieldPath city = FieldPath.of(SCHEMA, "address.city");
+    assertTrue(city.isNull(row("Ada", FieldValue.of(PRIMITIVE, null))));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownField() {
+    FieldPath.of(SCHEMA, "address.street");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotARecord() {
+    FieldPath.of(SCHEMA, "name.first");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRepeatedRecord() {
+    FieldPath.of(SCHEMA, "phones.number");
+  }
+
+  @Test
+  public void testEquals() {
+    assertEquals(FieldPath.of(SCHEMA, "address.city"), FieldPath.of(SCHEMA, "address.city"));
+    assertEquals(
+        FieldPath.of(SCHEMA, "address.city").hashCode(),
+        FieldPath.of(SCHEMA, "address.city").hashCode());
+  }
+}
@@ -29,6 +29,10 @@ import com.google.common.io.BaseEncoding;
 import java.math.BigDecimal;
 import java.util.Map;
 import org.junit.Test;
+import org.threeten.bp.Instant;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.LocalTime;
 
 public class FieldValueTest {
 
@@ -97,6 +101,26 @@ public class FieldValueTest {
     assertEquals(expected, received);
   }
 
+  @Test
+  public void testTemporalValues() {
+    FieldValue timestamp = FieldValue.of(FieldValue.Attribute.PRIMITIVE, "1.408452095220E9");
+    assertEquals(1408452095220000L, timestamp.getTimestampValue());
+    assertEquals(Instant.parse("2014-08-19T12:41:35.220Z"), timestamp.getTimestampInstant());
+
+    FieldValue date = FieldValue.of(FieldValue.Attribute.PRIMITIVE, "2014-08-19");
+    assertEquals(LocalDate.of(2014, 8, 19).toEpochDay(), date.getDateEpochDays());
+    assertEquals(LocalDate.of(2014, 8, 19), date.getLocalDateValue());
+
+    FieldValue time = FieldValue.of(FieldValue.Attribute.PRIMITIVE, "12:41:35.220000");
+    assertEquals(LocalTime.of(12, 41, 35, 220000000).toNanoOfDay(), time.getTimeNanos());
+    assertEquals(LocalTime.of(12, 41, 35, 220000000), time.getLocalTimeValue());
+
+    FieldValue dateTime = FieldValue.of(FieldValue.Attribute.PRIMITIVE, "1969-12-31T23:59:59.5");
+    assertEquals(-500000L, dateTime.getDateTimeMicros());
+    assertEquals(
+        LocalDateTime.of(1969, 12, 31, 23, 59, 59, 500000000), dateTime.getLocalDateTimeValue());
+  }
+
   @Test
   public void testEquals() {
     FieldValue booleanValue = FieldValue.of(FieldValue.Attribute.PRIMITIVE, "false");
@@ -114,6 +114,7 @@ public class InsertAllRequestTest {
           .setIgnoreUnknownValues(true)
           .setSkipInvalidRows(false)
           .setTemplateSuffix(TEMPLATE_SUFFIX)
+          .setRequestCompression(RequestCompression.gzip())
           .build();
 
   @Test
@@ -214,6 +215,55 @@ public class InsertAllRequestTest {
     compareInsertAllRequest(INSERT_ALL_REQUEST11, INSERT_ALL_REQUEST11);
   }
 
+  @Test
+  public void testEstimatedSizeBytes() {
+    InsertAllRequest.Builder builder = InsertAllRequest.newBuilder(TABLE_ID);
+    long emptySize = builder.getEstimatedSizeBytes();
+    builder.addRow(CONTENT1);
+    long oneRowSize = builder.getEstimatedSizeBytes();
+    assertThat(oneRowSize).isGreaterThan(emptySize);
+    builder.addRow(CONTENT2);
+    assertThat(builder.getEstimatedSizeBytes()).isEqualTo(2 * oneRowSize - emptySize);
+    assertThat(builder.build().getEstimatedSizeBytes()).isEqualTo(builder.getEstimatedSizeBytes());
+    assertThat(INSERT_ALL_REQUEST2.getEstimatedSizeBytes())
+        .isEqualTo(INSERT_ALL_REQUEST1.getEstimatedSizeBytes());
+    assertThat(INSERT_ALL_REQUEST11.getEstimatedSizeBytes())
+        .isEqualTo(INSERT_ALL_REQUEST10.getEstimatedSizeBytes() + TEMPLATE_SUFFIX.length());
+  }
+
+  @Test
+  public void testEstimatedSizeBytesOfEncodedStrings() {
+    long asciiSize =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow(ImmutableMap.<String, Object>of("field", "abc"))
+            .getEstimatedSizeBytes();
+    // 2 bytes in UTF-8, 2 bytes escaped and 6 bytes escaped
+    long encodedSize =
+        InsertAllRequest.newBuilder(TABLE_ID)
+            .addRow(ImmutableMap.<String, Object>of("field", "\u00e9\"\u0001"))
+            .getEstimatedSizeBytes();
+    assertThat(encodedSize - asciiSize).isEqualTo(7L);
+  }
+
+  @Test
+  public void testSplit() {
+    assertThat(INSERT_ALL_REQUEST11.split(2, Long.MAX_VALUE)).containsExactly(INSERT_ALL_REQUEST11);
+    List<InsertAllRequest> parts = INSERT_ALL_REQUEST11.split(1, Long.MAX_VALUE);
+    assertThat(parts).hasSize(2);
+    for (int i = 0; i < parts.size(); i++) {
+      assertThat(parts.get(i).getRows()).containsExactly(ROWS_WITH_ID.get(i));
+      assertThat(parts.get(i).getTable()).isEqualTo(INSERT_ALL_REQUEST11.getTable());
+      assertThat(parts.get(i).ignoreUnknownValues()).isTrue();
+      assertThat(parts.get(i).skipInvalidRows()).isFalse();
+      assertThat(parts.get(i).getTemplateSuffix()).isEqualTo(TEMPLATE_SUFFIX);
+      assertThat(parts.get(i).getRequestCompression()).isEqualTo(RequestCompression.gzip());
+    }
+    long maxBytes = INSERT_ALL_REQUEST11.getEstimatedSizeBytes() - 1;
+    assertThat(INSERT_ALL_REQUEST11.split(2, maxBytes)).isEqualTo(parts);
+    // rows larger than the limit are sent alone
+    assertThat(INSERT_ALL_REQUEST11.split(2, 1)).isEqualTo(parts);
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void testImmutable() {
     InsertAllRequest.RowToInsert row =
@@ -237,5 +287,6 @@ public class InsertAllRequestTest {
     assertThat(expected.ignoreUnknownValues()).isEqualTo(value.ignoreUnknownValues());
     assertThat(expected.skipInvalidRows()).isEqualTo(value.skipInvalidRows());
     assertThat(expected.getTemplateSuffix()).isEqualTo(value.getTemplateSuffix());
+    assertThat(expected.getRequestCompression()).isEqualTo(value.getRequestCompression());
   }
 }
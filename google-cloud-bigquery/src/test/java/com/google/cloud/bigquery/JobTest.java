@@ -29,6 +29,7 @@ import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -36,11 +37,14 @@ import static org.mockito.Mockito.when;
 import com.google.api.core.CurrentMillisClock;
 import com.google.api.gax.paging.Page;
 import com.google.api.gax.paging.Pages;
+import com.google.cloud.PageImpl;
 import com.google.cloud.RetryOption;
 import com.google.cloud.bigquery.JobStatistics.CopyStatistics;
 import com.google.cloud.bigquery.JobStatistics.QueryStatistics;
 import com.google.cloud.bigquery.JobStatus.State;
 import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -60,6 +64,7 @@ public class JobTest {
   private static final String GENERATED_ID = "id";
   private static final String SELF_LINK = "selfLink";
   private static final String EMAIL = "email";
+  private static final String CURSOR = "cursor";
   private static final JobStatus JOB_STATUS = new JobStatus(JobStatus.State.DONE);
   private static final JobStatistics COPY_JOB_STATISTICS =
       CopyStatistics.newBuilder().setCreationTimestamp(1L).setEndTime(3L).setStartTime(2L).build();
@@ -225,13 +230,13 @@ public class JobTest {
     when(bigquery.getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS))
         .thenReturn(completedQuery);
     when(bigquery.getJob(JOB_INFO.getJobId())).thenReturn(completedJob);
-    when(bigquery.getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS))
-        .thenReturn(completedQuery);
+    when(bigquery.getQueryResults(jobInfo.getJobId())).thenReturn(completedQuery);
     when(bigquery.getJob(JOB_INFO.getJobId())).thenReturn(completedJob);
     job = this.job.toBuilder().setConfiguration(jobConfig).build();
     assertThat(job.waitFor(TEST_RETRY_OPTIONS)).isSameInstanceAs(completedJob);
     assertThat(job.getQueryResults().iterateAll()).isEmpty();
-    verify(bigquery, times(2)).getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS);
+    verify(bigquery).getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS);
+    verify(bigquery).getQueryResults(jobInfo.getJobId());
     verify(bigquery).getJob(JOB_INFO.getJobId());
   }
 
@@ -272,13 +277,13 @@ public class JobTest {
     when(bigquery.getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS))
         .thenReturn(completedQuery);
     when(bigquery.getJob(JOB_INFO.getJobId())).thenReturn(completedJob);
-    when(bigquery.getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS))
-        .thenReturn(completedQuery);
+    when(bigquery.getQueryResults(jobInfo.getJobId())).thenReturn(completedQuery);
     job = this.job.toBuilder().setConfiguration(jobConfig).build();
     assertThat(job.waitFor(TEST_RETRY_OPTIONS)).isSameInstanceAs(completedJob);
     assertThat(job.getQueryResults().getSchema())
         .isEqualTo(Schema.of(Field.of("field1", LegacySQLTypeName.BOOLEAN)));
-    verify(bigquery, times(2)).getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS);
+    verify(bigquery).getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS);
+    verify(bigquery).getQueryResults(jobInfo.getJobId());
     verify(bigquery).getJob(JOB_INFO.getJobId());
   }
 
@@ -321,16 +326,65 @@ public class JobTest {
     when(bigquery.getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS))
         .thenReturn(completedQuery);
     when(bigquery.getJob(JOB_INFO.getJobId())).thenReturn(completedJob);
-    when(bigquery.getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS))
-        .thenReturn(completedQuery);
+    when(bigquery.getQueryResults(jobInfo.getJobId())).thenReturn(completedQuery);
     when(bigquery.listTableData(eq(TABLE_ID1), any(Schema.class))).thenReturn(result);
     job = this.job.toBuilder().setConfiguration(jobConfig).build();
     assertThat(job.waitFor(TEST_RETRY_OPTIONS)).isSameInstanceAs(completedJob);
     assertThat(job.getQueryResults().iterateAll()).hasSize(0);
-    verify(bigquery, times(2)).getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS);
+    verify(bigquery).getQueryResults(jobInfo.getJobId(), Job.DEFAULT_QUERY_WAIT_OPTIONS);
+    verify(bigquery).getQueryResults(jobInfo.getJobId());
     verify(bigquery).getJob(JOB_INFO.getJobId());
   }
 
+  @Test
+  public void testGetQueryResultsFirstPage() throws InterruptedException {
+    QueryJobConfiguration jobConfig =
+        QueryJobConfiguration.newBuilder("SELECT 1").setDestinationTable(TABLE_ID1).build();
+    Schema schema = Schema.of(Field.of("_f0", LegacySQLTypeName.INTEGER));
+    FieldValueList row =
+        FieldValueList.of(ImmutableList.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, "1")));
+    QueryResponse completedQuery =
+        QueryResponse.newBuilder()
+            .setCompleted(true)
+            .setTotalRows(2)
+            .setSchema(schema)
+            .setErrors(ImmutableList.<BigQueryError>of())
+            .setRows(ImmutableList.of(row))
+            .setPageToken(CURSOR)
+            .build();
+    TableResult nextPage =
+        new TableResult(schema, 2, new PageImpl<>(null, null, ImmutableList.of(row)));
+    when(bigquery.getOptions()).thenReturn(mockOptions);
+    when(mockOptions.getClock()).thenReturn(CurrentMillisClock.getDefaultClock());
+    when(bigquery.getQueryResults(JOB_ID, BigQuery.QueryResultsOption.pageSize(1L)))
+        .thenReturn(completedQuery);
+    when(bigquery.listTableData(
+            TABLE_ID1,
+            schema,
+            BigQuery.TableDataListOption.pageToken(CURSOR),
+            BigQuery.TableDataListOption.pageSize(1L)))
+        .thenReturn(nextPage);
+    job = this.job.toBuilder().setConfiguration(jobConfig).build();
+    TableResult result = job.getQueryResults(BigQuery.QueryResultsOption.pageSize(1L));
+    assertThat(result.getTotalRows()).isEqualTo(2);
+    assertThat(result.getValues()).hasSize(1);
+    assertThat(result.getNextPageToken()).isEqualTo(CURSOR);
+    verify(bigquery, never()).getJob(JOB_ID);
+    verify(bigquery, never())
+        .listTableData(
+            TABLE_ID1,
+            schema,
+            BigQuery.TableDataListOption.pageToken(CURSOR),
+            BigQuery.TableDataListOption.pageSize(1L));
+    assertThat(result.getNextPage().getValues()).hasSize(1);
+    verify(bigquery)
+        .listTableData(
+            TABLE_ID1,
+            schema,
+            BigQuery.TableDataListOption.pageToken(CURSOR),
+            BigQuery.TableDataListOption.pageSize(1L));
+  }
+
   @Test
   public void testWaitForAndGetQueryResults_Unsupported() throws InterruptedException {
     try {
@@ -401,6 +455,40 @@ public class JobTest {
     }
   }
 
+  @Test
+  public void testWaitForAsync() throws Exception {
+    BigQuery.JobOption[] expectedOptions = {BigQuery.JobOption.fields(BigQuery.JobField.STATUS)};
+    when(mockOptions.getClock()).thenReturn(CurrentMillisClock.getDefaultClock());
+    when(mockOptions.getAsyncExecutor()).thenReturn(AsyncPoller.defaultExecutor());
+    Job runningJob =
+        expectedJob.toBuilder().setStatus(new JobStatus(JobStatus.State.RUNNING)).build();
+    Job completedJob =
+        expectedJob.toBuilder().setStatus(new JobStatus(JobStatus.State.DONE)).build();
+    when(bigquery.getJob(JOB_INFO.getJobId(), expectedOptions))
+        .thenReturn(runningJob, runningJob, completedJob);
+    when(bigquery.getJob(JOB_INFO.getJobId())).thenReturn(completedJob);
+    assertSame(completedJob, job.waitForAsync(TEST_RETRY_OPTIONS).get(10, TimeUnit.SECONDS));
+    verify(bigquery, times(3)).getJob(JOB_INFO.getJobId(), expectedOptions);
+    verify(bigquery).getJob(JOB_INFO.getJobId());
+  }
+
+  @Test
+  public void testWaitForAsyncWithTimeout() throws Exception {
+    BigQuery.JobOption[] expectedOptions = {BigQuery.JobOption.fields(BigQuery.JobField.STATUS)};
+    when(mockOptions.getClock()).thenReturn(CurrentMillisClock.getDefaultClock());
+    when(mockOptions.getAsyncExecutor()).thenReturn(AsyncPoller.defaultExecutor());
+    Job runningJob =
+        expectedJob.toBuilder().setStatus(new JobStatus(JobStatus.State.RUNNING)).build();
+    when(bigquery.getJob(JOB_INFO.getJobId(), expectedOptions)).thenReturn(runningJob);
+    try {
+      job.waitForAsync(concat(TEST_RETRY_OPTIONS, RetryOption.totalTimeout(Duration.ofMillis(3))))
+          .get(10, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException expected) {
+      assertThat(expected.getCause()).isInstanceOf(BigQueryException.class);
+    }
+  }
+
   @Test
   public void testReload() {
     JobInfo updatedInfo = JOB_INFO.toBuilder().setEtag("etag").build();
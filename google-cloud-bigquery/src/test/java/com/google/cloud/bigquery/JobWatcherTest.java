@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.PageImpl;
+import com.google.cloud.bigquery.BigQuery.JobField;
+import com.google.cloud.bigquery.BigQuery.JobListOption;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import com.google.cloud.bigquery.JobStatistics.CopyStatistics;
+import com.google.common.collect.ImmutableList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.threeten.bp.Duration;
+
+public class JobWatcherTest {
+
+  private static final String PROJECT = "project";
+  private static final JobId JOB_ID_1 = JobId.of(PROJECT, "job1");
+  private static final JobId JOB_ID_2 = JobId.of(PROJECT, "job2");
+  private static final CopyJobConfiguration CONFIGURATION =
+      CopyJobConfiguration.of(TableId.of("dataset", "table1"), TableId.of("dataset", "table2"));
+  private static final JobOption[] GET_OPTIONS = {
+    JobOption.fields(JobField.STATUS, JobField.STATISTICS)
+  };
+
+  private BigQuery bigquery;
+  private ScheduledExecutorService executor;
+  private JobWatcher watcher;
+
+  @Before
+  public void setUp() {
+    bigquery = mock(BigQuery.class);
+    BigQueryOptions options = mock(BigQueryOptions.class);
+    when(bigquery.getOptions()).thenReturn(options);
+    when(options.getProjectId()).thenReturn(PROJECT);
+    executor = Executors.newSingleThreadScheduledExecutor();
+    watcher =
+        JobWatcher.newBuilder(bigquery)
+            .setPollInterval(Duration.ofMillis(1L))
+            .setExecutor(executor)
+            .build();
+  }
+
+  @After
+  public void tearDown() {
+    watcher.close();
+    executor.shutdownNow();
+  }
+
+  private Job job(JobId jobId, JobStatus.State state, long creationTime) {
+    return new Job(
+        bigquery,
+        new JobInfo.BuilderImpl(
+            JobInfo.newBuilder(CONFIGURATION)
+                .setJobId(jobId)
+                .setStatus(new JobStatus(state))
+                .setStatistics(
+                    CopyStatistics.newBuilder().setCreationTimestamp(creationTime).build())
+                .build()));
+  }
+
+  private static JobListOption[] listOptions(long minCreationTime, long maxCreationTime) {
+    return new JobListOption[] {
+      JobListOption.stateFilter(JobStatus.State.DONE),
+      JobListOption.minCreationTime(minCreationTime),
+      JobListOption.maxCreationTime(maxCreationTime),
+      JobListOption.fields(JobField.STATUS),
+      JobListOption.pageSize(1000L)
+    };
+  }
+
+  @Test
+  public void testWatchJobs() throws Exception {
+    Job done1 = job(JOB_ID_1, JobStatus.State.DONE, 10L);
+    Job done2 = job(JOB_ID_2, JobStatus.State.DONE, 20L);
+    // the first poll may list the first job alone
+    when(bigquery.listJobs(listOptions(10L, 10L)))
+        .thenReturn(new PageImpl<Job>(null, null, ImmutableList.<Job>of()));
+    when(bigquery.listJobs(listOptions(10L, 20L)))
+        .thenReturn(
+            new PageImpl<Job>(null, null, ImmutableList.<Job>of()),
+            new PageImpl<>(null, null, ImmutableList.of(done2, done1)));
+
+    ApiFuture<Job> future1 = watcher.watch(job(JOB_ID_1, JobStatus.State.RUNNING, 10L));
+    ApiFuture<Job> future2 = watcher.watch(job(JOB_ID_2, JobStatus.State.PENDING, 20L));
+    assertThat(watcher.watch(JOB_ID_1)).isSameInstanceAs(future1);
+    assertThat(future1.get(10, TimeUnit.SECONDS)).isSameInstanceAs(done1);
+    assertThat(future2.get(10, TimeUnit.SECONDS)).isSameInstanceAs(done2);
+    assertThat(watcher.getWatchedJobCount()).isEqualTo(0);
+    verify(bigquery, never()).getJob(JOB_ID_1, GET_OPTIONS);
+  }
+
+  @Test
+  public void testWatchJobIdFetchesCreationTime() throws Exception {
+    Job done = job(JOB_ID_1, JobStatus.State.DONE, 10L);
+    Job running = job(JOB_ID_1, JobStatus.State.RUNNING, 10L);
+    when(bigquery.getJob(JOB_ID_1, GET_OPTIONS)).thenReturn(running);
+    when(bigquery.listJobs(listOptions(10L, 10L)))
+        .thenReturn(new PageImpl<>(null, null, ImmutableList.of(done)));
+
+    assertThat(watcher.watch(JOB_ID_1).get(10, TimeUnit.SECONDS)).isSameInstanceAs(done);
+    verify(bigquery).getJob(JOB_ID_1, GET_OPTIONS);
+  }
+
+  @Test
+  public void testWatchMissingJob() throws Exception {
+    assertNull(watcher.watch(JOB_ID_1).get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testWatchDoneJob() throws Exception {
+    Job done = job(JOB_ID_1, JobStatus.State.DONE, 10L);
+    assertThat(watcher.watch(done).get()).isSameInstanceAs(done);
+    assertThat(watcher.getWatchedJobCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testClose() {
+    Job running = job(JOB_ID_1, JobStatus.State.RUNNING, 10L);
+    when(bigquery.getJob(JOB_ID_1, GET_OPTIONS)).thenReturn(running);
+    when(bigquery.listJobs(listOptions(10L, 10L)))
+        .thenReturn(new PageImpl<Job>(null, null, ImmutableList.<Job>of()));
+    ApiFuture<Job> future = watcher.watch(JOB_ID_1);
+    watcher.close();
+    assertTrue(future.isCancelled());
+    assertThat(watcher.getWatchedJobCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testRetryableErrorIsRetried() throws Exception {
+    Job done = job(JOB_ID_1, JobStatus.State.DONE, 10L);
+    when(bigquery.listJobs(listOptions(10L, 10L)))
+        .thenThrow(new BigQueryException(503, "Service unavailable"))
+        .thenReturn(new PageImpl<>(null, null, ImmutableList.of(done)));
+
+    ApiFuture<Job> future = watcher.watch(job(JOB_ID_1, JobStatus.State.RUNNING, 10L));
+    assertThat(future.get(10, TimeUnit.SECONDS)).isSameInstanceAs(done);
+  }
+
+  @Test
+  public void testNonRetryableErrorFailsWatches() throws Exception {
+    BigQueryException exception = new BigQueryException(403, "Access denied");
+    when(bigquery.listJobs(listOptions(10L, 10L))).thenThrow(exception);
+
+    ApiFuture<Job> future = watcher.watch(job(JOB_ID_1, JobStatus.State.RUNNING, 10L));
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      fail("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isSameInstanceAs(exception);
+    }
+    assertThat(watcher.getWatchedJobCount()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.core.ApiClock;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.threeten.bp.Duration;
+
+public class LruQueryResultCacheTest {
+
+  private static final Schema SCHEMA = Schema.of(Field.of("name", LegacySQLTypeName.STRING));
+  private static final TableId TABLE_ID = TableId.of("project", "dataset", "table");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private static final class FakeClock implements ApiClock {
+
+    long millis;
+
+    @Override
+    public long nanoTime() {
+      return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long millisTime() {
+      return millis;
+    }
+  }
+
+  private static CachedQueryResult result(String value) {
+    FieldValueList row =
+        FieldValueList.of(
+            ImmutableList.of(FieldValue.of(FieldValue.Attribute.PRIMITIVE, value)),
+            SCHEMA.getFields());
+    return new CachedQueryResult(
+        SCHEMA, 1L, ImmutableList.of(row), ImmutableMap.of(TABLE_ID, 1000L));
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() {
+    long size = result("a").getSizeBytes();
+    LruQueryResultCache cache = LruQueryResultCache.newBuilder().setMaxBytes(2 * size).build();
+    cache.put("a", result("a"));
+    cache.put("b", result("b"));
+    assertNotNull(cache.get("a"));
+    cache.put("c", result("c"));
+    assertNotNull(cache.get("a"));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("c"));
+    assertEquals(2 * size, cache.getBytes());
+    cache.invalidate("a");
+    assertNull(cache.get("a"));
+    assertEquals(size, cache.getBytes());
+  }
+
+  @Test
+  public void testTimeToLive() {
+    FakeClock clock = new FakeClock();
+    LruQueryResultCache cache =
+        LruQueryResultCache.newBuilder()
+            .setTimeToLive(Duration.ofSeconds(10L))
+            .setClock(clock)
+            .build();
+    cache.put("a", result("a"));
+    clock.millis = 10_000L;
+    assertNotNull(cache.get("a"));
+    clock.millis = 10_001L;
+    assertNull(cache.get("a"));
+    assertEquals(0L, cache.getBytes());
+  }
+
+  @Test
+  public void testSpill() throws IOException {
+    File directory = temporaryFolder.newFolder();
+    long size = result("a").getSizeBytes();
+    LruQueryResultCache cache =
+        LruQueryResultCache.newBuilder()
+            .setMaxBytes(size)
+            .setSpillDirectory(directory.toPath(), 1L << 20)
+            .build();
+    cache.put("a", result("a"));
+    cache.put("b", result("b"));
+    assertEquals(1, directory.listFiles().length);
+    assertTrue(cache.getSpilledBytes() > 0L);
+
+    CachedQueryResult spilled = cache.get("a");
+    assertEquals("a", spilled.getRows().get(0).get(0).getStringValue());
+    assertEquals(SCHEMA, spilled.getSchema());
+    assertEquals(ImmutableMap.of(TABLE_ID, 1000L), spilled.getTableModificationTimes());
+    // "b" was spilled in turn
+    assertEquals(1, directory.listFiles().length);
+    cache.invalidate("b");
+    assertEquals(0, directory.listFiles().length);
+    assertEquals(0L, cache.getSpilledBytes());
+    assertNull(cache.get("b"));
+  }
+
+  @Test
+  public void testSpilledResultsOnlyDeserializeExpectedClasses() throws IOException {
+    File directory = temporaryFolder.newFolder();
+    long size = result("a").getSizeBytes();
+    LruQueryResultCache cache =
+        LruQueryResultCache.newBuilder()
+            .setMaxBytes(size)
+            .setSpillDirectory(directory.toPath(), 1L << 20)
+            .build();
+    cache.put("a", result("a"));
+    cache.put("b", result("b"));
+    File[] files = directory.listFiles();
+    assertEquals(1, files.length);
+
+    // replaces the spilled results of "a" with an object of another class
+    try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(files[0]))) {
+      out.writeUTF("a");
+      out.writeLong(0L);
+      out.writeObject(new java.util.Date());
+    }
+    assertNull(cache.get("a"));
+    assertEquals(0, directory.listFiles().length);
+  }
+}
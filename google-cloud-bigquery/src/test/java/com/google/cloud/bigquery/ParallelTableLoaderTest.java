@@ -0,0 +1,374 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.api.services.bigquery.model.ErrorProto;
+import com.google.api.services.bigquery.model.JobStatistics3;
+import com.google.api.services.bigquery.model.JobStatus;
+import com.google.cloud.Tuple;
+import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.threeten.bp.Duration;
+
+public class ParallelTableLoaderTest {
+
+  private static final TableId TABLE_ID = TableId.of("project", "dataset", "table");
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private BigQuery bigquery;
+  private BigQueryRpc bigqueryRpcMock;
+  // the load jobs by upload id, and all jobs by job id
+  private final Map<String, com.google.api.services.bigquery.model.Job> uploads =
+      new ConcurrentHashMap<>();
+  private final Map<String, com.google.api.services.bigquery.model.Job> jobs =
+      new ConcurrentHashMap<>();
+  // the uploaded regions by upload id
+  private final Map<String, String> contents = new ConcurrentHashMap<>();
+  private final AtomicInteger uploadCount = new AtomicInteger();
+  private volatile String failedUploadId;
+  private volatile Long badRecords;
+  // if set, the writes following the first one block until the latch is released
+  private volatile CountDownLatch blockedWrites;
+  private final AtomicInteger writeCount = new AtomicInteger();
+
+  /**
+   * Answers open and write calls as a resumable upload session, and answers getJob calls with the
+   * completed jobs. Each load job outputs as many rows as its region has lines.
+   */
+  @Before
+  public void setUp() {
+    BigQueryRpcFactory rpcFactoryMock = mock(BigQueryRpcFactory.class);
+    bigqueryRpcMock = mock(BigQueryRpc.class);
+    when(rpcFactoryMock.create(any(BigQueryOptions.class))).thenReturn(bigqueryRpcMock);
+    bigquery =
+        BigQueryOptions.newBuilder()
+            .setProjectId("project")
+            .setServiceRpcFactory(rpcFactoryMock)
+            .setRetrySettings(
+                RetrySettings.newBuilder()
+                    .setMaxAttempts(3)
+                    .setInitialRetryDelay(Duration.ofMillis(1L))
+                    .setMaxRetryDelay(Duration.ofMillis(1L))
+                    .setRetryDelayMultiplier(1.0)
+                    .setTotalTimeout(Duration.ofMinutes(1L))
+                    .build())
+            .build()
+            .getService();
+    when(bigqueryRpcMock.open(any(com.google.api.services.bigquery.model.Job.class)))
+        .thenAnswer(
+            new Answer<String>() {
+              @Override
+              public String answer(InvocationOnMock invocation) {
+                String uploadId = "upload-" + uploadCount.getAndIncrement();
+                uploads.put(
+                    uploadId,
+                    (com.google.api.services.bigquery.model.Job) invocation.getArgument(0));
+                return uploadId;
+              }
+            });
+    when(bigqueryRpcMock.write(
+            anyString(), any(FileChannel.class), anyLong(), anyLong(), anyLong(), anyBoolean()))
+        .thenAnswer(
+            new Answer<Tuple<Long, com.google.api.services.bigquery.model.Job>>() {
+              @Override
+              public Tuple<Long, com.google.api.services.bigquery.model.Job> answer(
+                  InvocationOnMock invocation) throws IOException, InterruptedException {
+                if (blockedWrites != null && writeCount.getAndIncrement() > 0) {
+                  blockedWrites.await();
+                }
+                String uploadId = invocation.getArgument(0);
+                FileChannel file = invocation.getArgument(1);
+                long fileOffset = invocation.getArgument(2);
+                long length = invocation.getArgument(4);
+                ByteBuffer buffer = ByteBuffer.allocate((int) length);
+                file.read(buffer, fileOffset);
+                String content = new String(buffer.array(), StandardCharsets.UTF_8);
+                contents.put(uploadId, content);
+                com.google.api.services.bigquery.model.Job jobPb = uploads.get(uploadId).clone();
+                jobPb.setStatistics(
+                    new com.google.api.services.bigquery.model.JobStatistics()
+                        .setCreationTime(10L + content.length())
+                        .setLoad(
+                            new JobStatistics3()
+                                .setInputFileBytes(length)
+                                .setOutputRows((long) content.split("\n").length)
+                                .setBadRecords(badRecords)));
+                jobPb.setStatus(new JobStatus().setState("DONE"));
+                if (uploadId.equals(failedUploadId)) {
+                  jobPb.getStatus().setErrorResult(new ErrorProto().setReason("invalid"));
+                }
+                jobs.put(jobPb.getJobReference().getJobId(), jobPb);
+                return Tuple.<Long, com.google.api.services.bigquery.model.Job>of(null, jobPb);
+              }
+            });
+    when(bigqueryRpcMock.getJob(
+            anyString(),
+            anyString(),
+            Mockito.<String>any(),
+            Mockito.<BigQueryRpc.Option, Object>anyMap()))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer(
+                  InvocationOnMock invocation) {
+                return jobs.get(invocation.<String>getArgument(1));
+              }
+            });
+    when(bigqueryRpcMock.create(
+            any(com.google.api.services.bigquery.model.Job.class),
+            Mockito.<BigQueryRpc.Option, Object>anyMap()))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer(
+                  InvocationOnMock invocation) {
+                com.google.api.services.bigquery.model.Job jobPb = invocation.getArgument(0);
+                jobPb.setStatus(new JobStatus().setState("DONE"));
+                jobs.put(jobPb.getJobReference().getJobId(), jobPb);
+                return jobPb;
+              }
+            });
+  }
+
+  private Path newFile(int lines) throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      content.append(Strings.repeat("x", i % 7)).append(',').append(i).append('\n');
+    }
+    Path path = temporaryFolder.newFile().toPath();
+    Files.write(path, content.toString().getBytes(StandardCharsets.UTF_8));
+    return path;
+  }
+
+  private static String read(Path path, ParallelTableLoader.Region region) throws IOException {
+    byte[] bytes = Files.readAllBytes(path);
+    return new String(bytes, (int) region.offset, (int) region.length, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testSplitAtRecordBoundaries() throws IOException {
+    Path path = newFile(100);
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID, FormatOptions.json()).build();
+    List<ParallelTableLoader.Region> regions =
+        ParallelTableLoader.split(ImmutableList.of(path), configuration, 4, 1);
+    assertThat(regions).hasSize(4);
+    StringBuilder content = new StringBuilder();
+    long offset = 0;
+    for (ParallelTableLoader.Region region : regions) {
+      assertThat(region.offset).isEqualTo(offset);
+      String regionContent = read(path, region);
+      assertThat(regionContent).endsWith("\n");
+      content.append(regionContent);
+      offset += region.length;
+    }
+    assertThat(content.toString())
+        .isEqualTo(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    // regions are not smaller than the minimum size
+    assertThat(ParallelTableLoader.split(ImmutableList.of(path), configuration, 4, 1 << 20))
+        .hasSize(1);
+  }
+
+  @Test
+  public void testSplitByFile() throws IOException {
+    List<Path> paths = ImmutableList.of(newFile(10), newFile(20));
+    WriteChannelConfiguration csvWithQuotedNewLines =
+        WriteChannelConfiguration.newBuilder(
+                TABLE_ID, CsvOptions.newBuilder().setAllowQuotedNewLines(true).build())
+            .build();
+    assertThat(ParallelTableLoader.split(paths, csvWithQuotedNewLines, 8, 1)).hasSize(2);
+    WriteChannelConfiguration csv =
+        WriteChannelConfiguration.newBuilder(TABLE_ID, FormatOptions.csv()).build();
+    assertThat(ParallelTableLoader.split(paths, csv, 8, 1)).hasSize(8);
+    // files are not split when there are enough of them
+    assertThat(ParallelTableLoader.split(paths, csv, 2, 1)).hasSize(2);
+    WriteChannelConfiguration avro =
+        WriteChannelConfiguration.newBuilder(TABLE_ID, FormatOptions.avro()).build();
+    assertThat(ParallelTableLoader.split(paths, avro, 8, 1)).hasSize(2);
+  }
+
+  @Test
+  public void testLoad() throws IOException, InterruptedException {
+    Path path = newFile(30);
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(
+                TABLE_ID, CsvOptions.newBuilder().setSkipLeadingRows(1).build())
+            .setWriteDisposition(JobInfo.WriteDisposition.WRITE_TRUNCATE)
+            .build();
+    ParallelLoadResult result =
+        ParallelTableLoader.load(bigquery, ImmutableList.of(path), configuration, 3, 1);
+    assertThat(result.getLoadJobs()).hasSize(3);
+    assertThat(result.getStatistics().getOutputRows()).isEqualTo(30);
+    assertThat(result.getStatistics().getInputBytes()).isEqualTo(Files.size(path));
+    assertThat(result.getStatistics().getCreationTime()).isGreaterThan(10L);
+
+    // the regions are loaded into the staging table, and only the first skips the header
+    List<String> uploaded = new ArrayList<>();
+    TableId stagingTable = null;
+    for (int i = 0; i < 3; i++) {
+      String uploadId = "upload-" + i;
+      uploaded.add(contents.get(uploadId));
+      WriteChannelConfiguration regionConfiguration =
+          WriteChannelConfiguration.fromPb(uploads.get(uploadId).getConfiguration());
+      if (stagingTable == null) {
+        stagingTable = regionConfiguration.getDestinationTable();
+      }
+      assertThat(regionConfiguration.getDestinationTable()).isEqualTo(stagingTable);
+      assertThat(regionConfiguration.getWriteDisposition())
+          .isEqualTo(JobInfo.WriteDisposition.WRITE_APPEND);
+      assertThat(regionConfiguration.getCsvOptions().getSkipLeadingRows())
+          .isEqualTo(contents.get(uploadId).startsWith(",0\n") ? 1 : 0);
+    }
+    assertThat(stagingTable.getTable()).startsWith("table_staging_");
+    List<String> regions = new ArrayList<>();
+    for (ParallelTableLoader.Region region :
+        ParallelTableLoader.split(ImmutableList.of(path), configuration, 3, 1)) {
+      regions.add(read(path, region));
+    }
+    assertThat(uploaded).containsExactlyElementsIn(regions);
+
+    // the staging table is copied to the destination table, then deleted
+    CopyJobConfiguration copy = result.getCopyJob().getConfiguration();
+    assertThat(copy.getDestinationTable()).isEqualTo(TABLE_ID);
+    assertThat(copy.getSourceTables()).containsExactly(stagingTable);
+    assertThat(copy.getWriteDisposition()).isEqualTo(JobInfo.WriteDisposition.WRITE_TRUNCATE);
+    verify(bigqueryRpcMock).deleteTable("project", "dataset", stagingTable.getTable());
+  }
+
+  @Test
+  public void testLoadFailure() throws IOException, InterruptedException {
+    List<Path> paths = ImmutableList.of(newFile(10), newFile(10));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID, FormatOptions.csv()).build();
+    failedUploadId = "upload-1";
+    try {
+      ParallelTableLoader.load(bigquery, paths, configuration, 2, 1);
+      fail("BigQueryException expected");
+    } catch (BigQueryException e) {
+      assertThat(e.getReason()).isEqualTo("invalid");
+    }
+    // the destination table is left untouched
+    verify(bigqueryRpcMock, never())
+        .create(
+            any(com.google.api.services.bigquery.model.Job.class),
+            Mockito.<BigQueryRpc.Option, Object>anyMap());
+    verify(bigqueryRpcMock).deleteTable(eq("project"), eq("dataset"), anyString());
+  }
+
+  @Test
+  public void testLoadWithTooManyBadRecords() throws IOException, InterruptedException {
+    List<Path> paths = ImmutableList.of(newFile(10), newFile(10));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID, FormatOptions.csv())
+            .setMaxBadRecords(3)
+            .build();
+    // each load job is within the limit, but not both of them
+    badRecords = 2L;
+    try {
+      ParallelTableLoader.load(bigquery, paths, configuration, 2, 1);
+      fail("BigQueryException expected");
+    } catch (BigQueryException e) {
+      assertThat(e.getReason()).isEqualTo("invalid");
+    }
+    verify(bigqueryRpcMock, never())
+        .create(
+            any(com.google.api.services.bigquery.model.Job.class),
+            Mockito.<BigQueryRpc.Option, Object>anyMap());
+    verify(bigqueryRpcMock).deleteTable(eq("project"), eq("dataset"), anyString());
+  }
+
+  @Test
+  public void testInterruptedLoadCancelsLoadJobs() throws IOException {
+    List<Path> paths = ImmutableList.of(newFile(10), newFile(10));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID, FormatOptions.csv()).build();
+    // the second upload blocks until its thread is interrupted
+    blockedWrites = new CountDownLatch(1);
+    final Thread caller = Thread.currentThread();
+    final AtomicBoolean returned = new AtomicBoolean();
+    Thread interrupter =
+        new Thread() {
+          @Override
+          public void run() {
+            // interrupts the caller once the first load job is created, until the load returns
+            while (!returned.get()) {
+              if (!jobs.isEmpty() && caller.getState() == Thread.State.WAITING) {
+                caller.interrupt();
+              }
+              Thread.yield();
+            }
+          }
+        };
+    interrupter.start();
+    try {
+      ParallelTableLoader.load(bigquery, paths, configuration, 2, 1);
+      fail("InterruptedException expected");
+    } catch (InterruptedException e) {
+      // expected
+    } finally {
+      returned.set(true);
+      Uninterruptibles.joinUninterruptibly(interrupter);
+      Thread.interrupted();
+    }
+    // the load job is cancelled before the staging table is deleted
+    assertThat(jobs).hasSize(1);
+    for (String jobId : jobs.keySet()) {
+      InOrder inOrder = inOrder(bigqueryRpcMock);
+      inOrder.verify(bigqueryRpcMock).cancel(eq("project"), eq(jobId), Mockito.<String>any());
+      inOrder.verify(bigqueryRpcMock).deleteTable(eq("project"), eq("dataset"), anyString());
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.cloud.bigquery.FieldValue.Attribute.PRIMITIVE;
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.mock;
+
+import com.google.cloud.PageImpl;
+import com.google.cloud.bigquery.BigQuery.TableDataListOption;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class ParallelTableReaderTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final Schema SCHEMA = Schema.of(Field.of("n", LegacySQLTypeName.INTEGER));
+  private static final long DEFAULT_PAGE_SIZE = 7;
+
+  private BigQuery bigquery;
+  private long tableRows;
+  private final List<long[]> requests = Collections.synchronizedList(new ArrayList<long[]>());
+  private final AtomicInteger calls = new AtomicInteger();
+
+  /** Answers listTableData calls with rows whose only value is their index. */
+  @Before
+  public void setUp() {
+    bigquery =
+        mock(
+            BigQuery.class,
+            new Answer<Object>() {
+              @Override
+              public Object answer(InvocationOnMock invocation) {
+                if (!invocation.getMethod().getName().equals("listTableData")) {
+                  throw new UnsupportedOperationException();
+                }
+                calls.incrementAndGet();
+                long start = 0;
+                long pageSize = DEFAULT_PAGE_SIZE;
+                for (Object argument : invocation.getArguments()) {
+                  if (argument instanceof TableDataListOption) {
+                    TableDataListOption option = (TableDataListOption) argument;
+                    if (option.getRpcOption() == BigQueryRpc.Option.START_INDEX) {
+                      start = (Long) option.getValue();
+                    } else if (option.getRpcOption() == BigQueryRpc.Option.MAX_RESULTS) {
+                      pageSize = Math.min(pageSize, (Long) option.getValue());
+                    }
+                  }
+                }
+                requests.add(new long[] {start, pageSize});
+                List<FieldValueList> rows = new ArrayList<>();
+                for (long i = start; i < Math.min(tableRows, start + pageSize); i++) {
+                  rows.add(
+                      FieldValueList.of(
+                          ImmutableList.of(FieldValue.of(PRIMITIVE, String.valueOf(i)))));
+                }
+                return new TableResult(
+                    SCHEMA, tableRows, new PageImpl<>(null, "ignored-token", rows));
+              }
+            });
+  }
+
+  private static List<Long> values(PrefetchingRowIterator iterator) {
+    List<Long> values = new ArrayList<>();
+    while (iterator.hasNext()) {
+      values.add(iterator.next().get("n").getLongValue());
+    }
+    return values;
+  }
+
+  private static List<Long> range(long start, long end) {
+    List<Long> values = new ArrayList<>();
+    for (long i = start; i < end; i++) {
+      values.add(i);
+    }
+    return values;
+  }
+
+  @Test
+  public void testRanges() {
+    tableRows = 100;
+    try (ParallelTableReader reader = ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 4)) {
+      assertThat(reader.getTotalRows()).isEqualTo(100);
+      assertThat(reader.getRangeCount()).isEqualTo(4);
+      List<PrefetchingRowIterator> ranges = reader.iterateRanges(2);
+      assertThat(ranges).hasSize(4);
+      for (int i = 0; i < 4; i++) {
+        assertThat(reader.getRangeStart(i)).isEqualTo(i * 25);
+        assertThat(reader.getRangeEnd(i)).isEqualTo((i + 1) * 25);
+        assertThat(values(ranges.get(i)))
+            .containsExactlyElementsIn(range(i * 25, (i + 1) * 25))
+            .inOrder();
+      }
+    }
+    // no request reads past the end of its range
+    for (long[] request : requests) {
+      long rangeEnd = (request[0] / 25 + 1) * 25;
+      assertThat(request[0] + request[1]).isAtMost(rangeEnd);
+    }
+  }
+
+  @Test
+  public void testRangesLargerThanIntegerMaxValue() {
+    tableRows = 6L << 30;
+    try (ParallelTableReader reader = ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 2)) {
+      List<PrefetchingRowIterator> ranges = reader.iterateRanges(1);
+      for (int i = 0; i < 2; i++) {
+        long start = reader.getRangeStart(i);
+        assertThat(reader.getRangeEnd(i) - start).isGreaterThan((long) Integer.MAX_VALUE);
+        assertThat(ranges.get(i).next().get("n").getLongValue()).isEqualTo(start);
+      }
+    }
+  }
+
+  @Test
+  public void testIterateAll() {
+    tableRows = 1003;
+    try (ParallelTableReader reader =
+        ParallelTableReader.open(
+            bigquery, TABLE_ID, SCHEMA, 8, TableDataListOption.pageSize(DEFAULT_PAGE_SIZE))) {
+      assertThat(values(reader.iterateAll(4))).containsExactlyElementsIn(range(0, 1003));
+    }
+  }
+
+  @Test
+  public void testFewerRowsThanParallelism() {
+    tableRows = 3;
+    try (ParallelTableReader reader = ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 8)) {
+      assertThat(reader.getRangeCount()).isEqualTo(3);
+      assertThat(values(reader.iterateAll(1))).containsExactly(0L, 1L, 2L);
+    }
+  }
+
+  @Test
+  public void testEmptyTable() {
+    tableRows = 0;
+    try (ParallelTableReader reader = ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 8)) {
+      assertThat(reader.getRangeCount()).isEqualTo(1);
+      assertThat(values(reader.iterateAll(1))).isEmpty();
+    }
+    assertThat(calls.get()).isEqualTo(1);
+  }
+
+  @Test(timeout = 10000)
+  public void testConcurrentIterations() {
+    tableRows = 100;
+    try (ParallelTableReader reader = ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 2)) {
+      // an iteration that is not consumed keeps its fetch loops blocked on a full buffer
+      PrefetchingRowIterator abandoned = reader.iterateAll(1);
+      assertThat(values(reader.iterateAll(1))).containsExactlyElementsIn(range(0, 100));
+      assertThat(abandoned.hasNext()).isTrue();
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testStartIndexNotSupported() {
+    ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 2, TableDataListOption.startIndex(10));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testClosed() {
+    tableRows = 10;
+    ParallelTableReader reader = ParallelTableReader.open(bigquery, TABLE_ID, SCHEMA, 2);
+    reader.close();
+    reader.iterateAll(1);
+  }
+}
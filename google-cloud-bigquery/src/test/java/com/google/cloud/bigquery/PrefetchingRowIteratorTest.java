@@ -0,0 +1,174 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.cloud.bigquery.FieldValue.Attribute.PRIMITIVE;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import com.google.api.gax.paging.Page;
+import com.google.cloud.PageImpl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrefetchingRowIteratorTest {
+
+  private static final Schema SCHEMA = Schema.of(Field.of("field", LegacySQLTypeName.INTEGER));
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static FieldValueList row(long value) {
+    return FieldValueList.of(ImmutableList.of(FieldValue.of(PRIMITIVE, String.valueOf(value))));
+  }
+
+  /** Returns a chain of pages with {@code pageSize} rows each, starting at row {@code start}. */
+  private static Page<FieldValueList> pages(
+      final long start, final int pageSize, final long end, final AtomicInteger fetches) {
+    List<FieldValueList> rows = new ArrayList<>();
+    for (long i = start; i < Math.min(start + pageSize, end); i++) {
+      rows.add(row(i));
+    }
+    final boolean last = start + pageSize >= end;
+    return new PageImpl<>(
+        new PageImpl.NextPageFetcher<FieldValueList>() {
+          @Override
+          public Page<FieldValueList> getNextPage() {
+            fetches.incrementAndGet();
+            return pages(start + pageSize, pageSize, end, fetches);
+          }
+        },
+        last ? null : "token" + start,
+        rows);
+  }
+
+  @Test
+  public void testIterateAll() {
+    AtomicInteger fetches = new AtomicInteger();
+    TableResult result = new TableResult(SCHEMA, 10, pages(0, 3, 10, fetches));
+    List<FieldValueList> rows;
+    try (PrefetchingRowIterator iterator = result.iterateAllPrefetching(2, executor)) {
+      rows = Lists.newArrayList(iterator);
+    }
+    assertThat(rows).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(rows.get(i).get("field").getLongValue()).isEqualTo(i);
+    }
+    assertThat(fetches.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void testIterateAllOwnedExecutor() {
+    AtomicInteger fetches = new AtomicInteger();
+    TableResult result = new TableResult(SCHEMA, 5, pages(0, 2, 5, fetches));
+    PrefetchingRowIterator iterator = result.iterateAllPrefetching(1);
+    assertThat(Lists.newArrayList(iterator)).hasSize(5);
+    assertThat(iterator.hasNext()).isFalse();
+  }
+
+  @Test
+  public void testErrorIsPropagatedAfterFetchedRows() {
+    Page<FieldValueList> failing =
+        new PageImpl<>(
+            new PageImpl.NextPageFetcher<FieldValueList>() {
+              @Override
+              public Page<FieldValueList> getNextPage() {
+                throw new BigQueryException(500, "backend error");
+              }
+            },
+            "token",
+            ImmutableList.of(row(0), row(1)));
+    PrefetchingRowIterator iterator =
+        new TableResult(SCHEMA, 4, failing).iterateAllPrefetching(2, executor);
+    assertThat(iterator.next().get(0).getLongValue()).isEqualTo(0);
+    assertThat(iterator.next().get(0).getLongValue()).isEqualTo(1);
+    try {
+      iterator.hasNext();
+      fail();
+    } catch (BigQueryException expected) {
+      assertThat(expected.getCode()).isEqualTo(500);
+    }
+    assertThat(iterator.hasNext()).isFalse();
+  }
+
+  @Test
+  public void testFetchingIsBoundedAndStopsOnClose() throws InterruptedException {
+    AtomicInteger fetches = new AtomicInteger();
+    PrefetchingRowIterator iterator =
+        new TableResult(SCHEMA, Long.MAX_VALUE, pages(0, 1, Long.MAX_VALUE, fetches))
+            .iterateAllPrefetching(2, executor);
+    assertThat(iterator.next().get(0).getLongValue()).isEqualTo(0);
+    Thread.sleep(200);
+    // two pages buffered, plus one fetched page waiting for room in the buffer
+    assertThat(fetches.get()).isAtMost(4);
+    iterator.close();
+    assertThat(iterator.hasNext()).isFalse();
+    int fetchesAfterClose = fetches.get();
+    Thread.sleep(100);
+    assertThat(fetches.get()).isAtMost(fetchesAfterClose + 1);
+  }
+
+  @Test
+  public void testMultipleSources() throws InterruptedException {
+    List<Callable<Page<FieldValueList>>> sources = new ArrayList<>();
+    final AtomicInteger fetches = new AtomicInteger();
+    for (int i = 0; i < 4; i++) {
+      final long start = i * 100;
+      sources.add(
+          new Callable<Page<FieldValueList>>() {
+            @Override
+            public Page<FieldValueList> call() {
+              return pages(start, 7, start + 50, fetches);
+            }
+          });
+    }
+    PrefetchingRowIterator iterator = PrefetchingRowIterator.start(sources, 3, executor);
+    List<Long> values = new ArrayList<>();
+    while (iterator.hasNext()) {
+      values.add(iterator.next().get(0).getLongValue());
+    }
+    assertThat(values).hasSize(200);
+    List<Long> expected = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      for (long j = i * 100; j < i * 100 + 50; j++) {
+        expected.add(j);
+      }
+    }
+    assertThat(values).containsExactlyElementsIn(expected);
+    executor.shutdown();
+    assertThat(executor.awaitTermination(1, TimeUnit.SECONDS)).isTrue();
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import com.google.cloud.bigquery.BigQuery.JobField;
+import com.google.cloud.bigquery.BigQuery.JobOption;
+import org.junit.Test;
+
+public class QueryKeyTest {
+
+  private static final String PROJECT = "project";
+  private static final String QUERY = "SELECT * FROM t WHERE a = @a AND b = @b";
+
+  @Test
+  public void testNamedParametersOrder() {
+    QueryJobConfiguration first =
+        QueryJobConfiguration.newBuilder(QUERY)
+            .addNamedParameter("a", QueryParameterValue.int64(1L))
+            .addNamedParameter("b", QueryParameterValue.string("x"))
+            .build();
+    QueryJobConfiguration second =
+        QueryJobConfiguration.newBuilder(QUERY)
+            .addNamedParameter("b", QueryParameterValue.string("x"))
+            .addNamedParameter("a", QueryParameterValue.int64(1L))
+            .build();
+    assertEquals(QueryKey.of(PROJECT, null, first), QueryKey.of(PROJECT, null, second));
+    assertEquals(
+        QueryKey.of(PROJECT, null, first).hashCode(),
+        QueryKey.of(PROJECT, null, second).hashCode());
+  }
+
+  @Test
+  public void testDifferentQueries() {
+    QueryJobConfiguration first =
+        QueryJobConfiguration.newBuilder(QUERY)
+            .addNamedParameter("a", QueryParameterValue.int64(1L))
+            .build();
+    QueryJobConfiguration second =
+        QueryJobConfiguration.newBuilder(QUERY)
+            .addNamedParameter("a", QueryParameterValue.int64(2L))
+            .build();
+    assertNotEquals(QueryKey.of(PROJECT, null, first), QueryKey.of(PROJECT, null, second));
+    assertNotEquals(
+        QueryKey.of(PROJECT, null, first),
+        QueryKey.of(PROJECT, null, first, JobOption.fields(JobField.STATUS)));
+  }
+
+  @Test
+  public void testDifferentProjectsAndLocations() {
+    QueryJobConfiguration configuration = QueryJobConfiguration.of(QUERY);
+    QueryKey key = QueryKey.of(PROJECT, "US", configuration);
+    assertEquals(key, QueryKey.of(PROJECT, "US", configuration));
+    assertNotEquals(key, QueryKey.of("other", "US", configuration));
+    assertNotEquals(key, QueryKey.of(PROJECT, "EU", configuration));
+    assertNotEquals(key, QueryKey.of(PROJECT, null, configuration));
+    assertNotEquals(key.toString(), QueryKey.of(PROJECT, "EU", configuration).toString());
+  }
+}
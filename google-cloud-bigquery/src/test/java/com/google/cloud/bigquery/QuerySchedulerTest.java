@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.CurrentMillisClock;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.PageImpl;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class QuerySchedulerTest {
+
+  private static final String PROJECT = "project";
+  private static final QueryJobConfiguration INTERACTIVE = QueryJobConfiguration.of("SELECT 1");
+  private static final QueryJobConfiguration BATCH =
+      QueryJobConfiguration.newBuilder("SELECT 2")
+          .setPriority(QueryJobConfiguration.Priority.BATCH)
+          .build();
+  private static final TableResult RESULT =
+      new TableResult(null, 0, new PageImpl<FieldValueList>(null, null, null));
+
+  private BigQuery bigquery;
+
+  @Before
+  public void setUp() {
+    bigquery = mock(BigQuery.class);
+    BigQueryOptions options = mock(BigQueryOptions.class);
+    when(bigquery.getOptions()).thenReturn(options);
+    when(options.getProjectId()).thenReturn(PROJECT);
+    when(options.getClock()).thenReturn(CurrentMillisClock.getDefaultClock());
+  }
+
+  private SettableApiFuture<TableResult> stubQuery(QueryJobConfiguration config, JobId jobId) {
+    SettableApiFuture<TableResult> future = SettableApiFuture.create();
+    when(bigquery.queryAsync(config, jobId)).thenReturn(future);
+    return future;
+  }
+
+  @Test
+  public void testFairness() throws Exception {
+    JobId a1 = JobId.of(PROJECT, "a1");
+    JobId a2 = JobId.of(PROJECT, "a2");
+    JobId b1 = JobId.of(PROJECT, "b1");
+    SettableApiFuture<TableResult> a1Result = stubQuery(INTERACTIVE, a1);
+    SettableApiFuture<TableResult> a2Result = stubQuery(INTERACTIVE, a2);
+    SettableApiFuture<TableResult> b1Result = stubQuery(INTERACTIVE, b1);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery).setMaxConcurrentQueries(1).build();
+
+    ApiFuture<TableResult> first = scheduler.query("a", INTERACTIVE, a1);
+    scheduler.query("a", INTERACTIVE, a2);
+    ApiFuture<TableResult> last = scheduler.query("b", INTERACTIVE, b1);
+    assertThat(scheduler.getRunningCount()).isEqualTo(1);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(2);
+
+    a1Result.set(RESULT);
+    assertThat(first.get()).isSameInstanceAs(RESULT);
+    b1Result.set(RESULT);
+    a2Result.set(RESULT);
+    assertThat(last.get()).isSameInstanceAs(RESULT);
+    assertThat(scheduler.getRunningCount()).isEqualTo(0);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+    assertThat(scheduler.getAdmittedCount()).isEqualTo(3);
+
+    // callers in turns
+    InOrder inOrder = inOrder(bigquery);
+    inOrder.verify(bigquery).queryAsync(INTERACTIVE, a1);
+    inOrder.verify(bigquery).queryAsync(INTERACTIVE, b1);
+    inOrder.verify(bigquery).queryAsync(INTERACTIVE, a2);
+  }
+
+  @Test
+  public void testBatchLimit() {
+    JobId interactive = JobId.of(PROJECT, "interactive");
+    JobId batch1 = JobId.of(PROJECT, "batch1");
+    JobId batch2 = JobId.of(PROJECT, "batch2");
+    stubQuery(INTERACTIVE, interactive);
+    SettableApiFuture<TableResult> batch1Result = stubQuery(BATCH, batch1);
+    stubQuery(BATCH, batch2);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery)
+            .setMaxConcurrentQueries(1)
+            .setMaxConcurrentBatchQueries(1)
+            .build();
+
+    // batch queries do not take the slot of the interactive query
+    scheduler.query("a", BATCH, batch1);
+    scheduler.query("a", BATCH, batch2);
+    scheduler.query("a", INTERACTIVE, interactive);
+    assertThat(scheduler.getRunningCount()).isEqualTo(2);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(1);
+    verify(bigquery).queryAsync(INTERACTIVE, interactive);
+    verify(bigquery, never()).queryAsync(BATCH, batch2);
+
+    batch1Result.set(RESULT);
+    verify(bigquery).queryAsync(BATCH, batch2);
+  }
+
+  @Test
+  public void testLimitPerLocation() {
+    JobId us = JobId.newBuilder().setProject(PROJECT).setJob("us").setLocation("US").build();
+    JobId eu = JobId.newBuilder().setProject(PROJECT).setJob("eu").setLocation("EU").build();
+    stubQuery(INTERACTIVE, us);
+    stubQuery(INTERACTIVE, eu);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery)
+            .setMaxConcurrentQueries(1)
+            .setMaxConcurrentQueries(PROJECT, "EU", 2)
+            .build();
+
+    scheduler.query("a", INTERACTIVE, us);
+    scheduler.query("a", INTERACTIVE, us);
+    scheduler.query("a", INTERACTIVE, eu);
+    scheduler.query("a", INTERACTIVE, eu);
+    assertThat(scheduler.getRunningCount()).isEqualTo(3);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(1);
+  }
+
+  @Test
+  public void testFailure() throws Exception {
+    JobId jobId = JobId.of(PROJECT, "job");
+    JobId next = JobId.of(PROJECT, "next");
+    stubQuery(INTERACTIVE, jobId).setException(new BigQueryException(400, "invalid"));
+    stubQuery(INTERACTIVE, next);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery).setMaxConcurrentQueries(1).build();
+
+    assertThat(scheduler.query("a", INTERACTIVE, jobId).isDone()).isTrue();
+    scheduler.query("a", INTERACTIVE, next);
+    verify(bigquery).queryAsync(INTERACTIVE, next);
+  }
+
+  @Test
+  public void testCancelQueued() {
+    JobId running = JobId.of(PROJECT, "running");
+    JobId queued = JobId.of(PROJECT, "queued");
+    SettableApiFuture<TableResult> runningResult = stubQuery(INTERACTIVE, running);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery).setMaxConcurrentQueries(1).build();
+
+    scheduler.query("a", INTERACTIVE, running);
+    ApiFuture<TableResult> future = scheduler.query("b", INTERACTIVE, queued);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(1);
+    future.cancel(false);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+    runningResult.set(RESULT);
+    verify(bigquery, never()).queryAsync(INTERACTIVE, queued);
+  }
+
+  @Test
+  public void testCancelRunning() {
+    JobId running = JobId.of(PROJECT, "running");
+    JobId queued = JobId.of(PROJECT, "queued");
+    SettableApiFuture<TableResult> runningResult = stubQuery(INTERACTIVE, running);
+    stubQuery(INTERACTIVE, queued);
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    when(bigquery.getOptions().getAsyncExecutor()).thenReturn(executor);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery).setMaxConcurrentQueries(1).build();
+
+    ApiFuture<TableResult> future = scheduler.query("a", INTERACTIVE, running);
+    scheduler.query("b", INTERACTIVE, queued);
+    future.cancel(false);
+    assertTrue(runningResult.isCancelled());
+    verify(bigquery, timeout(5000)).cancel(running);
+    // the slot is freed for the queued query
+    verify(bigquery).queryAsync(INTERACTIVE, queued);
+    assertThat(scheduler.getRunningCount()).isEqualTo(1);
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+    executor.shutdown();
+  }
+
+  @Test
+  public void testClose() {
+    JobId running = JobId.of(PROJECT, "running");
+    stubQuery(INTERACTIVE, running);
+    QueryScheduler scheduler =
+        QueryScheduler.newBuilder(bigquery).setMaxConcurrentQueries(1).build();
+
+    scheduler.query("a", INTERACTIVE, running);
+    ApiFuture<TableResult> queued = scheduler.query("a", INTERACTIVE, JobId.of(PROJECT, "queued"));
+    scheduler.close();
+    assertTrue(queued.isCancelled());
+    assertThat(scheduler.getQueueDepth()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.zip.Deflater;
+import org.junit.Test;
+
+public class RequestCompressionTest {
+
+  @Test
+  public void testGzip() {
+    RequestCompression compression = RequestCompression.gzip(Deflater.BEST_SPEED, 10);
+    assertThat(compression.isEnabled()).isTrue();
+    assertThat(compression.getLevel()).isEqualTo(Deflater.BEST_SPEED);
+    assertThat(compression.getMinSizeBytes()).isEqualTo(10L);
+    assertThat(compression.appliesTo(9)).isFalse();
+    assertThat(compression.appliesTo(10)).isTrue();
+    assertThat(compression).isEqualTo(RequestCompression.gzip(Deflater.BEST_SPEED, 10));
+    assertThat(compression.hashCode())
+        .isEqualTo(RequestCompression.gzip(Deflater.BEST_SPEED, 10).hashCode());
+    assertThat(compression).isNotEqualTo(RequestCompression.gzip());
+    assertThat(RequestCompression.gzip().getMinSizeBytes())
+        .isEqualTo(RequestCompression.DEFAULT_MIN_SIZE_BYTES);
+  }
+
+  @Test
+  public void testNone() {
+    assertThat(RequestCompression.none().isEnabled()).isFalse();
+    assertThat(RequestCompression.none().appliesTo(Long.MAX_VALUE)).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidLevel() {
+    RequestCompression.gzip(10, 0);
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.cloud.bigquery.FieldValue.Attribute.PRIMITIVE;
+import static com.google.cloud.bigquery.FieldValue.Attribute.RECORD;
+import static com.google.cloud.bigquery.FieldValue.Attribute.REPEATED;
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.cloud.PageImpl;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.BaseEncoding;
+import java.math.BigDecimal;
+import java.util.List;
+import org.junit.Test;
+
+public class RowMapperTest {
+
+  private static final FieldList ADDRESS_FIELDS =
+      FieldList.of(
+          Field.of("city", LegacySQLTypeName.STRING), Field.of("zip", LegacySQLTypeName.INTEGER));
+  private static final Schema SCHEMA =
+      Schema.of(
+          Field.of("name", LegacySQLTypeName.STRING),
+          Field.of("age", LegacySQLTypeName.INTEGER),
+          Field.of("score", LegacySQLTypeName.FLOAT),
+          Field.of("active", LegacySQLTypeName.BOOLEAN),
+          Field.of("balance", LegacySQLTypeName.NUMERIC),
+          Field.of("data", LegacySQLTypeName.BYTES),
+          Field.of("created", LegacySQLTypeName.TIMESTAMP),
+          Field.newBuilder("tags", LegacySQLTypeName.STRING).setMode(Field.Mode.REPEATED).build(),
+          Field.of("address", LegacySQLTypeName.RECORD, ADDRESS_FIELDS),
+          Field.newBuilder("previous", LegacySQLTypeName.RECORD, ADDRESS_FIELDS)
+              .setMode(Field.Mode.REPEATED)
+              .build());
+  private static final byte[] BYTES = {1, 2, 3};
+
+  public static class Address {
+    private String city;
+    private long zip;
+
+    public void setCity(String city) {
+      this.city = city;
+    }
+
+    public void setZip(long zip) {
+      this.zip = zip;
+    }
+  }
+
+  public static class Person {
+    private String name;
+    private int age;
+    private double score;
+    private Boolean active;
+    private BigDecimal balance;
+    private byte[] data;
+    private long created;
+    private List<String> tags;
+    private Address address;
+    private List<Address> previous;
+    private String unmapped;
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public void setAge(int age) {
+      this.age = age;
+    }
+
+    public void setScore(double score) {
+      this.score = score;
+    }
+
+    public void setActive(Boolean active) {
+      this.active = active;
+    }
+
+    public void setBalance(BigDecimal balance) {
+      this.balance = balance;
+    }
+
+    public void setData(byte[] data) {
+      this.data = data;
+    }
+
+    public void setCreated(long created) {
+      this.created = created;
+    }
+
+    public void setTags(List<String> tags) {
+      this.tags = tags;
+    }
+
+    public void setAddress(Address address) {
+      this.address = address;
+    }
+
+    public void setPrevious(List<Address> previous) {
+      this.previous = previous;
+    }
+
+    public void setUnmapped(String unmapped) {
+      this.unmapped = unmapped;
+    }
+  }
+
+  public static class Summary {
+    private final String name;
+    private final long years;
+    private final FieldValueList address;
+
+    public Summary(
+        @RowMapper.Column("address") FieldValueList address,
+        @RowMapper.Column("NAME") String name,
+        @RowMapper.Column("age") long years) {
+      this.name = name;
+      this.years = years;
+      this.address = address;
+    }
+  }
+
+  public static class Renamed {
+    private long years;
+
+    @RowMapper.Column("age")
+    public void years(long years) {
+      this.years = years;
+    }
+  }
+
+  public static class Unsupported {
+    public void setAge(Thread age) {}
+  }
+
+  public static class ImmutableTags {
+    public void setTags(ImmutableList<String> tags) {}
+  }
+
+  public static class NoConstructor {
+    public NoConstructor(String name) {}
+  }
+
+  private static FieldValue value(String value) {
+    return FieldValue.of(PRIMITIVE, value);
+  }
+
+  private static FieldValue nullValue() {
+    return FieldValue.of(PRIMITIVE, null);
+  }
+
+  private static FieldValue address(String city, String zip) {
+    return FieldValue.of(RECORD, FieldValueList.of(ImmutableList.of(value(city), value(zip))));
+  }
+
+  private static FieldValueList row() {
+    return FieldValueList.of(
+        ImmutableList.of(
+            value("alice"),
+            value("42"),
+            value("1.5"),
+            value("true"),
+            value("123.456"),
+            value(BaseEncoding.base64().encode(BYTES)),
+            value("1.408452095220E9"),
+            FieldValue.of(REPEATED, ImmutableList.of(value("a"), value("b"))),
+            address("Paris", "75001"),
+            FieldValue.of(
+                REPEATED, ImmutableList.of(address("Lyon", "69001"), address("Nice", "06000")))),
+        SCHEMA.getFields());
+  }
+
+  private static FieldValueList nullRow() {
+    ImmutableList.Builder<FieldValue> values = ImmutableList.builder();
+    for (int i = 0; i < SCHEMA.getFields().size(); i++) {
+      values.add(nullValue());
+    }
+    return FieldValueList.of(values.build(), SCHEMA.getFields());
+  }
+
+  @Test
+  public void testBean() {
+    Person person = RowMapper.of(Person.class, SCHEMA).map(row());
+    assertThat(person.name).isEqualTo("alice");
+    assertThat(person.age).isEqualTo(42);
+    assertThat(person.score).isEqualTo(1.5);
+    assertThat(person.active).isTrue();
+    assertThat(person.balance).isEqualTo(new BigDecimal("123.456"));
+    assertArrayEquals(BYTES, person.data);
+    assertThat(person.created).isEqualTo(1408452095220000L);
+    assertThat(person.tags).containsExactly("a", "b").inOrder();
+    assertThat(person.address.city).isEqualTo("Paris");
+    assertThat(person.address.zip).isEqualTo(75001);
+    assertThat(person.previous).hasSize(2);
+    assertThat(person.previous.get(0).city).isEqualTo("Lyon");
+    assertThat(person.previous.get(1).zip).isEqualTo(6000);
+    assertNull(person.unmapped);
+  }
+
+  @Test
+  public void testBeanNullValues() {
+    Person person = RowMapper.of(Person.class, SCHEMA).map(nullRow());
+    assertNull(person.name);
+    assertThat(person.age).isEqualTo(0);
+    assertThat(person.score).isEqualTo(0.0);
+    assertNull(person.active);
+    assertNull(person.balance);
+    assertNull(person.data);
+    assertThat(person.created).isEqualTo(0);
+    assertNull(person.tags);
+    assertNull(person.address);
+    assertNull(person.previous);
+  }
+
+  @Test
+  public void testAnnotatedConstructor() {
+    Summary summary = RowMapper.of(Summary.class, SCHEMA).map(row());
+    assertThat(summary.name).isEqualTo("alice");
+    assertThat(summary.years).isEqualTo(42);
+    assertThat(summary.address.get(0).getStringValue()).isEqualTo("Paris");
+  }
+
+  @Test
+  public void testAnnotatedSetter() {
+    assertThat(RowMapper.of(Renamed.class, SCHEMA).map(row()).years).isEqualTo(42);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedType() {
+    RowMapper.of(Unsupported.class, SCHEMA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnsupportedRepeatedType() {
+    RowMapper.of(ImmutableTags.class, SCHEMA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNoUsableConstructor() {
+    RowMapper.of(NoConstructor.class, SCHEMA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownColumn() {
+    RowMapper.of(Summary.class, Schema.of(Field.of("name", LegacySQLTypeName.STRING)));
+  }
+
+  @Test
+  public void testTableResultMap() {
+    TableResult result =
+        new TableResult(SCHEMA, 2, new PageImpl<>(null, null, ImmutableList.of(row(), nullRow())));
+    List<Renamed> mapped = Lists.newArrayList(result.map(RowMapper.of(Renamed.class, SCHEMA)));
+    assertThat(mapped).hasSize(2);
+    assertThat(mapped.get(0).years).isEqualTo(42);
+    assertThat(mapped.get(1).years).isEqualTo(0);
+  }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.cloud.bigquery.testing.NonPublicRows;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class RowWriterTest {
+
+  private static final TableId TABLE_ID = TableId.of("project", "dataset", "table");
+  private static final int MIN_CHUNK_SIZE = 256 * 1024;
+
+  private BigQuery bigquery;
+  private BigQueryOptions options;
+  private com.google.api.services.bigquery.model.Job openedJob;
+  private final ByteArrayOutputStream uploaded = new ByteArrayOutputStream();
+  private int uploadCount;
+
+  /** Answers open and write calls as a resumable upload session, recording the uploaded bytes. */
+  @Before
+  public void setUp() {
+    BigQueryRpcFactory rpcFactoryMock = mock(BigQueryRpcFactory.class);
+    BigQueryRpc bigqueryRpcMock = mock(BigQueryRpc.class);
+    when(rpcFactoryMock.create(any(BigQueryOptions.class))).thenReturn(bigqueryRpcMock);
+    options =
+        BigQueryOptions.newBuilder()
+            .setProjectId("project")
+            .setServiceRpcFactory(rpcFactoryMock)
+            .build();
+    bigquery = options.getService();
+    when(bigqueryRpcMock.open(any(com.google.api.services.bigquery.model.Job.class)))
+        .thenAnswer(
+            new Answer<String>() {
+              @Override
+              public String answer(InvocationOnMock invocation) {
+                openedJob = invocation.getArgument(0);
+                return "upload";
+              }
+            });
+    when(bigqueryRpcMock.write(
+            anyString(), any(byte[].class), anyInt(), anyLong(), anyInt(), anyBoolean()))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer(
+                  InvocationOnMock invocation) {
+                byte[] bytes = invocation.getArgument(1);
+                int offset = invocation.getArgument(2);
+                int length = invocation.getArgument(4);
+                uploaded.write(bytes, offset, length);
+                uploadCount++;
+                return (Boolean) invocation.getArgument(5) ? openedJob : null;
+              }
+            });
+  }
+
+  @Test
+  public void testWriteJson() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.of("name", LegacySQLTypeName.STRING),
+            Field.of("count", LegacySQLTypeName.INTEGER),
+            Field.of("created", LegacySQLTypeName.TIMESTAMP),
+            Field.newBuilder("tags", LegacySQLTypeName.STRING).setMode(Field.Mode.REPEATED).build(),
+            Field.of(
+                "address", LegacySQLTypeName.RECORD, Field.of("city", LegacySQLTypeName.STRING)));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.json())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    Map<String, Object> row = new HashMap<>();
+    row.put("name", "a \"quoted\" name");
+    row.put("count", 3);
+    row.put("created", Timestamp.ofTimeMicroseconds(1500000L));
+    row.put("tags", ImmutableList.of("x", "y"));
+    row.put("address", ImmutableMap.of("city", "Paris"));
+    writer.write(row);
+    writer.write(ImmutableMap.of("name", "b"));
+    writer.close();
+
+    assertThat(uploaded.toString("UTF-8"))
+        .isEqualTo(
+            "{\"name\":\"a \\\"quoted\\\" name\",\"count\":3,"
+                + "\"created\":\"1970-01-01T00:00:01.500000000Z\",\"tags\":[\"x\",\"y\"],"
+                + "\"address\":{\"city\":\"Paris\"}}\n"
+                + "{\"name\":\"b\"}\n");
+    assertThat(writer.getRowCount()).isEqualTo(2);
+    assertThat(writer.getJob()).isNotNull();
+    // the schema is sent with the load job, since JSON does not carry it
+    assertThat(openedJob.getConfiguration().getLoad().getSchema()).isEqualTo(schema.toPb());
+  }
+
+  @Test
+  public void testWriteCsv() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.of("name", LegacySQLTypeName.STRING),
+            Field.of("day", LegacySQLTypeName.DATE),
+            Field.of("price", LegacySQLTypeName.NUMERIC));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.csv())
+            .setNullMarker("\\N")
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    writer.write(row("name", "plain", "day", 18628, "price", "1.50"));
+    writer.write(row("name", "a, \"b\"", "day", "2021-01-01", "price", null));
+    writer.write(row("name", "", "day", null, "price", 2));
+    writer.close();
+
+    assertThat(uploaded.toString("UTF-8"))
+        .isEqualTo("plain,2021-01-01,1.50\n\"a, \"\"b\"\"\",2021-01-01,\\N\n\"\",\\N,2\n");
+  }
+
+  @Test
+  public void testCsvRejectsRepeatedColumns() {
+    Schema schema =
+        Schema.of(
+            Field.newBuilder("tags", LegacySQLTypeName.STRING)
+                .setMode(Field.Mode.REPEATED)
+                .build());
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.csv())
+            .build();
+    try {
+      bigquery.rowWriter(configuration, schema);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("tags");
+    }
+  }
+
+  @Test
+  public void testWriteFieldValueList() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.of("name", LegacySQLTypeName.STRING),
+            Field.of("count", LegacySQLTypeName.INTEGER));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.json())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    writer.write(
+        FieldValueList.of(
+            ImmutableList.of(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "a"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, null))));
+    writer.write(
+        FieldValueList.of(
+            ImmutableList.of(
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "b"),
+                FieldValue.of(FieldValue.Attribute.PRIMITIVE, "7")),
+            schema.getFields()));
+    writer.close();
+
+    assertThat(uploaded.toString("UTF-8"))
+        .isEqualTo("{\"name\":\"a\"}\n{\"name\":\"b\",\"count\":7}\n");
+  }
+
+  @Test
+  public void testWriteNonPublicClass() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.of("name", LegacySQLTypeName.STRING),
+            Field.of("user_count", LegacySQLTypeName.INTEGER));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.json())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    // a package-private class of another package, whose public getters cannot be called directly
+    writer.write(NonPublicRows.event("a", 3L));
+    writer.close();
+
+    assertThat(uploaded.toString("UTF-8")).isEqualTo("{\"name\":\"a\",\"user_count\":3}\n");
+  }
+
+  @Test
+  public void testWriteAvro() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.newBuilder("name", LegacySQLTypeName.STRING).setMode(Field.Mode.REQUIRED).build(),
+            Field.of("user_count", LegacySQLTypeName.INTEGER));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.avro())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    writer.write(ImmutableMap.of("name", "ab", "user_count", -3L));
+    writer.write(new TestRow("c", null));
+    writer.close();
+
+    assertThat(openedJob.getConfiguration().getLoad().getUseAvroLogicalTypes()).isTrue();
+    ByteBuffer avro = ByteBuffer.wrap(uploaded.toByteArray());
+    byte[] sync = readHeader(avro, schema);
+    // one block: the row count, the size, the rows and the sync marker
+    assertThat(readLong(avro)).isEqualTo(2);
+    assertThat(readLong(avro)).isEqualTo(8);
+    byte[] rows = new byte[8];
+    avro.get(rows);
+    // "ab", then the union branch 1 and -3 zig-zag encoded; "c", then the union branch 0
+    assertThat(rows).isEqualTo(new byte[] {4, 'a', 'b', 2, 5, 2, 'c', 0});
+    byte[] blockSync = new byte[16];
+    avro.get(blockSync);
+    assertThat(blockSync).isEqualTo(sync);
+    assertThat(avro.hasRemaining()).isFalse();
+  }
+
+  @Test
+  public void testWriteAvroLogicalTypes() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.newBuilder("created", LegacySQLTypeName.TIMESTAMP)
+                .setMode(Field.Mode.REQUIRED)
+                .build(),
+            Field.newBuilder("day", LegacySQLTypeName.DATE).setMode(Field.Mode.REQUIRED).build(),
+            Field.newBuilder("price", LegacySQLTypeName.NUMERIC)
+                .setMode(Field.Mode.REQUIRED)
+                .build(),
+            Field.newBuilder("scores", LegacySQLTypeName.FLOAT)
+                .setMode(Field.Mode.REPEATED)
+                .build());
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.avro())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    writer.write(
+        ImmutableMap.of(
+            "created", "1970-01-01 00:00:01.5 UTC",
+            "day", "1970-01-03",
+            "price", "1.5",
+            "scores", new double[] {0.5}));
+    writer.close();
+
+    String avroSchema = AvroRowFormat.avroSchema(schema);
+    assertThat(avroSchema).contains("{\"type\":\"long\",\"logicalType\":\"timestamp-micros\"}");
+    assertThat(avroSchema).contains("{\"type\":\"int\",\"logicalType\":\"date\"}");
+    assertThat(avroSchema)
+        .contains("{\"type\":\"bytes\",\"logicalType\":\"decimal\",\"precision\":38,\"scale\":9}");
+    ByteBuffer avro = ByteBuffer.wrap(uploaded.toByteArray());
+    readHeader(avro, schema);
+    assertThat(readLong(avro)).isEqualTo(1);
+    readLong(avro);
+    assertThat(readLong(avro)).isEqualTo(1500000L);
+    assertThat(readLong(avro)).isEqualTo(2);
+    assertThat(new BigInteger(readBytes(avro))).isEqualTo(BigInteger.valueOf(1500000000L));
+    assertThat(readLong(avro)).isEqualTo(1);
+    assertThat(avro.order(java.nio.ByteOrder.LITTLE_ENDIAN).getDouble()).isEqualTo(0.5);
+    assertThat(readLong(avro)).isEqualTo(0);
+  }
+
+  @Test
+  public void testWriteEmptyAvro() throws IOException {
+    Schema schema = Schema.of(Field.of("name", LegacySQLTypeName.STRING));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.avro())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    writer.close();
+
+    ByteBuffer avro = ByteBuffer.wrap(uploaded.toByteArray());
+    readHeader(avro, schema);
+    assertThat(avro.hasRemaining()).isFalse();
+  }
+
+  @Test
+  public void testRejectedRowIsNotWritten() throws IOException {
+    Schema schema =
+        Schema.of(
+            Field.newBuilder("name", LegacySQLTypeName.STRING).setMode(Field.Mode.REQUIRED).build(),
+            Field.newBuilder("id", LegacySQLTypeName.INTEGER).setMode(Field.Mode.REQUIRED).build());
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.avro())
+            .build();
+    RowWriter writer = bigquery.rowWriter(configuration, schema);
+    try {
+      writer.write(ImmutableMap.of("name", "a"));
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("id");
+    }
+    writer.write(ImmutableMap.of("name", "b", "id", 1));
+    writer.close();
+
+    ByteBuffer avro = ByteBuffer.wrap(uploaded.toByteArray());
+    readHeader(avro, schema);
+    assertThat(readLong(avro)).isEqualTo(1);
+    assertThat(readLong(avro)).isEqualTo(3);
+    assertThat(writer.getRowCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testWriteBlocksOfChunkSize() throws IOException {
+    Schema schema = Schema.of(Field.of("name", LegacySQLTypeName.STRING));
+    WriteChannelConfiguration configuration =
+        WriteChannelConfiguration.newBuilder(TABLE_ID)
+            .setFormatOptions(FormatOptions.avro())
+            .build();
+    TableDataWriteChannel channel = bigquery.writer(configuration);
+    channel.setChunkSize(MIN_CHUNK_SIZE);
+    RowWriter writer = new RowWriter(channel, new AvroRowFormat(schema));
+    String name = Strings.repeat("x", MIN_CHUNK_SIZE / 4);
+    for (int i = 0; i < 10; i++) {
+      writer.write(ImmutableMap.of("name", name));
+    }
+    // the blocks of encoded rows are sent as the channel fills chunks
+    assertThat(uploadCount).isAtLeast(1);
+    writer.close();
+
+    ByteBuffer avro = ByteBuffer.wrap(uploaded.toByteArray());
+    byte[] sync = readHeader(avro, schema);
+    long rows = 0;
+    int blocks = 0;
+    while (avro.hasRemaining()) {
+      rows += readLong(avro);
+      int size = (int) readLong(avro);
+      avro.position(avro.position() + size);
+      byte[] blockSync = new byte[16];
+      avro.get(blockSync);
+      assertThat(blockSync).isEqualTo(sync);
+      blocks++;
+    }
+    assertThat(rows).isEqualTo(10);
+    assertThat(blocks).isGreaterThan(1);
+    assertThat(writer.getUploadStats().getUploadedBytes()).isEqualTo(uploaded.size());
+  }
+
+  private static Map<String, Object> row(Object... namesAndValues) {
+    Map<String, Object> row = new HashMap<>();
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      row.put((String) namesAndValues[i], namesAndValues[i + 1]);
+    }
+    return row;
+  }
+
+  /** Reads the header of an Avro object container file, and returns its sync marker. */
+  private static byte[] readHeader(ByteBuffer avro, Schema schema) throws IOException {
+    byte[] magic = new byte[4];
+    avro.get(magic);
+    assertThat(magic).isEqualTo(new byte[] {'O', 'b', 'j', 1});
+    Map<String, String> metadata = new HashMap<>();
+    for (long count = readLong(avro); count != 0; count = readLong(avro)) {
+      for (long i = 0; i < count; i++) {
+        metadata.put(
+            new String(readBytes(avro), StandardCharsets.UTF_8),
+            new String(readBytes(avro), StandardCharsets.UTF_8));
+      }
+    }
+    assertThat(metadata)
+        .containsExactly("avro.schema", AvroRowFormat.avroSchema(schema), "avro.codec", "null");
+    byte[] sync = new byte[16];
+    avro.get(sync);
+    return sync;
+  }
+
+  private static long readLong(ByteBuffer avro) {
+    long n = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = avro.get();
+      n |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  private static byte[] readBytes(ByteBuffer avro) {
+    byte[] bytes = new byte[(int) readLong(avro)];
+    avro.get(bytes);
+    return bytes;
+  }
+
+  public static class TestRow {
+
+    private final String name;
+    private final Long userCount;
+
+    TestRow(String name, Long userCount) {
+      this.name = name;
+      this.userCount = userCount;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    @RowMapper.Column("user_count")
+    public Long getUserCount() {
+      return userCount;
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.CurrentMillisClock;
+import com.google.cloud.bigquery.InsertAllRequest.RowToInsert;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.threeten.bp.Duration;
+
+public class StreamingInserterTest {
+
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final BigQueryError INVALID_ERROR =
+      new BigQueryError("invalid", "location", "message");
+  private static final BigQueryError STOPPED_ERROR =
+      new BigQueryError("stopped", "location", "message");
+
+  private BigQuery bigquery;
+  private ScheduledExecutorService executor;
+  private final List<InsertAllRequest> requests = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp() {
+    bigquery = mock(BigQuery.class);
+    BigQueryOptions options = mock(BigQueryOptions.class);
+    when(bigquery.getOptions()).thenReturn(options);
+    when(options.getClock()).thenReturn(CurrentMillisClock.getDefaultClock());
+    executor = Executors.newScheduledThreadPool(2);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static RowToInsert row(int value) {
+    return RowToInsert.of("id" + value, ImmutableMap.of("value", value));
+  }
+
+  /** Answers insertAll requests with the given responses in turn, recording the requests. */
+  private void respond(final InsertAllResponse... responses) {
+    when(bigquery.insertAll(any(InsertAllRequest.class)))
+        .thenAnswer(
+            new Answer<InsertAllResponse>() {
+              @Override
+              public InsertAllResponse answer(InvocationOnMock invocation) {
+                requests.add((InsertAllRequest) invocation.getArguments()[0]);
+                return responses[Math.min(requests.size(), responses.length) - 1];
+              }
+            });
+  }
+
+  private StreamingInserter.Builder newBuilder() {
+    return StreamingInserter.newBuilder(bigquery, TABLE_ID).setExecutor(executor);
+  }
+
+  @Test
+  public void testBatchesByRowCount() throws Exception {
+    respond(new InsertAllResponse(null));
+    StreamingInserter inserter =
+        newBuilder().setMaxBatchRows(2).setLinger(Duration.ofHours(1L)).build();
+    ApiFuture<Void> first = inserter.add(row(1));
+    ApiFuture<Void> second = inserter.add(row(2));
+    ApiFuture<Void> third = inserter.add(row(3));
+    assertNull(first.get(10, TimeUnit.SECONDS));
+    assertNull(second.get(10, TimeUnit.SECONDS));
+    assertEquals(1, requests.size());
+    assertEquals(ImmutableList.of(row(1), row(2)), requests.get(0).getRows());
+    assertThat(third.isDone()).isFalse();
+    inserter.close();
+    assertNull(third.get(10, TimeUnit.SECONDS));
+    assertEquals(ImmutableList.of(row(3)), requests.get(1).getRows());
+    assertEquals(0, inserter.getPendingRowCount());
+  }
+
+  @Test
+  public void testBatchesBySize() throws Exception {
+    respond(new InsertAllResponse(null));
+    long rowSize = row(1).getEstimatedSizeBytes();
+    StreamingInserter inserter =
+        newBuilder().setMaxBatchBytes(2 * rowSize).setLinger(Duration.ofHours(1L)).build();
+    inserter.add(row(1));
+    inserter.add(row(2)).get(10, TimeUnit.SECONDS);
+    assertEquals(ImmutableList.of(row(1), row(2)), requests.get(0).getRows());
+  }
+
+  @Test
+  public void testLinger() throws Exception {
+    respond(new InsertAllResponse(null));
+    StreamingInserter inserter =
+        newBuilder().setTemplateSuffix("_suffix").setLinger(Duration.ofMillis(1L)).build();
+    assertNull(inserter.add(row(1)).get(10, TimeUnit.SECONDS));
+    assertEquals(1, requests.size());
+    assertEquals("_suffix", requests.get(0).getTemplateSuffix());
+  }
+
+  @Test
+  public void testRetriesStoppedRows() throws Exception {
+    Map<Long, List<BigQueryError>> errors =
+        ImmutableMap.<Long, List<BigQueryError>>of(
+            0L, ImmutableList.of(INVALID_ERROR), 1L, ImmutableList.of(STOPPED_ERROR));
+    respond(new InsertAllResponse(errors), new InsertAllResponse(null));
+    StreamingInserter inserter = newBuilder().setLinger(Duration.ofHours(1L)).build();
+    ApiFuture<Void> invalid = inserter.add(row(1));
+    ApiFuture<Void> stopped = inserter.add(row(2));
+    inserter.flush();
+    try {
+      invalid.get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isInstanceOf(BigQueryException.class);
+      assertEquals(ImmutableList.of(INVALID_ERROR), ((BigQueryException) e.getCause()).getErrors());
+    }
+    assertNull(stopped.get());
+    assertEquals(2, requests.size());
+    assertEquals(ImmutableList.of(row(2)), requests.get(1).getRows());
+  }
+
+  @Test
+  public void testMaxAttempts() throws Exception {
+    Map<Long, List<BigQueryError>> errors =
+        ImmutableMap.<Long, List<BigQueryError>>of(0L, ImmutableList.of(STOPPED_ERROR));
+    respond(new InsertAllResponse(errors));
+    StreamingInserter inserter =
+        newBuilder().setMaxAttempts(2).setLinger(Duration.ofHours(1L)).build();
+    ApiFuture<Void> stopped = inserter.add(row(1));
+    inserter.flush();
+    try {
+      stopped.get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertEquals("stopped", ((BigQueryException) e.getCause()).getReason());
+    }
+    assertEquals(2, requests.size());
+  }
+
+  @Test
+  public void testFailedRequest() throws Exception {
+    BigQueryException exception = new BigQueryException(500, "error");
+    when(bigquery.insertAll(any(InsertAllRequest.class))).thenThrow(exception);
+    StreamingInserter inserter = newBuilder().build();
+    ApiFuture<Void> future = inserter.add(row(1));
+    inserter.close();
+    try {
+      future.get();
+      fail("ExecutionException expected");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause()).isSameInstanceAs(exception);
+    }
+    try {
+      inserter.add(row(2));
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.cloud.Tuple;
+import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
+import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.threeten.bp.Duration;
+
+public class TableDataFileUploadTest {
+
+  private static final String UPLOAD_ID = "uploadid";
+  private static final TableId TABLE_ID = TableId.of("dataset", "table");
+  private static final WriteChannelConfiguration LOAD_CONFIGURATION =
+      WriteChannelConfiguration.newBuilder(TABLE_ID).setFormatOptions(FormatOptions.csv()).build();
+  private static final JobId JOB_ID = JobId.of("project", "job");
+  private static final com.google.api.services.bigquery.model.Job JOB_PB =
+      JobInfo.of(JOB_ID, LoadJobConfiguration.of(TABLE_ID, "URI")).toPb();
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private BigQueryOptions options;
+  private BigQueryRpc bigqueryRpcMock;
+  private Path path;
+
+  @Before
+  public void setUp() throws IOException {
+    BigQueryRpcFactory rpcFactoryMock = mock(BigQueryRpcFactory.class);
+    bigqueryRpcMock = mock(BigQueryRpc.class);
+    when(rpcFactoryMock.create(any(BigQueryOptions.class))).thenReturn(bigqueryRpcMock);
+    options =
+        BigQueryOptions.newBuilder()
+            .setProjectId("project")
+            .setServiceRpcFactory(rpcFactoryMock)
+            .setRetrySettings(
+                RetrySettings.newBuilder()
+                    .setMaxAttempts(3)
+                    .setInitialRetryDelay(Duration.ofMillis(1L))
+                    .setMaxRetryDelay(Duration.ofMillis(1L))
+                    .setRetryDelayMultiplier(1.0)
+                    .setTotalTimeout(Duration.ofMinutes(1L))
+                    .build())
+            .build();
+    when(bigqueryRpcMock.open(
+            new com.google.api.services.bigquery.model.Job()
+                .setJobReference(JOB_ID.toPb())
+                .setConfiguration(LOAD_CONFIGURATION.toPb())))
+        .thenReturn(UPLOAD_ID);
+    path = temporaryFolder.newFile().toPath();
+    Files.write(path, new byte[1000]);
+  }
+
+  private static Tuple<Long, com.google.api.services.bigquery.model.Job> persisted(long bytes) {
+    return Tuple.of(bytes, null);
+  }
+
+  private static Tuple<Long, com.google.api.services.bigquery.model.Job> completed() {
+    return Tuple.<Long, com.google.api.services.bigquery.model.Job>of(null, JOB_PB);
+  }
+
+  @Test
+  public void testUploadInChunks() throws IOException {
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(0L), eq(0L), eq(400L), eq(false)))
+        .thenReturn(persisted(400L));
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(400L), eq(400L), eq(400L), eq(false)))
+        .thenReturn(persisted(800L));
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(800L), eq(800L), eq(200L), eq(true)))
+        .thenReturn(completed());
+    Job job = TableDataFileUpload.upload(options, JOB_ID, LOAD_CONFIGURATION, path, 400L);
+    assertEquals(JOB_ID, job.getJobId());
+  }
+
+  @Test
+  public void testUploadRegion() throws IOException {
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(300L), eq(0L), eq(400L), eq(false)))
+        .thenReturn(persisted(400L));
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(700L), eq(400L), eq(100L), eq(true)))
+        .thenReturn(completed());
+    Job job =
+        TableDataFileUpload.upload(options, JOB_ID, LOAD_CONFIGURATION, path, 300L, 500L, 400L);
+    assertEquals(JOB_ID, job.getJobId());
+  }
+
+  @Test
+  public void testResumeFromPersistedBytes() throws IOException {
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(0L), eq(0L), eq(400L), eq(false)))
+        .thenReturn(persisted(400L));
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(400L), eq(400L), eq(400L), eq(false)))
+        .thenThrow(new BigQueryException(503, "unavailable"));
+    when(bigqueryRpcMock.getUploadStatus(UPLOAD_ID)).thenReturn(persisted(600L));
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(600L), eq(600L), eq(400L), eq(true)))
+        .thenReturn(completed());
+    Job job = TableDataFileUpload.upload(options, JOB_ID, LOAD_CONFIGURATION, path, 400L);
+    assertEquals(JOB_ID, job.getJobId());
+    InOrder inOrder = inOrder(bigqueryRpcMock);
+    inOrder
+        .verify(bigqueryRpcMock)
+        .write(eq(UPLOAD_ID), any(FileChannel.class), eq(400L), eq(400L), eq(400L), eq(false));
+    inOrder.verify(bigqueryRpcMock).getUploadStatus(UPLOAD_ID);
+    inOrder
+        .verify(bigqueryRpcMock)
+        .write(eq(UPLOAD_ID), any(FileChannel.class), eq(600L), eq(600L), eq(400L), eq(true));
+  }
+
+  @Test
+  public void testUploadCompletedBeforeFailure() throws IOException {
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(0L), eq(0L), eq(1000L), eq(true)))
+        .thenThrow(new BigQueryException(503, "unavailable"));
+    when(bigqueryRpcMock.getUploadStatus(UPLOAD_ID)).thenReturn(completed());
+    Job job = TableDataFileUpload.upload(options, JOB_ID, LOAD_CONFIGURATION, path, 1000L);
+    assertEquals(JOB_ID, job.getJobId());
+  }
+
+  @Test
+  public void testUploadWithoutProgressFails() throws IOException {
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(0L), eq(0L), eq(400L), eq(false)))
+        .thenReturn(persisted(0L));
+    try {
+      TableDataFileUpload.upload(options, JOB_ID, LOAD_CONFIGURATION, path, 400L);
+      fail("BigQueryException expected");
+    } catch (BigQueryException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testNonRetryableFailure() throws IOException {
+    BigQueryException exception = new BigQueryException(400, "invalid");
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(FileChannel.class), eq(0L), eq(0L), eq(1000L), eq(true)))
+        .thenThrow(exception);
+    try {
+      TableDataFileUpload.upload(options, JOB_ID, LOAD_CONFIGURATION, path, 1000L);
+      fail("BigQueryException expected");
+    } catch (BigQueryException e) {
+      assertSame(exception, e);
+    }
+  }
+}
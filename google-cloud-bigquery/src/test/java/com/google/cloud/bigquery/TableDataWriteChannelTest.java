@@ -19,31 +19,43 @@ package com.google.cloud.bigquery;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.api.core.ApiClock;
+import com.google.api.gax.retrying.RetrySettings;
 import com.google.cloud.RestorableState;
 import com.google.cloud.WriteChannel;
 import com.google.cloud.bigquery.spi.BigQueryRpcFactory;
 import com.google.cloud.bigquery.spi.v2.BigQueryRpc;
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.threeten.bp.Duration;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TableDataWriteChannelTest {
@@ -430,6 +442,232 @@ public class TableDataWriteChannelTest {
                 .setConfiguration(LOAD_CONFIGURATION.toPb()));
   }
 
+  @Test
+  public void testPipelinedWrites() throws Exception {
+    when(bigqueryRpcMock.open(
+            new com.google.api.services.bigquery.model.Job()
+                .setJobReference(JOB_INFO.getJobId().toPb())
+                .setConfiguration(LOAD_CONFIGURATION.toPb())))
+        .thenReturn(UPLOAD_ID);
+    final CountDownLatch uploadStarted = new CountDownLatch(1);
+    final CountDownLatch uploadReleased = new CountDownLatch(1);
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID),
+            capturedBuffer.capture(),
+            eq(0),
+            capturedPosition.capture(),
+            eq(MIN_CHUNK_SIZE),
+            eq(false)))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer(InvocationOnMock invocation)
+                  throws InterruptedException {
+                uploadStarted.countDown();
+                uploadReleased.await();
+                return null;
+              }
+            });
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID),
+            capturedBuffer.capture(),
+            eq(0),
+            eq(2L * MIN_CHUNK_SIZE),
+            eq(0),
+            eq(true)))
+        .thenReturn(job.toPb());
+    writer =
+        new TableDataWriteChannel(
+            options.toBuilder().setPipelinedUploads(true).build(),
+            JOB_INFO.getJobId(),
+            LOAD_CONFIGURATION);
+    writer.setChunkSize(MIN_CHUNK_SIZE);
+    ByteBuffer buffer1 = randomBuffer(MIN_CHUNK_SIZE);
+    ByteBuffer buffer2 = randomBuffer(MIN_CHUNK_SIZE);
+    // the first chunk is uploaded in the background
+    assertEquals(MIN_CHUNK_SIZE, writer.write(buffer1));
+    assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+    uploadReleased.countDown();
+    assertEquals(MIN_CHUNK_SIZE, writer.write(buffer2));
+    writer.close();
+    assertEquals(job, writer.getJob());
+    List<byte[]> buffers = capturedBuffer.getAllValues();
+    assertArrayEquals(buffer1.array(), buffers.get(0));
+    assertArrayEquals(buffer2.array(), buffers.get(1));
+    assertEquals(ImmutableList.of(0L, (long) MIN_CHUNK_SIZE), capturedPosition.getAllValues());
+  }
+
+  @Test
+  public void testPipelinedWriteFailure() throws IOException {
+    when(bigqueryRpcMock.open(
+            new com.google.api.services.bigquery.model.Job()
+                .setJobReference(JOB_INFO.getJobId().toPb())
+                .setConfiguration(LOAD_CONFIGURATION.toPb())))
+        .thenReturn(UPLOAD_ID);
+    BigQueryException exception = new BigQueryException(400, "invalid");
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(byte[].class), eq(0), eq(0L), eq(MIN_CHUNK_SIZE), eq(false)))
+        .thenThrow(exception);
+    writer =
+        new TableDataWriteChannel(
+            options.toBuilder().setPipelinedUploads(true).build(),
+            JOB_INFO.getJobId(),
+            LOAD_CONFIGURATION);
+    writer.setChunkSize(MIN_CHUNK_SIZE);
+    writer.write(randomBuffer(MIN_CHUNK_SIZE));
+    try {
+      writer.close();
+      fail("BigQueryException expected");
+    } catch (BigQueryException e) {
+      assertSame(exception, e);
+    }
+  }
+
+  @Test
+  public void testAdaptiveChunkSizeGrows() throws IOException {
+    when(bigqueryRpcMock.open(
+            new com.google.api.services.bigquery.model.Job()
+                .setJobReference(JOB_INFO.getJobId().toPb())
+                .setConfiguration(LOAD_CONFIGURATION.toPb())))
+        .thenReturn(UPLOAD_ID);
+    final FakeClock clock = new FakeClock();
+    // every chunk takes a second to upload
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID),
+            any(byte[].class),
+            eq(0),
+            capturedPosition.capture(),
+            anyInt(),
+            eq(false)))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer(
+                  InvocationOnMock invocation) {
+                clock.advance(1000);
+                return null;
+              }
+            });
+    writer =
+        new TableDataWriteChannel(
+            options.toBuilder().setClock(clock).build(), JOB_INFO.getJobId(), LOAD_CONFIGURATION);
+    writer.setChunkSize(MIN_CHUNK_SIZE);
+    writer.setAdaptiveChunkSize(MIN_CHUNK_SIZE, 4 * MIN_CHUNK_SIZE);
+    assertEquals(MIN_CHUNK_SIZE, writer.write(randomBuffer(MIN_CHUNK_SIZE)));
+    assertEquals(2 * MIN_CHUNK_SIZE, writer.getUploadStats().getChunkSize());
+    assertEquals(2 * MIN_CHUNK_SIZE, writer.write(randomBuffer(2 * MIN_CHUNK_SIZE)));
+    assertEquals(4 * MIN_CHUNK_SIZE, writer.getUploadStats().getChunkSize());
+    assertEquals(4 * MIN_CHUNK_SIZE, writer.write(randomBuffer(4 * MIN_CHUNK_SIZE)));
+    assertEquals(
+        ImmutableList.of(0L, (long) MIN_CHUNK_SIZE, 3L * MIN_CHUNK_SIZE),
+        capturedPosition.getAllValues());
+    UploadStats stats = writer.getUploadStats();
+    assertEquals(3, stats.getChunkCount());
+    assertEquals(7L * MIN_CHUNK_SIZE, stats.getUploadedBytes());
+    assertEquals(0, stats.getRetryCount());
+    assertEquals(3000, stats.getUploadTimeMillis());
+    assertEquals(7L * MIN_CHUNK_SIZE / 3, stats.getThroughputBytesPerSecond());
+    assertEquals(4 * MIN_CHUNK_SIZE, stats.getChunkSize());
+  }
+
+  @Test
+  public void testAdaptiveChunkSizeShrinks() throws IOException {
+    when(bigqueryRpcMock.open(
+            new com.google.api.services.bigquery.model.Job()
+                .setJobReference(JOB_INFO.getJobId().toPb())
+                .setConfiguration(LOAD_CONFIGURATION.toPb())))
+        .thenReturn(UPLOAD_ID);
+    final FakeClock clock = new FakeClock();
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID), any(byte[].class), eq(0), eq(0L), eq(4 * MIN_CHUNK_SIZE), eq(false)))
+        .thenThrow(new BigQueryException(503, "unavailable"))
+        .thenReturn(null);
+    // the second chunk takes 20 seconds to upload
+    when(bigqueryRpcMock.write(
+            eq(UPLOAD_ID),
+            any(byte[].class),
+            eq(0),
+            eq(4L * MIN_CHUNK_SIZE),
+            eq(2 * MIN_CHUNK_SIZE),
+            eq(false)))
+        .thenAnswer(
+            new Answer<com.google.api.services.bigquery.model.Job>() {
+              @Override
+              public com.google.api.services.bigquery.model.Job answer(
+                  InvocationOnMock invocation) {
+                clock.advance(20000);
+                return null;
+              }
+            });
+    writer =
+        new TableDataWriteChannel(
+            options
+                .toBuilder()
+                .setClock(clock)
+                .setRetrySettings(
+                    RetrySettings.newBuilder()
+                        .setMaxAttempts(3)
+                        .setInitialRetryDelay(Duration.ofMillis(1L))
+                        .setMaxRetryDelay(Duration.ofMillis(1L))
+                        .setRetryDelayMultiplier(1.0)
+                        .setTotalTimeout(Duration.ofMinutes(1L))
+                        .build())
+                .build(),
+            JOB_INFO.getJobId(),
+            LOAD_CONFIGURATION);
+    writer.setChunkSize(4 * MIN_CHUNK_SIZE);
+    writer.setAdaptiveChunkSize(MIN_CHUNK_SIZE, 8 * MIN_CHUNK_SIZE);
+    // the retried chunk halves the chunk size
+    writer.write(randomBuffer(4 * MIN_CHUNK_SIZE));
+    assertEquals(2 * MIN_CHUNK_SIZE, writer.getUploadStats().getChunkSize());
+    assertEquals(1, writer.getUploadStats().getRetryCount());
+    // the slow chunk shrinks the chunk size to the minimum
+    writer.write(randomBuffer(2 * MIN_CHUNK_SIZE));
+    assertEquals(MIN_CHUNK_SIZE, writer.getUploadStats().getChunkSize());
+    assertEquals(2, writer.getUploadStats().getChunkCount());
+  }
+
+  @Test
+  public void testSetAdaptiveChunkSize() {
+    when(bigqueryRpcMock.open(
+            new com.google.api.services.bigquery.model.Job()
+                .setJobReference(JOB_INFO.getJobId().toPb())
+                .setConfiguration(LOAD_CONFIGURATION.toPb())))
+        .thenReturn(UPLOAD_ID);
+    writer = new TableDataWriteChannel(options, JOB_INFO.getJobId(), LOAD_CONFIGURATION);
+    // the default chunk size is larger than the rounded maximum
+    writer.setAdaptiveChunkSize(1, 2 * MIN_CHUNK_SIZE + 1);
+    assertEquals(3 * MIN_CHUNK_SIZE, writer.getUploadStats().getChunkSize());
+    // a smaller chunk size is raised to the rounded minimum
+    writer.setChunkSize(MIN_CHUNK_SIZE);
+    writer.setAdaptiveChunkSize(MIN_CHUNK_SIZE + 1, 3 * MIN_CHUNK_SIZE);
+    assertEquals(2 * MIN_CHUNK_SIZE, writer.getUploadStats().getChunkSize());
+    try {
+      writer.setAdaptiveChunkSize(2 * MIN_CHUNK_SIZE, MIN_CHUNK_SIZE);
+      fail("IllegalArgumentException expected");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  private static final class FakeClock implements ApiClock {
+
+    private final AtomicLong millis = new AtomicLong();
+
+    void advance(long deltaMillis) {
+      millis.addAndGet(deltaMillis);
+    }
+
+    @Override
+    public long nanoTime() {
+      return TimeUnit.MILLISECONDS.toNanos(millis.get());
+    }
+
+    @Override
+    public long millisTime() {
+      return millis.get();
+    }
+  }
+
   private static ByteBuffer randomBuffer(int size) {
     byte[] byteArray = new byte[size];
     RANDOM.nextBytes(byteArray);
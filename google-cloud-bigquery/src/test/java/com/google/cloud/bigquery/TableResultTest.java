@@ -22,6 +22,8 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.api.gax.paging.Page;
 import com.google.cloud.PageImpl;
 import com.google.common.collect.ImmutableList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 
 public class TableResultTest {
@@ -100,4 +102,55 @@ public class TableResultTest {
             newFieldValueList("2").withSchema(SCHEMA.getFields()))
         .inOrder();
   }
+
+  @Test
+  public void testColumnarPages() {
+    TableResult result = new TableResult(SCHEMA, 3, INNER_PAGE_0);
+    ColumnarPage page = result.getColumnarPage();
+    assertThat(page.getRowCount()).isEqualTo(2);
+    assertThat(page.getLongColumn(0)).asList().containsExactly(0L, 1L).inOrder();
+    assertThat(result.getColumnarPage()).isSameInstanceAs(page);
+
+    long sum = 0;
+    int pages = 0;
+    for (ColumnarPage columnarPage : result.iterateColumnarPages()) {
+      long[] values = columnarPage.getLongColumn(0);
+      for (int row = 0; row < columnarPage.getRowCount(); row++) {
+        sum += values[row];
+      }
+      pages++;
+    }
+    assertThat(pages).isEqualTo(2);
+    assertThat(sum).isEqualTo(3);
+  }
+
+  @Test
+  public void testColumnarPagesFetchedLazily() {
+    final AtomicInteger fetches = new AtomicInteger();
+    Page<FieldValueList> firstPage =
+        new PageImpl<>(
+            new PageImpl.NextPageFetcher<FieldValueList>() {
+              @Override
+              public Page<FieldValueList> getNextPage() {
+                fetches.incrementAndGet();
+                return INNER_PAGE_1;
+              }
+            },
+            "abc",
+            ImmutableList.of(newFieldValueList("0")));
+    Iterator<ColumnarPage> pages =
+        new TableResult(SCHEMA, 2, firstPage).iterateColumnarPages().iterator();
+    assertThat(pages.next().getRowCount()).isEqualTo(1);
+    // the next page is fetched only once it is asked for
+    assertThat(fetches.get()).isEqualTo(0);
+    assertThat(pages.hasNext()).isTrue();
+    assertThat(fetches.get()).isEqualTo(1);
+    assertThat(pages.next().getLongColumn(0)).asList().containsExactly(2L);
+    assertThat(pages.hasNext()).isFalse();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testColumnarPageNullSchema() {
+    new TableResult(null, 3, INNER_PAGE_0).getColumnarPage();
+  }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import org.junit.Test;
+import org.threeten.bp.LocalDate;
+import org.threeten.bp.LocalDateTime;
+import org.threeten.bp.LocalTime;
+import org.threeten.bp.ZoneOffset;
+
+public class TemporalParserTest {
+
+  private static long slowTimestamp(String value) {
+    return new BigDecimal(value).scaleByPowerOfTen(6).longValue();
+  }
+
+  private static void assertTimestamp(String value) {
+    assertEquals(value, slowTimestamp(value), TemporalParser.parseTimestampMicros(value));
+  }
+
+  @Test
+  public void testTimestampNumeric() {
+    String[] values = {
+      "0",
+      "0.0",
+      "42",
+      "1.408452095220E9",
+      "1.40845209522E9",
+      "1408452095.22",
+      "-1.9954383398377106E10",
+      "-1.5E-6",
+      "1.0E-7",
+      "2.53402300799999999E11",
+      "-6.2135596800E10",
+      "1e3",
+      "1E+3",
+      ".5",
+      "5.",
+      "+12.000001",
+      "9.2233720368547758E12",
+      "123456789012345678901234567890E-20"
+    };
+    for (String value : values) {
+      assertTimestamp(value);
+    }
+  }
+
+  @Test
+  public void testTimestampNumericRandom() {
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; i++) {
+      long micros = random.nextLong() % 253402300800000000L;
+      BigDecimal seconds = BigDecimal.valueOf(micros).scaleByPowerOfTen(-6);
+      assertTimestamp(seconds.toPlainString());
+      assertTimestamp(Double.toString(seconds.doubleValue()));
+      assertTimestamp(seconds.toEngineeringString());
+    }
+  }
+
+  @Test
+  public void testTimestampString() {
+    long expected =
+        LocalDateTime.of(2014, 8, 19, 12, 41, 35, 220000000).toEpochSecond(ZoneOffset.UTC)
+                * 1000000L
+            + 220000L;
+    assertEquals(expected, TemporalParser.parseTimestampMicros("2014-08-19 12:41:35.220000+00:00"));
+    assertEquals(expected, TemporalParser.parseTimestampMicros("2014-08-19T12:41:35.22Z"));
+    assertEquals(expected, TemporalParser.parseTimestampMicros("2014-08-19 12:41:35.22 UTC"));
+    assertEquals(expected, TemporalParser.parseTimestampMicros("2014-08-19 12:41:35.22"));
+    assertEquals(expected, TemporalParser.parseTimestampMicros("2014-08-19 14:41:35.22+02:00"));
+    assertEquals(expected, TemporalParser.parseTimestampMicros("2014-08-19 07:41:35.22-0500"));
+  }
+
+  @Test
+  public void testInvalidTimestamp() {
+    String[] values = {"", "-", "abc", "1.2.3", "1E", "1E+", "2014-08-19 12:41:35 PST"};
+    for (String value : values) {
+      try {
+        TemporalParser.parseTimestampMicros(value);
+        fail(value);
+      } catch (NumberFormatException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void testDate() {
+    LocalDate date = LocalDate.of(1, 1, 1);
+    LocalDate end = LocalDate.of(9999, 12, 31);
+    while (!date.isAfter(end)) {
+      assertEquals(date.toEpochDay(), TemporalParser.parseDateEpochDays(date.toString()));
+      date = date.plusDays(97);
+    }
+    assertEquals(0, TemporalParser.parseDateEpochDays("1970-01-01"));
+    assertEquals(
+        LocalDate.of(2000, 2, 29).toEpochDay(), TemporalParser.parseDateEpochDays("2000-02-29"));
+  }
+
+  @Test
+  public void testTime() {
+    assertEquals(0, TemporalParser.parseTimeNanos("00:00:00"));
+    assertEquals(
+        LocalTime.of(23, 59, 59, 999999000).toNanoOfDay(),
+        TemporalParser.parseTimeNanos("23:59:59.999999"));
+    assertEquals(
+        LocalTime.of(1, 2, 3, 100000000).toNanoOfDay(),
+        TemporalParser.parseTimeNanos("01:02:03.1"));
+    assertEquals(
+        LocalTime.of(1, 2, 3, 123456789).toNanoOfDay(),
+        TemporalParser.parseTimeNanos("01:02:03.123456789"));
+  }
+
+  @Test
+  public void testDateTime() {
+    LocalDateTime dateTime = LocalDateTime.of(2014, 8, 19, 12, 41, 35, 220000000);
+    long expected = dateTime.toEpochSecond(ZoneOffset.UTC) * 1000000L + 220000L;
+    assertEquals(expected, TemporalParser.parseDateTimeMicros("2014-08-19T12:41:35.220000"));
+    assertEquals(expected, TemporalParser.parseDateTimeMicros("2014-08-19 12:41:35.22"));
+    assertEquals(
+        LocalDateTime.of(1, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC) * 1000000L,
+        TemporalParser.parseDateTimeMicros("0001-01-01T00:00:00"));
+  }
+
+  @Test
+  public void testInvalidDateAndTime() {
+    String[] dates = {"2014-8-19", "2014-13-01", "2014-02-29", "2014-00-10", "2014/08/19"};
+    for (String value : dates) {
+      try {
+        TemporalParser.parseDateEpochDays(value);
+        fail(value);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+    String[] times = {
+      "24:00:00", "12:60:00", "12:00:61", "12:00", "12:00:00.", "12:00:00.1234567890"
+    };
+    for (String value : times) {
+      try {
+        TemporalParser.parseTimeNanos(value);
+        fail(value);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+    String[] dateTimes = {"2014-08-19", "2014-08-19X12:00:00", "2014-08-19T12:00"};
+    for (String value : dateTimes) {
+      try {
+        TemporalParser.parseDateTimeMicros(value);
+        fail(value);
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+}
@@ -16,12 +16,44 @@
 package com.google.cloud.bigquery.spi.v2;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.json.JsonGenerator;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
 import com.google.api.services.bigquery.model.Dataset;
 import com.google.api.services.bigquery.model.DatasetList;
 import com.google.api.services.bigquery.model.DatasetReference;
+import com.google.api.services.bigquery.model.GetQueryResultsResponse;
+import com.google.api.services.bigquery.model.Job;
+import com.google.api.services.bigquery.model.TableDataInsertAllRequest;
+import com.google.api.services.bigquery.model.TableDataInsertAllResponse;
+import com.google.api.services.bigquery.model.TableDataList;
+import com.google.auth.http.HttpTransportFactory;
+import com.google.cloud.NoCredentials;
+import com.google.cloud.Tuple;
+import com.google.cloud.bigquery.BigQueryOptions;
+import com.google.cloud.bigquery.RequestCompression;
+import com.google.cloud.bigquery.RequestCompressionStats;
+import com.google.cloud.http.HttpTransportOptions;
+import com.google.common.base.Strings;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class HttpBigQueryRpcTest {
   @Test
@@ -44,4 +76,302 @@ public class HttpBigQueryRpcTest {
     assertThat(dataset.getDatasetReference()).isEqualTo(datasetRef);
     assertThat(dataset.getLabels()).containsExactly("foo", "bar");
   }
+
+  private static final String TABLE_DATA_JSON =
+      "{\"kind\":\"bigquery#tableDataList\",\"totalRows\":\"2\",\"rows\":["
+          + "{\"f\":[{\"v\":\"1\"},{\"v\":null},{\"v\":[{\"v\":\"a\"},{\"v\":\"b\"}]}]},"
+          + "{\"f\":[{\"v\":\"2\"},{\"v\":{\"f\":[{\"v\":\"x\"}]}},{\"v\":[]}]}"
+          + "],\"pageToken\":\"token\",\"etag\":\"etag\"}";
+
+  private static HttpBigQueryRpc newRpc(String content) {
+    return newRpc(
+        new MockHttpTransport.Builder()
+            .setLowLevelHttpResponse(
+                new MockLowLevelHttpResponse()
+                    .setContentType("application/json; charset=UTF-8")
+                    .setContent(content))
+            .build());
+  }
+
+  private static HttpBigQueryRpc newRpc(MockHttpTransport transport) {
+    return new HttpBigQueryRpc(newOptions(transport, null));
+  }
+
+  private static BigQueryOptions newOptions(
+      final MockHttpTransport transport, RequestCompression compression) {
+    return BigQueryOptions.newBuilder()
+        .setProjectId("project-id")
+        .setCredentials(NoCredentials.getInstance())
+        .setTransportOptions(
+            HttpTransportOptions.newBuilder()
+                .setHttpTransportFactory(
+                    new HttpTransportFactory() {
+                      @Override
+                      public HttpTransport create() {
+                        return transport;
+                      }
+                    })
+                .build())
+        .setRequestCompression(compression)
+        .build();
+  }
+
+  private static class RecordingSink implements TableDataSink {
+    final List<List<Object>> rows = new ArrayList<>();
+
+    @Override
+    public void startRow() {
+      rows.add(new ArrayList<>());
+    }
+
+    @Override
+    public void addCell(Object value) {
+      rows.get(rows.size() - 1).add(value);
+    }
+
+    @Override
+    public void endRow() {}
+  }
+
+  @Test
+  public void testListTableDataStreaming() {
+    RecordingSink sink = new RecordingSink();
+    TableDataList result =
+        newRpc(TABLE_DATA_JSON)
+            .listTableData(
+                "project-id",
+                "dataset-id",
+                "table-id",
+                Collections.<BigQueryRpc.Option, Object>emptyMap(),
+                sink);
+
+    assertThat(result.getRows()).isNull();
+    assertThat(result.getTotalRows()).isEqualTo(2L);
+    assertThat(result.getPageToken()).isEqualTo("token");
+    assertThat(result.getEtag()).isEqualTo("etag");
+    assertThat(sink.rows).hasSize(2);
+    assertThat(sink.rows.get(0).get(0)).isEqualTo("1");
+    assertThat(sink.rows.get(0).get(1)).isNull();
+    assertThat((List<?>) sink.rows.get(0).get(2)).hasSize(2);
+    assertThat(sink.rows.get(1).get(0)).isEqualTo("2");
+    assertThat((Map<?, ?>) sink.rows.get(1).get(1)).containsKey("f");
+    assertThat((List<?>) sink.rows.get(1).get(2)).isEmpty();
+  }
+
+  @Test
+  public void testListTableDataStreamingNoRows() {
+    RecordingSink sink = new RecordingSink();
+    TableDataList result =
+        newRpc("{\"totalRows\":\"0\"}")
+            .listTableData(
+                "project-id",
+                "dataset-id",
+                "table-id",
+                Collections.<BigQueryRpc.Option, Object>emptyMap(),
+                sink);
+
+    assertThat(result.getTotalRows()).isEqualTo(0L);
+    assertThat(sink.rows).isEmpty();
+  }
+
+  @Test
+  public void testGetQueryResultsStreaming() {
+    RecordingSink sink = new RecordingSink();
+    GetQueryResultsResponse result =
+        newRpc(
+                "{\"jobComplete\":true,\"rows\":[{\"f\":[{\"v\":\"1\"}]}],"
+                    + "\"schema\":{\"fields\":[{\"name\":\"f1\",\"type\":\"INTEGER\"}]},"
+                    + "\"totalRows\":\"1\"}")
+            .getQueryResults(
+                "project-id",
+                "job-id",
+                null,
+                Collections.<BigQueryRpc.Option, Object>emptyMap(),
+                sink);
+
+    assertThat(result.getJobComplete()).isTrue();
+    assertThat(result.getTotalRows().longValue()).isEqualTo(1L);
+    assertThat(result.getSchema().getFields()).hasSize(1);
+    assertThat(sink.rows).hasSize(1);
+    assertThat(sink.rows.get(0)).containsExactly("1");
+  }
+
+  @Test
+  public void testInsertAllStreaming() throws IOException {
+    MockLowLevelHttpRequest request =
+        new MockLowLevelHttpRequest()
+            .setResponse(
+                new MockLowLevelHttpResponse()
+                    .setContentType("application/json; charset=UTF-8")
+                    .setContent("{\"kind\":\"bigquery#tableDataInsertAllResponse\"}"));
+    final int[] writeCount = {0};
+    TableDataInsertAllResponse response =
+        newRpc(new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build())
+            .insertAll(
+                "project-id",
+                "dataset-id",
+                "table-id",
+                new TableDataInsertAllRequest().setSkipInvalidRows(true),
+                new TableDataSource() {
+                  @Override
+                  public void writeRows(JsonGenerator generator) throws IOException {
+                    writeCount[0]++;
+                    generator.writeStartObject();
+                    generator.writeFieldName("json");
+                    generator.serialize(Collections.singletonMap("field", "value"));
+                    generator.writeEndObject();
+                  }
+                });
+
+    assertThat(response.getKind()).isEqualTo("bigquery#tableDataInsertAllResponse");
+    assertThat(request.getContentAsString())
+        .isEqualTo("{\"skipInvalidRows\":true,\"rows\":[{\"json\":{\"field\":\"value\"}}]}");
+    // the body is sent chunked, its rows are not written to compute its length
+    assertThat(request.getContentLength()).isEqualTo(-1L);
+    assertThat(writeCount[0]).isEqualTo(1);
+  }
+
+  private static final TableDataSource ROWS =
+      new TableDataSource() {
+        @Override
+        public void writeRows(JsonGenerator generator) throws IOException {
+          for (int i = 0; i < 100; i++) {
+            generator.writeStartObject();
+            generator.writeFieldName("json");
+            generator.serialize(Collections.singletonMap("field", "value"));
+            generator.writeEndObject();
+          }
+        }
+      };
+
+  @Test
+  public void testInsertAllCompressed() throws IOException {
+    MockLowLevelHttpRequest request =
+        new MockLowLevelHttpRequest()
+            .setResponse(
+                new MockLowLevelHttpResponse()
+                    .setContentType("application/json; charset=UTF-8")
+                    .setContent("{\"kind\":\"bigquery#tableDataInsertAllResponse\"}"));
+    BigQueryOptions options =
+        newOptions(new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build(), null);
+    HttpBigQueryRpc rpc = new HttpBigQueryRpc(options);
+    rpc.insertAll(
+        "project-id",
+        "dataset-id",
+        "table-id",
+        new TableDataInsertAllRequest(),
+        ROWS,
+        RequestCompression.gzip(Deflater.BEST_COMPRESSION, 0));
+
+    assertThat(request.getContentEncoding()).isEqualTo("gzip");
+    String content = request.getContentAsString();
+    assertThat(content).startsWith("{\"rows\":[{\"json\":{\"field\":\"value\"}},");
+    RequestCompressionStats stats = options.getRequestCompressionStats();
+    assertThat(stats.getRequestCount()).isEqualTo(1L);
+    assertThat(stats.getUncompressedBytes()).isEqualTo(content.length());
+    assertThat(stats.getCompressedBytes()).isLessThan(stats.getUncompressedBytes());
+
+    request.setResponse(
+        new MockLowLevelHttpResponse()
+            .setContentType("application/json; charset=UTF-8")
+            .setContent("{}"));
+
+    rpc.insertAll(
+        "project-id",
+        "dataset-id",
+        "table-id",
+        new TableDataInsertAllRequest(),
+        ROWS,
+        RequestCompression.none());
+    assertThat(request.getContentEncoding()).isNull();
+  }
+
+  @Test
+  public void testWriteCompressed() throws IOException {
+    MockLowLevelHttpRequest request =
+        new MockLowLevelHttpRequest()
+            .setResponse(new MockLowLevelHttpResponse().setStatusCode(308));
+    BigQueryOptions options =
+        newOptions(
+            new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build(),
+            RequestCompression.gzip(Deflater.BEST_SPEED, 100));
+    HttpBigQueryRpc rpc = new HttpBigQueryRpc(options);
+    byte[] bytes = Strings.repeat("a,b,c\n", 50).getBytes(StandardCharsets.UTF_8);
+
+    assertThat(rpc.write("http://upload", bytes, 0, 0, 200, false)).isNull();
+    assertThat(request.getContentEncoding()).isEqualTo("gzip");
+    assertThat(request.getFirstHeaderValue("Content-Range")).isEqualTo("bytes 0-199/*");
+    assertThat(request.getContentAsString()).isEqualTo(new String(bytes, 0, 200, "UTF-8"));
+    assertThat(options.getRequestCompressionStats().getUncompressedBytes()).isEqualTo(200L);
+
+    // chunks smaller than the minimum size are not compressed
+    assertThat(rpc.write("http://upload", bytes, 200, 200, 50, false)).isNull();
+    assertThat(request.getContentEncoding()).isNull();
+  }
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteFile() throws IOException {
+    MockLowLevelHttpRequest request =
+        new MockLowLevelHttpRequest()
+            .setResponse(
+                new MockLowLevelHttpResponse().setStatusCode(308).addHeader("Range", "bytes=0-5"));
+    HttpBigQueryRpc rpc =
+        newRpc(new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build());
+    Path path = temporaryFolder.newFile().toPath();
+    Files.write(path, "a,b,c\nd,e,f\n".getBytes(StandardCharsets.UTF_8));
+    try (FileChannel file = FileChannel.open(path)) {
+      Tuple<Long, Job> status = rpc.write("http://upload", file, 2L, 0L, 8L, false);
+      assertThat(status.x()).isEqualTo(6L);
+      assertThat(status.y()).isNull();
+      assertThat(request.getFirstHeaderValue("Content-Range")).isEqualTo("bytes 0-7/*");
+      assertThat(request.getContentAsString()).isEqualTo("b,c\nd,e,");
+    }
+  }
+
+  @Test
+  public void testWriteTruncatedFile() throws IOException {
+    MockLowLevelHttpRequest request =
+        new MockLowLevelHttpRequest()
+            .setResponse(
+                new MockLowLevelHttpResponse().setStatusCode(308).addHeader("Range", "bytes=0-5"));
+    HttpBigQueryRpc rpc =
+        newRpc(new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build());
+    Path path = temporaryFolder.newFile().toPath();
+    Files.write(path, "a,b,c\nd,e,f\n".getBytes(StandardCharsets.UTF_8));
+    try (FileChannel file =
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      rpc.write("http://upload", file, 2L, 0L, 8L, false);
+      file.truncate(6L);
+      try {
+        request.getContentAsString();
+        fail("EOFException expected");
+      } catch (EOFException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testGetUploadStatus() throws IOException {
+    MockLowLevelHttpRequest request =
+        new MockLowLevelHttpRequest()
+            .setResponse(
+                new MockLowLevelHttpResponse()
+                    .setContentType("application/json; charset=UTF-8")
+                    .setContent("{\"id\":\"project:job\"}"));
+    Tuple<Long, Job> status =
+        newRpc(new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build())
+            .getUploadStatus("http://upload");
+    assertThat(request.getFirstHeaderValue("Content-Range")).isEqualTo("bytes */*");
+    assertThat(status.x()).isNull();
+    assertThat(status.y().getId()).isEqualTo("project:job");
+
+    request.setResponse(new MockLowLevelHttpResponse().setStatusCode(308));
+    status =
+        newRpc(new MockHttpTransport.Builder().setLowLevelHttpRequest(request).build())
+            .getUploadStatus("http://upload");
+    assertThat(status.x()).isEqualTo(0L);
+  }
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.bigquery.testing;
+
+import com.google.cloud.bigquery.RowMapper;
+
+/** Creates rows of a class that is not public, outside of the package of the row writer. */
+public final class NonPublicRows {
+
+  private NonPublicRows() {}
+
+  public static Object event(String name, long userCount) {
+    return new Event(name, userCount);
+  }
+
+  static class Event {
+
+    private final String name;
+    private final long userCount;
+
+    Event(String name, long userCount) {
+      this.name = name;
+      this.userCount = userCount;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    @RowMapper.Column("user_count")
+    public long getUserCount() {
+      return userCount;
+    }
+  }
+}